@@ -19,6 +19,7 @@ import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.TextView;
@@ -40,9 +41,18 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.codeeditor.android.adapter.FileTreeAdapter;
 import com.codeeditor.android.adapter.RecentFilesAdapter;
 import com.codeeditor.android.adapter.RepoAdapter;
+import com.codeeditor.android.adapter.SearchResultAdapter;
 import com.codeeditor.android.adapter.SnippetAdapter;
+import com.codeeditor.android.adapter.SymbolAdapter;
 import com.codeeditor.android.adapter.TabAdapter;
 import com.codeeditor.android.autocomplete.AutocompleteEngine;
+import com.codeeditor.android.autocomplete.ClasspathIndex;
+import com.codeeditor.android.autocomplete.CompletionPipeline;
+import com.codeeditor.android.autocomplete.CompletionContext;
+import com.codeeditor.android.autocomplete.JavaSemanticEngine;
+import com.codeeditor.android.autocomplete.SnippetRegistry;
+import com.codeeditor.android.autocomplete.SnippetTemplate;
+import com.codeeditor.android.autocomplete.UsageModel;
 import com.codeeditor.android.databinding.ActivityMainBinding;
 import com.codeeditor.android.github.GitHubApiService;
 import com.codeeditor.android.github.GitHubAuthManager;
@@ -50,33 +60,80 @@ import com.codeeditor.android.model.OpenFile;
 import com.codeeditor.android.syntax.SyntaxHighlighter;
 import com.codeeditor.android.theme.EditorTheme;
 import com.codeeditor.android.theme.ThemeManager;
+import com.codeeditor.android.utils.BackgroundSearcher;
+import com.codeeditor.android.utils.ContentHash;
+import com.codeeditor.android.utils.EditBatch;
+import com.codeeditor.android.utils.EditFanout;
+import com.codeeditor.android.utils.FileLoader;
 import com.codeeditor.android.utils.FileTemplates;
 import com.codeeditor.android.utils.FileUtils;
 import com.codeeditor.android.utils.FindReplaceHelper;
+import com.codeeditor.android.utils.ProjectReplaceEngine;
+import com.codeeditor.android.utils.ProjectSearchEngine;
 import com.codeeditor.android.utils.RecentFilesManager;
+import com.codeeditor.android.utils.SaveService;
+import com.codeeditor.android.utils.SessionJournal;
 import com.codeeditor.android.utils.SnippetManager;
+import com.codeeditor.android.utils.TabMemoryManager;
+import com.codeeditor.android.utils.TextFormat;
+import com.codeeditor.android.utils.TrigramIndex;
+import com.codeeditor.android.utils.WorkspaceSymbolIndex;
 import com.codeeditor.android.view.AutocompleteAdapter;
+import com.codeeditor.android.view.EditorState;
+import com.codeeditor.android.view.EditorStateCache;
 import com.codeeditor.android.view.QuickActionsView;
 import com.codeeditor.android.view.SymbolToolbarView;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.tabs.TabLayout;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class MainActivity extends AppCompatActivity {
     
     private static final int STORAGE_PERMISSION_CODE = 100;
     private static final int MANAGE_STORAGE_REQUEST_CODE = 101;
+    private static final long PROJECT_SEARCH_DELAY_MS = 250;
+    private static final long SYMBOL_SEARCH_DELAY_MS = 100;
+    private static final long SYMBOL_INDEX_POLL_MS = 500;
+    private static final int MAX_SYMBOL_RESULTS = 200;
     
     private ActivityMainBinding binding;
     private GitHubAuthManager authManager;
     private GitHubApiService apiService;
     
     private TabAdapter tabAdapter;
+    private final EditorStateCache editorStateCache = new EditorStateCache();
+    private OpenFile displayedFile;
+    private TabMemoryManager tabMemoryManager;
+    private final FileLoader fileLoader = new FileLoader();
+    private SaveService saveService;
+    private SessionJournal sessionJournal;
+    private final Map<OpenFile, SessionJournal.RestoredTab> pendingViewports = new HashMap<>();
+    private final SessionJournal.Host sessionHost = new SessionJournal.Host() {
+        @Override
+        public List<OpenFile> getSessionTabs() {
+            return tabAdapter.getTabs();
+        }
+        
+        @Override
+        public OpenFile getDisplayedTab() {
+            return displayedFile;
+        }
+        
+        @Override
+        public CharSequence snapshotDisplayedText() {
+            return binding.codeEditor.snapshotText();
+        }
+    };
+    private final Map<OpenFile, Future<?>> pendingLoads = new HashMap<>();
     private FileTreeAdapter fileTreeAdapter;
     private RepoAdapter repoAdapter;
     
@@ -87,6 +144,16 @@ public class MainActivity extends AppCompatActivity {
     private List<GitHubApiService.Repository> allRepos = new ArrayList<>();
     
     private FindReplaceHelper findReplaceHelper;
+    private final BackgroundSearcher backgroundSearcher = new BackgroundSearcher();
+    private final ProjectSearchEngine projectSearchEngine = new ProjectSearchEngine();
+    private final ProjectReplaceEngine projectReplaceEngine = new ProjectReplaceEngine();
+    private TrigramIndex projectIndex;
+    private WorkspaceSymbolIndex symbolIndex;
+    private ClasspathIndex classpathIndex;
+    private JavaSemanticEngine semanticEngine;
+    private UsageModel usageModel;
+    private String searchSnapshot;
+    private long searchSnapshotVersion;
     private AlertDialog findReplaceDialog;
     private Handler autoSaveHandler;
     private Runnable autoSaveRunnable;
@@ -94,10 +161,12 @@ public class MainActivity extends AppCompatActivity {
     private int autoSaveInterval = 30;
     
     private AutocompleteEngine autocompleteEngine;
+    private CompletionPipeline completionPipeline;
     private AutocompleteAdapter autocompleteAdapter;
     private RecentFilesManager recentFilesManager;
     private RecentFilesAdapter recentFilesAdapter;
     private SnippetManager snippetManager;
+    private SnippetRegistry snippetRegistry;
     private SyntaxHighlighter.Language currentLanguage = SyntaxHighlighter.Language.PLAIN_TEXT;
     
     private final ActivityResultLauncher<Intent> openFileLauncher = registerForActivityResult(
@@ -134,6 +203,9 @@ public class MainActivity extends AppCompatActivity {
             
             authManager = new GitHubAuthManager(this);
             findReplaceHelper = new FindReplaceHelper();
+            tabMemoryManager = new TabMemoryManager(this, editorStateCache);
+            saveService = new SaveService(this);
+            sessionJournal = new SessionJournal(this, sessionHost);
             autoSaveHandler = new Handler(Looper.getMainLooper());
             
             loadPreferences();
@@ -152,6 +224,7 @@ public class MainActivity extends AppCompatActivity {
             updateWelcomeVisibility();
             
             handleIntent(getIntent());
+            restoreSession();
             
             checkStoragePermission();
         } catch (Exception e) {
@@ -348,8 +421,22 @@ public class MainActivity extends AppCompatActivity {
     private void setupNewFeatures() {
         try {
             autocompleteEngine = new AutocompleteEngine();
+            completionPipeline = new CompletionPipeline(autocompleteEngine);
+            symbolIndex = new WorkspaceSymbolIndex(
+                    new com.codeeditor.android.build.BuildWorkspace(this).getProjectsDir(),
+                    new java.io.File(getFilesDir(), "index/symbols.idx"));
+            autocompleteEngine.setSymbolIndex(symbolIndex);
+            symbolIndex.update();
+            classpathIndex = new ClasspathIndex(new java.io.File(getFilesDir(), "index/classpath"));
+            autocompleteEngine.setClasspathIndex(classpathIndex);
+            semanticEngine = new JavaSemanticEngine();
+            autocompleteEngine.setSemanticEngine(semanticEngine);
+            usageModel = new UsageModel(new java.io.File(getFilesDir(), "index/usage.bin"));
+            autocompleteEngine.setUsageModel(usageModel);
             recentFilesManager = new RecentFilesManager(this);
             snippetManager = new SnippetManager(this);
+            snippetRegistry = new SnippetRegistry(snippetManager);
+            autocompleteEngine.setSnippetRegistry(snippetRegistry);
             
             setupSymbolToolbar();
             setupAutocomplete();
@@ -373,25 +460,55 @@ public class MainActivity extends AppCompatActivity {
         binding.rvAutocomplete.setAdapter(autocompleteAdapter);
         
         autocompleteAdapter.setOnSuggestionClickListener(suggestion -> {
-            binding.codeEditor.insertCompletion(suggestion.text);
+            completionPipeline.cancel();
+            usageModel.record(currentLanguage, suggestion.text);
+            SnippetTemplate template = suggestion.type == AutocompleteAdapter.SuggestionType.SNIPPET
+                    ? snippetRegistry.get(currentLanguage, suggestion.text) : null;
+            if (template != null) {
+                binding.codeEditor.insertCompletionSnippet(template);
+            } else {
+                binding.codeEditor.insertCompletion(suggestion.text);
+            }
             hideAutocomplete();
         });
         
+        CompletionPipeline.CompletionSource completionSource = new CompletionPipeline.CompletionSource() {
+            @Override
+            public String getQualifier() {
+                return binding.codeEditor.getCompletionQualifier();
+            }
+            
+            @Override
+            public String getPrefix() {
+                return binding.codeEditor.getCompletionPrefix();
+            }
+            
+            @Override
+            public CompletionContext getContext() {
+                String fileName = displayedFile != null ? displayedFile.name : "Main.java";
+                return currentLanguage == SyntaxHighlighter.Language.JAVA
+                        ? binding.codeEditor.getCompletionContext(fileName) : null;
+            }
+        };
+        CompletionPipeline.CompletionCallback completionCallback = suggestions -> {
+            if (!suggestions.isEmpty()) {
+                autocompleteAdapter.setSuggestions(suggestions);
+                showAutocomplete();
+            } else {
+                hideAutocomplete();
+            }
+        };
+        
         binding.codeEditor.setOnAutocompleteListener(new com.codeeditor.android.view.CodeEditorView.OnAutocompleteListener() {
             @Override
-            public void onAutocompleteRequest(String prefix, int wordStart) {
-                autocompleteEngine.setLanguage(currentLanguage);
-                List<AutocompleteAdapter.Suggestion> suggestions = autocompleteEngine.getSuggestions(prefix, 10);
-                if (!suggestions.isEmpty()) {
-                    autocompleteAdapter.setSuggestions(suggestions);
-                    showAutocomplete();
-                } else {
-                    hideAutocomplete();
-                }
+            public void onAutocompleteRequest(int wordStart, int wordEnd) {
+                completionPipeline.request(completionSource, currentLanguage,
+                        binding.codeEditor.getIdentifierIndex(), 10, completionCallback);
             }
             
             @Override
             public void onAutocompleteDismiss() {
+                completionPipeline.cancel();
                 hideAutocomplete();
             }
         });
@@ -550,9 +667,7 @@ public class MainActivity extends AppCompatActivity {
         rvSnippets.setLayoutManager(new LinearLayoutManager(this));
         rvSnippets.setAdapter(snippetAdapter);
         
-        List<SnippetManager.Snippet> allSnippets = new ArrayList<>();
-        allSnippets.addAll(SnippetManager.getBuiltInSnippets(currentLanguage));
-        allSnippets.addAll(snippetManager.getCustomSnippets(currentLanguage));
+        List<SnippetTemplate> allSnippets = snippetRegistry.getTemplates(currentLanguage);
         snippetAdapter.setSnippets(allSnippets);
         
         AlertDialog dialog = new AlertDialog.Builder(this)
@@ -561,18 +676,19 @@ public class MainActivity extends AppCompatActivity {
         
         snippetAdapter.setOnSnippetClickListener(new SnippetAdapter.OnSnippetClickListener() {
             @Override
-            public void onSnippetClick(SnippetManager.Snippet snippet) {
-                binding.codeEditor.insertText(snippet.code);
+            public void onSnippetClick(SnippetTemplate snippet) {
+                binding.codeEditor.insertSnippet(snippet);
                 dialog.dismiss();
             }
             
             @Override
-            public void onSnippetLongClick(SnippetManager.Snippet snippet, int position) {
+            public void onSnippetLongClick(SnippetTemplate snippet, int position) {
                 if (snippet.isCustom) {
                     new AlertDialog.Builder(MainActivity.this)
                         .setMessage(R.string.delete_confirm)
                         .setPositiveButton(R.string.delete, (d, w) -> {
                             snippetManager.deleteCustomSnippet(currentLanguage, snippet.trigger);
+                            snippetRegistry.refresh(currentLanguage);
                             Toast.makeText(MainActivity.this, R.string.snippet_deleted, Toast.LENGTH_SHORT).show();
                             allSnippets.remove(position);
                             snippetAdapter.notifyItemRemoved(position);
@@ -590,7 +706,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 String query = s.toString().toLowerCase();
-                List<SnippetManager.Snippet> filtered = allSnippets.stream()
+                List<SnippetTemplate> filtered = allSnippets.stream()
                     .filter(sn -> sn.name.toLowerCase().contains(query) || 
                                   sn.trigger.toLowerCase().contains(query))
                     .collect(Collectors.toList());
@@ -630,6 +746,7 @@ public class MainActivity extends AppCompatActivity {
                         name, trigger, code, "Custom snippet", currentLanguage, true
                     );
                     snippetManager.saveCustomSnippet(snippet);
+                    snippetRegistry.refresh(currentLanguage);
                     Toast.makeText(this, R.string.snippet_saved, Toast.LENGTH_SHORT).show();
                 }
             })
@@ -686,21 +803,67 @@ public class MainActivity extends AppCompatActivity {
     
     private void autoSaveCurrentFile() {
         OpenFile file = tabAdapter.getSelectedTab();
-        if (file != null && file.isModified) {
-            String currentText = binding.codeEditor.getText();
-            file.content = currentText;
-            
-            if (file.localUri != null && !file.localUri.isEmpty()) {
-                try {
-                    Uri uri = Uri.parse(file.localUri);
-                    FileUtils.writeToUri(this, uri, currentText);
-                    file.markSaved(null);
-                    tabAdapter.notifyItemChanged(tabAdapter.getSelectedPosition());
-                } catch (IOException e) {
-                    e.printStackTrace();
+        if (file != null && file.isModified && !file.isLoading()
+                && file.localUri != null && !file.localUri.isEmpty()) {
+            writeLocalFile(file, Uri.parse(file.localUri), false, null);
+        }
+    }
+    
+    private void writeLocalFile(OpenFile file, Uri uri, boolean showToast, Runnable onSaved) {
+        boolean displayed = file == displayedFile;
+        if (!displayed && file.needsDiskRead()) {
+            readFromDisk(Collections.singletonList(file), () -> {
+                if (file.needsDiskRead()) {
+                    Toast.makeText(MainActivity.this, R.string.error_saving, Toast.LENGTH_SHORT).show();
+                } else {
+                    writeLocalFile(file, uri, showToast, onSaved);
                 }
-            }
+            });
+            return;
         }
+        CharSequence snapshot = displayed ? binding.codeEditor.snapshotText() : file.getContent();
+        long version = displayed ? binding.codeEditor.getDocumentVersion() : -1;
+        long knownHash = uri.toString().equals(file.localUri) ? file.getBaselineHash() : SaveService.NO_HASH;
+        
+        saveService.save(uri, snapshot, file.format, knownHash, new SaveService.SaveCallback() {
+            @Override
+            public void onSaved(long hash, int length, boolean written) {
+                file.markSaved(file.sha, hash, length);
+                if (file == displayedFile) {
+                    if (version < 0 || version != binding.codeEditor.getDocumentVersion()) {
+                        file.updateModified(binding.codeEditor.getEditableText());
+                    }
+                } else if (version >= 0) {
+                    // the tab was switched away while saving; check its edits once its content is back
+                    readFromDisk(Collections.singletonList(file), () -> {
+                        int position = tabAdapter.getTabs().indexOf(file);
+                        if (position >= 0 && !file.needsDiskRead()) {
+                            file.updateModified(file.getContent());
+                            tabAdapter.notifyItemChanged(position);
+                        }
+                    });
+                }
+                if (written && symbolIndex != null) {
+                    symbolIndex.update();
+                }
+                sessionJournal.scheduleCheckpoint();
+                if (onSaved != null) {
+                    onSaved.run();
+                }
+                int position = tabAdapter.getTabs().indexOf(file);
+                if (position >= 0) {
+                    tabAdapter.notifyItemChanged(position);
+                }
+                if (showToast) {
+                    Toast.makeText(MainActivity.this, R.string.file_saved, Toast.LENGTH_SHORT).show();
+                }
+            }
+            
+            @Override
+            public void onError(String error) {
+                Toast.makeText(MainActivity.this, R.string.error_saving, Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
     private void setupToolbar() {
@@ -806,18 +969,33 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void setupCodeEditor() {
+        String lineLabel = getString(R.string.line) + " ";
+        String columnLabel = ", " + getString(R.string.column) + " ";
+        StringBuilder positionText = new StringBuilder();
         binding.codeEditor.setOnCursorChangeListener((line, column) -> {
-            binding.tvPosition.setText(getString(R.string.line) + " " + line + ", " + 
-                getString(R.string.column) + " " + column);
+            positionText.setLength(0);
+            positionText.append(lineLabel).append(line).append(columnLabel).append(column);
+            binding.tvPosition.setText(positionText);
+            recordViewport();
         });
         
-        binding.codeEditor.setOnTextChangeListener(text -> {
-            OpenFile currentFile = tabAdapter.getSelectedTab();
-            if (currentFile != null) {
-                currentFile.updateContent(text);
-                tabAdapter.updateTabModified(tabAdapter.getSelectedPosition(), currentFile.isModified);
+        binding.codeEditor.getEditFanout().setConsumers(sessionJournal, findReplaceHelper, new EditFanout.Host() {
+            @Override
+            public OpenFile getEditedFile() {
+                return displayedFile;
+            }
+            
+            @Override
+            public void onSearchInvalidated() {
+                backgroundSearcher.cancel();
+            }
+            
+            @Override
+            public void onModifiedChanged(OpenFile file) {
+                tabAdapter.updateTabModified(tabAdapter.getTabs().indexOf(file), file.isModified);
             }
         });
+        
     }
     
     private void setupWelcomePanel() {
@@ -892,6 +1070,9 @@ public class MainActivity extends AppCompatActivity {
         binding.fabQuickActions.setVisibility(hasOpenTabs ? View.VISIBLE : View.GONE);
         
         if (!hasOpenTabs) {
+            if (completionPipeline != null) {
+                completionPipeline.cancel();
+            }
             hideAutocomplete();
             updateRecentFilesUI();
         }
@@ -1112,8 +1293,54 @@ public class MainActivity extends AppCompatActivity {
     private void displayFile(OpenFile file) {
         SyntaxHighlighter.Language language = SyntaxHighlighter.detectLanguage(file.name);
         currentLanguage = language;
-        binding.codeEditor.setLanguage(language);
-        binding.codeEditor.setText(file.content);
+        if (classpathIndex != null && (language == SyntaxHighlighter.Language.JAVA
+                || language == SyntaxHighlighter.Language.KOTLIN)) {
+            java.io.File projectDir = getProjectDir(file);
+            classpathIndex.setProject(new java.io.File(getFilesDir(), "android-sdk"), projectDir,
+                    language == SyntaxHighlighter.Language.JAVA
+                            ? classpath -> semanticEngine.setClasspath(classpath, projectDir) : null);
+        }
+        
+        OpenFile selectedTab = tabAdapter.getSelectedTab();
+        OpenFile owner = selectedTab != null ? selectedTab : file;
+        boolean reload = owner != file;
+        if (owner != displayedFile || reload) {
+            if (displayedFile != null && displayedFile != owner && tabAdapter.getTabs().contains(displayedFile)
+                    && !displayedFile.isLoading()) {
+                recordViewport();
+                editorStateCache.put(displayedFile, binding.codeEditor.detachState());
+            }
+            displayedFile = null;
+            findReplaceHelper.setText(null);
+            
+            EditorState state = editorStateCache.take(owner);
+            if (state != null && !reload) {
+                binding.codeEditor.attachState(state);
+                if (binding.codeEditor.getLanguage() != language) {
+                    binding.codeEditor.setLanguage(language);
+                }
+            } else if (!reload && file.needsDiskRead()) {
+                binding.codeEditor.setLanguage(language);
+                binding.codeEditor.setText("");
+                readFromDisk(file);
+            } else {
+                binding.codeEditor.setLanguage(language);
+                binding.codeEditor.setText(file.getContent());
+                SessionJournal.RestoredTab viewport = pendingViewports.remove(owner);
+                if (viewport != null && !reload) {
+                    binding.codeEditor.restoreViewport(viewport.selectionStart, viewport.selectionEnd,
+                            viewport.scrollX, viewport.scrollY);
+                }
+            }
+            if (!owner.isLoading()) {
+                owner.attachText(binding.codeEditor.getEditableText());
+            }
+            binding.codeEditor.setReadOnly(owner.isLoading());
+            displayedFile = owner;
+            tabMemoryManager.touch(owner);
+            tabMemoryManager.trim(tabAdapter.getTabs(), owner);
+            sessionJournal.recordActive(owner);
+        }
         binding.tvLanguage.setText(SyntaxHighlighter.getLanguageDisplayName(language));
         binding.symbolToolbar.setLanguage(language);
         
@@ -1132,12 +1359,59 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
-    private void switchToTab(int position) {
-        OpenFile currentFile = tabAdapter.getSelectedTab();
-        if (currentFile != null) {
-            currentFile.content = binding.codeEditor.getText();
+    private void readFromDisk(OpenFile file) {
+        fileLoader.restore(file, new FileLoader.RestoreCallback() {
+            @Override
+            public void onRestored() {
+                if (file == displayedFile && !file.isLoading()) {
+                    displayedFile = null;
+                    displayFile(file);
+                }
+            }
+            
+            @Override
+            public void onError(String error) {
+                int position = tabAdapter.getTabs().indexOf(file);
+                if (position >= 0 && !file.isLoading()) {
+                    removeTab(position);
+                    Toast.makeText(MainActivity.this, R.string.error_opening, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+    }
+    
+    private void readFromDisk(Collection<OpenFile> files, Runnable onRead) {
+        int[] remaining = {0};
+        for (OpenFile file : files) {
+            if (file.needsDiskRead()) {
+                remaining[0]++;
+            }
         }
-        
+        if (remaining[0] == 0) {
+            onRead.run();
+            return;
+        }
+        FileLoader.RestoreCallback callback = new FileLoader.RestoreCallback() {
+            @Override
+            public void onRestored() {
+                if (--remaining[0] == 0) {
+                    onRead.run();
+                }
+            }
+            
+            @Override
+            public void onError(String error) {
+                onRestored();
+            }
+        };
+        for (OpenFile file : files) {
+            if (file.needsDiskRead()) {
+                fileLoader.restore(file, callback);
+            }
+        }
+    }
+    
+    private void switchToTab(int position) {
         tabAdapter.setSelectedPosition(position);
         OpenFile file = tabAdapter.getSelectedTab();
         if (file != null) {
@@ -1148,13 +1422,6 @@ public class MainActivity extends AppCompatActivity {
     private void closeTab(int position) {
         if (position < 0 || position >= tabAdapter.getTabs().size()) return;
         
-        if (position == tabAdapter.getSelectedPosition()) {
-            OpenFile currentFile = tabAdapter.getSelectedTab();
-            if (currentFile != null) {
-                currentFile.content = binding.codeEditor.getText();
-            }
-        }
-        
         OpenFile file = tabAdapter.getTabs().get(position);
         
         if (file.isModified) {
@@ -1164,14 +1431,12 @@ public class MainActivity extends AppCompatActivity {
                         if (file.isGitHubFile) {
                             saveToGitHub(file, () -> removeTab(position));
                         } else if (file.localUri != null && !file.localUri.isEmpty()) {
-                            try {
-                                Uri uri = Uri.parse(file.localUri);
-                                FileUtils.writeToUri(this, uri, file.content);
-                                file.markSaved(null);
-                                removeTab(position);
-                            } catch (IOException e) {
-                                Toast.makeText(this, R.string.error_saving, Toast.LENGTH_SHORT).show();
-                            }
+                            writeLocalFile(file, Uri.parse(file.localUri), false, () -> {
+                                int current = tabAdapter.getTabs().indexOf(file);
+                                if (current >= 0) {
+                                    removeTab(current);
+                                }
+                            });
                         } else {
                             saveAs();
                         }
@@ -1185,9 +1450,24 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void removeTab(int position) {
+        if (position >= 0 && position < tabAdapter.getTabs().size()) {
+            OpenFile removed = tabAdapter.getTabs().get(position);
+            editorStateCache.remove(removed);
+            tabMemoryManager.release(removed);
+            pendingViewports.remove(removed);
+            Future<?> load = pendingLoads.remove(removed);
+            if (load != null) {
+                load.cancel(true);
+            }
+            if (removed == displayedFile) {
+                displayedFile = null;
+            }
+        }
         tabAdapter.removeTab(position);
+        sessionJournal.scheduleCheckpoint();
         
         if (tabAdapter.getItemCount() == 0) {
+            binding.codeEditor.setReadOnly(false);
             binding.codeEditor.setText("");
             binding.tvLanguage.setText("Plain Text");
             if (getSupportActionBar() != null) {
@@ -1211,21 +1491,15 @@ public class MainActivity extends AppCompatActivity {
     public void saveCurrentFile() {
         OpenFile file = tabAdapter.getSelectedTab();
         if (file == null) return;
-        
-        file.content = binding.codeEditor.getText();
+        if (file.isLoading()) {
+            Toast.makeText(this, R.string.file_still_loading, Toast.LENGTH_SHORT).show();
+            return;
+        }
         
         if (file.isGitHubFile) {
             showCommitDialog(file);
         } else if (file.localUri != null && !file.localUri.isEmpty()) {
-            try {
-                Uri uri = Uri.parse(file.localUri);
-                FileUtils.writeToUri(this, uri, file.content);
-                file.markSaved(null);
-                tabAdapter.notifyItemChanged(tabAdapter.getSelectedPosition());
-                Toast.makeText(this, R.string.file_saved, Toast.LENGTH_SHORT).show();
-            } catch (IOException e) {
-                Toast.makeText(this, R.string.error_saving, Toast.LENGTH_SHORT).show();
-            }
+            writeLocalFile(file, Uri.parse(file.localUri), true, null);
         } else {
             saveAs();
         }
@@ -1257,13 +1531,25 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void saveToGitHub(OpenFile file, String message, Runnable onComplete) {
+        if (file.needsDiskRead()) {
+            readFromDisk(Collections.singletonList(file), () -> {
+                if (file.needsDiskRead()) {
+                    Toast.makeText(MainActivity.this, R.string.error_github, Toast.LENGTH_LONG).show();
+                } else {
+                    saveToGitHub(file, message, onComplete);
+                }
+            });
+            return;
+        }
         Toast.makeText(this, R.string.saving_to_github, Toast.LENGTH_SHORT).show();
         
-        apiService.updateFile(file.owner, file.repo, file.path, file.content, message, file.sha, file.branch,
+        String content = file.getContent();
+        apiService.updateFile(file.owner, file.repo, file.path, content, message, file.sha, file.branch,
                 new GitHubApiService.ApiCallback<GitHubApiService.CommitResult>() {
                     @Override
                     public void onSuccess(GitHubApiService.CommitResult result) {
-                        file.markSaved(result.content.sha);
+                        file.markSaved(result.content.sha, ContentHash.hash64(content), content.length());
+                        sessionJournal.scheduleCheckpoint();
                         tabAdapter.updateTabModified(tabAdapter.getSelectedPosition(), false);
                         tabAdapter.updateTabSha(tabAdapter.getSelectedPosition(), result.content.sha);
                         Toast.makeText(MainActivity.this, R.string.saved_to_github, Toast.LENGTH_SHORT).show();
@@ -1288,6 +1574,10 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void openLocalFile(Uri uri) {
+        openLocalFile(uri, null);
+    }
+    
+    private void openLocalFile(Uri uri, ProjectSearchEngine.Hit jumpTo) {
         try {
             getContentResolver().takePersistableUriPermission(uri,
                     Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
@@ -1295,42 +1585,182 @@ public class MainActivity extends AppCompatActivity {
             e.printStackTrace();
         }
         
-        try {
-            String content = FileUtils.readFromUri(this, uri);
-            String filename = FileUtils.getFileName(this, uri);
+        if (showOpenTab(uri.toString(), jumpTo)) {
+            return;
+        }
+        
+        String filename = FileUtils.getFileName(this, uri);
+        Future<?>[] task = new Future<?>[1];
+        task[0] = fileLoader.load(this, uri, new FileLoader.LoadCallback() {
+            private OpenFile target;
+            private boolean superseded;
             
-            OpenFile file = new OpenFile(filename, uri.toString(), content, null);
-            file.localUri = uri.toString();
-            tabAdapter.addTab(file);
-            displayFile(file);
-            updateWelcomeVisibility();
+            @Override
+            public void onFirstChunk(String text, TextFormat format) {
+                // another open of the same uri finished its first chunk while this one was reading
+                if (showOpenTab(uri.toString(), jumpTo)) {
+                    superseded = true;
+                    task[0].cancel(true);
+                    return;
+                }
+                
+                target = new OpenFile(filename, uri.toString(), text, null);
+                target.localUri = uri.toString();
+                target.format = format;
+                target.beginLoad();
+                pendingLoads.put(target, task[0]);
+                tabAdapter.addTab(target);
+                
+                displayFile(target);
+                updateWelcomeVisibility();
+            }
             
-            Toast.makeText(this, R.string.file_opened, Toast.LENGTH_SHORT).show();
-        } catch (IOException e) {
-            Toast.makeText(this, R.string.error_opening, Toast.LENGTH_SHORT).show();
-        }
+            @Override
+            public void onChunk(String text) {
+                if (!isOpen(target)) {
+                    return;
+                }
+                target.appendLoaded(text);
+                if (target == displayedFile) {
+                    binding.codeEditor.appendText(text);
+                }
+            }
+            
+            @Override
+            public void onComplete(TextFormat format) {
+                if (!isOpen(target)) {
+                    return;
+                }
+                pendingLoads.remove(target);
+                target.format = format;
+                target.finishLoad();
+                target.markSaved(target.sha);
+                sessionJournal.scheduleCheckpoint();
+                if (target == displayedFile) {
+                    target.attachText(binding.codeEditor.getEditableText());
+                    binding.codeEditor.setReadOnly(false);
+                    if (jumpTo != null) {
+                        binding.codeEditor.selectInLine(jumpTo.line, jumpTo.column, jumpTo.length);
+                    }
+                }
+                Toast.makeText(MainActivity.this, R.string.file_opened, Toast.LENGTH_SHORT).show();
+            }
+            
+            @Override
+            public void onError(String error) {
+                if (superseded) {
+                    return;
+                }
+                if (target == null) {
+                    Toast.makeText(MainActivity.this, R.string.error_opening, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                pendingLoads.remove(target);
+                int position = tabAdapter.getTabs().indexOf(target);
+                if (position >= 0) {
+                    removeTab(position);
+                }
+                Toast.makeText(MainActivity.this, R.string.error_opening, Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
-    private void saveLocalFile(Uri uri) {
-        try {
-            String currentText = binding.codeEditor.getText();
-            FileUtils.writeToUri(this, uri, currentText);
+    private void restoreSession() {
+        sessionJournal.restore(session -> {
+            if (session.tabs.isEmpty()) {
+                return;
+            }
+            
+            for (SessionJournal.RestoredTab tab : session.tabs) {
+                if (!isOpenPath(tab.file.path)) {
+                    tabAdapter.addTab(tab.file);
+                    pendingViewports.put(tab.file, tab);
+                }
+            }
             
+            OpenFile active = session.activeIndex >= 0 ? session.tabs.get(session.activeIndex).file : null;
+            int position = tabAdapter.getTabs().indexOf(active);
+            if (position < 0) {
+                position = tabAdapter.getItemCount() - 1;
+            }
+            tabAdapter.setSelectedPosition(position);
             OpenFile file = tabAdapter.getSelectedTab();
             if (file != null) {
-                String uriString = uri.toString();
-                file.localUri = uriString;
-                file.path = uriString;
-                file.name = FileUtils.getFileName(this, uri);
-                file.content = currentText;
-                file.markSaved(null);
-                tabAdapter.notifyItemChanged(tabAdapter.getSelectedPosition());
+                displayFile(file);
+            }
+            updateWelcomeVisibility();
+        });
+    }
+    
+    private boolean isOpenPath(String path) {
+        return indexOfPath(path) >= 0;
+    }
+    
+    private int indexOfPath(String path) {
+        List<OpenFile> tabs = tabAdapter.getTabs();
+        for (int i = 0; i < tabs.size(); i++) {
+            if (tabs.get(i).path.equals(path)) {
+                return i;
             }
-            
-            Toast.makeText(this, R.string.file_saved, Toast.LENGTH_SHORT).show();
-        } catch (IOException e) {
-            Toast.makeText(this, R.string.error_saving, Toast.LENGTH_SHORT).show();
         }
+        return -1;
+    }
+    
+    /** Switches to the tab already showing path, keeping its edits instead of loading the file again. */
+    private boolean showOpenTab(String path, ProjectSearchEngine.Hit jumpTo) {
+        int position = indexOfPath(path);
+        if (position < 0) {
+            return false;
+        }
+        switchToTab(position);
+        OpenFile file = tabAdapter.getSelectedTab();
+        if (jumpTo != null && file == displayedFile && !file.isLoading()) {
+            binding.codeEditor.selectInLine(jumpTo.line, jumpTo.column, jumpTo.length);
+        }
+        return true;
+    }
+    
+    private void recordViewport() {
+        if (displayedFile != null) {
+            sessionJournal.recordCursor(displayedFile,
+                    binding.codeEditor.getSelectionStart(), binding.codeEditor.getSelectionEnd(),
+                    binding.codeEditor.getEditorScrollX(), binding.codeEditor.getEditorScrollY());
+        }
+    }
+    
+    private boolean isOpen(OpenFile file) {
+        return file != null && tabAdapter.getTabs().contains(file);
+    }
+    
+    private void saveLocalFile(Uri uri) {
+        OpenFile file = tabAdapter.getSelectedTab();
+        if (file != null && file.isLoading()) {
+            Toast.makeText(this, R.string.file_still_loading, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        if (file == null) {
+            saveService.save(uri, binding.codeEditor.snapshotText(), TextFormat.DEFAULT, SaveService.NO_HASH,
+                    new SaveService.SaveCallback() {
+                        @Override
+                        public void onSaved(long hash, int length, boolean written) {
+                            Toast.makeText(MainActivity.this, R.string.file_saved, Toast.LENGTH_SHORT).show();
+                        }
+                        
+                        @Override
+                        public void onError(String error) {
+                            Toast.makeText(MainActivity.this, R.string.error_saving, Toast.LENGTH_SHORT).show();
+                        }
+                    });
+            return;
+        }
+        
+        writeLocalFile(file, uri, true, () -> {
+            String uriString = uri.toString();
+            file.localUri = uriString;
+            file.path = uriString;
+            file.name = FileUtils.getFileName(this, uri);
+        });
     }
     
     private void saveAs() {
@@ -1372,6 +1802,12 @@ public class MainActivity extends AppCompatActivity {
         } else if (id == R.id.action_find_replace) {
             showFindReplaceDialog();
             return true;
+        } else if (id == R.id.action_find_in_project) {
+            showProjectSearchDialog();
+            return true;
+        } else if (id == R.id.action_go_to_symbol) {
+            showGoToSymbolDialog();
+            return true;
         } else if (id == R.id.action_go_to_line) {
             showGoToLineDialog();
             return true;
@@ -1466,7 +1902,8 @@ public class MainActivity extends AppCompatActivity {
         CheckBox cbWholeWord = dialogView.findViewById(R.id.cbWholeWord);
         TextView tvMatchCount = dialogView.findViewById(R.id.tvMatchCount);
         
-        findReplaceHelper.setText(binding.codeEditor.getText());
+        findReplaceHelper.setText(getSearchSnapshot());
+        binding.codeEditor.setSearchMatches(findReplaceHelper);
         
         findReplaceDialog = new AlertDialog.Builder(this)
                 .setView(dialogView)
@@ -1475,34 +1912,63 @@ public class MainActivity extends AppCompatActivity {
         Runnable performFind = () -> {
             String query = etFind.getText().toString();
             if (query.isEmpty()) {
+                backgroundSearcher.cancel();
+                findReplaceHelper.setText(getSearchSnapshot());
                 tvMatchCount.setVisibility(View.GONE);
                 binding.codeEditor.clearHighlightedMatch();
+                binding.codeEditor.invalidateSearchMatches();
                 return;
             }
             
-            findReplaceHelper.setText(binding.codeEditor.getText());
+            String snapshot = getSearchSnapshot();
+            findReplaceHelper.setText(snapshot);
             FindReplaceHelper.FindOptions options = new FindReplaceHelper.FindOptions(
                 cbCaseSensitive.isChecked(),
                 cbRegex.isChecked(),
                 cbWholeWord.isChecked()
             );
             
-            findReplaceHelper.find(query, options);
-            int count = findReplaceHelper.getMatchCount();
-            
-            if (count > 0) {
-                tvMatchCount.setText(getString(R.string.matches_found, count));
-                tvMatchCount.setVisibility(View.VISIBLE);
+            backgroundSearcher.search(snapshot, query, options, binding.codeEditor.getSelectionStart(),
+                    new BackgroundSearcher.SearchCallback() {
+                @Override
+                public void onMatches(int[] starts, int[] ends, int count, boolean wrapped) {
+                    boolean first = findReplaceHelper.getMatchCount() == 0;
+                    findReplaceHelper.appendMatches(starts, ends, count, wrapped);
+                    tvMatchCount.setText(getString(R.string.matches_found, findReplaceHelper.getMatchCount()));
+                    tvMatchCount.setVisibility(View.VISIBLE);
+                    binding.codeEditor.invalidateSearchMatches();
+                    
+                    FindReplaceHelper.Match match = findReplaceHelper.getCurrentMatch();
+                    if (first && match != null) {
+                        binding.codeEditor.highlightMatch(match.start, match.end);
+                    }
+                }
                 
-                FindReplaceHelper.Match match = findReplaceHelper.getCurrentMatch();
-                if (match != null) {
-                    binding.codeEditor.highlightMatch(match.start, match.end);
+                @Override
+                public void onResync(int[] starts, int[] ends, int count, int until) {
+                    findReplaceHelper.resyncMatches(starts, ends, count, until);
                 }
-            } else {
-                tvMatchCount.setText(R.string.no_matches);
-                tvMatchCount.setVisibility(View.VISIBLE);
-                binding.codeEditor.clearHighlightedMatch();
-            }
+                
+                @Override
+                public void onComplete() {
+                    findReplaceHelper.finishResults();
+                    if (findReplaceHelper.getMatchCount() == 0) {
+                        showNoMatches();
+                    }
+                }
+                
+                @Override
+                public void onError(String error) {
+                    showNoMatches();
+                }
+                
+                private void showNoMatches() {
+                    tvMatchCount.setText(R.string.no_matches);
+                    tvMatchCount.setVisibility(View.VISIBLE);
+                    binding.codeEditor.clearHighlightedMatch();
+                    binding.codeEditor.invalidateSearchMatches();
+                }
+            });
         };
         
         etFind.addTextChangedListener(new TextWatcher() {
@@ -1517,14 +1983,16 @@ public class MainActivity extends AppCompatActivity {
         });
         
         dialogView.findViewById(R.id.btnFindNext).setOnClickListener(v -> {
-            FindReplaceHelper.Match match = findReplaceHelper.findNext();
+            FindReplaceHelper.Match match = findReplaceHelper.findNextFrom(
+                    binding.codeEditor.getSelectionStart(), binding.codeEditor.getSelectionEnd());
             if (match != null) {
                 binding.codeEditor.highlightMatch(match.start, match.end);
             }
         });
         
         dialogView.findViewById(R.id.btnFindPrev).setOnClickListener(v -> {
-            FindReplaceHelper.Match match = findReplaceHelper.findPrevious();
+            FindReplaceHelper.Match match = findReplaceHelper.findPreviousFrom(
+                    binding.codeEditor.getSelectionStart(), binding.codeEditor.getSelectionEnd());
             if (match != null) {
                 binding.codeEditor.highlightMatch(match.start, match.end);
             }
@@ -1534,15 +2002,12 @@ public class MainActivity extends AppCompatActivity {
             FindReplaceHelper.Match match = findReplaceHelper.getCurrentMatch();
             if (match != null) {
                 String replacement = etReplace.getText().toString();
+                boolean complete = findReplaceHelper.isComplete();
                 binding.codeEditor.replaceText(match.start, match.end, replacement);
-                findReplaceHelper.setText(binding.codeEditor.getText());
-                
-                FindReplaceHelper.FindOptions options = new FindReplaceHelper.FindOptions(
-                    cbCaseSensitive.isChecked(),
-                    cbRegex.isChecked(),
-                    cbWholeWord.isChecked()
-                );
-                findReplaceHelper.find(etFind.getText().toString(), options);
+                if (!complete) {
+                    performFind.run();
+                    return;
+                }
                 
                 FindReplaceHelper.Match nextMatch = findReplaceHelper.getCurrentMatch();
                 if (nextMatch != null) {
@@ -1564,13 +2029,14 @@ public class MainActivity extends AppCompatActivity {
                     cbWholeWord.isChecked()
                 );
                 
-                findReplaceHelper.setText(binding.codeEditor.getText());
-                findReplaceHelper.find(query, options);
-                int count = findReplaceHelper.getMatchCount();
+                backgroundSearcher.cancel();
+                findReplaceHelper.setText(getSearchSnapshot());
+                EditBatch batch = findReplaceHelper.replaceAll(query, replacement, options);
+                int count = batch.size();
                 
                 if (count > 0) {
-                    String newText = findReplaceHelper.replaceAll(query, replacement, options);
-                    binding.codeEditor.setText(newText);
+                    binding.codeEditor.clearHighlightedMatch();
+                    binding.codeEditor.applyEdits(batch);
                     Toast.makeText(this, getString(R.string.replaced_count, count), Toast.LENGTH_SHORT).show();
                 }
                 
@@ -1580,12 +2046,344 @@ public class MainActivity extends AppCompatActivity {
         });
         
         findReplaceDialog.setOnDismissListener(d -> {
+            backgroundSearcher.cancel();
+            binding.codeEditor.setSearchMatches(null);
             binding.codeEditor.clearHighlightedMatch();
         });
         
         findReplaceDialog.show();
     }
     
+    private String getSearchSnapshot() {
+        long version = binding.codeEditor.getDocumentVersion();
+        if (searchSnapshot == null || version != searchSnapshotVersion) {
+            searchSnapshot = binding.codeEditor.getText();
+            searchSnapshotVersion = version;
+        }
+        return searchSnapshot;
+    }
+    
+    private void showProjectSearchDialog() {
+        java.io.File projectsDir = new com.codeeditor.android.build.BuildWorkspace(this).getProjectsDir();
+        String[] projects = projectsDir.list();
+        if (projects == null || projects.length == 0) {
+            Toast.makeText(this, R.string.project_search_empty, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (projectIndex == null) {
+            projectIndex = new TrigramIndex(projectsDir, new java.io.File(getFilesDir(), "index/projects.idx"));
+            projectSearchEngine.setIndex(projectIndex);
+            projectReplaceEngine.setIndex(projectIndex);
+        }
+        projectIndex.update();
+        
+        View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_project_search, null);
+        EditText etSearchQuery = dialogView.findViewById(R.id.etSearchQuery);
+        CheckBox cbCaseSensitive = dialogView.findViewById(R.id.cbCaseSensitive);
+        CheckBox cbRegex = dialogView.findViewById(R.id.cbRegex);
+        CheckBox cbWholeWord = dialogView.findViewById(R.id.cbWholeWord);
+        EditText etReplaceQuery = dialogView.findViewById(R.id.etReplaceQuery);
+        Button btnReplaceInProject = dialogView.findViewById(R.id.btnReplaceInProject);
+        TextView tvSearchStatus = dialogView.findViewById(R.id.tvSearchStatus);
+        RecyclerView rvSearchResults = dialogView.findViewById(R.id.rvSearchResults);
+        
+        SearchResultAdapter resultAdapter = new SearchResultAdapter();
+        rvSearchResults.setLayoutManager(new LinearLayoutManager(this));
+        rvSearchResults.setAdapter(resultAdapter);
+        
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setView(dialogView)
+                .create();
+        
+        Runnable performSearch = () -> {
+            String query = etSearchQuery.getText().toString();
+            resultAdapter.clear();
+            if (query.isEmpty()) {
+                projectSearchEngine.cancel();
+                tvSearchStatus.setVisibility(View.GONE);
+                return;
+            }
+            
+            tvSearchStatus.setText(R.string.project_search_running);
+            tvSearchStatus.setVisibility(View.VISIBLE);
+            FindReplaceHelper.FindOptions options = new FindReplaceHelper.FindOptions(
+                cbCaseSensitive.isChecked(),
+                cbRegex.isChecked(),
+                cbWholeWord.isChecked()
+            );
+            
+            projectSearchEngine.search(projectsDir, query, options, new ProjectSearchEngine.SearchCallback() {
+                @Override
+                public void onFileResult(ProjectSearchEngine.FileResult result) {
+                    resultAdapter.addResult(result);
+                }
+                
+                @Override
+                public void onComplete(int fileCount, int hitCount, boolean truncated) {
+                    if (hitCount == 0) {
+                        tvSearchStatus.setText(R.string.no_matches);
+                    } else {
+                        tvSearchStatus.setText(getString(truncated ? R.string.project_search_truncated
+                                : R.string.project_search_results, hitCount, fileCount));
+                    }
+                }
+                
+                @Override
+                public void onError(String error) {
+                    tvSearchStatus.setText(error);
+                }
+            });
+        };
+        
+        etSearchQuery.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override
+            public void afterTextChanged(Editable s) {
+                dialogView.removeCallbacks(performSearch);
+                dialogView.postDelayed(performSearch, PROJECT_SEARCH_DELAY_MS);
+            }
+        });
+        cbCaseSensitive.setOnCheckedChangeListener((button, checked) -> performSearch.run());
+        cbRegex.setOnCheckedChangeListener((button, checked) -> performSearch.run());
+        cbWholeWord.setOnCheckedChangeListener((button, checked) -> performSearch.run());
+        
+        resultAdapter.setOnResultClickListener((result, hit) -> {
+            dialog.dismiss();
+            openProjectFile(result.file, hit);
+        });
+        
+        boolean[] replacing = new boolean[1];
+        btnReplaceInProject.setOnClickListener(v -> {
+            if (replacing[0]) {
+                projectReplaceEngine.cancel();
+                return;
+            }
+            String query = etSearchQuery.getText().toString();
+            if (query.isEmpty()) {
+                return;
+            }
+            
+            String replacement = etReplaceQuery.getText().toString();
+            FindReplaceHelper.FindOptions options = new FindReplaceHelper.FindOptions(
+                cbCaseSensitive.isChecked(),
+                cbRegex.isChecked(),
+                cbWholeWord.isChecked()
+            );
+            Map<String, OpenFile> openTabs = getOpenProjectTabs(projectsDir);
+            
+            dialogView.removeCallbacks(performSearch);
+            projectSearchEngine.cancel();
+            replacing[0] = true;
+            btnReplaceInProject.setText(R.string.cancel);
+            tvSearchStatus.setText(R.string.project_replace_running);
+            tvSearchStatus.setVisibility(View.VISIBLE);
+            
+            projectReplaceEngine.replace(projectsDir, query, replacement, options, openTabs.keySet(),
+                    new ProjectReplaceEngine.ReplaceCallback() {
+                @Override
+                public void onComplete(ProjectReplaceEngine.Summary summary) {
+                    replacing[0] = false;
+                    btnReplaceInProject.setText(R.string.replace_all);
+                    if (summary.cancelled) {
+                        tvSearchStatus.setText(R.string.project_replace_cancelled);
+                        return;
+                    }
+                    
+                    if (!summary.changes.isEmpty() && symbolIndex != null) {
+                        symbolIndex.update();
+                    }
+                    readFromDisk(openTabs.values(), () -> {
+                        int[] openChanges = replaceInOpenTabs(openTabs.values(), query, replacement, options);
+                        int fileCount = summary.changes.size() + openChanges[0];
+                        int replacementCount = summary.getReplacementCount() + openChanges[1];
+                        int skippedCount = summary.skipped.size() + openChanges[2];
+                        resultAdapter.clear();
+                        String status = summary.failures.isEmpty()
+                                ? getString(R.string.project_replace_done, replacementCount, fileCount)
+                                : getString(R.string.project_replace_failed, replacementCount, fileCount,
+                                        summary.failures.size());
+                        tvSearchStatus.setText(skippedCount == 0 ? status
+                                : getString(R.string.project_replace_skipped, status, skippedCount));
+                    });
+                }
+                
+                @Override
+                public void onError(String error) {
+                    replacing[0] = false;
+                    btnReplaceInProject.setText(R.string.replace_all);
+                    tvSearchStatus.setText(error);
+                }
+            });
+        });
+        
+        dialog.setOnDismissListener(d -> {
+            dialogView.removeCallbacks(performSearch);
+            projectSearchEngine.cancel();
+            projectReplaceEngine.cancel();
+        });
+        
+        dialog.show();
+    }
+    
+    private java.io.File getProjectDir(OpenFile file) {
+        Uri uri = file.path != null ? Uri.parse(file.path) : null;
+        if (symbolIndex == null || uri == null || !"file".equals(uri.getScheme()) || uri.getPath() == null) {
+            return null;
+        }
+        java.io.File root = symbolIndex.getRoot().getAbsoluteFile();
+        java.io.File dir = new java.io.File(uri.getPath()).getParentFile();
+        while (dir != null && !root.equals(dir.getParentFile())) {
+            dir = dir.getParentFile();
+        }
+        return dir;
+    }
+    
+    private Map<String, OpenFile> getOpenProjectTabs(java.io.File root) {
+        Map<String, OpenFile> openTabs = new HashMap<>();
+        String rootPath = root.getAbsolutePath() + java.io.File.separator;
+        for (OpenFile tab : tabAdapter.getTabs()) {
+            Uri uri = tab.path != null ? Uri.parse(tab.path) : null;
+            if (uri != null && "file".equals(uri.getScheme()) && uri.getPath() != null
+                    && uri.getPath().startsWith(rootPath)) {
+                openTabs.put(uri.getPath(), tab);
+            }
+        }
+        return openTabs;
+    }
+    
+    private int[] replaceInOpenTabs(Collection<OpenFile> openTabs, String query, String replacement,
+                                    FindReplaceHelper.FindOptions options) {
+        int fileCount = 0;
+        int replacementCount = 0;
+        int skippedCount = 0;
+        boolean parkedChanged = false;
+        List<OpenFile> tabs = tabAdapter.getTabs();
+        for (OpenFile tab : openTabs) {
+            int position = tabs.indexOf(tab);
+            if (position < 0) {
+                continue;
+            }
+            if (tab.isLoading() || tab.needsDiskRead()) {
+                skippedCount++;
+                continue;
+            }
+            
+            FindReplaceHelper helper = new FindReplaceHelper();
+            EditBatch batch;
+            if (tab == displayedFile) {
+                helper.setText(getSearchSnapshot());
+                batch = helper.replaceAll(query, replacement, options);
+                if (batch.size() > 0) {
+                    binding.codeEditor.applyEdits(batch);
+                }
+            } else {
+                String parked = editorStateCache.peekText(tab);
+                String content = parked != null ? parked : tab.getContent();
+                helper.setText(content);
+                batch = helper.replaceAll(query, replacement, options);
+                if (batch.size() > 0) {
+                    editorStateCache.remove(tab);
+                    tab.updateContent(batch.apply(content));
+                    sessionJournal.markDirty(tab);
+                    tabAdapter.updateTabModified(position, tab.isModified);
+                    parkedChanged = true;
+                }
+            }
+            if (batch.size() > 0) {
+                fileCount++;
+                replacementCount += batch.size();
+            }
+        }
+        if (parkedChanged) {
+            sessionJournal.scheduleCheckpoint();
+        }
+        return new int[] {fileCount, replacementCount, skippedCount};
+    }
+    
+    private void openProjectFile(java.io.File file, ProjectSearchEngine.Hit hit) {
+        Uri uri = Uri.fromFile(file);
+        List<OpenFile> tabs = tabAdapter.getTabs();
+        for (int i = 0; i < tabs.size(); i++) {
+            if (tabs.get(i).path.equals(uri.toString())) {
+                switchToTab(i);
+                if (hit != null) {
+                    binding.codeEditor.selectInLine(hit.line, hit.column, hit.length);
+                }
+                return;
+            }
+        }
+        openLocalFile(uri, hit);
+    }
+    
+    private void showGoToSymbolDialog() {
+        if (symbolIndex == null) {
+            return;
+        }
+        symbolIndex.update();
+        
+        View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_go_to_symbol, null);
+        EditText etSymbolQuery = dialogView.findViewById(R.id.etSymbolQuery);
+        TextView tvSymbolStatus = dialogView.findViewById(R.id.tvSymbolStatus);
+        RecyclerView rvSymbols = dialogView.findViewById(R.id.rvSymbols);
+        
+        SymbolAdapter symbolAdapter = new SymbolAdapter();
+        rvSymbols.setLayoutManager(new LinearLayoutManager(this));
+        rvSymbols.setAdapter(symbolAdapter);
+        
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setView(dialogView)
+                .create();
+        
+        Runnable performSearch = new Runnable() {
+            @Override
+            public void run() {
+                WorkspaceSymbolIndex.Snapshot snapshot = symbolIndex.getSnapshot();
+                if (snapshot == null) {
+                    tvSymbolStatus.setText(R.string.symbol_index_building);
+                    tvSymbolStatus.setVisibility(View.VISIBLE);
+                    dialogView.postDelayed(this, SYMBOL_INDEX_POLL_MS);
+                    return;
+                }
+                
+                String query = etSymbolQuery.getText().toString().trim();
+                List<WorkspaceSymbolIndex.Symbol> results = snapshot.search(query, MAX_SYMBOL_RESULTS);
+                symbolAdapter.setSymbols(results);
+                if (query.isEmpty()) {
+                    tvSymbolStatus.setVisibility(View.GONE);
+                } else {
+                    tvSymbolStatus.setText(results.isEmpty() ? getString(R.string.no_matches)
+                            : getString(R.string.symbol_search_results, results.size(), snapshot.getSymbolCount()));
+                    tvSymbolStatus.setVisibility(View.VISIBLE);
+                }
+            }
+        };
+        
+        etSymbolQuery.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override
+            public void afterTextChanged(Editable s) {
+                dialogView.removeCallbacks(performSearch);
+                dialogView.postDelayed(performSearch, SYMBOL_SEARCH_DELAY_MS);
+            }
+        });
+        
+        symbolAdapter.setOnSymbolClickListener(symbol -> {
+            dialog.dismiss();
+            openProjectFile(new java.io.File(symbolIndex.getRoot(), symbol.path),
+                    new ProjectSearchEngine.Hit(symbol.line, symbol.column, symbol.name.length(), null));
+        });
+        
+        dialog.setOnDismissListener(d -> dialogView.removeCallbacks(performSearch));
+        performSearch.run();
+        dialog.show();
+    }
+    
     private void showGoToLineDialog() {
         View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_go_to_line, null);
         EditText etLineNumber = dialogView.findViewById(R.id.etLineNumber);
@@ -1768,6 +2566,8 @@ public class MainActivity extends AppCompatActivity {
         super.onPause();
         autoSaveHandler.removeCallbacks(autoSaveRunnable);
         autoSaveCurrentFile();
+        recordViewport();
+        sessionJournal.checkpoint();
     }
     
     @Override
@@ -1777,6 +2577,45 @@ public class MainActivity extends AppCompatActivity {
             authManager.dispose();
         }
         autoSaveHandler.removeCallbacks(autoSaveRunnable);
+        if (tabMemoryManager != null) {
+            tabMemoryManager.shutdown();
+        }
+        if (saveService != null) {
+            saveService.shutdown();
+        }
+        if (sessionJournal != null) {
+            sessionJournal.shutdown();
+        }
+        backgroundSearcher.shutdown();
+        projectSearchEngine.shutdown();
+        projectReplaceEngine.shutdown();
+        if (completionPipeline != null) {
+            completionPipeline.cancel();
+        }
+        if (projectIndex != null) {
+            projectIndex.shutdown();
+        }
+        if (symbolIndex != null) {
+            symbolIndex.shutdown();
+        }
+        if (classpathIndex != null) {
+            classpathIndex.shutdown();
+        }
+        if (semanticEngine != null) {
+            semanticEngine.shutdown();
+        }
+        if (usageModel != null) {
+            usageModel.shutdown();
+        }
+        fileLoader.shutdown();
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW && tabMemoryManager != null) {
+            tabMemoryManager.trimAll(tabAdapter.getTabs(), displayedFile);
+        }
     }
     
     @Override
@@ -0,0 +1,116 @@
+package com.codeeditor.android.adapter;
+
+import android.graphics.Typeface;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.codeeditor.android.R;
+import com.codeeditor.android.utils.ProjectSearchEngine.FileResult;
+import com.codeeditor.android.utils.ProjectSearchEngine.Hit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapter.ViewHolder> {
+
+    private static final int TYPE_FILE = 0;
+    private static final int TYPE_HIT = 1;
+
+    private final List<Row> rows = new ArrayList<>();
+    private OnResultClickListener listener;
+
+    public interface OnResultClickListener {
+        void onResultClick(FileResult file, Hit hit);
+    }
+
+    private static class Row {
+        final FileResult file;
+        final Hit hit;
+
+        Row(FileResult file, Hit hit) {
+            this.file = file;
+            this.hit = hit;
+        }
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+            .inflate(R.layout.item_search_result, parent, false);
+        return new ViewHolder(view, viewType);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.bind(rows.get(position));
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return rows.get(position).hit == null ? TYPE_FILE : TYPE_HIT;
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    public void addResult(FileResult result) {
+        int start = rows.size();
+        rows.add(new Row(result, null));
+        for (Hit hit : result.hits) {
+            rows.add(new Row(result, hit));
+        }
+        notifyItemRangeInserted(start, rows.size() - start);
+    }
+
+    public void clear() {
+        rows.clear();
+        notifyDataSetChanged();
+    }
+
+    public void setOnResultClickListener(OnResultClickListener listener) {
+        this.listener = listener;
+    }
+
+    class ViewHolder extends RecyclerView.ViewHolder {
+        private TextView tvResultLabel;
+        private TextView tvResultText;
+
+        ViewHolder(View itemView, int viewType) {
+            super(itemView);
+            tvResultLabel = itemView.findViewById(R.id.tvResultLabel);
+            tvResultText = itemView.findViewById(R.id.tvResultText);
+
+            if (viewType == TYPE_FILE) {
+                tvResultText.setTypeface(Typeface.DEFAULT_BOLD);
+            } else {
+                tvResultText.setTypeface(Typeface.MONOSPACE);
+            }
+
+            itemView.setOnClickListener(v -> {
+                int pos = getAdapterPosition();
+                if (pos != RecyclerView.NO_POSITION && listener != null) {
+                    Row row = rows.get(pos);
+                    listener.onResultClick(row.file, row.hit);
+                }
+            });
+        }
+
+        void bind(Row row) {
+            if (row.hit == null) {
+                tvResultLabel.setText(String.valueOf(row.file.hits.size()));
+                tvResultText.setText(row.file.relativePath);
+            } else {
+                tvResultLabel.setText(String.valueOf(row.hit.line));
+                tvResultText.setText(row.hit.preview);
+            }
+        }
+    }
+}
@@ -9,19 +9,19 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.codeeditor.android.R;
-import com.codeeditor.android.utils.SnippetManager.Snippet;
+import com.codeeditor.android.autocomplete.SnippetTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class SnippetAdapter extends RecyclerView.Adapter<SnippetAdapter.ViewHolder> {
 
-    private List<Snippet> snippets = new ArrayList<>();
+    private List<SnippetTemplate> snippets = new ArrayList<>();
     private OnSnippetClickListener listener;
 
     public interface OnSnippetClickListener {
-        void onSnippetClick(Snippet snippet);
-        void onSnippetLongClick(Snippet snippet, int position);
+        void onSnippetClick(SnippetTemplate snippet);
+        void onSnippetLongClick(SnippetTemplate snippet, int position);
     }
 
     @NonNull
@@ -34,7 +34,7 @@ public class SnippetAdapter extends RecyclerView.Adapter<SnippetAdapter.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Snippet snippet = snippets.get(position);
+        SnippetTemplate snippet = snippets.get(position);
         holder.bind(snippet);
     }
 
@@ -43,7 +43,7 @@ public class SnippetAdapter extends RecyclerView.Adapter<SnippetAdapter.ViewHold
         return snippets.size();
     }
 
-    public void setSnippets(List<Snippet> snippets) {
+    public void setSnippets(List<SnippetTemplate> snippets) {
         this.snippets = snippets;
         notifyDataSetChanged();
     }
@@ -80,7 +80,7 @@ public class SnippetAdapter extends RecyclerView.Adapter<SnippetAdapter.ViewHold
             });
         }
 
-        void bind(Snippet snippet) {
+        void bind(SnippetTemplate snippet) {
             tvName.setText(snippet.name);
             tvTrigger.setText(snippet.trigger);
             tvDescription.setText(snippet.description);
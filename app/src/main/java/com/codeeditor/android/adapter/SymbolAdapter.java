@@ -0,0 +1,103 @@
+package com.codeeditor.android.adapter;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.codeeditor.android.R;
+import com.codeeditor.android.utils.WorkspaceSymbolIndex.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SymbolAdapter extends RecyclerView.Adapter<SymbolAdapter.ViewHolder> {
+
+    private List<Symbol> symbols = new ArrayList<>();
+    private OnSymbolClickListener listener;
+
+    public interface OnSymbolClickListener {
+        void onSymbolClick(Symbol symbol);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+            .inflate(R.layout.item_autocomplete, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.bind(symbols.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return symbols.size();
+    }
+
+    public void setSymbols(List<Symbol> symbols) {
+        this.symbols = symbols;
+        notifyDataSetChanged();
+    }
+
+    public void setOnSymbolClickListener(OnSymbolClickListener listener) {
+        this.listener = listener;
+    }
+
+    class ViewHolder extends RecyclerView.ViewHolder {
+        private TextView tvName;
+        private TextView tvLocation;
+        private ImageView ivIcon;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            tvName = itemView.findViewById(R.id.tvSuggestionText);
+            tvLocation = itemView.findViewById(R.id.tvSuggestionDescription);
+            ivIcon = itemView.findViewById(R.id.ivSuggestionIcon);
+
+            itemView.setOnClickListener(v -> {
+                int pos = getAdapterPosition();
+                if (pos != RecyclerView.NO_POSITION && listener != null) {
+                    listener.onSymbolClick(symbols.get(pos));
+                }
+            });
+        }
+
+        void bind(Symbol symbol) {
+            tvName.setText(symbol.name);
+            String location = symbol.path + ":" + symbol.line;
+            tvLocation.setText(symbol.container != null ? symbol.container + " · " + location : location);
+
+            Context context = itemView.getContext();
+            int iconRes;
+            int iconColor;
+            switch (symbol.kind) {
+                case CLASS:
+                    iconRes = R.drawable.ic_class;
+                    iconColor = R.color.class_icon;
+                    break;
+                case METHOD:
+                case FUNCTION:
+                    iconRes = R.drawable.ic_function;
+                    iconColor = R.color.function_icon;
+                    break;
+                case FIELD:
+                default:
+                    iconRes = R.drawable.ic_variable;
+                    iconColor = R.color.variable_icon;
+                    break;
+            }
+            ivIcon.setImageResource(iconRes);
+            ivIcon.setColorFilter(ContextCompat.getColor(context, iconColor));
+        }
+    }
+}
@@ -1,23 +1,66 @@
 package com.codeeditor.android.autocomplete;
 
 import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.utils.WorkspaceSymbolIndex;
 import com.codeeditor.android.view.AutocompleteAdapter.Suggestion;
 import com.codeeditor.android.view.AutocompleteAdapter.SuggestionType;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 public class AutocompleteEngine {
 
     private static final Map<SyntaxHighlighter.Language, String[]> KEYWORDS = new HashMap<>();
     private static final Map<SyntaxHighlighter.Language, String[]> BUILTIN_FUNCTIONS = new HashMap<>();
-    private static final Map<SyntaxHighlighter.Language, String[]> SNIPPETS = new HashMap<>();
+    private static final Map<SyntaxHighlighter.Language, Vocabulary> KEYWORD_VOCABULARIES = new HashMap<>();
+    private static final Map<SyntaxHighlighter.Language, Vocabulary> BUILTIN_VOCABULARIES = new HashMap<>();
+    private static final Comparator<Suggestion> SUGGESTION_ORDER = suggestionOrder(UsageModel.Ranking.NONE);
+    private static final Comparator<ScoredSuggestion> FUZZY_ORDER = (a, b) -> a.score != b.score
+        ? Integer.compare(b.score, a.score) : SUGGESTION_ORDER.compare(a.suggestion, b.suggestion);
+    private static final int MIN_FUZZY_LENGTH = 2;
+
+    private static class Vocabulary {
+        final PrefixTrie trie = new PrefixTrie();
+        final String[] words;
+        final long[] masks;
+
+        Vocabulary(String[] words) {
+            this.words = words;
+            this.masks = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                trie.add(words[i]);
+                masks[i] = FuzzyMatcher.mask(words[i]);
+            }
+        }
+
+        void collectFuzzy(FuzzyMatcher matcher, FuzzyMatcher.Visitor visitor) {
+            for (int i = 0; i < words.length; i++) {
+                if (matcher.mayMatch(masks[i])) {
+                    int score = matcher.score(words[i]);
+                    if (score != FuzzyMatcher.NO_MATCH) {
+                        visitor.visit(words[i], score);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class ScoredSuggestion {
+        final Suggestion suggestion;
+        final int score;
+
+        ScoredSuggestion(Suggestion suggestion, int score) {
+            this.suggestion = suggestion;
+            this.score = score;
+        }
+    }
 
     static {
         KEYWORDS.put(SyntaxHighlighter.Language.JAVA, new String[]{
@@ -111,218 +154,309 @@ public class AutocompleteEngine {
             "splice", "push", "pop", "shift", "unshift", "sort", "reverse"
         });
 
-        SNIPPETS.put(SyntaxHighlighter.Language.JAVA, new String[]{
-            "public class ${1:ClassName} {\n    $0\n}|class|Create a new class",
-            "public static void main(String[] args) {\n    $0\n}|main|Main method",
-            "for (int ${1:i} = 0; ${1:i} < ${2:length}; ${1:i}++) {\n    $0\n}|for|For loop",
-            "for (${1:Type} ${2:item} : ${3:collection}) {\n    $0\n}|foreach|Enhanced for loop",
-            "if (${1:condition}) {\n    $0\n}|if|If statement",
-            "if (${1:condition}) {\n    $0\n} else {\n    \n}|ifelse|If-else statement",
-            "try {\n    $0\n} catch (${1:Exception} ${2:e}) {\n    ${2:e}.printStackTrace();\n}|try|Try-catch block",
-            "while (${1:condition}) {\n    $0\n}|while|While loop",
-            "switch (${1:variable}) {\n    case ${2:value}:\n        $0\n        break;\n    default:\n        break;\n}|switch|Switch statement",
-            "System.out.println(${1:\"\"});|sout|Print line",
-            "@Override\npublic ${1:void} ${2:methodName}() {\n    $0\n}|override|Override method"
-        });
-
-        SNIPPETS.put(SyntaxHighlighter.Language.KOTLIN, new String[]{
-            "fun ${1:functionName}(${2:params}): ${3:Unit} {\n    $0\n}|fun|Function",
-            "class ${1:ClassName} {\n    $0\n}|class|Class",
-            "data class ${1:ClassName}(${2:val property: Type})|data|Data class",
-            "for (${1:item} in ${2:collection}) {\n    $0\n}|for|For loop",
-            "if (${1:condition}) {\n    $0\n}|if|If expression",
-            "when (${1:variable}) {\n    ${2:value} -> $0\n    else -> {}\n}|when|When expression",
-            "try {\n    $0\n} catch (e: ${1:Exception}) {\n    e.printStackTrace()\n}|try|Try-catch",
-            "listOf(${1:items})|list|Create list",
-            "mapOf(${1:\"key\"} to ${2:value})|map|Create map",
-            "println(${1:\"\"})|print|Print line",
-            "${1:collection}.forEach { ${2:item} ->\n    $0\n}|foreach|ForEach",
-            "${1:collection}.filter { ${2:it} -> $0 }|filter|Filter",
-            "${1:collection}.map { ${2:it} -> $0 }|map|Map transform"
-        });
-
-        SNIPPETS.put(SyntaxHighlighter.Language.PYTHON, new String[]{
-            "def ${1:function_name}(${2:params}):\n    $0|def|Function definition",
-            "class ${1:ClassName}:\n    def __init__(self${2:, params}):\n        $0|class|Class definition",
-            "for ${1:item} in ${2:iterable}:\n    $0|for|For loop",
-            "while ${1:condition}:\n    $0|while|While loop",
-            "if ${1:condition}:\n    $0|if|If statement",
-            "if ${1:condition}:\n    $0\nelse:\n    |ifelse|If-else statement",
-            "try:\n    $0\nexcept ${1:Exception} as ${2:e}:\n    print(${2:e})|try|Try-except block",
-            "with open(${1:\"filename\"}, ${2:\"r\"}) as ${3:f}:\n    $0|with|With statement",
-            "[${1:expr} for ${2:item} in ${3:iterable}]|listcomp|List comprehension",
-            "{${1:key}: ${2:value} for ${3:item} in ${4:iterable}}|dictcomp|Dict comprehension",
-            "lambda ${1:x}: $0|lambda|Lambda function",
-            "print(f\"${1:}\")$0|print|Print f-string",
-            "if __name__ == \"__main__\":\n    $0|main|Main guard"
-        });
-
-        SNIPPETS.put(SyntaxHighlighter.Language.JAVASCRIPT, new String[]{
-            "function ${1:functionName}(${2:params}) {\n    $0\n}|func|Function",
-            "const ${1:name} = (${2:params}) => {\n    $0\n};|arrow|Arrow function",
-            "const ${1:name} = (${2:params}) => $0;|arrowshort|Short arrow function",
-            "class ${1:ClassName} {\n    constructor(${2:params}) {\n        $0\n    }\n}|class|Class",
-            "for (let ${1:i} = 0; ${1:i} < ${2:length}; ${1:i}++) {\n    $0\n}|for|For loop",
-            "for (const ${1:item} of ${2:array}) {\n    $0\n}|forof|For-of loop",
-            "${1:array}.forEach((${2:item}) => {\n    $0\n});|foreach|ForEach",
-            "${1:array}.map((${2:item}) => $0)|map|Map",
-            "${1:array}.filter((${2:item}) => $0)|filter|Filter",
-            "if (${1:condition}) {\n    $0\n}|if|If statement",
-            "try {\n    $0\n} catch (${1:error}) {\n    console.error(${1:error});\n}|try|Try-catch",
-            "async function ${1:functionName}(${2:params}) {\n    $0\n}|async|Async function",
-            "await ${1:promise}|await|Await",
-            "console.log(${1:\"\"});|log|Console log",
-            "import { ${1:module} } from '${2:package}';|import|Import",
-            "export default ${1:name};|export|Export default"
-        });
+        for (Map.Entry<SyntaxHighlighter.Language, String[]> entry : KEYWORDS.entrySet()) {
+            KEYWORD_VOCABULARIES.put(entry.getKey(), new Vocabulary(entry.getValue()));
+        }
+        for (Map.Entry<SyntaxHighlighter.Language, String[]> entry : BUILTIN_FUNCTIONS.entrySet()) {
+            BUILTIN_VOCABULARIES.put(entry.getKey(), new Vocabulary(entry.getValue()));
+        }
+    }
 
-        SNIPPETS.put(SyntaxHighlighter.Language.HTML, new String[]{
-            "<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n    <meta charset=\"UTF-8\">\n    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n    <title>${1:Document}</title>\n</head>\n<body>\n    $0\n</body>\n</html>|html|HTML5 template",
-            "<div class=\"${1:class}\">$0</div>|div|Div with class",
-            "<a href=\"${1:#}\">$0</a>|a|Anchor link",
-            "<img src=\"${1:src}\" alt=\"${2:alt}\">|img|Image",
-            "<ul>\n    <li>$0</li>\n</ul>|ul|Unordered list",
-            "<form action=\"${1:#}\" method=\"${2:post}\">\n    $0\n</form>|form|Form",
-            "<input type=\"${1:text}\" name=\"${2:name}\" id=\"${3:id}\">|input|Input",
-            "<button type=\"${1:button}\">$0</button>|btn|Button",
-            "<script src=\"${1:script.js}\"></script>|script|Script tag",
-            "<link rel=\"stylesheet\" href=\"${1:style.css}\">|link|Link stylesheet"
-        });
+    private IdentifierIndex identifierIndex;
+    private WorkspaceSymbolIndex symbolIndex;
+    private ClasspathIndex classpathIndex;
+    private JavaSemanticEngine semanticEngine;
+    private SnippetRegistry snippetRegistry;
+    private UsageModel usageModel;
+    private SyntaxHighlighter.Language currentLanguage = SyntaxHighlighter.Language.PLAIN_TEXT;
 
-        SNIPPETS.put(SyntaxHighlighter.Language.CSS, new String[]{
-            ".${1:class} {\n    $0\n}|class|Class selector",
-            "#${1:id} {\n    $0\n}|id|ID selector",
-            "display: flex;\njustify-content: ${1:center};\nalign-items: ${2:center};|flex|Flexbox",
-            "display: grid;\ngrid-template-columns: ${1:repeat(3, 1fr)};\ngap: ${2:1rem};|grid|Grid",
-            "@media (max-width: ${1:768px}) {\n    $0\n}|media|Media query",
-            "transition: ${1:all} ${2:0.3s} ${3:ease};|trans|Transition",
-            "transform: ${1:translateX(0)};|transform|Transform",
-            "animation: ${1:name} ${2:1s} ${3:ease} ${4:infinite};|anim|Animation"
-        });
+    public void setLanguage(SyntaxHighlighter.Language language) {
+        this.currentLanguage = language;
+    }
 
-        SNIPPETS.put(SyntaxHighlighter.Language.GO, new String[]{
-            "func ${1:functionName}(${2:params}) ${3:returnType} {\n    $0\n}|func|Function",
-            "func main() {\n    $0\n}|main|Main function",
-            "type ${1:TypeName} struct {\n    $0\n}|struct|Struct",
-            "type ${1:InterfaceName} interface {\n    $0\n}|interface|Interface",
-            "for ${1:i} := 0; ${1:i} < ${2:n}; ${1:i}++ {\n    $0\n}|for|For loop",
-            "for ${1:index}, ${2:value} := range ${3:slice} {\n    $0\n}|range|Range loop",
-            "if ${1:condition} {\n    $0\n}|if|If statement",
-            "if ${1:err} != nil {\n    $0\n}|iferr|Error check",
-            "switch ${1:variable} {\ncase ${2:value}:\n    $0\ndefault:\n}|switch|Switch",
-            "go func() {\n    $0\n}()|goroutine|Goroutine",
-            "fmt.Println(${1:\"\"})|print|Print line"
-        });
+    public void setIdentifierIndex(IdentifierIndex identifierIndex) {
+        this.identifierIndex = identifierIndex;
+    }
 
-        SNIPPETS.put(SyntaxHighlighter.Language.RUST, new String[]{
-            "fn ${1:function_name}(${2:params}) -> ${3:()} {\n    $0\n}|fn|Function",
-            "fn main() {\n    $0\n}|main|Main function",
-            "struct ${1:StructName} {\n    $0\n}|struct|Struct",
-            "impl ${1:StructName} {\n    $0\n}|impl|Implementation",
-            "enum ${1:EnumName} {\n    $0\n}|enum|Enum",
-            "for ${1:item} in ${2:iterator} {\n    $0\n}|for|For loop",
-            "loop {\n    $0\n}|loop|Infinite loop",
-            "while ${1:condition} {\n    $0\n}|while|While loop",
-            "if ${1:condition} {\n    $0\n}|if|If expression",
-            "match ${1:value} {\n    ${2:pattern} => $0,\n    _ => {},\n}|match|Match expression",
-            "let ${1:name}: ${2:Type} = $0;|let|Let binding",
-            "let mut ${1:name} = $0;|letmut|Mutable let",
-            "println!(\"${1:}\");|print|Print line"
-        });
+    public void setSymbolIndex(WorkspaceSymbolIndex symbolIndex) {
+        this.symbolIndex = symbolIndex;
     }
 
-    private List<String> localIdentifiers = new ArrayList<>();
-    private SyntaxHighlighter.Language currentLanguage = SyntaxHighlighter.Language.PLAIN_TEXT;
+    public void setClasspathIndex(ClasspathIndex classpathIndex) {
+        this.classpathIndex = classpathIndex;
+    }
 
-    public void setLanguage(SyntaxHighlighter.Language language) {
-        this.currentLanguage = language;
+    public void setSemanticEngine(JavaSemanticEngine semanticEngine) {
+        this.semanticEngine = semanticEngine;
     }
 
-    public void updateLocalIdentifiers(String code) {
-        localIdentifiers.clear();
-        if (code == null || code.isEmpty()) return;
+    public void setSnippetRegistry(SnippetRegistry snippetRegistry) {
+        this.snippetRegistry = snippetRegistry;
+    }
 
-        Pattern identifierPattern = Pattern.compile("\\b([a-zA-Z_][a-zA-Z0-9_]*)\\b");
-        Matcher matcher = identifierPattern.matcher(code);
+    public void setUsageModel(UsageModel usageModel) {
+        this.usageModel = usageModel;
+    }
 
-        while (matcher.find()) {
-            String identifier = matcher.group(1);
-            if (!localIdentifiers.contains(identifier) && identifier.length() > 2) {
-                localIdentifiers.add(identifier);
+    public List<Suggestion> getSuggestions(String qualifier, String prefix, CompletionContext context, int maxResults) {
+        if (prefix != null && maxResults > 0) {
+            if (context != null && semanticEngine != null && currentLanguage == SyntaxHighlighter.Language.JAVA) {
+                List<ClasspathIndex.Member> members = semanticEngine.resolveMembers(context);
+                if (members != null) {
+                    return getMemberSuggestions(members, false, prefix, maxResults);
+                }
+            }
+            if (qualifier != null && usesClasspath()) {
+                ClasspathIndex.ClassEntry entry = classpathIndex.find(qualifier);
+                if (entry != null) {
+                    return getMemberSuggestions(classpathIndex.getMembers(entry), true, prefix, maxResults);
+                }
             }
         }
+        return getSuggestions(prefix, maxResults);
     }
 
     public List<Suggestion> getSuggestions(String prefix, int maxResults) {
         List<Suggestion> results = new ArrayList<>();
-        if (prefix == null || prefix.isEmpty()) return results;
+        if (prefix == null || prefix.isEmpty() || maxResults <= 0) return results;
+
+        WorkspaceSymbolIndex.Snapshot symbols = symbolIndex != null ? symbolIndex.getSnapshot() : null;
+        Vocabulary keywords = KEYWORD_VOCABULARIES.get(currentLanguage);
+        Vocabulary functions = BUILTIN_VOCABULARIES.get(currentLanguage);
 
-        String lowerPrefix = prefix.toLowerCase();
+        UsageModel.Ranking ranking = rank(prefix);
+        for (int i = 0; i < ranking.getMatchCount() && results.size() < maxResults; i++) {
+            addUsed(results, ranking.getMatch(i), prefix, keywords, functions, symbols);
+        }
+        if (results.size() >= maxResults) {
+            return new ArrayList<>(results.subList(0, maxResults));
+        }
 
-        String[] keywords = KEYWORDS.get(currentLanguage);
+        int remaining = maxResults - results.size();
+        PriorityQueue<Suggestion> top = new PriorityQueue<>(remaining, Collections.reverseOrder(SUGGESTION_ORDER));
         if (keywords != null) {
-            for (String keyword : keywords) {
-                if (keyword.toLowerCase().startsWith(lowerPrefix)) {
-                    results.add(new Suggestion(keyword, "keyword", SuggestionType.KEYWORD));
-                }
-            }
+            keywords.trie.collect(prefix, keyword -> offer(top, remaining, ranking, keyword, "keyword", SuggestionType.KEYWORD));
         }
 
-        String[] functions = BUILTIN_FUNCTIONS.get(currentLanguage);
         if (functions != null) {
-            for (String func : functions) {
-                if (func.toLowerCase().startsWith(lowerPrefix)) {
-                    results.add(new Suggestion(func, "built-in function", SuggestionType.FUNCTION));
+            functions.trie.collect(prefix, func -> offer(top, remaining, ranking, func, "built-in function", SuggestionType.FUNCTION));
+        }
+
+        if (snippetRegistry != null) {
+            SyntaxHighlighter.Language language = currentLanguage;
+            snippetRegistry.collect(language, prefix, trigger -> offer(top, remaining, ranking, trigger,
+                    snippetRegistry.get(language, trigger).description, SuggestionType.SNIPPET));
+        }
+
+        if (identifierIndex != null) {
+            identifierIndex.collect(prefix, identifier -> {
+                if (identifier.equals(prefix) || isVocabularyWord(identifier, keywords, functions)) {
+                    return true;
+                }
+                return offer(top, remaining, ranking, identifier, "local", identifierType(identifier));
+            });
+        }
+
+        if (symbols != null) {
+            symbols.collect(currentLanguage, prefix, name -> {
+                if (name.equals(prefix) || isKnownWord(name, keywords, functions)) {
+                    return true;
                 }
+                WorkspaceSymbolIndex.Symbol symbol = symbols.getSymbol(currentLanguage, name);
+                return offer(top, remaining, ranking, name, symbolDescription(symbol), symbolType(symbol.kind));
+            });
+        }
+
+        if (usesClasspath()) {
+            Set<String> seen = new HashSet<>();
+            classpathIndex.collect(prefix, (name, packageName) -> {
+                if (name.equals(prefix) || !seen.add(name) || isKnownWord(name, keywords, functions)
+                        || (symbols != null && symbols.getSymbol(currentLanguage, name) != null)) {
+                    return true;
+                }
+                return offer(top, remaining, ranking, name, packageName, SuggestionType.CLASS);
+            });
+        }
+
+        List<Suggestion> matches = new ArrayList<>(top);
+        matches.sort(SUGGESTION_ORDER);
+        results.addAll(matches);
+
+        int slots = maxResults - results.size();
+        if (slots > 0 && prefix.length() >= MIN_FUZZY_LENGTH) {
+            FuzzyMatcher matcher = new FuzzyMatcher(prefix);
+            PriorityQueue<ScoredSuggestion> fuzzy = new PriorityQueue<>(slots, Collections.reverseOrder(FUZZY_ORDER));
+            if (keywords != null) {
+                keywords.collectFuzzy(matcher, (keyword, score) -> {
+                    if (!FuzzyMatcher.startsWithFolded(keyword, prefix)) {
+                        offerFuzzy(fuzzy, slots, keyword, score + ranking.boost(keyword), "keyword", SuggestionType.KEYWORD);
+                    }
+                });
+            }
+            if (functions != null) {
+                functions.collectFuzzy(matcher, (func, score) -> {
+                    if (!FuzzyMatcher.startsWithFolded(func, prefix)) {
+                        offerFuzzy(fuzzy, slots, func, score + ranking.boost(func), "built-in function", SuggestionType.FUNCTION);
+                    }
+                });
+            }
+            if (identifierIndex != null) {
+                identifierIndex.collectFuzzy(matcher, (identifier, score) -> {
+                    if (!FuzzyMatcher.startsWithFolded(identifier, prefix)
+                            && !isVocabularyWord(identifier, keywords, functions)) {
+                        offerFuzzy(fuzzy, slots, identifier, score + ranking.boost(identifier), "local", identifierType(identifier));
+                    }
+                });
+            }
+            if (symbols != null) {
+                symbols.collectFuzzy(currentLanguage, matcher, (name, score) -> {
+                    if (!FuzzyMatcher.startsWithFolded(name, prefix) && !isKnownWord(name, keywords, functions)) {
+                        WorkspaceSymbolIndex.Symbol symbol = symbols.getSymbol(currentLanguage, name);
+                        offerFuzzy(fuzzy, slots, name, score + ranking.boost(name), symbolDescription(symbol), symbolType(symbol.kind));
+                    }
+                });
+            }
+
+            List<ScoredSuggestion> scored = new ArrayList<>(fuzzy);
+            scored.sort(FUZZY_ORDER);
+            for (ScoredSuggestion suggestion : scored) {
+                results.add(suggestion.suggestion);
             }
         }
+        return results;
+    }
 
-        for (String identifier : localIdentifiers) {
-            if (identifier.toLowerCase().startsWith(lowerPrefix) && !identifier.equals(prefix)) {
-                SuggestionType type = Character.isUpperCase(identifier.charAt(0)) 
-                    ? SuggestionType.CLASS : SuggestionType.VARIABLE;
-                results.add(new Suggestion(identifier, "local", type));
+    private List<Suggestion> getMemberSuggestions(List<ClasspathIndex.Member> members, boolean staticOnly,
+                                                  String prefix, int maxResults) {
+        List<Suggestion> results = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (ClasspathIndex.Member member : members) {
+            if ((member.isStatic || !staticOnly) && FuzzyMatcher.startsWithFolded(member.name, prefix) && seen.add(member.name)) {
+                results.add(new Suggestion(member.name, member.signature, memberType(member.kind)));
             }
         }
+        results.sort(suggestionOrder(rank(prefix)));
+        return results.size() > maxResults ? new ArrayList<>(results.subList(0, maxResults)) : results;
+    }
 
-        results.sort((a, b) -> {
-            if (a.type == SuggestionType.KEYWORD && b.type != SuggestionType.KEYWORD) return -1;
-            if (b.type == SuggestionType.KEYWORD && a.type != SuggestionType.KEYWORD) return 1;
-            return a.text.compareTo(b.text);
-        });
+    private void addUsed(List<Suggestion> results, String word, String prefix, Vocabulary keywords,
+                         Vocabulary functions, WorkspaceSymbolIndex.Snapshot symbols) {
+        if (keywords != null && keywords.trie.contains(word)) {
+            results.add(new Suggestion(word, "keyword", SuggestionType.KEYWORD));
+        }
+        if (functions != null && functions.trie.contains(word)) {
+            results.add(new Suggestion(word, "built-in function", SuggestionType.FUNCTION));
+        }
+        SnippetTemplate snippet = snippetRegistry != null ? snippetRegistry.get(currentLanguage, word) : null;
+        if (snippet != null) {
+            results.add(new Suggestion(word, snippet.description, SuggestionType.SNIPPET));
+        }
+        if (word.equals(prefix) || isVocabularyWord(word, keywords, functions)) {
+            return;
+        }
 
-        if (results.size() > maxResults) {
-            results = results.subList(0, maxResults);
+        WorkspaceSymbolIndex.Symbol symbol = symbols != null ? symbols.getSymbol(currentLanguage, word) : null;
+        if (identifierIndex != null && identifierIndex.contains(word)) {
+            results.add(new Suggestion(word, "local", identifierType(word)));
+        } else if (symbol != null) {
+            results.add(new Suggestion(word, symbolDescription(symbol), symbolType(symbol.kind)));
+        } else if (usesClasspath()) {
+            ClasspathIndex.ClassEntry entry = classpathIndex.find(word);
+            if (entry != null) {
+                results.add(new Suggestion(word, entry.packageName, SuggestionType.CLASS));
+            }
         }
+    }
 
-        return results;
+    private UsageModel.Ranking rank(String prefix) {
+        return usageModel != null ? usageModel.rank(currentLanguage, prefix) : UsageModel.Ranking.NONE;
     }
 
-    public List<Suggestion> getSnippets(String prefix) {
-        List<Suggestion> results = new ArrayList<>();
-        String[] snippets = SNIPPETS.get(currentLanguage);
-        
-        if (snippets == null) return results;
-
-        String lowerPrefix = prefix == null ? "" : prefix.toLowerCase();
-
-        for (String snippet : snippets) {
-            String[] parts = snippet.split("\\|");
-            if (parts.length >= 3) {
-                String code = parts[0];
-                String trigger = parts[1];
-                String description = parts[2];
-
-                if (lowerPrefix.isEmpty() || trigger.toLowerCase().startsWith(lowerPrefix)) {
-                    String cleanCode = code.replace("${1:", "").replace("${2:", "")
-                        .replace("${3:", "").replace("${4:", "").replace("}", "")
-                        .replace("$0", "");
-                    results.add(new Suggestion(trigger, description, SuggestionType.SNIPPET, cleanCode));
-                }
+    private static Comparator<Suggestion> suggestionOrder(UsageModel.Ranking ranking) {
+        return (a, b) -> compare(ranking, a.type, a.text, b.type, b.text);
+    }
+
+    private boolean usesClasspath() {
+        return classpathIndex != null && (currentLanguage == SyntaxHighlighter.Language.JAVA
+            || currentLanguage == SyntaxHighlighter.Language.KOTLIN);
+    }
+
+    private static SuggestionType memberType(int kind) {
+        switch (kind) {
+            case ClasspathIndex.Member.CLASS:
+                return SuggestionType.CLASS;
+            case ClasspathIndex.Member.METHOD:
+                return SuggestionType.FUNCTION;
+            default:
+                return SuggestionType.VARIABLE;
+        }
+    }
+
+    private static boolean isVocabularyWord(String word, Vocabulary keywords, Vocabulary functions) {
+        return (keywords != null && keywords.trie.contains(word))
+            || (functions != null && functions.trie.contains(word));
+    }
+
+    private boolean isKnownWord(String word, Vocabulary keywords, Vocabulary functions) {
+        return isVocabularyWord(word, keywords, functions)
+            || (identifierIndex != null && identifierIndex.contains(word));
+    }
+
+    private static SuggestionType symbolType(WorkspaceSymbolIndex.Kind kind) {
+        switch (kind) {
+            case CLASS:
+                return SuggestionType.CLASS;
+            case METHOD:
+            case FUNCTION:
+                return SuggestionType.FUNCTION;
+            default:
+                return SuggestionType.VARIABLE;
+        }
+    }
+
+    private static String symbolDescription(WorkspaceSymbolIndex.Symbol symbol) {
+        return symbol.container != null ? symbol.container : symbol.path.substring(symbol.path.lastIndexOf('/') + 1);
+    }
+
+    private static SuggestionType identifierType(String identifier) {
+        return Character.isUpperCase(identifier.charAt(0)) ? SuggestionType.CLASS : SuggestionType.VARIABLE;
+    }
+
+    private static void offerFuzzy(PriorityQueue<ScoredSuggestion> fuzzy, int slots, String text, int score,
+                                   String description, SuggestionType type) {
+        if (fuzzy.size() == slots) {
+            ScoredSuggestion worst = fuzzy.peek();
+            if (score < worst.score || (score == worst.score
+                    && compare(UsageModel.Ranking.NONE, type, text, worst.suggestion.type, worst.suggestion.text) >= 0)) {
+                return;
             }
+            fuzzy.poll();
         }
+        fuzzy.add(new ScoredSuggestion(new Suggestion(text, description, type), score));
+    }
 
-        return results;
+    private static boolean offer(PriorityQueue<Suggestion> top, int maxResults, UsageModel.Ranking ranking,
+                                 String text, String description, SuggestionType type) {
+        if (ranking.isUsed(text)) return true;
+        if (top.size() == maxResults) {
+            Suggestion worst = top.peek();
+            if (compare(UsageModel.Ranking.NONE, type, text, worst.type, worst.text) >= 0) return false;
+            top.poll();
+        }
+        top.add(new Suggestion(text, description, type));
+        return true;
+    }
+
+    private static int compare(UsageModel.Ranking ranking, SuggestionType typeA, String textA,
+                               SuggestionType typeB, String textB) {
+        int boostA = ranking.boost(textA);
+        int boostB = ranking.boost(textB);
+        if (boostA != boostB) return Integer.compare(boostB, boostA);
+        boolean keywordA = typeA == SuggestionType.KEYWORD;
+        boolean keywordB = typeB == SuggestionType.KEYWORD;
+        if (keywordA != keywordB) return keywordA ? -1 : 1;
+        int folded = PrefixTrie.compareFolded(textA, textB);
+        return folded != 0 ? folded : textA.compareTo(textB);
     }
 
     public static String[] getLanguageKeywords(SyntaxHighlighter.Language language) {
@@ -0,0 +1,187 @@
+package com.codeeditor.android.autocomplete;
+
+import com.codeeditor.android.autocomplete.ClasspathIndex.Member;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_BRIDGE = 0x0040;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    final List<Member> members = new ArrayList<>();
+    String superName;
+
+    static ClassFileReader read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classNames = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7:
+                    classNames[i] = in.readUnsignedShort();
+                    break;
+                case 5:
+                case 6:
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.skipBytes(4);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    in.skipBytes(2);
+                    break;
+                default:
+                    throw new IOException("Bad constant pool tag " + tag);
+            }
+        }
+
+        ClassFileReader reader = new ClassFileReader();
+        int classAccess = in.readUnsignedShort();
+        int thisClass = in.readUnsignedShort();
+        int superClass = in.readUnsignedShort();
+        if (superClass != 0) {
+            reader.superName = utf8[classNames[superClass]];
+        }
+        in.skipBytes(2 * in.readUnsignedShort());
+
+        boolean isInterface = (classAccess & ACC_INTERFACE) != 0;
+        int fields = in.readUnsignedShort();
+        for (int i = 0; i < fields; i++) {
+            int access = in.readUnsignedShort();
+            String name = utf8[in.readUnsignedShort()];
+            String descriptor = utf8[in.readUnsignedShort()];
+            skipAttributes(in);
+            if (isVisible(access) || isInterface) {
+                reader.members.add(new Member(name, Member.FIELD, typeName(descriptor, new int[1]),
+                        isInterface || (access & ACC_STATIC) != 0));
+            }
+        }
+
+        int methods = in.readUnsignedShort();
+        for (int i = 0; i < methods; i++) {
+            int access = in.readUnsignedShort();
+            String name = utf8[in.readUnsignedShort()];
+            String descriptor = utf8[in.readUnsignedShort()];
+            skipAttributes(in);
+            if (isVisible(access) && (access & ACC_BRIDGE) == 0 && name.charAt(0) != '<') {
+                reader.members.add(new Member(name, Member.METHOD, methodSignature(descriptor),
+                        (access & ACC_STATIC) != 0));
+            }
+        }
+
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (!"InnerClasses".equals(name)) {
+                in.skipBytes(length);
+                continue;
+            }
+            int classes = in.readUnsignedShort();
+            for (int k = 0; k < classes; k++) {
+                in.readUnsignedShort();
+                int outer = in.readUnsignedShort();
+                int innerName = in.readUnsignedShort();
+                int access = in.readUnsignedShort();
+                if (outer == thisClass && innerName != 0 && isVisible(access)) {
+                    reader.members.add(new Member(utf8[innerName], Member.CLASS, "nested class", true));
+                }
+            }
+        }
+        return reader;
+    }
+
+    private static boolean isVisible(int access) {
+        return (access & (ACC_PUBLIC | ACC_PROTECTED)) != 0 && (access & ACC_SYNTHETIC) == 0;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.readUnsignedShort();
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    private static String methodSignature(String descriptor) {
+        StringBuilder signature = new StringBuilder("(");
+        int[] position = { 1 };
+        while (descriptor.charAt(position[0]) != ')') {
+            if (signature.length() > 1) {
+                signature.append(", ");
+            }
+            signature.append(typeName(descriptor, position));
+        }
+        position[0]++;
+        return signature.append("): ").append(typeName(descriptor, position)).toString();
+    }
+
+    private static String typeName(String descriptor, int[] position) {
+        int dimensions = 0;
+        while (descriptor.charAt(position[0]) == '[') {
+            dimensions++;
+            position[0]++;
+        }
+
+        String name;
+        char c = descriptor.charAt(position[0]++);
+        switch (c) {
+            case 'B': name = "byte"; break;
+            case 'C': name = "char"; break;
+            case 'D': name = "double"; break;
+            case 'F': name = "float"; break;
+            case 'I': name = "int"; break;
+            case 'J': name = "long"; break;
+            case 'S': name = "short"; break;
+            case 'Z': name = "boolean"; break;
+            case 'V': name = "void"; break;
+            default:
+                int end = descriptor.indexOf(';', position[0]);
+                int start = descriptor.lastIndexOf('/', end) + 1;
+                name = descriptor.substring(Math.max(start, position[0]), end).replace('$', '.');
+                position[0] = end + 1;
+                break;
+        }
+
+        StringBuilder type = new StringBuilder(name);
+        for (int i = 0; i < dimensions; i++) {
+            type.append("[]");
+        }
+        return type.toString();
+    }
+}
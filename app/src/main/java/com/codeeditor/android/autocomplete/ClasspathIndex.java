@@ -0,0 +1,495 @@
+package com.codeeditor.android.autocomplete;
+
+import com.codeeditor.android.build.BuildContext;
+import com.codeeditor.android.utils.IndexFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class ClasspathIndex {
+
+    private static final int TABLE_MAGIC = 0x43454331;
+    private static final int STAMP_MAGIC = 0x43455031;
+    private static final String STAMP_FILE = "stamps";
+    private static final int MAX_CACHED_TYPES = 64;
+    private static final int MAX_SUPER_DEPTH = 8;
+
+    private final File cacheDir;
+    private final ExecutorService executor;
+    private final Map<String, Stamp> stamps = new HashMap<>();
+    private final Map<String, List<Member>> members = new LinkedHashMap<String, List<Member>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Member>> eldest) {
+            return size() > MAX_CACHED_TYPES;
+        }
+    };
+    private boolean stampsLoaded;
+    private List<File> requested = Collections.emptyList();
+    private volatile List<JarTable> tables = Collections.emptyList();
+
+    public interface ClasspathListener {
+        void onClasspath(List<File> jars);
+    }
+
+    public interface ClassVisitor {
+        boolean visit(String name, String packageName);
+    }
+
+    public static class ClassEntry {
+        public final String name;
+        public final String packageName;
+        final String binaryName;
+        final JarTable jar;
+
+        ClassEntry(String name, String packageName, String binaryName, JarTable jar) {
+            this.name = name;
+            this.packageName = packageName;
+            this.binaryName = binaryName;
+            this.jar = jar;
+        }
+    }
+
+    public static class Member {
+        public static final int FIELD = 0;
+        public static final int METHOD = 1;
+        public static final int CLASS = 2;
+
+        public final String name;
+        public final int kind;
+        public final String signature;
+        public final boolean isStatic;
+
+        Member(String name, int kind, String signature, boolean isStatic) {
+            this.name = name;
+            this.kind = kind;
+            this.signature = signature;
+            this.isStatic = isStatic;
+        }
+    }
+
+    private static class Stamp {
+        final long length;
+        final long modified;
+        final String hash;
+
+        Stamp(long length, long modified, String hash) {
+            this.length = length;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    static class JarTable {
+        final File jar;
+        final String[] packages;
+        final String[] names;
+        final String[] localNames;
+        final int[] packageIds;
+        private ZipFile zip;
+        private boolean closed;
+
+        JarTable(File jar, String[] packages, String[] names, String[] localNames, int[] packageIds) {
+            this.jar = jar;
+            this.packages = packages;
+            this.names = names;
+            this.localNames = localNames;
+            this.packageIds = packageIds;
+        }
+
+        int lowerBound(String prefix) {
+            int low = 0;
+            int high = names.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (PrefixTrie.compareFolded(names[middle], prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        ClassEntry entry(int i) {
+            String packageName = packages[packageIds[i]];
+            String path = packageName.isEmpty() ? localNames[i] : packageName.replace('.', '/') + "/" + localNames[i];
+            return new ClassEntry(names[i], packageName, path, this);
+        }
+
+        /** Returns null once the table was replaced, so a reader still holding it does not reopen the jar. */
+        synchronized InputStream open(String binaryName) throws IOException {
+            if (closed) {
+                return null;
+            }
+            if (zip == null) {
+                zip = new ZipFile(jar);
+            }
+            ZipEntry entry = zip.getEntry(binaryName + ".class");
+            return entry != null ? zip.getInputStream(entry) : null;
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                zip = null;
+            }
+        }
+    }
+
+    public ClasspathIndex(File cacheDir) {
+        this.cacheDir = cacheDir;
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    public static List<File> resolveClasspath(File sdkRoot, File projectDir) {
+        List<File> jars = new ArrayList<>();
+        File androidJar = findAndroidJar(sdkRoot);
+        if (androidJar != null) {
+            jars.add(androidJar);
+        }
+        if (projectDir == null) {
+            return jars;
+        }
+
+        File listFile = BuildContext.getDependencyJarsFile(projectDir);
+        if (listFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(listFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    File jar = new File(line.trim());
+                    if (!line.trim().isEmpty() && jar.isFile()) {
+                        jars.add(jar);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return jars;
+    }
+
+    private static File findAndroidJar(File sdkRoot) {
+        File[] platforms = new File(sdkRoot, "platforms").listFiles();
+        if (platforms == null) {
+            return null;
+        }
+        File best = null;
+        int bestLevel = -1;
+        for (File platform : platforms) {
+            String name = platform.getName();
+            if (!name.startsWith("android-")) {
+                continue;
+            }
+            try {
+                int level = Integer.parseInt(name.substring("android-".length()));
+                File jar = new File(platform, "android.jar");
+                if (level > bestLevel && jar.isFile()) {
+                    best = jar;
+                    bestLevel = level;
+                }
+            } catch (NumberFormatException e) {
+                // Preview platforms such as android-UpsideDownCake are skipped.
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Resolves the classpath of a project on the index executor, so switching tabs reads no files on the
+     * main thread, and reloads the tables when it changed. The listener runs on that executor.
+     */
+    public void setProject(File sdkRoot, File projectDir, ClasspathListener listener) {
+        executor.execute(() -> {
+            List<File> classpath = resolveClasspath(sdkRoot, projectDir);
+            if (!classpath.equals(requested)) {
+                requested = classpath;
+                load(classpath);
+            }
+            if (listener != null) {
+                listener.onClasspath(classpath);
+            }
+        });
+    }
+
+    private void load(List<File> classpath) {
+        List<JarTable> loaded = new ArrayList<>();
+        boolean stampsChanged = false;
+        for (File jar : classpath) {
+            try {
+                String key = jar.getAbsolutePath();
+                Stamp stamp = stamps(key);
+                if (stamp == null || stamp.length != jar.length() || stamp.modified != jar.lastModified()) {
+                    stamp = new Stamp(jar.length(), jar.lastModified(), hash(jar));
+                    stamps.put(key, stamp);
+                    stampsChanged = true;
+                }
+                File tableFile = new File(cacheDir, stamp.hash + ".idx");
+                JarTable table = loadTable(jar, tableFile);
+                if (table == null) {
+                    table = buildTable(jar);
+                    saveTable(table, tableFile);
+                }
+                loaded.add(table);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        if (stampsChanged) {
+            saveStamps();
+        }
+
+        List<JarTable> previous;
+        synchronized (members) {
+            previous = tables;
+            tables = loaded;
+            members.clear();
+        }
+        for (JarTable table : previous) {
+            table.close();
+        }
+    }
+
+    public void collect(String prefix, ClassVisitor visitor) {
+        for (JarTable table : tables) {
+            for (int i = table.lowerBound(prefix); i < table.names.length; i++) {
+                if (!FuzzyMatcher.startsWithFolded(table.names[i], prefix)) {
+                    break;
+                }
+                if (!visitor.visit(table.names[i], table.packages[table.packageIds[i]])) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public ClassEntry find(String name) {
+        ClassEntry found = null;
+        for (JarTable table : tables) {
+            for (int i = table.lowerBound(name); i < table.names.length; i++) {
+                if (PrefixTrie.compareFolded(table.names[i], name) != 0) {
+                    break;
+                }
+                if (!table.names[i].equals(name)) {
+                    continue;
+                }
+                ClassEntry entry = table.entry(i);
+                if (entry.packageName.equals("java.lang")) {
+                    return entry;
+                }
+                if (found == null || rank(entry) < rank(found)) {
+                    found = entry;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int rank(ClassEntry entry) {
+        return entry.binaryName.length() + (entry.binaryName.indexOf('$') >= 0 ? 1000 : 0);
+    }
+
+    public List<Member> getMembers(ClassEntry entry) {
+        synchronized (members) {
+            List<Member> cached = members.get(entry.binaryName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<JarTable> current = tables;
+        List<Member> result = new ArrayList<>();
+        String binaryName = entry.binaryName;
+        for (int depth = 0; binaryName != null && depth < MAX_SUPER_DEPTH; depth++) {
+            ClassFileReader reader = readClass(current, binaryName);
+            if (reader == null) {
+                break;
+            }
+            result.addAll(reader.members);
+            binaryName = reader.superName;
+        }
+
+        synchronized (members) {
+            // members read from tables that were swapped out meanwhile must not outlive the swap
+            if (tables == current) {
+                members.put(entry.binaryName, result);
+            }
+        }
+        return result;
+    }
+
+    private ClassFileReader readClass(List<JarTable> tables, String binaryName) {
+        for (JarTable table : tables) {
+            try (InputStream in = table.open(binaryName)) {
+                if (in != null) {
+                    return ClassFileReader.read(new BufferedInputStream(in));
+                }
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Stamp stamps(String path) {
+        if (!stampsLoaded) {
+            stampsLoaded = true;
+            Map<String, Stamp> loaded = IndexFiles.read(new File(cacheDir, STAMP_FILE), STAMP_MAGIC, in -> {
+                Map<String, Stamp> read = new HashMap<>();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    read.put(key, new Stamp(in.readLong(), in.readLong(), in.readUTF()));
+                }
+                return read;
+            });
+            if (loaded != null) {
+                stamps.putAll(loaded);
+            }
+        }
+        return stamps.get(path);
+    }
+
+    private void saveStamps() {
+        try {
+            IndexFiles.write(new File(cacheDir, STAMP_FILE), STAMP_MAGIC, out -> {
+                out.writeInt(stamps.size());
+                for (Map.Entry<String, Stamp> entry : stamps.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().length);
+                    out.writeLong(entry.getValue().modified);
+                    out.writeUTF(entry.getValue().hash);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String hash(File jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(jar)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static JarTable buildTable(File jar) throws IOException {
+        Map<String, Integer> packageIds = new HashMap<>();
+        List<String> packages = new ArrayList<>();
+        List<String[]> classes = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                String path = entries.nextElement().getName();
+                if (!path.endsWith(".class") || path.startsWith("META-INF/")) {
+                    continue;
+                }
+                int slash = path.lastIndexOf('/');
+                String localName = path.substring(slash + 1, path.length() - ".class".length());
+                String name = localName.substring(localName.lastIndexOf('$') + 1);
+                if (name.isEmpty() || Character.isDigit(name.charAt(0))
+                        || localName.equals("module-info") || localName.equals("package-info")) {
+                    continue;
+                }
+                String packageName = slash < 0 ? "" : path.substring(0, slash).replace('/', '.');
+                if (!packageIds.containsKey(packageName)) {
+                    packageIds.put(packageName, packages.size());
+                    packages.add(packageName);
+                }
+                classes.add(new String[] {name, localName, packageName});
+            }
+        }
+
+        Collections.sort(classes, (a, b) -> {
+            int order = PrefixTrie.compareFolded(a[0], b[0]);
+            return order != 0 ? order : a[0].compareTo(b[0]);
+        });
+        String[] names = new String[classes.size()];
+        String[] localNames = new String[classes.size()];
+        int[] ids = new int[classes.size()];
+        for (int i = 0; i < names.length; i++) {
+            String[] entry = classes.get(i);
+            names[i] = entry[0];
+            localNames[i] = entry[1];
+            ids[i] = packageIds.get(entry[2]);
+        }
+        return new JarTable(jar, packages.toArray(new String[0]), names, localNames, ids);
+    }
+
+    private static JarTable loadTable(File jar, File tableFile) {
+        return IndexFiles.read(tableFile, TABLE_MAGIC, in -> {
+            String[] packages = new String[in.readInt()];
+            for (int i = 0; i < packages.length; i++) {
+                packages[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            String[] names = new String[count];
+            String[] localNames = new String[count];
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                localNames[i] = in.readUTF();
+                names[i] = localNames[i].substring(localNames[i].lastIndexOf('$') + 1);
+                ids[i] = in.readInt();
+            }
+            return new JarTable(jar, packages, names, localNames, ids);
+        });
+    }
+
+    private void saveTable(JarTable table, File tableFile) throws IOException {
+        IndexFiles.write(tableFile, TABLE_MAGIC, out -> {
+            out.writeInt(table.packages.length);
+            for (String packageName : table.packages) {
+                out.writeUTF(packageName);
+            }
+            out.writeInt(table.names.length);
+            for (int i = 0; i < table.names.length; i++) {
+                out.writeUTF(table.localNames[i]);
+                out.writeInt(table.packageIds[i]);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        for (JarTable table : tables) {
+            table.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.codeeditor.android.autocomplete;
+
+public class CompletionContext {
+
+    public final String fileName;
+    public final char[] source;
+    public final int wordStart;
+    public final int cursor;
+
+    public CompletionContext(String fileName, char[] source, int wordStart, int cursor) {
+        this.fileName = fileName;
+        this.source = source;
+        this.wordStart = wordStart;
+        this.cursor = cursor;
+    }
+
+    boolean isMemberAccess() {
+        return wordStart > 0 && wordStart <= source.length && source[wordStart - 1] == '.';
+    }
+}
@@ -0,0 +1,94 @@
+package com.codeeditor.android.autocomplete;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.view.AutocompleteAdapter.Suggestion;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompletionPipeline {
+
+    private static final long DEBOUNCE_MS = 60;
+
+    static final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+    private final AutocompleteEngine engine;
+    private final Handler mainHandler;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Runnable dispatch = this::dispatch;
+    private boolean pending;
+    private CompletionSource source;
+    private SyntaxHighlighter.Language language;
+    private IdentifierIndex identifierIndex;
+    private int maxResults;
+    private CompletionCallback callback;
+
+    public interface CompletionCallback {
+        void onSuggestions(List<Suggestion> suggestions);
+    }
+
+    /** Reads the word under the cursor once the debounce fires, so keystrokes that are superseded copy nothing. */
+    public interface CompletionSource {
+        String getQualifier();
+        String getPrefix();
+        CompletionContext getContext();
+    }
+
+    public CompletionPipeline(AutocompleteEngine engine) {
+        this.engine = engine;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public void request(CompletionSource source, SyntaxHighlighter.Language language,
+                        IdentifierIndex identifierIndex, int maxResults, CompletionCallback callback) {
+        generation.incrementAndGet();
+        this.source = source;
+        this.language = language;
+        this.identifierIndex = identifierIndex;
+        this.maxResults = maxResults;
+        this.callback = callback;
+        if (pending) {
+            mainHandler.removeCallbacks(dispatch);
+        }
+        pending = true;
+        mainHandler.postDelayed(dispatch, DEBOUNCE_MS);
+    }
+
+    private void dispatch() {
+        pending = false;
+        int id = generation.get();
+        String qualifier = source.getQualifier();
+        String prefix = source.getPrefix();
+        CompletionContext snapshot = source.getContext();
+        SyntaxHighlighter.Language language = this.language;
+        IdentifierIndex identifierIndex = this.identifierIndex;
+        int maxResults = this.maxResults;
+        CompletionCallback callback = this.callback;
+        worker.execute(() -> {
+            if (id != generation.get()) {
+                return;
+            }
+            engine.setLanguage(language);
+            engine.setIdentifierIndex(identifierIndex);
+            List<Suggestion> suggestions = engine.getSuggestions(qualifier, prefix, snapshot, maxResults);
+            mainHandler.post(() -> {
+                if (id == generation.get()) {
+                    callback.onSuggestions(suggestions);
+                }
+            });
+        });
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+        if (pending) {
+            mainHandler.removeCallbacks(dispatch);
+            pending = false;
+        }
+    }
+}
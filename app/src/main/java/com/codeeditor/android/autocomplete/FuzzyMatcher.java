@@ -0,0 +1,170 @@
+package com.codeeditor.android.autocomplete;
+
+public class FuzzyMatcher {
+
+    public static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final int NONE = -1000000;
+    private static final int SCORE_MATCH = 16;
+    private static final int BONUS_FIRST = 40;
+    private static final int BONUS_BOUNDARY = 32;
+    private static final int BONUS_CONSECUTIVE = 16;
+    private static final int BONUS_CASE = 2;
+    private static final int PENALTY_GAP = 1;
+    private static final int PENALTY_LEADING = 4;
+    private static final int MAX_LEADING_PENALTY = 24;
+
+    private final char[] pattern;
+    private final char[] foldedPattern;
+    private final long patternMask;
+    private final int[] firstPositions;
+    private final int[] lastPositions;
+    private int[] previous = new int[32];
+    private int[] current = new int[32];
+
+    public interface Visitor {
+        void visit(String candidate, int score);
+    }
+
+    public FuzzyMatcher(String pattern) {
+        this.pattern = pattern.toCharArray();
+        this.foldedPattern = new char[this.pattern.length];
+        for (int i = 0; i < foldedPattern.length; i++) {
+            foldedPattern[i] = Character.toLowerCase(this.pattern[i]);
+        }
+        this.patternMask = mask(pattern);
+        this.firstPositions = new int[foldedPattern.length];
+        this.lastPositions = new int[foldedPattern.length];
+    }
+
+    public static long mask(CharSequence text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            mask |= bit(Character.toLowerCase(text.charAt(i)));
+        }
+        return mask;
+    }
+
+    public boolean mayMatch(long candidateMask) {
+        return (patternMask & ~candidateMask) == 0;
+    }
+
+    public int score(String candidate) {
+        int n = candidate.length();
+        int m = pattern.length;
+        if (m == 0 || m > n || !findBounds(candidate)) {
+            return NO_MATCH;
+        }
+        if (n > previous.length) {
+            previous = new int[Math.max(n, previous.length * 2)];
+            current = new int[previous.length];
+        }
+
+        int[] prev = previous;
+        int[] cur = current;
+        for (int i = 0; i < m; i++) {
+            char wanted = foldedPattern[i];
+            int from = i > 0 ? firstPositions[i - 1] + 1 : firstPositions[0];
+            int to = lastPositions[i];
+            int gapBest = NONE;
+            for (int j = from; j <= to; j++) {
+                int before = NONE;
+                if (i > 0 && j > firstPositions[i - 1] && j - 1 <= lastPositions[i - 1]) {
+                    before = prev[j - 1];
+                }
+                gapBest = Math.max(gapBest - PENALTY_GAP, before);
+                char c = candidate.charAt(j);
+                if (Character.toLowerCase(c) != wanted) {
+                    cur[j] = NONE;
+                    continue;
+                }
+
+                int matchScore = SCORE_MATCH + bonusAt(candidate, j) + (c == pattern[i] ? BONUS_CASE : 0);
+                if (i == 0) {
+                    cur[j] = matchScore - Math.min(j * PENALTY_LEADING, MAX_LEADING_PENALTY);
+                } else {
+                    int best = gapBest;
+                    if (before > NONE / 2) {
+                        best = Math.max(best, before + BONUS_CONSECUTIVE);
+                    }
+                    cur[j] = best > NONE / 2 ? best + matchScore : NONE;
+                }
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+
+        int result = NONE;
+        for (int j = firstPositions[m - 1]; j <= lastPositions[m - 1]; j++) {
+            result = Math.max(result, prev[j]);
+        }
+        return result > NONE / 2 ? result : NO_MATCH;
+    }
+
+    public static boolean startsWithFolded(String candidate, String prefix) {
+        if (prefix.length() > candidate.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(candidate.charAt(i)) != Character.toLowerCase(prefix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean findBounds(String candidate) {
+        int i = 0;
+        for (int j = 0; j < candidate.length() && i < foldedPattern.length; j++) {
+            if (Character.toLowerCase(candidate.charAt(j)) == foldedPattern[i]) {
+                firstPositions[i++] = j;
+            }
+        }
+        if (i < foldedPattern.length) {
+            return false;
+        }
+        i = foldedPattern.length - 1;
+        for (int j = candidate.length() - 1; j >= 0 && i >= 0; j--) {
+            if (Character.toLowerCase(candidate.charAt(j)) == foldedPattern[i]) {
+                lastPositions[i--] = j;
+            }
+        }
+        return true;
+    }
+
+    private static int bonusAt(String candidate, int index) {
+        if (index == 0) {
+            return BONUS_FIRST;
+        }
+        char previous = candidate.charAt(index - 1);
+        char c = candidate.charAt(index);
+        if (isSeparator(previous) && !isSeparator(c)) {
+            return BONUS_BOUNDARY;
+        }
+        if (Character.isUpperCase(c) && !Character.isUpperCase(previous)) {
+            return BONUS_BOUNDARY;
+        }
+        if (Character.isDigit(c) && !Character.isDigit(previous)) {
+            return BONUS_BOUNDARY / 2;
+        }
+        return 0;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '_' || c == '.' || c == '-' || c == '$' || c == ' ' || c == '/';
+    }
+
+    private static long bit(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return 1L << (c - 'a');
+        }
+        if (c >= '0' && c <= '9') {
+            return 1L << (26 + c - '0');
+        }
+        if (c == '_') {
+            return 1L << 36;
+        }
+        return 1L << (37 + c % 27);
+    }
+}
@@ -0,0 +1,144 @@
+package com.codeeditor.android.autocomplete;
+
+import com.codeeditor.android.syntax.TokenCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class IdentifierIndex {
+
+    private static final int MIN_LENGTH = 3;
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final PrefixTrie trie = new PrefixTrie();
+    private final List<Entry> lineBuffer = new ArrayList<>();
+    private Entry[][] lineEntries = new Entry[64][];
+    private int lineCount = 1;
+
+    public IdentifierIndex() {
+        lineEntries[0] = NO_ENTRIES;
+    }
+
+    private static class Entry {
+        final String text;
+        final long mask;
+        int count;
+
+        Entry(String text) {
+            this.text = text;
+            this.mask = FuzzyMatcher.mask(text);
+        }
+    }
+
+    public void rebuild(TokenCache.Block block) {
+        CompletionPipeline.worker.execute(() -> apply(block));
+    }
+
+    public void applyEdit(TokenCache.Block block) {
+        CompletionPipeline.worker.execute(() -> apply(block));
+    }
+
+    private void apply(TokenCache.Block block) {
+        int first = block.firstLine;
+        int added = block.getLineCount();
+        int replaced = block.replacedLines;
+        if (replaced < 0) {
+            entries.clear();
+            trie.clear();
+            lineEntries = new Entry[Math.max(64, added)][];
+            lineCount = 0;
+            replaced = 0;
+        }
+        for (int line = first; line < first + replaced; line++) {
+            release(lineEntries[line]);
+        }
+
+        int newCount = lineCount + added - replaced;
+        if (newCount > lineEntries.length) {
+            lineEntries = Arrays.copyOf(lineEntries, Math.max(newCount, lineEntries.length * 2));
+        }
+        System.arraycopy(lineEntries, first + replaced, lineEntries, first + added, lineCount - first - replaced);
+        for (int line = newCount; line < lineCount; line++) {
+            lineEntries[line] = null;
+        }
+        lineCount = newCount;
+
+        for (int i = 0; i < added; i++) {
+            lineEntries[first + i] = tokenize(block, i);
+        }
+    }
+
+    // Index state is confined to CompletionPipeline.worker; lookups must run there.
+    public void collect(String prefix, PrefixTrie.Visitor visitor) {
+        trie.collect(prefix, visitor);
+    }
+
+    public void collectFuzzy(FuzzyMatcher matcher, FuzzyMatcher.Visitor visitor) {
+        for (Entry entry : entries.values()) {
+            if (matcher.mayMatch(entry.mask)) {
+                int score = matcher.score(entry.text);
+                if (score != FuzzyMatcher.NO_MATCH) {
+                    visitor.visit(entry.text, score);
+                }
+            }
+        }
+    }
+
+    public boolean contains(String identifier) {
+        return entries.containsKey(identifier);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry[] tokenize(TokenCache.Block block, int line) {
+        lineBuffer.clear();
+        int count = block.getTokenCount(line);
+        for (int i = 0; i < count; i++) {
+            int type = block.getTokenType(line, i);
+            if (type != TokenCache.IDENTIFIER && type != TokenCache.TYPE && type != TokenCache.VARIABLE) {
+                continue;
+            }
+            int start = block.getTokenStart(line, i);
+            int end = block.getTokenEnd(line, i);
+            while (start < end && !isIdentifierPart(block.text.charAt(start))) {
+                start++;
+            }
+            while (end > start && !isIdentifierPart(block.text.charAt(end - 1))) {
+                end--;
+            }
+            if (end - start >= MIN_LENGTH) {
+                lineBuffer.add(acquire(block.text.substring(start, end)));
+            }
+        }
+        return lineBuffer.isEmpty() ? NO_ENTRIES : lineBuffer.toArray(new Entry[0]);
+    }
+
+    private Entry acquire(String identifier) {
+        Entry entry = entries.get(identifier);
+        if (entry == null) {
+            entry = new Entry(identifier);
+            entries.put(identifier, entry);
+            trie.add(identifier);
+        }
+        entry.count++;
+        return entry;
+    }
+
+    private void release(Entry[] lineEntries) {
+        for (Entry entry : lineEntries) {
+            if (--entry.count == 0) {
+                entries.remove(entry.text);
+                trie.remove(entry.text);
+            }
+        }
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,364 @@
+package com.codeeditor.android.autocomplete;
+
+import com.codeeditor.android.autocomplete.ClasspathIndex.Member;
+import com.codeeditor.android.utils.ContentHash;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ASTVisitor;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ast.AbstractMethodDeclaration;
+import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
+import org.eclipse.jdt.internal.compiler.ast.FieldDeclaration;
+import org.eclipse.jdt.internal.compiler.ast.Initializer;
+import org.eclipse.jdt.internal.compiler.ast.MessageSend;
+import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.lookup.BinaryTypeBinding;
+import org.eclipse.jdt.internal.compiler.lookup.BlockScope;
+import org.eclipse.jdt.internal.compiler.lookup.FieldBinding;
+import org.eclipse.jdt.internal.compiler.lookup.MethodBinding;
+import org.eclipse.jdt.internal.compiler.lookup.ReferenceBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeIds;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the receiver of a {@code foo.} completion with ECJ. State is confined to
+ * {@link CompletionPipeline#worker}; the name environment stays open between requests and only
+ * the method around the cursor has its body parsed.
+ */
+public class JavaSemanticEngine {
+
+    private static final char[] PLACEHOLDER = "ce$member".toCharArray();
+    private static final String ENCODING = "UTF-8";
+    private static final int MAX_CACHED_TYPES = 2048;
+    private static final int MAX_CACHED_MEMBERS = 64;
+
+    private List<String> classpath = Collections.emptyList();
+    private BinaryCache environment;
+    private Compiler compiler;
+    private String cachedFile;
+    private long cachedKey;
+    private List<Member> cachedMembers;
+    private final Map<String, List<Member>> binaryMembers =
+        new LinkedHashMap<String, List<Member>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Member>> eldest) {
+                return size() > MAX_CACHED_MEMBERS;
+            }
+        };
+
+    public void setClasspath(List<File> jars, File projectDir) {
+        List<String> entries = new ArrayList<>();
+        for (File jar : jars) {
+            entries.add(jar.getAbsolutePath());
+        }
+        if (projectDir != null) {
+            for (String path : new String[] {"src/main/java", "build/generated"}) {
+                File dir = new File(projectDir, path);
+                if (dir.isDirectory()) {
+                    entries.add(dir.getAbsolutePath());
+                }
+            }
+        }
+        CompletionPipeline.worker.execute(() -> {
+            if (!entries.equals(classpath)) {
+                close();
+                classpath = entries;
+            }
+        });
+    }
+
+    List<Member> resolveMembers(CompletionContext context) {
+        if (!context.isMemberAccess() || classpath.isEmpty()) {
+            return null;
+        }
+        char[] source = context.source;
+        long key = ContentHash.hash64(source, 0, context.wordStart) * 31
+            + ContentHash.hash64(source, context.cursor, source.length);
+        if (key == cachedKey && context.fileName.equals(cachedFile)) {
+            return cachedMembers;
+        }
+
+        List<Member> members;
+        try {
+            members = resolve(context);
+        } catch (RuntimeException e) {
+            members = null;
+        } finally {
+            if (compiler != null) {
+                compiler.reset();
+            }
+        }
+        cachedFile = context.fileName;
+        cachedKey = key;
+        cachedMembers = members;
+        return members;
+    }
+
+    private List<Member> resolve(CompletionContext context) {
+        Compiler compiler = compiler();
+        char[] source = context.source;
+        boolean call = context.cursor < source.length && source[context.cursor] == '(';
+        char[] suffix = call ? new char[0] : new char[] {'(', ')'};
+        char[] patched = new char[context.wordStart + PLACEHOLDER.length + suffix.length
+            + source.length - context.cursor];
+        System.arraycopy(source, 0, patched, 0, context.wordStart);
+        System.arraycopy(PLACEHOLDER, 0, patched, context.wordStart, PLACEHOLDER.length);
+        System.arraycopy(suffix, 0, patched, context.wordStart + PLACEHOLDER.length, suffix.length);
+        System.arraycopy(source, context.cursor, patched, context.wordStart + PLACEHOLDER.length + suffix.length,
+            source.length - context.cursor);
+
+        CompilationUnit unit = new CompilationUnit(patched, context.fileName, ENCODING);
+        CompilationResult result = new CompilationResult(unit, 0, 1, compiler.options.maxProblemsPerUnit);
+        CompilationUnitDeclaration declaration = compiler.parser.dietParse(unit, result);
+        if (declaration == null || declaration.types == null) {
+            return null;
+        }
+        compiler.lookupEnvironment.buildTypeBindings(declaration, null);
+        compiler.lookupEnvironment.completeTypeBindings();
+        if (declaration.scope == null || !parseBodyAt(compiler, declaration, declaration.types, context.wordStart)) {
+            return null;
+        }
+        declaration.scope.faultInTypes();
+        declaration.resolve();
+
+        ReceiverFinder finder = new ReceiverFinder(context.wordStart);
+        declaration.traverse(finder, declaration.scope);
+        return finder.members;
+    }
+
+    private static boolean parseBodyAt(Compiler compiler, CompilationUnitDeclaration unit,
+                                       TypeDeclaration[] types, int offset) {
+        if (types == null) {
+            return false;
+        }
+        for (TypeDeclaration type : types) {
+            if (offset < type.declarationSourceStart || offset > type.declarationSourceEnd) {
+                continue;
+            }
+            if (parseBodyAt(compiler, unit, type.memberTypes, offset)) {
+                return true;
+            }
+            if (type.methods != null) {
+                for (AbstractMethodDeclaration method : type.methods) {
+                    if (offset >= method.bodyStart && offset <= method.bodyEnd) {
+                        method.parseStatements(compiler.parser, unit);
+                        return true;
+                    }
+                }
+            }
+            if (type.fields != null) {
+                for (FieldDeclaration field : type.fields) {
+                    if (field instanceof Initializer && offset >= field.declarationSourceStart
+                            && offset <= field.declarationSourceEnd) {
+                        ((Initializer) field).parseStatements(compiler.parser, type, unit);
+                        return true;
+                    }
+                    if (offset >= field.declarationSourceStart && offset <= field.declarationSourceEnd) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private Compiler compiler() {
+        if (compiler == null) {
+            Map<String, String> settings = new HashMap<>();
+            settings.put(CompilerOptions.OPTION_Source, CompilerOptions.VERSION_11);
+            settings.put(CompilerOptions.OPTION_Compliance, CompilerOptions.VERSION_11);
+            settings.put(CompilerOptions.OPTION_TargetPlatform, CompilerOptions.VERSION_11);
+            CompilerOptions options = new CompilerOptions(settings);
+            options.performMethodsFullRecovery = true;
+            options.performStatementsRecovery = true;
+            options.docCommentSupport = false;
+
+            environment = new BinaryCache(new FileSystem(classpath.toArray(new String[0]), null, ENCODING));
+            compiler = new Compiler(environment, DefaultErrorHandlingPolicies.proceedWithAllProblems(), options,
+                result -> { }, new DefaultProblemFactory(Locale.getDefault()));
+        }
+        return compiler;
+    }
+
+    private void close() {
+        if (environment != null) {
+            environment.cleanup();
+        }
+        environment = null;
+        compiler = null;
+        cachedFile = null;
+        cachedMembers = null;
+        binaryMembers.clear();
+    }
+
+    public void shutdown() {
+        CompletionPipeline.worker.execute(this::close);
+    }
+
+    /**
+     * Keeps the class file readers answered for android.jar and the dependency JARs, so the lookup
+     * environment that is reset after every request does not parse the same class files again.
+     */
+    private static class BinaryCache implements INameEnvironment {
+        private final FileSystem fileSystem;
+        private final Map<String, NameEnvironmentAnswer> answers =
+            new LinkedHashMap<String, NameEnvironmentAnswer>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, NameEnvironmentAnswer> eldest) {
+                    return size() > MAX_CACHED_TYPES;
+                }
+            };
+
+        BinaryCache(FileSystem fileSystem) {
+            this.fileSystem = fileSystem;
+        }
+
+        @Override
+        public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+            String key = CharOperation.toString(compoundTypeName);
+            NameEnvironmentAnswer answer = answers.get(key);
+            if (answer == null) {
+                answer = fileSystem.findType(compoundTypeName);
+                if (answer != null && answer.isBinaryType()) {
+                    answers.put(key, answer);
+                }
+            }
+            return answer;
+        }
+
+        @Override
+        public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+            return findType(CharOperation.arrayConcat(packageName, typeName));
+        }
+
+        @Override
+        public boolean isPackage(char[][] parentPackageName, char[] packageName) {
+            return fileSystem.isPackage(parentPackageName, packageName);
+        }
+
+        @Override
+        public void cleanup() {
+            fileSystem.cleanup();
+        }
+    }
+
+    private class ReceiverFinder extends ASTVisitor {
+        private final int offset;
+        List<Member> members;
+
+        ReceiverFinder(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean visit(MessageSend send, BlockScope scope) {
+            if (members == null && (int) (send.nameSourcePosition >>> 32) == offset
+                    && Arrays.equals(send.selector, PLACEHOLDER)) {
+                TypeBinding receiverType = send.actualReceiverType;
+                if (receiverType != null && receiverType.isValidBinding() && !receiverType.isBaseType()) {
+                    boolean staticOnly = send.receiver.isTypeReference();
+                    if (!(receiverType.leafComponentType().erasure() instanceof BinaryTypeBinding)) {
+                        members = collectMembers(receiverType, staticOnly, send, scope);
+                        return false;
+                    }
+                    String key = new String(receiverType.readableName()) + (staticOnly ? "|static|" : "|")
+                        + new String(scope.enclosingSourceType().readableName());
+                    members = binaryMembers.get(key);
+                    if (members == null) {
+                        members = collectMembers(receiverType, staticOnly, send, scope);
+                        binaryMembers.put(key, members);
+                    }
+                }
+            }
+            return members == null;
+        }
+    }
+
+    private static List<Member> collectMembers(TypeBinding receiverType, boolean staticOnly, MessageSend site,
+                                               BlockScope scope) {
+        List<Member> members = new ArrayList<>();
+        TypeBinding type = receiverType;
+        if (type.isArrayType()) {
+            members.add(new Member("length", Member.FIELD, "int", false));
+            type = scope.getJavaLangObject();
+        } else if (type.isTypeVariable() || type.isWildcard()) {
+            type = type.erasure();
+        }
+        if (!(type instanceof ReferenceBinding)) {
+            return members;
+        }
+
+        ArrayDeque<ReferenceBinding> pending = new ArrayDeque<>();
+        Set<TypeBinding> visited = new HashSet<>();
+        pending.add((ReferenceBinding) type);
+        pending.add(scope.getJavaLangObject());
+        while (!pending.isEmpty()) {
+            ReferenceBinding current = pending.poll();
+            if (current == null || !current.isValidBinding() || !visited.add(current.erasure())) {
+                continue;
+            }
+            for (FieldBinding field : current.availableFields()) {
+                if ((!staticOnly || field.isStatic()) && !field.isSynthetic()
+                        && field.canBeSeenBy(receiverType, site, scope)) {
+                    members.add(new Member(new String(field.name), Member.FIELD,
+                        new String(field.type.shortReadableName()), field.isStatic()));
+                }
+            }
+            for (MethodBinding method : current.availableMethods()) {
+                if ((!staticOnly || method.isStatic()) && !method.isConstructor() && !method.isSynthetic()
+                        && !method.isDefaultAbstract() && method.canBeSeenBy(receiverType, site, scope)) {
+                    members.add(new Member(new String(method.selector), Member.METHOD, signature(method),
+                        method.isStatic()));
+                }
+            }
+            if (staticOnly) {
+                for (ReferenceBinding memberType : current.memberTypes()) {
+                    if (memberType.canBeSeenBy(scope)) {
+                        members.add(new Member(new String(memberType.sourceName()), Member.CLASS, "nested class", true));
+                    }
+                }
+            }
+            ReferenceBinding superclass = current.superclass();
+            if (superclass != null && superclass.id != TypeIds.T_JavaLangObject) {
+                pending.addFirst(superclass);
+            }
+            ReferenceBinding[] interfaces = current.superInterfaces();
+            if (interfaces != null) {
+                Collections.addAll(pending, interfaces);
+            }
+        }
+        return members;
+    }
+
+    private static String signature(MethodBinding method) {
+        StringBuilder signature = new StringBuilder("(");
+        for (int i = 0; i < method.parameters.length; i++) {
+            if (i > 0) {
+                signature.append(", ");
+            }
+            signature.append(method.parameters[i].shortReadableName());
+        }
+        return signature.append("): ").append(method.returnType.shortReadableName()).toString();
+    }
+}
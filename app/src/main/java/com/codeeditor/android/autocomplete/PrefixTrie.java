@@ -0,0 +1,179 @@
+package com.codeeditor.android.autocomplete;
+
+import java.util.Arrays;
+
+public class PrefixTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private Node root = new Node();
+    private int size;
+
+    public interface Visitor {
+        boolean visit(String word);
+    }
+
+    private static class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        String[] words;
+        int wordCount;
+
+        int indexOf(char key) {
+            return Arrays.binarySearch(keys, 0, childCount, key);
+        }
+
+        Node child(char key) {
+            int index = indexOf(key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char key) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node();
+            keys[index] = key;
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        void removeChild(int index) {
+            System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+
+        boolean isEmpty() {
+            return childCount == 0 && wordCount == 0;
+        }
+    }
+
+    public boolean add(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.addChild(fold(word.charAt(i)));
+        }
+        for (int i = 0; i < node.wordCount; i++) {
+            if (node.words[i].equals(word)) {
+                return false;
+            }
+        }
+        if (node.words == null) {
+            node.words = new String[1];
+        } else if (node.wordCount == node.words.length) {
+            node.words = Arrays.copyOf(node.words, node.wordCount * 2);
+        }
+        node.words[node.wordCount++] = word;
+        size++;
+        return true;
+    }
+
+    public boolean remove(String word) {
+        Node[] path = new Node[word.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < word.length(); i++) {
+            path[i + 1] = path[i].child(fold(word.charAt(i)));
+            if (path[i + 1] == null) {
+                return false;
+            }
+        }
+
+        Node node = path[word.length()];
+        int index = -1;
+        for (int i = 0; i < node.wordCount; i++) {
+            if (node.words[i].equals(word)) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return false;
+        }
+        node.words[index] = node.words[--node.wordCount];
+        node.words[node.wordCount] = null;
+        size--;
+
+        for (int i = word.length(); i > 0 && path[i].isEmpty(); i--) {
+            path[i - 1].removeChild(path[i - 1].indexOf(fold(word.charAt(i - 1))));
+        }
+        return true;
+    }
+
+    public boolean contains(String word) {
+        Node node = find(word);
+        if (node == null) {
+            return false;
+        }
+        for (int i = 0; i < node.wordCount; i++) {
+            if (node.words[i].equals(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void collect(String prefix, Visitor visitor) {
+        Node node = find(prefix);
+        if (node != null) {
+            visit(node, visitor);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = new Node();
+        size = 0;
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(fold(prefix.charAt(i)));
+        }
+        return node;
+    }
+
+    private static boolean visit(Node node, Visitor visitor) {
+        boolean more = true;
+        for (int i = 0; i < node.wordCount; i++) {
+            more &= visitor.visit(node.words[i]);
+        }
+        for (int i = 0; i < node.childCount && more; i++) {
+            more = visit(node.children[i], visitor);
+        }
+        return more;
+    }
+
+    static int compareFolded(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = fold(a.charAt(i));
+            char y = fold(b.charAt(i));
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+}
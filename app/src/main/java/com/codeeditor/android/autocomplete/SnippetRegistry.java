@@ -0,0 +1,213 @@
+package com.codeeditor.android.autocomplete;
+
+import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.utils.SnippetManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Built-in and custom snippets compiled into {@link SnippetTemplate}s once per language and looked up
+ * by trigger through a {@link PrefixTrie}. Tables are immutable and republished when the custom
+ * snippets of a language change, so the completion worker reads them without locking.
+ */
+public class SnippetRegistry {
+
+    private static final Map<SyntaxHighlighter.Language, String[]> SNIPPETS = new HashMap<>();
+
+    private static class Table {
+        final PrefixTrie triggers = new PrefixTrie();
+        final Map<String, SnippetTemplate> templates = new LinkedHashMap<>();
+    }
+
+    static {
+        SNIPPETS.put(SyntaxHighlighter.Language.JAVA, new String[]{
+            "public class ${1:ClassName} {\n    $0\n}|class|Create a new class",
+            "public static void main(String[] args) {\n    $0\n}|main|Main method",
+            "for (int ${1:i} = 0; ${1:i} < ${2:length}; ${1:i}++) {\n    $0\n}|for|For loop",
+            "for (${1:Type} ${2:item} : ${3:collection}) {\n    $0\n}|foreach|Enhanced for loop",
+            "if (${1:condition}) {\n    $0\n}|if|If statement",
+            "if (${1:condition}) {\n    $0\n} else {\n    \n}|ifelse|If-else statement",
+            "try {\n    $0\n} catch (${1:Exception} ${2:e}) {\n    ${2:e}.printStackTrace();\n}|try|Try-catch block",
+            "while (${1:condition}) {\n    $0\n}|while|While loop",
+            "switch (${1:variable}) {\n    case ${2:value}:\n        $0\n        break;\n    default:\n        break;\n}|switch|Switch statement",
+            "System.out.println(${1:\"\"});|sout|Print line",
+            "@Override\npublic ${1:void} ${2:methodName}() {\n    $0\n}|override|Override method"
+        });
+
+        SNIPPETS.put(SyntaxHighlighter.Language.KOTLIN, new String[]{
+            "fun ${1:functionName}(${2:params}): ${3:Unit} {\n    $0\n}|fun|Function",
+            "class ${1:ClassName} {\n    $0\n}|class|Class",
+            "data class ${1:ClassName}(${2:val property: Type})|data|Data class",
+            "for (${1:item} in ${2:collection}) {\n    $0\n}|for|For loop",
+            "if (${1:condition}) {\n    $0\n}|if|If expression",
+            "when (${1:variable}) {\n    ${2:value} -> $0\n    else -> {}\n}|when|When expression",
+            "try {\n    $0\n} catch (e: ${1:Exception}) {\n    e.printStackTrace()\n}|try|Try-catch",
+            "listOf(${1:items})|list|Create list",
+            "mapOf(${1:\"key\"} to ${2:value})|map|Create map",
+            "println(${1:\"\"})|print|Print line",
+            "${1:collection}.forEach { ${2:item} ->\n    $0\n}|foreach|ForEach",
+            "${1:collection}.filter { ${2:it} -> $0 }|filter|Filter",
+            "${1:collection}.map { ${2:it} -> $0 }|map|Map transform"
+        });
+
+        SNIPPETS.put(SyntaxHighlighter.Language.PYTHON, new String[]{
+            "def ${1:function_name}(${2:params}):\n    $0|def|Function definition",
+            "class ${1:ClassName}:\n    def __init__(self${2:, params}):\n        $0|class|Class definition",
+            "for ${1:item} in ${2:iterable}:\n    $0|for|For loop",
+            "while ${1:condition}:\n    $0|while|While loop",
+            "if ${1:condition}:\n    $0|if|If statement",
+            "if ${1:condition}:\n    $0\nelse:\n    |ifelse|If-else statement",
+            "try:\n    $0\nexcept ${1:Exception} as ${2:e}:\n    print(${2:e})|try|Try-except block",
+            "with open(${1:\"filename\"}, ${2:\"r\"}) as ${3:f}:\n    $0|with|With statement",
+            "[${1:expr} for ${2:item} in ${3:iterable}]|listcomp|List comprehension",
+            "{${1:key}: ${2:value} for ${3:item} in ${4:iterable}}|dictcomp|Dict comprehension",
+            "lambda ${1:x}: $0|lambda|Lambda function",
+            "print(f\"${1:}\")$0|print|Print f-string",
+            "if __name__ == \"__main__\":\n    $0|main|Main guard"
+        });
+
+        SNIPPETS.put(SyntaxHighlighter.Language.JAVASCRIPT, new String[]{
+            "function ${1:functionName}(${2:params}) {\n    $0\n}|func|Function",
+            "const ${1:name} = (${2:params}) => {\n    $0\n};|arrow|Arrow function",
+            "const ${1:name} = (${2:params}) => $0;|arrowshort|Short arrow function",
+            "class ${1:ClassName} {\n    constructor(${2:params}) {\n        $0\n    }\n}|class|Class",
+            "for (let ${1:i} = 0; ${1:i} < ${2:length}; ${1:i}++) {\n    $0\n}|for|For loop",
+            "for (const ${1:item} of ${2:array}) {\n    $0\n}|forof|For-of loop",
+            "${1:array}.forEach((${2:item}) => {\n    $0\n});|foreach|ForEach",
+            "${1:array}.map((${2:item}) => $0)|map|Map",
+            "${1:array}.filter((${2:item}) => $0)|filter|Filter",
+            "if (${1:condition}) {\n    $0\n}|if|If statement",
+            "try {\n    $0\n} catch (${1:error}) {\n    console.error(${1:error});\n}|try|Try-catch",
+            "async function ${1:functionName}(${2:params}) {\n    $0\n}|async|Async function",
+            "await ${1:promise}|await|Await",
+            "console.log(${1:\"\"});|log|Console log",
+            "import { ${1:module} } from '${2:package}';|import|Import",
+            "export default ${1:name};|export|Export default"
+        });
+
+        SNIPPETS.put(SyntaxHighlighter.Language.HTML, new String[]{
+            "<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n    <meta charset=\"UTF-8\">\n    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n    <title>${1:Document}</title>\n</head>\n<body>\n    $0\n</body>\n</html>|html|HTML5 template",
+            "<div class=\"${1:class}\">$0</div>|div|Div with class",
+            "<a href=\"${1:#}\">$0</a>|a|Anchor link",
+            "<img src=\"${1:src}\" alt=\"${2:alt}\">|img|Image",
+            "<ul>\n    <li>$0</li>\n</ul>|ul|Unordered list",
+            "<form action=\"${1:#}\" method=\"${2:post}\">\n    $0\n</form>|form|Form",
+            "<input type=\"${1:text}\" name=\"${2:name}\" id=\"${3:id}\">|input|Input",
+            "<button type=\"${1:button}\">$0</button>|btn|Button",
+            "<script src=\"${1:script.js}\"></script>|script|Script tag",
+            "<link rel=\"stylesheet\" href=\"${1:style.css}\">|link|Link stylesheet"
+        });
+
+        SNIPPETS.put(SyntaxHighlighter.Language.CSS, new String[]{
+            ".${1:class} {\n    $0\n}|class|Class selector",
+            "#${1:id} {\n    $0\n}|id|ID selector",
+            "display: flex;\njustify-content: ${1:center};\nalign-items: ${2:center};|flex|Flexbox",
+            "display: grid;\ngrid-template-columns: ${1:repeat(3, 1fr)};\ngap: ${2:1rem};|grid|Grid",
+            "@media (max-width: ${1:768px}) {\n    $0\n}|media|Media query",
+            "transition: ${1:all} ${2:0.3s} ${3:ease};|trans|Transition",
+            "transform: ${1:translateX(0)};|transform|Transform",
+            "animation: ${1:name} ${2:1s} ${3:ease} ${4:infinite};|anim|Animation"
+        });
+
+        SNIPPETS.put(SyntaxHighlighter.Language.GO, new String[]{
+            "func ${1:functionName}(${2:params}) ${3:returnType} {\n    $0\n}|func|Function",
+            "func main() {\n    $0\n}|main|Main function",
+            "type ${1:TypeName} struct {\n    $0\n}|struct|Struct",
+            "type ${1:InterfaceName} interface {\n    $0\n}|interface|Interface",
+            "for ${1:i} := 0; ${1:i} < ${2:n}; ${1:i}++ {\n    $0\n}|for|For loop",
+            "for ${1:index}, ${2:value} := range ${3:slice} {\n    $0\n}|range|Range loop",
+            "if ${1:condition} {\n    $0\n}|if|If statement",
+            "if ${1:err} != nil {\n    $0\n}|iferr|Error check",
+            "switch ${1:variable} {\ncase ${2:value}:\n    $0\ndefault:\n}|switch|Switch",
+            "go func() {\n    $0\n}()|goroutine|Goroutine",
+            "fmt.Println(${1:\"\"})|print|Print line"
+        });
+
+        SNIPPETS.put(SyntaxHighlighter.Language.RUST, new String[]{
+            "fn ${1:function_name}(${2:params}) -> ${3:()} {\n    $0\n}|fn|Function",
+            "fn main() {\n    $0\n}|main|Main function",
+            "struct ${1:StructName} {\n    $0\n}|struct|Struct",
+            "impl ${1:StructName} {\n    $0\n}|impl|Implementation",
+            "enum ${1:EnumName} {\n    $0\n}|enum|Enum",
+            "for ${1:item} in ${2:iterator} {\n    $0\n}|for|For loop",
+            "loop {\n    $0\n}|loop|Infinite loop",
+            "while ${1:condition} {\n    $0\n}|while|While loop",
+            "if ${1:condition} {\n    $0\n}|if|If expression",
+            "match ${1:value} {\n    ${2:pattern} => $0,\n    _ => {},\n}|match|Match expression",
+            "let ${1:name}: ${2:Type} = $0;|let|Let binding",
+            "let mut ${1:name} = $0;|letmut|Mutable let",
+            "println!(\"${1:}\");|print|Print line"
+        });
+    }
+
+    private final SnippetManager snippetManager;
+    private volatile Map<SyntaxHighlighter.Language, Table> tables = Collections.emptyMap();
+
+    public SnippetRegistry(SnippetManager snippetManager) {
+        this.snippetManager = snippetManager;
+        Map<SyntaxHighlighter.Language, Table> compiled = new EnumMap<>(SyntaxHighlighter.Language.class);
+        for (SyntaxHighlighter.Language language : SyntaxHighlighter.Language.values()) {
+            compiled.put(language, compile(language));
+        }
+        tables = compiled;
+    }
+
+    public void refresh(SyntaxHighlighter.Language language) {
+        Map<SyntaxHighlighter.Language, Table> compiled = new EnumMap<>(SyntaxHighlighter.Language.class);
+        compiled.putAll(tables);
+        compiled.put(language, compile(language));
+        tables = compiled;
+    }
+
+    public SnippetTemplate get(SyntaxHighlighter.Language language, String trigger) {
+        Table table = tables.get(language);
+        return table != null ? table.templates.get(trigger) : null;
+    }
+
+    public List<SnippetTemplate> getTemplates(SyntaxHighlighter.Language language) {
+        Table table = tables.get(language);
+        return table != null ? new ArrayList<>(table.templates.values()) : new ArrayList<>();
+    }
+
+    public void collect(SyntaxHighlighter.Language language, String prefix, PrefixTrie.Visitor visitor) {
+        Table table = tables.get(language);
+        if (table != null) {
+            table.triggers.collect(prefix, visitor);
+        }
+    }
+
+    private Table compile(SyntaxHighlighter.Language language) {
+        Table table = new Table();
+        String[] snippets = SNIPPETS.get(language);
+        if (snippets != null) {
+            for (String snippet : snippets) {
+                String[] parts = snippet.split("\\|");
+                add(table, SnippetTemplate.compile(parts[2], parts[1], parts[2], parts[0], false), false);
+            }
+        }
+        for (SnippetManager.Snippet snippet : SnippetManager.getBuiltInSnippets(language)) {
+            add(table, SnippetTemplate.compile(snippet.name, snippet.trigger, snippet.description, snippet.code,
+                false), false);
+        }
+        if (snippetManager != null) {
+            for (SnippetManager.Snippet snippet : snippetManager.getCustomSnippets(language)) {
+                add(table, SnippetTemplate.compile(snippet.name, snippet.trigger, snippet.description, snippet.code,
+                    true), true);
+            }
+        }
+        return table;
+    }
+
+    private static void add(Table table, SnippetTemplate template, boolean replace) {
+        if (replace || !table.templates.containsKey(template.trigger)) {
+            table.templates.put(template.trigger, template);
+            table.triggers.add(template.trigger);
+        }
+    }
+}
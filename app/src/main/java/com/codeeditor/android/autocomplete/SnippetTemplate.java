@@ -0,0 +1,135 @@
+package com.codeeditor.android.autocomplete;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A snippet body parsed once into plain text plus tab stops. Supports {@code $n}, {@code ${n}} and
+ * {@code ${n:default}}; {@code $0} is the final cursor position and {@code \$} a literal dollar.
+ * Repeated numbers are mirrors of the first occurrence.
+ */
+public class SnippetTemplate {
+
+    public final String name;
+    public final String trigger;
+    public final String description;
+    public final String text;
+    public final boolean isCustom;
+
+    final int[] stopNumbers;
+    final int[] stopStarts;
+    final int[] stopEnds;
+
+    private SnippetTemplate(String name, String trigger, String description, String text, boolean isCustom,
+                            int[] stopNumbers, int[] stopStarts, int[] stopEnds) {
+        this.name = name;
+        this.trigger = trigger;
+        this.description = description;
+        this.text = text;
+        this.isCustom = isCustom;
+        this.stopNumbers = stopNumbers;
+        this.stopStarts = stopStarts;
+        this.stopEnds = stopEnds;
+    }
+
+    public static SnippetTemplate compile(String name, String trigger, String description, String body,
+                                          boolean isCustom) {
+        StringBuilder text = new StringBuilder(body.length());
+        List<int[]> stops = new ArrayList<>();
+        int i = 0;
+        while (i < body.length()) {
+            char c = body.charAt(i);
+            if (c == '\\' && i + 1 < body.length() && body.charAt(i + 1) == '$') {
+                text.append('$');
+                i += 2;
+                continue;
+            }
+            if (c != '$' || i + 1 >= body.length()) {
+                text.append(c);
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            boolean braced = body.charAt(end) == '{';
+            if (braced) {
+                end++;
+            }
+            int digits = end;
+            while (end < body.length() && Character.isDigit(body.charAt(end))) {
+                end++;
+            }
+            if (end == digits) {
+                text.append(c);
+                i++;
+                continue;
+            }
+            int number = Integer.parseInt(body.substring(digits, end));
+
+            String placeholder = "";
+            if (braced) {
+                int close = body.indexOf('}', end);
+                if (close < 0 || (body.charAt(end) != ':' && body.charAt(end) != '}')) {
+                    text.append(c);
+                    i++;
+                    continue;
+                }
+                placeholder = body.charAt(end) == ':' ? body.substring(end + 1, close) : "";
+                end = close + 1;
+            }
+            stops.add(new int[] {number, text.length(), text.length() + placeholder.length()});
+            text.append(placeholder);
+            i = end;
+        }
+
+        stops.sort((a, b) -> a[0] != b[0] ? Integer.compare(order(a[0]), order(b[0])) : Integer.compare(a[1], b[1]));
+        int[] numbers = new int[stops.size()];
+        int[] starts = new int[stops.size()];
+        int[] ends = new int[stops.size()];
+        for (int k = 0; k < numbers.length; k++) {
+            numbers[k] = stops.get(k)[0];
+            starts[k] = stops.get(k)[1];
+            ends[k] = stops.get(k)[2];
+        }
+        return new SnippetTemplate(name, trigger, description, text.toString(), isCustom, numbers, starts, ends);
+    }
+
+    private static int order(int number) {
+        return number == 0 ? Integer.MAX_VALUE : number;
+    }
+
+    public int getStopCount() {
+        return stopNumbers.length;
+    }
+
+    public int getStopNumber(int index) {
+        return stopNumbers[index];
+    }
+
+    public boolean isMirror(int index) {
+        return index > 0 && stopNumbers[index - 1] == stopNumbers[index];
+    }
+
+    public String expand(String indent) {
+        return indent.isEmpty() ? text : text.replace("\n", "\n" + indent);
+    }
+
+    public int getStopStart(int index, String indent) {
+        return shift(stopStarts[index], indent);
+    }
+
+    public int getStopEnd(int index, String indent) {
+        return shift(stopEnds[index], indent);
+    }
+
+    private int shift(int offset, String indent) {
+        if (indent.isEmpty()) {
+            return offset;
+        }
+        int lines = 0;
+        for (int i = text.indexOf('\n'); i >= 0 && i < offset; i = text.indexOf('\n', i + 1)) {
+            lines++;
+        }
+        return offset + lines * indent.length();
+    }
+}
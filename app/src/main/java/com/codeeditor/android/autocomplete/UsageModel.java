@@ -0,0 +1,259 @@
+package com.codeeditor.android.autocomplete;
+
+import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.utils.IndexFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accept counts and last-accepted times per language. Readers get an immutable snapshot, writes are
+ * published on the calling thread and persisted later on a background thread.
+ */
+public class UsageModel {
+
+    private static final int MAGIC = 0x43555331;
+    private static final int MAX_ENTRIES = 512;
+    private static final int MAX_COUNT = 0xFFFF;
+    private static final long FLUSH_DELAY_MS = 2000;
+    private static final double HALF_LIFE_MINUTES = 7 * 24 * 60;
+    private static final double BOOST_SCALE = 16;
+
+    private final File file;
+    private final ScheduledExecutorService executor;
+    private final Object lock = new Object();
+    private boolean flushScheduled;
+    private volatile Map<SyntaxHighlighter.Language, Table> tables = new EnumMap<>(SyntaxHighlighter.Language.class);
+
+    private static class Usage {
+        final String text;
+        final int count;
+        final int minute;
+        // log2 of the decayed count plus now / HALF_LIFE_MINUTES, so it orders entries without a clock
+        final double rank;
+
+        Usage(String text, int count, int minute) {
+            this.text = text;
+            this.count = count;
+            this.minute = minute;
+            this.rank = Math.log(count) / Math.log(2) + minute / HALF_LIFE_MINUTES;
+        }
+
+        double weight(int now) {
+            return count * Math.pow(0.5, Math.max(0, now - minute) / HALF_LIFE_MINUTES);
+        }
+    }
+
+    private static class Table {
+        static final Table EMPTY = new Table(Collections.emptyMap());
+
+        final Map<String, Usage> usages;
+        final Usage[] sorted;
+
+        Table(Map<String, Usage> usages) {
+            this.usages = usages;
+            this.sorted = usages.values().toArray(new Usage[0]);
+            Arrays.sort(sorted, (a, b) -> PrefixTrie.compareFolded(a.text, b.text));
+        }
+
+        int lowerBound(String prefix) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (PrefixTrie.compareFolded(sorted[middle].text, prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    public static class Ranking {
+        static final Ranking NONE = new Ranking(Table.EMPTY, 0, "");
+
+        private final Map<String, Usage> usages;
+        private final int now;
+        private final List<Usage> matches = new ArrayList<>();
+
+        Ranking(Table table, int now, String prefix) {
+            this.usages = table.usages;
+            this.now = now;
+            for (int i = table.lowerBound(prefix); i < table.sorted.length; i++) {
+                if (!FuzzyMatcher.startsWithFolded(table.sorted[i].text, prefix)) {
+                    break;
+                }
+                matches.add(table.sorted[i]);
+            }
+            if (matches.size() > 1) {
+                matches.sort((a, b) -> Double.compare(b.rank, a.rank));
+            }
+        }
+
+        int getMatchCount() {
+            return matches.size();
+        }
+
+        String getMatch(int index) {
+            return matches.get(index).text;
+        }
+
+        boolean isUsed(String text) {
+            return !usages.isEmpty() && usages.containsKey(text);
+        }
+
+        int boost(String text) {
+            Usage usage = usages.isEmpty() ? null : usages.get(text);
+            return usage != null ? (int) (BOOST_SCALE * Math.log(1 + usage.weight(now)) / Math.log(2)) : 0;
+        }
+    }
+
+    public UsageModel(File file) {
+        this.file = file;
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        executor.execute(this::load);
+    }
+
+    public void record(SyntaxHighlighter.Language language, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        int now = currentMinute();
+        synchronized (lock) {
+            Table previous = tables.get(language);
+            Map<String, Usage> entries = previous != null ? new HashMap<>(previous.usages) : new HashMap<>();
+            Usage usage = entries.get(text);
+            entries.put(text, new Usage(text, usage != null ? Math.min(usage.count + 1, MAX_COUNT) : 1, now));
+            if (entries.size() > MAX_ENTRIES) {
+                evict(entries, now);
+            }
+            publish(language, entries);
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    Ranking rank(SyntaxHighlighter.Language language, String prefix) {
+        Table table = tables.get(language);
+        return table != null ? new Ranking(table, currentMinute(), prefix) : Ranking.NONE;
+    }
+
+    private static void evict(Map<String, Usage> entries, int now) {
+        String weakest = null;
+        double weakestWeight = Double.MAX_VALUE;
+        for (Map.Entry<String, Usage> entry : entries.entrySet()) {
+            double weight = entry.getValue().weight(now);
+            if (weight < weakestWeight) {
+                weakest = entry.getKey();
+                weakestWeight = weight;
+            }
+        }
+        entries.remove(weakest);
+    }
+
+    private void publish(SyntaxHighlighter.Language language, Map<String, Usage> entries) {
+        Map<SyntaxHighlighter.Language, Table> updated = new EnumMap<>(SyntaxHighlighter.Language.class);
+        updated.putAll(tables);
+        updated.put(language, new Table(entries));
+        tables = updated;
+    }
+
+    private void load() {
+        Map<SyntaxHighlighter.Language, Map<String, Usage>> loaded = IndexFiles.read(file, MAGIC, in -> {
+            Map<SyntaxHighlighter.Language, Map<String, Usage>> read =
+                new EnumMap<>(SyntaxHighlighter.Language.class);
+            int languages = in.readUnsignedByte();
+            for (int i = 0; i < languages; i++) {
+                String name = in.readUTF();
+                int count = in.readUnsignedShort();
+                Map<String, Usage> entries = new HashMap<>();
+                for (int k = 0; k < count; k++) {
+                    String text = in.readUTF();
+                    entries.put(text, new Usage(text, in.readUnsignedShort(), in.readInt()));
+                }
+                try {
+                    read.put(SyntaxHighlighter.Language.valueOf(name), entries);
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+            return read;
+        });
+        if (loaded == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            for (Map.Entry<SyntaxHighlighter.Language, Map<String, Usage>> entry : loaded.entrySet()) {
+                Map<String, Usage> entries = entry.getValue();
+                Table recorded = tables.get(entry.getKey());
+                if (recorded != null) {
+                    for (Map.Entry<String, Usage> usage : recorded.usages.entrySet()) {
+                        Usage stored = entries.get(usage.getKey());
+                        int count = usage.getValue().count + (stored != null ? stored.count : 0);
+                        entries.put(usage.getKey(), new Usage(usage.getKey(), Math.min(count, MAX_COUNT),
+                            usage.getValue().minute));
+                    }
+                }
+                while (entries.size() > MAX_ENTRIES) {
+                    evict(entries, currentMinute());
+                }
+                publish(entry.getKey(), entries);
+            }
+        }
+    }
+
+    private void flush() {
+        Map<SyntaxHighlighter.Language, Table> snapshot;
+        synchronized (lock) {
+            if (!flushScheduled) {
+                return;
+            }
+            flushScheduled = false;
+            snapshot = tables;
+        }
+
+        try {
+            IndexFiles.write(file, MAGIC, out -> {
+                out.writeByte(snapshot.size());
+                for (Map.Entry<SyntaxHighlighter.Language, Table> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey().name());
+                    out.writeShort(entry.getValue().usages.size());
+                    for (Map.Entry<String, Usage> usage : entry.getValue().usages.entrySet()) {
+                        out.writeUTF(usage.getKey());
+                        out.writeShort(usage.getValue().count);
+                        out.writeInt(usage.getValue().minute);
+                    }
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int currentMinute() {
+        return (int) (System.currentTimeMillis() / 60000);
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            if (flushScheduled) {
+                executor.execute(this::flush);
+            }
+        }
+        executor.shutdown();
+    }
+}
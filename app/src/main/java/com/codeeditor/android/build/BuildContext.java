@@ -12,6 +12,8 @@ import java.util.Map;
 
 public class BuildContext {
     
+    public static final String DEPENDENCY_JARS_FILE = "dependency_jars.txt";
+    
     private Context appContext;
     private BuildConfig config;
     private File sdkDir;
@@ -137,6 +139,10 @@ public class BuildContext {
     public List<String> getErrors() { return new ArrayList<>(errors); }
     public List<String> getWarnings() { return new ArrayList<>(warnings); }
     
+    public static File getDependencyJarsFile(File projectDir) {
+        return new File(projectDir, "build/intermediates/" + DEPENDENCY_JARS_FILE);
+    }
+    
     public File getClassesDir() {
         return new File(config.getIntermediatesDir(), "classes");
     }
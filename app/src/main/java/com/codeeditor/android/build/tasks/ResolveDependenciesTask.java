@@ -59,7 +59,9 @@ public class ResolveDependenciesTask implements BuildTask {
             
             List<Dependency> dependencies = collectDependencies(context, projectDir);
             
+            File jarListFile = BuildContext.getDependencyJarsFile(projectDir);
             if (dependencies.isEmpty()) {
+                jarListFile.delete();
                 context.log("No external dependencies found");
                 context.phaseCompleted("Dependency Resolution");
                 return true;
@@ -90,6 +92,7 @@ public class ResolveDependenciesTask implements BuildTask {
             }
             
             context.putArtifact("dependency_jars", jarFiles);
+            writeJarList(jarListFile, jarFiles);
             
             String classpath = resolver.buildClasspath(jarFiles);
             context.putArtifact("dependency_classpath", classpath);
@@ -169,6 +172,16 @@ public class ResolveDependenciesTask implements BuildTask {
         return dependencies;
     }
     
+    private void writeJarList(File file, List<File> jarFiles) {
+        file.getParentFile().mkdirs();
+        try (java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter(file))) {
+            for (File jar : jarFiles) {
+                writer.println(jar.getAbsolutePath());
+            }
+        } catch (Exception e) {
+        }
+    }
+    
     @Override
     public void cancel() {
         cancelled.set(true);
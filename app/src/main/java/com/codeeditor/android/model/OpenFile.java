@@ -1,10 +1,17 @@
 package com.codeeditor.android.model;
 
+import com.codeeditor.android.utils.ContentCodec;
+import com.codeeditor.android.utils.ContentHash;
+import com.codeeditor.android.utils.TextFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
 public class OpenFile {
+    public final String id = UUID.randomUUID().toString();
     public String name;
     public String path;
-    public String content;
-    public String originalContent;
     public String sha;
     public boolean isModified;
     public boolean isGitHubFile;
@@ -12,12 +19,64 @@ public class OpenFile {
     public String repo;
     public String branch;
     public String localUri;
+    public long lastAccess;
+    public TextFormat format = TextFormat.DEFAULT;
+    
+    private String content;
+    private CharSequence liveText;
+    private byte[] packedContent;
+    private File spillFile;
+    private int contentLength;
+    private long baselineHash;
+    private int baselineLength;
+    // lengths of the leading and trailing runs known to still match the baseline
+    private int cleanPrefix;
+    private int cleanSuffix;
+    private StringBuilder loadBuffer;
+    private File restoreFile;
+    private ContentPatch restorePatch;
+    private DiskRead pendingRead;
+    
+    public interface ContentPatch {
+        String apply(String content);
+    }
+    
+    /** Content that is packed or only on disk, read off the main thread before the tab is shown. */
+    public static class DiskRead {
+        private final File source;
+        private final byte[] packed;
+        private final ContentPatch patch;
+        
+        DiskRead(File source, byte[] packed, ContentPatch patch) {
+            this.source = source;
+            this.packed = packed;
+            this.patch = patch;
+        }
+        
+        public String read() throws IOException {
+            String text = packed != null ? ContentCodec.unpack(packed) : ContentCodec.readPacked(source);
+            return patch != null ? patch.apply(text) : text;
+        }
+        
+        /** Writes the content in packed form, copying the stored bytes unless a patch has to be applied. */
+        public void writeTo(File target) throws IOException {
+            if (patch != null) {
+                ContentCodec.writePacked(target, ContentCodec.pack(read()));
+            } else if (packed != null) {
+                ContentCodec.writePacked(target, packed);
+            } else {
+                ContentCodec.copyPacked(source, target);
+            }
+        }
+    }
     
     public OpenFile(String name, String path, String content, String sha) {
         this.name = name;
         this.path = path;
-        this.content = content;
-        this.originalContent = content;
+        setContent(content);
+        this.baselineHash = ContentHash.hash64(content);
+        this.baselineLength = contentLength;
+        markClean();
         this.sha = sha;
         this.isModified = false;
         this.isGitHubFile = false;
@@ -36,14 +95,230 @@ public class OpenFile {
         this.isGitHubFile = true;
     }
     
-    public void updateContent(String content) {
+    public String getContent() {
+        if (loadBuffer != null) {
+            return loadBuffer.toString();
+        }
+        if (liveText != null) {
+            return liveText.toString();
+        }
+        DiskRead stored = storedContent();
+        if (stored != null) {
+            // callers on the main thread go through FileLoader.restore first; a failed read leaves null
+            try {
+                setContent(stored.read());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return content;
+    }
+    
+    public void setContent(String content) {
         this.content = content;
-        this.isModified = !content.equals(originalContent);
+        this.liveText = null;
+        this.contentLength = content != null ? content.length() : 0;
+        dropPackedContent();
+    }
+    
+    /**
+     * Makes the editor's document the content of this tab while it is displayed or parked with its
+     * editor state, so switching tabs copies nothing. {@link #setContent} detaches it again.
+     */
+    public void attachText(CharSequence text) {
+        setContent(null);
+        this.liveText = text;
+    }
+    
+    public boolean needsDiskRead() {
+        return content == null && liveText == null && loadBuffer == null
+                && (packedContent != null || spillFile != null || restoreFile != null);
+    }
+    
+    /** The packed or on-disk form of content that is not resident, or null when it is. */
+    public DiskRead storedContent() {
+        if (!needsDiskRead()) {
+            return null;
+        }
+        if (packedContent != null) {
+            return new DiskRead(null, packedContent, null);
+        }
+        return spillFile != null ? new DiskRead(spillFile, null, null) : new DiskRead(restoreFile, null, restorePatch);
+    }
+    
+    public DiskRead getPendingRead() {
+        return pendingRead;
+    }
+    
+    public DiskRead beginDiskRead() {
+        pendingRead = storedContent();
+        return pendingRead;
+    }
+    
+    public void finishDiskRead(DiskRead read, String text) {
+        if (read != pendingRead) {
+            return;
+        }
+        pendingRead = null;
+        if (text != null) {
+            setContent(text);
+        }
+    }
+    
+    public void restore(File snapshot, int length, ContentPatch patch) {
+        this.content = null;
+        this.liveText = null;
+        dropPackedContent();
+        this.restoreFile = snapshot;
+        this.restorePatch = patch;
+        this.contentLength = length;
+    }
+    
+    public void restoreBaseline(long hash, int length, boolean modified) {
+        this.baselineHash = hash;
+        this.baselineLength = length;
+        this.isModified = modified;
+        if (modified) {
+            markDirty();
+        } else {
+            markClean();
+        }
+    }
+    
+    public void beginLoad() {
+        String current = getContent();
+        loadBuffer = new StringBuilder(current != null ? current : "");
+    }
+    
+    public void appendLoaded(CharSequence chunk) {
+        loadBuffer.append(chunk);
+    }
+    
+    public void finishLoad() {
+        String loaded = loadBuffer.toString();
+        loadBuffer = null;
+        setContent(loaded);
+    }
+    
+    public boolean isLoading() {
+        return loadBuffer != null || pendingRead != null;
+    }
+    
+    public int getContentLength() {
+        return liveText != null ? liveText.length() : contentLength;
+    }
+    
+    public void updateContent(String content) {
+        setContent(content);
+        updateModified(content);
+    }
+    
+    public void updateModified(CharSequence current) {
+        this.isModified = current == null
+                || current.length() != baselineLength
+                || ContentHash.hash64(current) != baselineHash;
+        if (isModified) {
+            markDirty();
+        } else {
+            markClean();
+        }
+    }
+    
+    /**
+     * Tracks the modified flag from one edit without reading the text. The flag clears when the edits
+     * cancel out within the runs still matching the baseline; anything subtler is settled by the hash
+     * comparison of the next save.
+     */
+    public void applyEdit(int length, int start, int removed, int inserted) {
+        int oldLength = length - inserted + removed;
+        cleanPrefix = Math.min(cleanPrefix, start);
+        cleanSuffix = Math.min(cleanSuffix, oldLength - start - removed);
+        this.isModified = length != baselineLength || cleanPrefix + cleanSuffix < length;
     }
     
     public void markSaved(String newSha) {
-        this.originalContent = this.content;
+        String saved = getContent();
+        this.baselineHash = ContentHash.hash64(saved);
+        this.baselineLength = saved != null ? saved.length() : 0;
+        this.sha = newSha;
+        this.isModified = false;
+        markClean();
+    }
+    
+    public void markSaved(String newSha, long savedHash, int savedLength) {
+        this.baselineHash = savedHash;
+        this.baselineLength = savedLength;
         this.sha = newSha;
         this.isModified = false;
+        markClean();
+    }
+    
+    public long getBaselineHash() {
+        return baselineHash;
+    }
+    
+    public int getBaselineLength() {
+        return baselineLength;
+    }
+    
+    public boolean isContentResident() {
+        return content != null;
+    }
+    
+    public boolean isContentPacked() {
+        return packedContent != null;
+    }
+    
+    public boolean isContentSpilled() {
+        return content == null && packedContent == null && spillFile != null;
+    }
+    
+    public long getResidentBytes() {
+        if (content != null) {
+            return 2L * content.length();
+        }
+        return packedContent != null ? packedContent.length : 0;
+    }
+    
+    public byte[] pack() {
+        if (content != null) {
+            packedContent = ContentCodec.pack(content);
+            content = null;
+        }
+        return packedContent;
+    }
+    
+    public void onSpilled(byte[] packed, File file) {
+        if (packedContent == packed) {
+            packedContent = null;
+            spillFile = file;
+        } else {
+            file.delete();
+        }
+    }
+    
+    public void release() {
+        dropPackedContent();
+    }
+    
+    private void markClean() {
+        cleanPrefix = baselineLength;
+        cleanSuffix = baselineLength;
+    }
+    
+    private void markDirty() {
+        cleanPrefix = 0;
+        cleanSuffix = 0;
+    }
+    
+    private void dropPackedContent() {
+        pendingRead = null;
+        packedContent = null;
+        restoreFile = null;
+        restorePatch = null;
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
     }
 }
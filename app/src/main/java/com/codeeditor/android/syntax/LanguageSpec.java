@@ -0,0 +1,435 @@
+package com.codeeditor.android.syntax;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Lexical rules of one language: keywords, comment and string delimiters, and the prefixes that mark
+ * annotations and variables. {@link TokenCache} lexes with these so every editor feature shares them.
+ */
+public class LanguageSpec {
+    
+    private static final String[] NONE = {};
+    private static final Map<SyntaxHighlighter.Language, LanguageSpec> SPECS =
+        new EnumMap<>(SyntaxHighlighter.Language.class);
+    
+    public final SyntaxHighlighter.Language language;
+    
+    String[] lineComments = NONE;
+    String blockCommentStart;
+    String blockCommentEnd;
+    boolean blockCommentAtLineStart;
+    String quotes = "";
+    String[] stringOpens = NONE;
+    String[] stringCloses = NONE;
+    boolean charLiterals;
+    char annotationPrefix;
+    char directivePrefix;
+    String sigils = "";
+    boolean capitalizedTypes;
+    private String commentPrefix = "//";
+    private String[][] keywordTable = new String[1][];
+    
+    private LanguageSpec(SyntaxHighlighter.Language language) {
+        this.language = language;
+    }
+    
+    public static LanguageSpec forLanguage(SyntaxHighlighter.Language language) {
+        LanguageSpec spec = SPECS.get(language);
+        return spec != null ? spec : SPECS.get(SyntaxHighlighter.Language.PLAIN_TEXT);
+    }
+    
+    public String getCommentPrefix() {
+        return commentPrefix;
+    }
+    
+    /** Closing delimiter to append when commenting out a line, for languages with block comments only. */
+    public String getCommentSuffix() {
+        return commentPrefix.equals(blockCommentStart) ? blockCommentEnd : "";
+    }
+    
+    public boolean isKeyword(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        String[] bucket = keywordTable[(hash ^ (hash >>> 16)) & (keywordTable.length - 1)];
+        if (bucket == null) {
+            return false;
+        }
+        for (String keyword : bucket) {
+            if (keyword.length() == end - start && regionMatches(text, start, keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    static boolean regionMatches(CharSequence text, int offset, String word) {
+        if (offset + word.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(offset + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private LanguageSpec keywords(String... words) {
+        int size = 1;
+        while (size < words.length * 2) {
+            size <<= 1;
+        }
+        keywordTable = new String[size][];
+        for (String word : words) {
+            int hash = word.hashCode();
+            int index = (hash ^ (hash >>> 16)) & (size - 1);
+            String[] bucket = keywordTable[index];
+            if (bucket == null) {
+                keywordTable[index] = new String[] {word};
+            } else {
+                String[] grown = new String[bucket.length + 1];
+                System.arraycopy(bucket, 0, grown, 0, bucket.length);
+                grown[bucket.length] = word;
+                keywordTable[index] = grown;
+            }
+        }
+        return this;
+    }
+    
+    private LanguageSpec lineComments(String... prefixes) {
+        lineComments = prefixes;
+        commentPrefix = prefixes[0];
+        return this;
+    }
+    
+    private LanguageSpec blockComment(String start, String end) {
+        blockCommentStart = start;
+        blockCommentEnd = end;
+        return this;
+    }
+    
+    private LanguageSpec blockCommentAtLineStart(String start, String end) {
+        blockCommentAtLineStart = true;
+        return blockComment(start, end);
+    }
+    
+    private LanguageSpec quotes(String quoteChars) {
+        quotes = quoteChars;
+        return this;
+    }
+    
+    private LanguageSpec multilineString(String open, String close) {
+        String[] opens = new String[stringOpens.length + 1];
+        String[] closes = new String[stringCloses.length + 1];
+        System.arraycopy(stringOpens, 0, opens, 0, stringOpens.length);
+        System.arraycopy(stringCloses, 0, closes, 0, stringCloses.length);
+        opens[stringOpens.length] = open;
+        closes[stringCloses.length] = close;
+        stringOpens = opens;
+        stringCloses = closes;
+        return this;
+    }
+    
+    private LanguageSpec charLiterals() {
+        charLiterals = true;
+        return this;
+    }
+    
+    private LanguageSpec annotations(char prefix) {
+        annotationPrefix = prefix;
+        return this;
+    }
+    
+    private LanguageSpec directives(char prefix) {
+        directivePrefix = prefix;
+        return this;
+    }
+    
+    private LanguageSpec sigils(String prefixes) {
+        sigils = prefixes;
+        return this;
+    }
+    
+    private LanguageSpec capitalizedTypes() {
+        capitalizedTypes = true;
+        return this;
+    }
+    
+    private LanguageSpec commentPrefix(String prefix) {
+        commentPrefix = prefix;
+        return this;
+    }
+    
+    private static LanguageSpec define(SyntaxHighlighter.Language language) {
+        LanguageSpec spec = new LanguageSpec(language);
+        SPECS.put(language, spec);
+        return spec;
+    }
+    
+    private static LanguageSpec cLike(SyntaxHighlighter.Language language) {
+        return define(language).lineComments("//").blockComment("/*", "*/").quotes("\"'");
+    }
+    
+    static {
+        define(SyntaxHighlighter.Language.PLAIN_TEXT);
+        
+        cLike(SyntaxHighlighter.Language.JAVA).annotations('@').capitalizedTypes().keywords(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch",
+            "char", "class", "const", "continue", "default", "do", "double",
+            "else", "enum", "extends", "final", "finally", "float", "for",
+            "goto", "if", "implements", "import", "instanceof", "int",
+            "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws",
+            "transient", "try", "void", "volatile", "while", "true", "false", "null",
+            "var", "yield", "record", "sealed", "permits"
+        );
+        
+        cLike(SyntaxHighlighter.Language.KOTLIN).multilineString("\"\"\"", "\"\"\"").annotations('@')
+            .capitalizedTypes().keywords(
+            "abstract", "actual", "annotation", "as", "break", "by", "catch",
+            "class", "companion", "const", "constructor", "continue", "crossinline",
+            "data", "delegate", "do", "dynamic", "else", "enum", "expect", "external",
+            "false", "final", "finally", "for", "fun", "get", "if", "import",
+            "in", "infix", "init", "inline", "inner", "interface", "internal",
+            "is", "it", "lateinit", "noinline", "null", "object", "open", "operator",
+            "out", "override", "package", "private", "protected", "public", "reified",
+            "return", "sealed", "set", "super", "suspend", "tailrec", "this",
+            "throw", "true", "try", "typealias", "typeof", "val", "var", "vararg",
+            "when", "where", "while"
+        );
+        
+        define(SyntaxHighlighter.Language.PYTHON).lineComments("#").quotes("\"'")
+            .multilineString("\"\"\"", "\"\"\"").multilineString("'''", "'''")
+            .annotations('@').capitalizedTypes().keywords(
+            "and", "as", "assert", "async", "await", "break", "class",
+            "continue", "def", "del", "elif", "else", "except", "finally",
+            "for", "from", "global", "if", "import", "in", "is", "lambda",
+            "None", "nonlocal", "not", "or", "pass", "raise", "return",
+            "try", "while", "with", "yield", "True", "False", "match", "case",
+            "self", "cls", "super"
+        );
+        
+        String[] javaScript = {
+            "async", "await", "break", "case", "catch", "class", "const",
+            "continue", "debugger", "default", "delete", "do", "else",
+            "export", "extends", "finally", "for", "function", "if",
+            "import", "in", "instanceof", "let", "new", "return", "static",
+            "super", "switch", "this", "throw", "try", "typeof", "var",
+            "void", "while", "with", "yield", "true", "false", "null", "undefined",
+            "of", "as", "from", "get", "set", "implements", "interface",
+            "package", "private", "protected", "public", "type", "enum",
+            "readonly", "abstract", "declare", "namespace", "module"
+        };
+        cLike(SyntaxHighlighter.Language.JAVASCRIPT).multilineString("`", "`").keywords(javaScript);
+        cLike(SyntaxHighlighter.Language.TYPESCRIPT).multilineString("`", "`").keywords(javaScript);
+        
+        define(SyntaxHighlighter.Language.HTML).blockComment("<!--", "-->").quotes("\"'").commentPrefix("<!--");
+        define(SyntaxHighlighter.Language.XML).blockComment("<!--", "-->").quotes("\"'").commentPrefix("<!--");
+        
+        define(SyntaxHighlighter.Language.CSS).blockComment("/*", "*/").quotes("\"'").annotations('@');
+        define(SyntaxHighlighter.Language.SCSS).lineComments("//").blockComment("/*", "*/").quotes("\"'")
+            .annotations('@').sigils("$");
+        
+        define(SyntaxHighlighter.Language.JSON).quotes("\"").keywords("true", "false", "null");
+        
+        String[] cpp = {
+            "alignas", "alignof", "and", "and_eq", "asm", "auto", "bitand",
+            "bitor", "bool", "break", "case", "catch", "char", "char8_t",
+            "char16_t", "char32_t", "class", "compl", "concept", "const",
+            "consteval", "constexpr", "constinit", "const_cast", "continue",
+            "co_await", "co_return", "co_yield", "decltype", "default", "delete",
+            "do", "double", "dynamic_cast", "else", "enum", "explicit", "export",
+            "extern", "false", "float", "for", "friend", "goto", "if", "inline",
+            "int", "long", "mutable", "namespace", "new", "noexcept", "not",
+            "not_eq", "nullptr", "operator", "or", "or_eq", "private", "protected",
+            "public", "register", "reinterpret_cast", "requires", "return",
+            "short", "signed", "sizeof", "static", "static_assert", "static_cast",
+            "struct", "switch", "template", "this", "thread_local", "throw",
+            "true", "try", "typedef", "typeid", "typename", "union", "unsigned",
+            "using", "virtual", "void", "volatile", "wchar_t", "while", "xor", "xor_eq",
+            "#include", "#define", "#ifdef", "#ifndef", "#endif", "#pragma", "#if", "#else", "#elif"
+        };
+        cLike(SyntaxHighlighter.Language.C).directives('#').capitalizedTypes().keywords(cpp);
+        cLike(SyntaxHighlighter.Language.CPP).directives('#').capitalizedTypes().keywords(cpp);
+        
+        cLike(SyntaxHighlighter.Language.CSHARP).capitalizedTypes().keywords(
+            "abstract", "as", "base", "bool", "break", "byte", "case", "catch",
+            "char", "checked", "class", "const", "continue", "decimal", "default",
+            "delegate", "do", "double", "else", "enum", "event", "explicit",
+            "extern", "false", "finally", "fixed", "float", "for", "foreach",
+            "goto", "if", "implicit", "in", "int", "interface", "internal", "is",
+            "lock", "long", "namespace", "new", "null", "object", "operator",
+            "out", "override", "params", "private", "protected", "public",
+            "readonly", "ref", "return", "sbyte", "sealed", "short", "sizeof",
+            "stackalloc", "static", "string", "struct", "switch", "this", "throw",
+            "true", "try", "typeof", "uint", "ulong", "unchecked", "unsafe",
+            "ushort", "using", "var", "virtual", "void", "volatile", "while",
+            "async", "await", "dynamic", "nameof", "record", "init", "required"
+        );
+        
+        cLike(SyntaxHighlighter.Language.GO).multilineString("`", "`").capitalizedTypes().keywords(
+            "break", "case", "chan", "const", "continue", "default", "defer",
+            "else", "fallthrough", "for", "func", "go", "goto", "if", "import",
+            "interface", "map", "package", "range", "return", "select", "struct",
+            "switch", "type", "var", "true", "false", "nil", "iota",
+            "bool", "byte", "complex64", "complex128", "error", "float32", "float64",
+            "int", "int8", "int16", "int32", "int64", "rune", "string",
+            "uint", "uint8", "uint16", "uint32", "uint64", "uintptr", "any"
+        );
+        
+        define(SyntaxHighlighter.Language.RUST).lineComments("//").blockComment("/*", "*/").quotes("\"")
+            .charLiterals().capitalizedTypes().keywords(
+            "as", "async", "await", "break", "const", "continue", "crate", "dyn",
+            "else", "enum", "extern", "false", "fn", "for", "if", "impl", "in",
+            "let", "loop", "match", "mod", "move", "mut", "pub", "ref", "return",
+            "self", "Self", "static", "struct", "super", "trait", "true", "type",
+            "unsafe", "use", "where", "while", "abstract", "become", "box", "do",
+            "final", "macro", "override", "priv", "try", "typeof", "unsized",
+            "virtual", "yield",
+            "bool", "char", "str", "u8", "u16", "u32", "u64", "u128", "usize",
+            "i8", "i16", "i32", "i64", "i128", "isize", "f32", "f64",
+            "Option", "Result", "Some", "None", "Ok", "Err", "Vec", "String", "Box"
+        );
+        
+        define(SyntaxHighlighter.Language.PHP).lineComments("//", "#").blockComment("/*", "*/").quotes("\"'")
+            .sigils("$").capitalizedTypes().keywords(
+            "abstract", "and", "array", "as", "break", "callable", "case", "catch",
+            "class", "clone", "const", "continue", "declare", "default", "die", "do",
+            "echo", "else", "elseif", "empty", "enddeclare", "endfor", "endforeach",
+            "endif", "endswitch", "endwhile", "eval", "exit", "extends", "final",
+            "finally", "fn", "for", "foreach", "function", "global", "goto", "if",
+            "implements", "include", "include_once", "instanceof", "insteadof",
+            "interface", "isset", "list", "match", "namespace", "new", "or", "print",
+            "private", "protected", "public", "readonly", "require", "require_once",
+            "return", "static", "switch", "throw", "trait", "try", "unset", "use",
+            "var", "while", "xor", "yield", "true", "false", "null",
+            "int", "float", "bool", "string", "void", "mixed", "never", "object"
+        );
+        
+        define(SyntaxHighlighter.Language.RUBY).lineComments("#").blockCommentAtLineStart("=begin", "=end")
+            .quotes("\"'").sigils("@$").capitalizedTypes().keywords(
+            "alias", "and", "begin", "break", "case", "class", "def", "defined",
+            "do", "else", "elsif", "end", "ensure", "false", "for", "if", "in",
+            "module", "next", "nil", "not", "or", "redo", "rescue", "retry",
+            "return", "self", "super", "then", "true", "undef", "unless", "until",
+            "when", "while", "yield", "require", "require_relative", "include",
+            "extend", "attr_reader", "attr_writer", "attr_accessor", "private",
+            "protected", "public", "raise", "lambda", "proc"
+        );
+        
+        define(SyntaxHighlighter.Language.SWIFT).lineComments("//").blockComment("/*", "*/").quotes("\"")
+            .multilineString("\"\"\"", "\"\"\"").annotations('@').capitalizedTypes().keywords(
+            "actor", "any", "as", "associatedtype", "async", "await", "break",
+            "case", "catch", "class", "continue", "default", "defer", "deinit",
+            "do", "else", "enum", "extension", "fallthrough", "false", "fileprivate",
+            "for", "func", "guard", "if", "import", "in", "indirect", "infix",
+            "init", "inout", "internal", "is", "isolated", "lazy", "let", "mutating",
+            "nil", "nonisolated", "nonmutating", "open", "operator", "optional",
+            "override", "postfix", "precedencegroup", "prefix", "private", "protocol",
+            "public", "repeat", "required", "rethrows", "return", "self", "Self",
+            "set", "some", "static", "struct", "subscript", "super", "switch",
+            "throw", "throws", "true", "try", "typealias", "unowned", "var",
+            "weak", "where", "while",
+            "Int", "Double", "Float", "Bool", "String", "Array", "Dictionary",
+            "Set", "Optional", "Any", "AnyObject", "Void"
+        );
+        
+        cLike(SyntaxHighlighter.Language.DART).multilineString("\"\"\"", "\"\"\"").multilineString("'''", "'''")
+            .annotations('@').capitalizedTypes().keywords(
+            "abstract", "as", "assert", "async", "await", "base", "break", "case",
+            "catch", "class", "const", "continue", "covariant", "default", "deferred",
+            "do", "dynamic", "else", "enum", "export", "extends", "extension",
+            "external", "factory", "false", "final", "finally", "for", "Function",
+            "get", "hide", "if", "implements", "import", "in", "interface", "is",
+            "late", "library", "mixin", "new", "null", "on", "operator", "part",
+            "required", "rethrow", "return", "sealed", "set", "show", "static",
+            "super", "switch", "sync", "this", "throw", "true", "try", "typedef",
+            "var", "void", "when", "while", "with", "yield",
+            "int", "double", "num", "bool", "String", "List", "Map", "Set",
+            "Future", "Stream", "Iterable", "Object", "Never"
+        );
+        
+        define(SyntaxHighlighter.Language.SQL).lineComments("--").blockComment("/*", "*/").quotes("'\"").keywords(
+            "SELECT", "FROM", "WHERE", "INSERT", "INTO", "VALUES", "UPDATE", "SET",
+            "DELETE", "CREATE", "DROP", "ALTER", "TABLE", "DATABASE", "INDEX",
+            "VIEW", "TRIGGER", "PROCEDURE", "FUNCTION", "JOIN", "INNER", "LEFT",
+            "RIGHT", "OUTER", "FULL", "CROSS", "ON", "AND", "OR", "NOT", "IN",
+            "BETWEEN", "LIKE", "IS", "NULL", "AS", "ORDER", "BY", "ASC", "DESC",
+            "GROUP", "HAVING", "LIMIT", "OFFSET", "UNION", "ALL", "DISTINCT",
+            "EXISTS", "CASE", "WHEN", "THEN", "ELSE", "END", "IF", "BEGIN",
+            "COMMIT", "ROLLBACK", "TRANSACTION", "PRIMARY", "KEY", "FOREIGN",
+            "REFERENCES", "UNIQUE", "CHECK", "DEFAULT", "CONSTRAINT", "CASCADE",
+            "RESTRICT", "NO", "ACTION", "GRANT", "REVOKE", "TO", "WITH",
+            "INTEGER", "VARCHAR", "TEXT", "BOOLEAN", "DATE", "TIMESTAMP", "FLOAT",
+            "DECIMAL", "BLOB", "SERIAL", "BIGINT", "SMALLINT", "CHAR", "DOUBLE",
+            "select", "from", "where", "insert", "into", "values", "update", "set",
+            "delete", "create", "drop", "alter", "table", "database", "index",
+            "view", "trigger", "procedure", "function", "join", "inner", "left",
+            "right", "outer", "full", "cross", "on", "and", "or", "not", "in",
+            "between", "like", "is", "null", "as", "order", "by", "asc", "desc",
+            "group", "having", "limit", "offset", "union", "all", "distinct",
+            "exists", "case", "when", "then", "else", "end", "if", "begin",
+            "commit", "rollback", "transaction", "primary", "key", "foreign",
+            "references", "unique", "check", "default", "constraint", "cascade"
+        );
+        
+        define(SyntaxHighlighter.Language.SHELL).lineComments("#").quotes("\"'").sigils("$").keywords(
+            "if", "then", "else", "elif", "fi", "for", "while", "do", "done",
+            "case", "esac", "in", "function", "select", "until", "return",
+            "break", "continue", "local", "declare", "typeset", "readonly",
+            "export", "unset", "shift", "eval", "exec", "exit", "trap", "source",
+            "alias", "unalias", "set", "true", "false", "test", "echo", "printf",
+            "read", "cd", "pwd", "pushd", "popd", "dirs", "let", "expr"
+        );
+        
+        define(SyntaxHighlighter.Language.MARKDOWN).quotes("`").multilineString("```", "```");
+        
+        define(SyntaxHighlighter.Language.YAML).lineComments("#").quotes("\"'").keywords(
+            "true", "false", "yes", "no", "on", "off", "null"
+        );
+        
+        define(SyntaxHighlighter.Language.TOML).lineComments("#").quotes("\"'")
+            .multilineString("\"\"\"", "\"\"\"").multilineString("'''", "'''").keywords("true", "false");
+        
+        define(SyntaxHighlighter.Language.LUA).blockComment("--[[", "]]").lineComments("--").quotes("\"'")
+            .multilineString("[[", "]]").keywords(
+            "and", "break", "do", "else", "elseif", "end", "false", "for",
+            "function", "goto", "if", "in", "local", "nil", "not", "or",
+            "repeat", "return", "then", "true", "until", "while"
+        );
+        
+        define(SyntaxHighlighter.Language.PERL).lineComments("#").blockCommentAtLineStart("=pod", "=cut")
+            .quotes("\"'").sigils("$@%").keywords(
+            "if", "elsif", "else", "unless", "while", "until", "for", "foreach",
+            "do", "sub", "my", "our", "local", "use", "no", "require", "package",
+            "return", "last", "next", "redo", "goto", "die", "warn", "print",
+            "say", "open", "close", "read", "write", "chomp", "chop", "split",
+            "join", "push", "pop", "shift", "unshift", "grep", "map", "sort",
+            "keys", "values", "each", "exists", "delete", "defined", "undef",
+            "bless", "ref", "tie", "untie", "BEGIN", "END", "CHECK", "INIT"
+        );
+        
+        define(SyntaxHighlighter.Language.R).lineComments("#").quotes("\"'").keywords(
+            "if", "else", "repeat", "while", "function", "for", "in", "next",
+            "break", "TRUE", "FALSE", "NULL", "Inf", "NaN", "NA", "NA_integer_",
+            "NA_real_", "NA_complex_", "NA_character_", "library", "require",
+            "source", "return", "invisible", "stop", "warning", "message"
+        );
+        
+        cLike(SyntaxHighlighter.Language.SCALA).multilineString("\"\"\"", "\"\"\"").annotations('@')
+            .capitalizedTypes().keywords(
+            "abstract", "case", "catch", "class", "def", "do", "else", "extends",
+            "false", "final", "finally", "for", "forSome", "if", "implicit",
+            "import", "lazy", "match", "new", "null", "object", "override",
+            "package", "private", "protected", "return", "sealed", "super",
+            "this", "throw", "trait", "true", "try", "type", "val", "var",
+            "while", "with", "yield", "given", "using", "enum", "export",
+            "then", "derives", "end", "extension", "infix", "inline", "opaque",
+            "open", "transparent"
+        );
+    }
+}
@@ -1,11 +1,13 @@
 package com.codeeditor.android.syntax;
 
 import android.graphics.Color;
-import android.text.Editable;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.style.ForegroundColorSpan;
 
+import com.codeeditor.android.utils.LineIndex;
+
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -165,643 +167,208 @@ public class SyntaxHighlighter {
     
     public static SpannableStringBuilder highlight(String text, Language language) {
         SpannableStringBuilder spannable = new SpannableStringBuilder(text);
-        applySpansToSpannable(spannable, language);
+        LineIndex lines = new LineIndex();
+        lines.rebuild(text);
+        TokenCache tokens = new TokenCache(lines, language);
+        tokens.rebuild(text);
+        applySpans(spannable, tokens, 0, tokens.getLineCount() - 1);
         return spannable;
     }
     
-    public static void applySpans(Editable editable, Language language) {
-        applySpansToSpannable(editable, language);
-    }
-    
-    private static void applySpansToSpannable(Spannable spannable, Language language) {
-        switch (language) {
-            case JAVA:
-                highlightJava(spannable);
-                break;
-            case KOTLIN:
-                highlightKotlin(spannable);
-                break;
-            case PYTHON:
-                highlightPython(spannable);
-                break;
-            case JAVASCRIPT:
-            case TYPESCRIPT:
-                highlightJavaScript(spannable);
-                break;
-            case HTML:
-            case XML:
-                highlightHTML(spannable);
-                break;
-            case CSS:
-                highlightCSS(spannable);
-                break;
-            case JSON:
-                highlightJSON(spannable);
-                break;
-            case C:
-            case CPP:
-                highlightCpp(spannable);
-                break;
-            case CSHARP:
-                highlightCSharp(spannable);
-                break;
-            case GO:
-                highlightGo(spannable);
-                break;
-            case RUST:
-                highlightRust(spannable);
-                break;
-            case PHP:
-                highlightPHP(spannable);
-                break;
-            case RUBY:
-                highlightRuby(spannable);
-                break;
-            case SWIFT:
-                highlightSwift(spannable);
-                break;
-            case DART:
-                highlightDart(spannable);
-                break;
-            case SQL:
-                highlightSQL(spannable);
-                break;
-            case SHELL:
-                highlightShell(spannable);
-                break;
-            case MARKDOWN:
-                highlightMarkdown(spannable);
-                break;
-            case YAML:
-                highlightYAML(spannable);
-                break;
-            case TOML:
-                highlightTOML(spannable);
-                break;
-            case LUA:
-                highlightLua(spannable);
-                break;
-            case PERL:
-                highlightPerl(spannable);
-                break;
-            case R:
-                highlightR(spannable);
-                break;
-            case SCALA:
-                highlightScala(spannable);
-                break;
-            default:
-                break;
+    /** Replaces the colour spans of lines {@code firstLine..lastLine} with ones drawn from {@code tokens}. */
+    public static void applySpans(Spannable spannable, TokenCache tokens, int firstLine, int lastLine) {
+        int regionStart = tokens.getLineStart(firstLine);
+        int regionEnd = tokens.getLineEnd(lastLine);
+        for (ForegroundColorSpan span : spannable.getSpans(regionStart, regionEnd, ForegroundColorSpan.class)) {
+            spannable.removeSpan(span);
         }
-    }
-    
-    private static void highlightJava(Spannable spannable) {
-        String[] keywords = {
-            "abstract", "assert", "boolean", "break", "byte", "case", "catch",
-            "char", "class", "const", "continue", "default", "do", "double",
-            "else", "enum", "extends", "final", "finally", "float", "for",
-            "goto", "if", "implements", "import", "instanceof", "int",
-            "interface", "long", "native", "new", "package", "private",
-            "protected", "public", "return", "short", "static", "strictfp",
-            "super", "switch", "synchronized", "this", "throw", "throws",
-            "transient", "try", "void", "volatile", "while", "true", "false", "null",
-            "var", "yield", "record", "sealed", "permits", "non-sealed"
-        };
-        
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?[fFdDlL]?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "0x[0-9a-fA-F]+[lL]?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "@\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
-    }
-    
-    private static void highlightKotlin(Spannable spannable) {
-        String[] keywords = {
-            "abstract", "actual", "annotation", "as", "break", "by", "catch",
-            "class", "companion", "const", "constructor", "continue", "crossinline",
-            "data", "delegate", "do", "dynamic", "else", "enum", "expect", "external",
-            "false", "final", "finally", "for", "fun", "get", "if", "import",
-            "in", "infix", "init", "inline", "inner", "interface", "internal",
-            "is", "it", "lateinit", "noinline", "null", "object", "open", "operator",
-            "out", "override", "package", "private", "protected", "public", "reified",
-            "return", "sealed", "set", "super", "suspend", "tailrec", "this",
-            "throw", "true", "try", "typealias", "typeof", "val", "var", "vararg",
-            "when", "where", "while"
-        };
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "\"\"\"[\\s\\S]*?\"\"\"", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?[fFdDlL]?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "@\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
-    }
-    
-    private static void highlightPython(Spannable spannable) {
-        String[] keywords = {
-            "and", "as", "assert", "async", "await", "break", "class",
-            "continue", "def", "del", "elif", "else", "except", "finally",
-            "for", "from", "global", "if", "import", "in", "is", "lambda",
-            "None", "nonlocal", "not", "or", "pass", "raise", "return",
-            "try", "while", "with", "yield", "True", "False", "match", "case",
-            "self", "cls", "super"
-        };
-        
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "\"\"\"[\\s\\S]*?\"\"\"", COLOR_STRING);
-        highlightPattern(spannable, "'''[\\s\\S]*?'''", COLOR_STRING);
-        highlightPattern(spannable, "f\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "r\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?[jJ]?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "@\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
-    }
-    
-    private static void highlightJavaScript(Spannable spannable) {
-        String[] keywords = {
-            "async", "await", "break", "case", "catch", "class", "const",
-            "continue", "debugger", "default", "delete", "do", "else",
-            "export", "extends", "finally", "for", "function", "if",
-            "import", "in", "instanceof", "let", "new", "return", "static",
-            "super", "switch", "this", "throw", "try", "typeof", "var",
-            "void", "while", "with", "yield", "true", "false", "null", "undefined",
-            "of", "as", "from", "get", "set", "implements", "interface",
-            "package", "private", "protected", "public", "type", "enum",
-            "readonly", "abstract", "declare", "namespace", "module"
-        };
+        Language language = tokens.getLanguage();
+        Rule[] rules = RULES.get(language);
+        Matcher[] matchers = null;
+        if (rules != null) {
+            matchers = new Matcher[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                matchers[i] = rules[i].pattern.matcher(spannable);
+            }
+        }
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "`(?:[^`\\\\]|\\\\.)*`", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "=>", COLOR_OPERATOR);
-    }
-    
-    private static void highlightHTML(Spannable spannable) {
-        highlightPattern(spannable, "<!--[\\s\\S]*?-->", COLOR_COMMENT);
-        highlightPattern(spannable, "</?\\w+", COLOR_TAG);
-        highlightPattern(spannable, "/?>", COLOR_TAG);
-        highlightPattern(spannable, "\\s\\w+(?==)", COLOR_ATTRIBUTE);
-        highlightPattern(spannable, "\"[^\"]*\"", COLOR_STRING);
-        highlightPattern(spannable, "'[^']*'", COLOR_STRING);
-        highlightPattern(spannable, "&\\w+;", COLOR_CONSTANT);
-    }
-    
-    private static void highlightCSS(Spannable spannable) {
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "[.#]?[\\w-]+(?=\\s*\\{)", COLOR_CLASS);
-        highlightPattern(spannable, "[\\w-]+(?=\\s*:)", COLOR_ATTRIBUTE);
-        highlightPattern(spannable, "\"[^\"]*\"", COLOR_STRING);
-        highlightPattern(spannable, "'[^']*'", COLOR_STRING);
-        highlightPattern(spannable, "#[0-9a-fA-F]{3,8}\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?(px|em|rem|%|vh|vw|vmin|vmax|ch|ex|cm|mm|in|pt|pc)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "@\\w+", COLOR_KEYWORD);
-        highlightPattern(spannable, "!important", COLOR_KEYWORD);
+        for (int line = firstLine; line <= lastLine; line++) {
+            int count = tokens.getTokenCount(line);
+            for (int i = 0; i < count; i++) {
+                int color = tokenColor(spannable, tokens, language, line, i);
+                if (color != 0) {
+                    setSpan(spannable, color, tokens.getTokenStart(line, i), tokens.getTokenEnd(line, i));
+                }
+            }
+            if (matchers != null) {
+                decorate(spannable, tokens, line, rules, matchers);
+            }
+        }
     }
     
-    private static void highlightJSON(Spannable spannable) {
-        highlightPattern(spannable, "\"[^\"]*\"(?=\\s*:)", COLOR_ATTRIBUTE);
-        highlightPattern(spannable, "\"[^\"]*\"", COLOR_STRING);
-        highlightPattern(spannable, "\\b(true|false|null)\\b", COLOR_KEYWORD);
-        highlightPattern(spannable, "-?\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
+    private static int tokenColor(Spannable spannable, TokenCache tokens, Language language, int line, int index) {
+        switch (tokens.getTokenType(line, index)) {
+            case TokenCache.KEYWORD:
+                return COLOR_KEYWORD;
+            case TokenCache.TYPE:
+                return COLOR_CLASS;
+            case TokenCache.NUMBER:
+                return COLOR_NUMBER;
+            case TokenCache.COMMENT:
+                return COLOR_COMMENT;
+            case TokenCache.VARIABLE:
+                return COLOR_VARIABLE;
+            case TokenCache.ANNOTATION:
+                return language == Language.CSS || language == Language.SCSS ? COLOR_KEYWORD : COLOR_ANNOTATION;
+            case TokenCache.STRING:
+                if (language == Language.MARKDOWN) {
+                    return COLOR_CONSTANT;
+                }
+                if (language == Language.JSON && index + 1 < tokens.getTokenCount(line)
+                        && spannable.charAt(tokens.getTokenStart(line, index + 1)) == ':') {
+                    return COLOR_ATTRIBUTE;
+                }
+                return COLOR_STRING;
+            default:
+                return 0;
+        }
     }
     
-    private static void highlightCpp(Spannable spannable) {
-        String[] keywords = {
-            "alignas", "alignof", "and", "and_eq", "asm", "auto", "bitand",
-            "bitor", "bool", "break", "case", "catch", "char", "char8_t",
-            "char16_t", "char32_t", "class", "compl", "concept", "const",
-            "consteval", "constexpr", "constinit", "const_cast", "continue",
-            "co_await", "co_return", "co_yield", "decltype", "default", "delete",
-            "do", "double", "dynamic_cast", "else", "enum", "explicit", "export",
-            "extern", "false", "float", "for", "friend", "goto", "if", "inline",
-            "int", "long", "mutable", "namespace", "new", "noexcept", "not",
-            "not_eq", "nullptr", "operator", "or", "or_eq", "private", "protected",
-            "public", "register", "reinterpret_cast", "requires", "return",
-            "short", "signed", "sizeof", "static", "static_assert", "static_cast",
-            "struct", "switch", "template", "this", "thread_local", "throw",
-            "true", "try", "typedef", "typeid", "typename", "union", "unsigned",
-            "using", "virtual", "void", "volatile", "wchar_t", "while", "xor", "xor_eq",
-            "#include", "#define", "#ifdef", "#ifndef", "#endif", "#pragma", "#if", "#else", "#elif"
-        };
-        
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "<[^>]+>(?=\\s*$)", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?[fFuUlL]*\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "0x[0-9a-fA-F]+[uUlL]*\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "\\b[A-Z][A-Z0-9_]*\\b", COLOR_CONSTANT);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
+    private static void decorate(Spannable spannable, TokenCache tokens, int line, Rule[] rules, Matcher[] matchers) {
+        int lineStart = tokens.getLineStart(line);
+        int lineEnd = tokens.getLineEnd(line);
+        if (lineEnd <= lineStart) {
+            return;
+        }
+        for (int i = 0; i < rules.length; i++) {
+            Matcher matcher = matchers[i];
+            matcher.region(lineStart, lineEnd);
+            while (matcher.find()) {
+                if (matcher.end() == matcher.start()) {
+                    continue;
+                }
+                int index = tokens.findToken(line, matcher.start());
+                int type = index >= 0 ? tokens.getTokenType(line, index) : TokenCache.TEXT;
+                if (type != TokenCache.STRING && type != TokenCache.COMMENT) {
+                    setSpan(spannable, rules[i].color(), matcher.start(), matcher.end());
+                }
+            }
+        }
     }
     
-    private static void highlightCSharp(Spannable spannable) {
-        String[] keywords = {
-            "abstract", "as", "base", "bool", "break", "byte", "case", "catch",
-            "char", "checked", "class", "const", "continue", "decimal", "default",
-            "delegate", "do", "double", "else", "enum", "event", "explicit",
-            "extern", "false", "finally", "fixed", "float", "for", "foreach",
-            "goto", "if", "implicit", "in", "int", "interface", "internal", "is",
-            "lock", "long", "namespace", "new", "null", "object", "operator",
-            "out", "override", "params", "private", "protected", "public",
-            "readonly", "ref", "return", "sbyte", "sealed", "short", "sizeof",
-            "stackalloc", "static", "string", "struct", "switch", "this", "throw",
-            "true", "try", "typeof", "uint", "ulong", "unchecked", "unsafe",
-            "ushort", "using", "var", "virtual", "void", "volatile", "while",
-            "async", "await", "dynamic", "nameof", "record", "init", "required"
-        };
-        
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "@\"(?:[^\"]|\"\")*\"", COLOR_STRING);
-        highlightPattern(spannable, "\\$\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?[fFdDmMuUlL]*\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "\\[\\w+\\]", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
+    private static void setSpan(Spannable spannable, int color, int start, int end) {
+        spannable.setSpan(new ForegroundColorSpan(color), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
     }
     
-    private static void highlightGo(Spannable spannable) {
-        String[] keywords = {
-            "break", "case", "chan", "const", "continue", "default", "defer",
-            "else", "fallthrough", "for", "func", "go", "goto", "if", "import",
-            "interface", "map", "package", "range", "return", "select", "struct",
-            "switch", "type", "var", "true", "false", "nil", "iota",
-            "bool", "byte", "complex64", "complex128", "error", "float32", "float64",
-            "int", "int8", "int16", "int32", "int64", "rune", "string",
-            "uint", "uint8", "uint16", "uint32", "uint64", "uintptr", "any"
-        };
-        
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "`[^`]*`", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?i?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "0x[0-9a-fA-F]+\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
+    private enum Role {
+        KEYWORD, STRING, NUMBER, COMMENT, CLASS, ANNOTATION, TAG, ATTRIBUTE, OPERATOR, VARIABLE, CONSTANT,
+        HEADING, LINK, BOLD
     }
     
-    private static void highlightRust(Spannable spannable) {
-        String[] keywords = {
-            "as", "async", "await", "break", "const", "continue", "crate", "dyn",
-            "else", "enum", "extern", "false", "fn", "for", "if", "impl", "in",
-            "let", "loop", "match", "mod", "move", "mut", "pub", "ref", "return",
-            "self", "Self", "static", "struct", "super", "trait", "true", "type",
-            "unsafe", "use", "where", "while", "abstract", "become", "box", "do",
-            "final", "macro", "override", "priv", "try", "typeof", "unsized",
-            "virtual", "yield",
-            "bool", "char", "str", "u8", "u16", "u32", "u64", "u128", "usize",
-            "i8", "i16", "i32", "i64", "i128", "isize", "f32", "f64",
-            "Option", "Result", "Some", "None", "Ok", "Err", "Vec", "String", "Box"
-        };
+    /** A line-local pattern for markup the lexer leaves as plain text; skipped inside strings and comments. */
+    private static class Rule {
+        final Pattern pattern;
+        final Role role;
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "r#*\"[\\s\\S]*?\"#*", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'[^']*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?(_?\\w+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "0x[0-9a-fA-F_]+\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "#\\[\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "#!\\[\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
-        highlightPattern(spannable, "'\\w+", COLOR_CONSTANT);
-    }
-    
-    private static void highlightPHP(Spannable spannable) {
-        String[] keywords = {
-            "abstract", "and", "array", "as", "break", "callable", "case", "catch",
-            "class", "clone", "const", "continue", "declare", "default", "die", "do",
-            "echo", "else", "elseif", "empty", "enddeclare", "endfor", "endforeach",
-            "endif", "endswitch", "endwhile", "eval", "exit", "extends", "final",
-            "finally", "fn", "for", "foreach", "function", "global", "goto", "if",
-            "implements", "include", "include_once", "instanceof", "insteadof",
-            "interface", "isset", "list", "match", "namespace", "new", "or", "print",
-            "private", "protected", "public", "readonly", "require", "require_once",
-            "return", "static", "switch", "throw", "trait", "try", "unset", "use",
-            "var", "while", "xor", "yield", "true", "false", "null",
-            "int", "float", "bool", "string", "void", "mixed", "never", "object"
-        };
+        Rule(String regex, Role role) {
+            this.pattern = Pattern.compile(regex);
+            this.role = role;
+        }
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "<<<['\"]?\\w+['\"]?[\\s\\S]*?^\\w+;", COLOR_STRING);
-        highlightPattern(spannable, "\\$\\w+", COLOR_VARIABLE);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
+        int color() {
+            switch (role) {
+                case KEYWORD: return COLOR_KEYWORD;
+                case STRING: return COLOR_STRING;
+                case NUMBER: return COLOR_NUMBER;
+                case COMMENT: return COLOR_COMMENT;
+                case CLASS: return COLOR_CLASS;
+                case ANNOTATION: return COLOR_ANNOTATION;
+                case TAG: return COLOR_TAG;
+                case ATTRIBUTE: return COLOR_ATTRIBUTE;
+                case OPERATOR: return COLOR_OPERATOR;
+                case VARIABLE: return COLOR_VARIABLE;
+                case CONSTANT: return COLOR_CONSTANT;
+                case HEADING: return COLOR_HEADING;
+                case LINK: return COLOR_LINK;
+                default: return COLOR_BOLD;
+            }
+        }
     }
     
-    private static void highlightRuby(Spannable spannable) {
-        String[] keywords = {
-            "alias", "and", "begin", "break", "case", "class", "def", "defined?",
-            "do", "else", "elsif", "end", "ensure", "false", "for", "if", "in",
-            "module", "next", "nil", "not", "or", "redo", "rescue", "retry",
-            "return", "self", "super", "then", "true", "undef", "unless", "until",
-            "when", "while", "yield", "require", "require_relative", "include",
-            "extend", "attr_reader", "attr_writer", "attr_accessor", "private",
-            "protected", "public", "raise", "lambda", "proc"
-        };
-        
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "=begin[\\s\\S]*?=end", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "%[qQwWiIxsr]?[\\{\\[\\(<][\\s\\S]*?[\\}\\]\\)>]", COLOR_STRING);
-        highlightPattern(spannable, ":[a-zA-Z_]\\w*", COLOR_CONSTANT);
-        highlightPattern(spannable, "@{1,2}\\w+", COLOR_VARIABLE);
-        highlightPattern(spannable, "\\$\\w+", COLOR_VARIABLE);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
-    }
+    private static final Map<Language, Rule[]> RULES = new EnumMap<>(Language.class);
     
-    private static void highlightSwift(Spannable spannable) {
-        String[] keywords = {
-            "actor", "any", "as", "associatedtype", "async", "await", "break",
-            "case", "catch", "class", "continue", "default", "defer", "deinit",
-            "do", "else", "enum", "extension", "fallthrough", "false", "fileprivate",
-            "for", "func", "guard", "if", "import", "in", "indirect", "infix",
-            "init", "inout", "internal", "is", "isolated", "lazy", "let", "mutating",
-            "nil", "nonisolated", "nonmutating", "open", "operator", "optional",
-            "override", "postfix", "precedencegroup", "prefix", "private", "protocol",
-            "public", "repeat", "required", "rethrows", "return", "self", "Self",
-            "set", "some", "static", "struct", "subscript", "super", "switch",
-            "throw", "throws", "true", "try", "typealias", "unowned", "var",
-            "weak", "where", "while",
-            "Int", "Double", "Float", "Bool", "String", "Array", "Dictionary",
-            "Set", "Optional", "Any", "AnyObject", "Void"
-        };
-        
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "\"\"\"[\\s\\S]*?\"\"\"", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "0x[0-9a-fA-F]+\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "@\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "#\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
+    private static void rules(Language language, Rule... rules) {
+        RULES.put(language, rules);
     }
     
-    private static void highlightDart(Spannable spannable) {
-        String[] keywords = {
-            "abstract", "as", "assert", "async", "await", "base", "break", "case",
-            "catch", "class", "const", "continue", "covariant", "default", "deferred",
-            "do", "dynamic", "else", "enum", "export", "extends", "extension",
-            "external", "factory", "false", "final", "finally", "for", "Function",
-            "get", "hide", "if", "implements", "import", "in", "interface", "is",
-            "late", "library", "mixin", "new", "null", "on", "operator", "part",
-            "required", "rethrow", "return", "sealed", "set", "show", "static",
-            "super", "switch", "sync", "this", "throw", "true", "try", "typedef",
-            "var", "void", "when", "while", "with", "yield",
-            "int", "double", "num", "bool", "String", "List", "Map", "Set",
-            "Future", "Stream", "Iterable", "Object", "Never", "dynamic"
-        };
+    static {
+        Rule[] javaScript = { new Rule("=>", Role.OPERATOR) };
+        rules(Language.JAVASCRIPT, javaScript);
+        rules(Language.TYPESCRIPT, javaScript);
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "///.*", COLOR_COMMENT);
-        highlightPattern(spannable, "r\"[^\"]*\"", COLOR_STRING);
-        highlightPattern(spannable, "r'[^']*'", COLOR_STRING);
-        highlightPattern(spannable, "\"\"\"[\\s\\S]*?\"\"\"", COLOR_STRING);
-        highlightPattern(spannable, "'''[\\s\\S]*?'''", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "@\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
-    }
-    
-    private static void highlightSQL(Spannable spannable) {
-        String[] keywords = {
-            "SELECT", "FROM", "WHERE", "INSERT", "INTO", "VALUES", "UPDATE", "SET",
-            "DELETE", "CREATE", "DROP", "ALTER", "TABLE", "DATABASE", "INDEX",
-            "VIEW", "TRIGGER", "PROCEDURE", "FUNCTION", "JOIN", "INNER", "LEFT",
-            "RIGHT", "OUTER", "FULL", "CROSS", "ON", "AND", "OR", "NOT", "IN",
-            "BETWEEN", "LIKE", "IS", "NULL", "AS", "ORDER", "BY", "ASC", "DESC",
-            "GROUP", "HAVING", "LIMIT", "OFFSET", "UNION", "ALL", "DISTINCT",
-            "EXISTS", "CASE", "WHEN", "THEN", "ELSE", "END", "IF", "BEGIN",
-            "COMMIT", "ROLLBACK", "TRANSACTION", "PRIMARY", "KEY", "FOREIGN",
-            "REFERENCES", "UNIQUE", "CHECK", "DEFAULT", "CONSTRAINT", "CASCADE",
-            "RESTRICT", "NO", "ACTION", "GRANT", "REVOKE", "TO", "WITH",
-            "INTEGER", "VARCHAR", "TEXT", "BOOLEAN", "DATE", "TIMESTAMP", "FLOAT",
-            "DECIMAL", "BLOB", "SERIAL", "BIGINT", "SMALLINT", "CHAR", "DOUBLE",
-            "select", "from", "where", "insert", "into", "values", "update", "set",
-            "delete", "create", "drop", "alter", "table", "database", "index",
-            "view", "trigger", "procedure", "function", "join", "inner", "left",
-            "right", "outer", "full", "cross", "on", "and", "or", "not", "in",
-            "between", "like", "is", "null", "as", "order", "by", "asc", "desc",
-            "group", "having", "limit", "offset", "union", "all", "distinct",
-            "exists", "case", "when", "then", "else", "end", "if", "begin",
-            "commit", "rollback", "transaction", "primary", "key", "foreign",
-            "references", "unique", "check", "default", "constraint", "cascade"
+        Rule[] markup = {
+            new Rule("</?\\w+", Role.TAG),
+            new Rule("/?>", Role.TAG),
+            new Rule("\\s\\w+(?==)", Role.ATTRIBUTE),
+            new Rule("&\\w+;", Role.CONSTANT)
         };
+        rules(Language.HTML, markup);
+        rules(Language.XML, markup);
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "--.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?\\b", COLOR_NUMBER);
-    }
-    
-    private static void highlightShell(Spannable spannable) {
-        String[] keywords = {
-            "if", "then", "else", "elif", "fi", "for", "while", "do", "done",
-            "case", "esac", "in", "function", "select", "until", "return",
-            "break", "continue", "local", "declare", "typeset", "readonly",
-            "export", "unset", "shift", "eval", "exec", "exit", "trap", "source",
-            "alias", "unalias", "set", "true", "false", "test", "echo", "printf",
-            "read", "cd", "pwd", "pushd", "popd", "dirs", "let", "expr"
+        Rule[] css = {
+            new Rule("[.#]?[\\w-]+(?=\\s*\\{)", Role.CLASS),
+            new Rule("[\\w-]+(?=\\s*:)", Role.ATTRIBUTE),
+            new Rule("#[0-9a-fA-F]{3,8}\\b", Role.NUMBER),
+            new Rule("\\b\\d+(\\.\\d+)?(px|em|rem|%|vh|vw|vmin|vmax|ch|ex|cm|mm|in|pt|pc)?\\b", Role.NUMBER),
+            new Rule("!important", Role.KEYWORD)
         };
+        rules(Language.CSS, css);
+        rules(Language.SCSS, css);
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'[^']*'", COLOR_STRING);
-        highlightPattern(spannable, "\\$\\{?\\w+\\}?", COLOR_VARIABLE);
-        highlightPattern(spannable, "\\$\\([^)]+\\)", COLOR_VARIABLE);
-        highlightPattern(spannable, "\\b\\d+\\b", COLOR_NUMBER);
-    }
-    
-    private static void highlightMarkdown(Spannable spannable) {
-        highlightPattern(spannable, "^#{1,6}\\s.*$", COLOR_HEADING);
-        highlightPattern(spannable, "\\*\\*[^*]+\\*\\*", COLOR_BOLD);
-        highlightPattern(spannable, "__[^_]+__", COLOR_BOLD);
-        highlightPattern(spannable, "\\*[^*]+\\*", COLOR_STRING);
-        highlightPattern(spannable, "_[^_]+_", COLOR_STRING);
-        highlightPattern(spannable, "`[^`]+`", COLOR_CONSTANT);
-        highlightPattern(spannable, "```[\\s\\S]*?```", COLOR_CONSTANT);
-        highlightPattern(spannable, "\\[[^\\]]+\\]\\([^)]+\\)", COLOR_LINK);
-        highlightPattern(spannable, "^>\\s.*$", COLOR_COMMENT);
-        highlightPattern(spannable, "^[-*+]\\s", COLOR_KEYWORD);
-        highlightPattern(spannable, "^\\d+\\.\\s", COLOR_KEYWORD);
-    }
-    
-    private static void highlightYAML(Spannable spannable) {
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "^\\s*[\\w-]+(?=:)", COLOR_ATTRIBUTE);
-        highlightPattern(spannable, ":\\s*[|>]", COLOR_OPERATOR);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b(true|false|yes|no|on|off|null|~)\\b", COLOR_KEYWORD);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "^---$", COLOR_OPERATOR);
-        highlightPattern(spannable, "^\\.\\.\\.$", COLOR_OPERATOR);
-        highlightPattern(spannable, "&\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\*\\w+", COLOR_ANNOTATION);
-    }
-    
-    private static void highlightTOML(Spannable spannable) {
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "^\\s*\\[\\[?[^\\]]+\\]\\]?", COLOR_CLASS);
-        highlightPattern(spannable, "^\\s*[\\w.-]+(?=\\s*=)", COLOR_ATTRIBUTE);
-        highlightPattern(spannable, "\"\"\"[\\s\\S]*?\"\"\"", COLOR_STRING);
-        highlightPattern(spannable, "'''[\\s\\S]*?'''", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'[^']*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b(true|false)\\b", COLOR_KEYWORD);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "\\d{4}-\\d{2}-\\d{2}(T\\d{2}:\\d{2}:\\d{2})?", COLOR_CONSTANT);
-    }
-    
-    private static void highlightLua(Spannable spannable) {
-        String[] keywords = {
-            "and", "break", "do", "else", "elseif", "end", "false", "for",
-            "function", "goto", "if", "in", "local", "nil", "not", "or",
-            "repeat", "return", "then", "true", "until", "while"
-        };
+        Rule[] include = { new Rule("<[^>]+>(?=\\s*$)", Role.STRING) };
+        rules(Language.C, include);
+        rules(Language.CPP, include);
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "--\\[\\[[\\s\\S]*?\\]\\]", COLOR_COMMENT);
-        highlightPattern(spannable, "--.*", COLOR_COMMENT);
-        highlightPattern(spannable, "\\[\\[[\\s\\S]*?\\]\\]", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "0x[0-9a-fA-F]+\\b", COLOR_NUMBER);
-    }
-    
-    private static void highlightPerl(Spannable spannable) {
-        String[] keywords = {
-            "if", "elsif", "else", "unless", "while", "until", "for", "foreach",
-            "do", "sub", "my", "our", "local", "use", "no", "require", "package",
-            "return", "last", "next", "redo", "goto", "die", "warn", "print",
-            "say", "open", "close", "read", "write", "chomp", "chop", "split",
-            "join", "push", "pop", "shift", "unshift", "grep", "map", "sort",
-            "keys", "values", "each", "exists", "delete", "defined", "undef",
-            "bless", "ref", "tie", "untie", "BEGIN", "END", "CHECK", "INIT"
-        };
+        rules(Language.PYTHON, new Rule("\\b[fFrRbBuU]{1,2}(?=[\"'])", Role.STRING));
+        rules(Language.CSHARP,
+            new Rule("[@$]\"(?:[^\"\\\\]|\\\\.)*\"", Role.STRING),
+            new Rule("\\[\\w+\\]", Role.ANNOTATION));
+        rules(Language.RUST,
+            new Rule("#!?\\[\\w+", Role.ANNOTATION),
+            new Rule("'\\w+", Role.CONSTANT));
+        rules(Language.RUBY,
+            new Rule("%[qQwWiIxsr]?[\\{\\[\\(<][^\\}\\]\\)>]*[\\}\\]\\)>]", Role.STRING),
+            new Rule(":[a-zA-Z_]\\w*", Role.CONSTANT));
+        rules(Language.SWIFT, new Rule("#\\w+", Role.ANNOTATION));
+        rules(Language.DART, new Rule("\\br(?=[\"'])", Role.STRING));
+        rules(Language.SCALA, new Rule("\\b[sf](?=\")", Role.STRING));
+        rules(Language.SHELL, new Rule("\\$\\([^)]+\\)", Role.VARIABLE));
+        rules(Language.R, new Rule("<<-|->>|<-|->", Role.OPERATOR));
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "=\\w+[\\s\\S]*?=cut", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\$\\w+", COLOR_VARIABLE);
-        highlightPattern(spannable, "@\\w+", COLOR_VARIABLE);
-        highlightPattern(spannable, "%\\w+", COLOR_VARIABLE);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?\\b", COLOR_NUMBER);
-    }
-    
-    private static void highlightR(Spannable spannable) {
-        String[] keywords = {
-            "if", "else", "repeat", "while", "function", "for", "in", "next",
-            "break", "TRUE", "FALSE", "NULL", "Inf", "NaN", "NA", "NA_integer_",
-            "NA_real_", "NA_complex_", "NA_character_", "library", "require",
-            "source", "return", "invisible", "stop", "warning", "message"
-        };
+        rules(Language.MARKDOWN,
+            new Rule("^#{1,6}\\s.*$", Role.HEADING),
+            new Rule("\\*\\*[^*]+\\*\\*", Role.BOLD),
+            new Rule("__[^_]+__", Role.BOLD),
+            new Rule("\\*[^*]+\\*", Role.STRING),
+            new Rule("_[^_]+_", Role.STRING),
+            new Rule("\\[[^\\]]+\\]\\([^)]+\\)", Role.LINK),
+            new Rule("^>\\s.*$", Role.COMMENT),
+            new Rule("^[-*+]\\s", Role.KEYWORD),
+            new Rule("^\\d+\\.\\s", Role.KEYWORD));
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "#.*", COLOR_COMMENT);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?[iL]?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "<-|->|<<-|->>", COLOR_OPERATOR);
-    }
-    
-    private static void highlightScala(Spannable spannable) {
-        String[] keywords = {
-            "abstract", "case", "catch", "class", "def", "do", "else", "extends",
-            "false", "final", "finally", "for", "forSome", "if", "implicit",
-            "import", "lazy", "match", "new", "null", "object", "override",
-            "package", "private", "protected", "return", "sealed", "super",
-            "this", "throw", "trait", "true", "try", "type", "val", "var",
-            "while", "with", "yield", "given", "using", "enum", "export",
-            "then", "derives", "end", "extension", "infix", "inline", "opaque",
-            "open", "transparent"
-        };
+        rules(Language.YAML,
+            new Rule("^\\s*[\\w-]+(?=:)", Role.ATTRIBUTE),
+            new Rule(":\\s*[|>]", Role.OPERATOR),
+            new Rule("^---$", Role.OPERATOR),
+            new Rule("^\\.\\.\\.$", Role.OPERATOR),
+            new Rule("&\\w+", Role.ANNOTATION),
+            new Rule("\\*\\w+", Role.ANNOTATION));
         
-        highlightKeywords(spannable, keywords, COLOR_KEYWORD);
-        highlightPattern(spannable, "//.*", COLOR_COMMENT);
-        highlightPattern(spannable, "/\\*[\\s\\S]*?\\*/", COLOR_COMMENT);
-        highlightPattern(spannable, "\"\"\"[\\s\\S]*?\"\"\"", COLOR_STRING);
-        highlightPattern(spannable, "s\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "f\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "\"(?:[^\"\\\\]|\\\\.)*\"", COLOR_STRING);
-        highlightPattern(spannable, "'(?:[^'\\\\]|\\\\.)*'", COLOR_STRING);
-        highlightPattern(spannable, "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?[fFdDlL]?\\b", COLOR_NUMBER);
-        highlightPattern(spannable, "@\\w+", COLOR_ANNOTATION);
-        highlightPattern(spannable, "\\b[A-Z][a-zA-Z0-9_]*\\b", COLOR_CLASS);
-    }
-    
-    private static void highlightKeywords(Spannable spannable, String[] keywords, int color) {
-        String text = spannable.toString();
-        for (String keyword : keywords) {
-            Pattern pattern = Pattern.compile("\\b" + Pattern.quote(keyword) + "\\b");
-            Matcher matcher = pattern.matcher(text);
-            while (matcher.find()) {
-                spannable.setSpan(
-                    new ForegroundColorSpan(color),
-                    matcher.start(),
-                    matcher.end(),
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-                );
-            }
-        }
-    }
-    
-    private static void highlightPattern(Spannable spannable, String regex, int color) {
-        try {
-            Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-            Matcher matcher = pattern.matcher(spannable.toString());
-            while (matcher.find()) {
-                spannable.setSpan(
-                    new ForegroundColorSpan(color),
-                    matcher.start(),
-                    matcher.end(),
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-                );
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        rules(Language.TOML,
+            new Rule("^\\s*\\[\\[?[^\\]]+\\]\\]?", Role.CLASS),
+            new Rule("^\\s*[\\w.-]+(?=\\s*=)", Role.ATTRIBUTE),
+            new Rule("\\d{4}-\\d{2}-\\d{2}(T\\d{2}:\\d{2}:\\d{2})?", Role.CONSTANT));
     }
     
     public static String getLanguageDisplayName(Language language) {
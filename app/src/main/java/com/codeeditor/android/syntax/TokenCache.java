@@ -0,0 +1,539 @@
+package com.codeeditor.android.syntax;
+
+import com.codeeditor.android.utils.LineIndex;
+
+import java.util.Arrays;
+
+/**
+ * Tokens of one document, a packed array per line plus the lexer state at each line end. An edit
+ * re-lexes the touched lines and keeps going only while end states differ, so every keystroke is lexed
+ * once and highlighting, bracket matching, indentation and completion all read the same tokens.
+ * Shares the owner's {@link LineIndex}, which must already reflect the edit. Main thread only.
+ */
+public class TokenCache {
+    
+    public static final int TEXT = 0;
+    public static final int KEYWORD = 1;
+    public static final int IDENTIFIER = 2;
+    public static final int TYPE = 3;
+    public static final int NUMBER = 4;
+    public static final int STRING = 5;
+    public static final int COMMENT = 6;
+    public static final int ANNOTATION = 7;
+    public static final int VARIABLE = 8;
+    public static final int OPERATOR = 9;
+    public static final int BRACKET = 10;
+    
+    // set on a string or comment that is still open where its token ends
+    private static final int OPEN = 0x80;
+    private static final int TYPE_MASK = 0x7F;
+    private static final int STATE_CODE = 0;
+    private static final int STATE_COMMENT = 1;
+    private static final int STATE_STRING = 2;
+    private static final int[] NO_TOKENS = new int[0];
+    
+    private final LineIndex lines;
+    private LanguageSpec spec;
+    private int[][] lineTokens = {NO_TOKENS};
+    private int[] endStates = new int[1];
+    private int lineCount = 1;
+    private int length;
+    private int version;
+    private int damageStart = Integer.MAX_VALUE;
+    private int damageEnd = -1;
+    private int editFirst;
+    private int editEnd;
+    private int editReplaced;
+    private int[] buffer = new int[64];
+    private int bufferSize;
+    
+    /** Lines re-lexed by one update, copied for consumers on other threads. */
+    public static class Block {
+        public final int firstLine;
+        // lines of the previous version this block replaces, or -1 when it is the whole document
+        public final int replacedLines;
+        public final String text;
+        public final int[] lineStarts;
+        public final int[][] tokens;
+        
+        Block(int firstLine, int replacedLines, String text, int[] lineStarts, int[][] tokens) {
+            this.firstLine = firstLine;
+            this.replacedLines = replacedLines;
+            this.text = text;
+            this.lineStarts = lineStarts;
+            this.tokens = tokens;
+        }
+        
+        public int getLineCount() {
+            return tokens.length;
+        }
+        
+        public int getTokenCount(int line) {
+            return tokens[line].length / 2;
+        }
+        
+        public int getTokenStart(int line, int index) {
+            return lineStarts[line] + tokens[line][index * 2];
+        }
+        
+        public int getTokenEnd(int line, int index) {
+            return lineStarts[line] + (tokens[line][index * 2 + 1] >>> 8);
+        }
+        
+        public int getTokenType(int line, int index) {
+            return tokens[line][index * 2 + 1] & TYPE_MASK;
+        }
+    }
+    
+    public TokenCache(LineIndex lines, SyntaxHighlighter.Language language) {
+        this.lines = lines;
+        this.spec = LanguageSpec.forLanguage(language);
+    }
+    
+    public LanguageSpec getSpec() {
+        return spec;
+    }
+    
+    public SyntaxHighlighter.Language getLanguage() {
+        return spec.language;
+    }
+    
+    public int getVersion() {
+        return version;
+    }
+    
+    public void setLanguage(CharSequence text, SyntaxHighlighter.Language language) {
+        spec = LanguageSpec.forLanguage(language);
+        rebuild(text);
+    }
+    
+    public void rebuild(CharSequence text) {
+        lineCount = lines.getLineCount();
+        length = text.length();
+        lineTokens = new int[Math.max(16, lineCount)][];
+        endStates = new int[lineTokens.length];
+        int state = STATE_CODE;
+        for (int line = 0; line < lineCount; line++) {
+            state = relex(text, line, state);
+        }
+        editFirst = 0;
+        editEnd = lineCount;
+        editReplaced = -1;
+        markAllDamaged();
+        version++;
+    }
+    
+    public void applyEdit(CharSequence text, int start, int removed, int inserted) {
+        int newCount = lines.getLineCount();
+        int first = lines.getLineForOffset(start);
+        int newLast = lines.getLineForOffset(start + inserted);
+        int oldLast = newLast - (newCount - lineCount);
+        int shift = newLast - oldLast;
+        int oldEndState = endStates[oldLast];
+        
+        if (newCount > lineTokens.length) {
+            int capacity = Math.max(newCount, lineTokens.length * 2);
+            lineTokens = Arrays.copyOf(lineTokens, capacity);
+            endStates = Arrays.copyOf(endStates, capacity);
+        }
+        System.arraycopy(lineTokens, oldLast + 1, lineTokens, newLast + 1, lineCount - oldLast - 1);
+        System.arraycopy(endStates, oldLast + 1, endStates, newLast + 1, lineCount - oldLast - 1);
+        for (int line = newCount; line < lineCount; line++) {
+            lineTokens[line] = null;
+        }
+        endStates[newLast] = oldEndState;
+        lineCount = newCount;
+        length = text.length();
+        
+        int state = first > 0 ? endStates[first - 1] : STATE_CODE;
+        int line = first;
+        while (line < lineCount) {
+            int previous = endStates[line];
+            state = relex(text, line, state);
+            line++;
+            if (line > newLast && state == previous) {
+                break;
+            }
+        }
+        
+        editFirst = first;
+        editEnd = line;
+        editReplaced = line - first - shift;
+        if (damageEnd > oldLast) {
+            damageEnd += shift;
+        }
+        damageStart = Math.min(damageStart, first);
+        damageEnd = Math.min(Math.max(damageEnd, line - 1), lineCount - 1);
+        version++;
+    }
+    
+    public boolean hasDamage() {
+        return damageEnd >= damageStart;
+    }
+    
+    public int getDamageStart() {
+        return damageStart;
+    }
+    
+    public int getDamageEnd() {
+        return damageEnd;
+    }
+    
+    public void markAllDamaged() {
+        damageStart = 0;
+        damageEnd = lineCount - 1;
+    }
+    
+    public void clearDamage() {
+        damageStart = Integer.MAX_VALUE;
+        damageEnd = -1;
+    }
+    
+    public int getLineCount() {
+        return lineCount;
+    }
+    
+    public int getLineForOffset(int offset) {
+        return lines.getLineForOffset(offset);
+    }
+    
+    public int getLineStart(int line) {
+        return lines.getLineStart(line);
+    }
+    
+    public int getLineEnd(int line) {
+        return lines.getLineEnd(line, length);
+    }
+    
+    public int getTokenCount(int line) {
+        return lineTokens[line].length / 2;
+    }
+    
+    public int getTokenStart(int line, int index) {
+        return lines.getLineStart(line) + lineTokens[line][index * 2];
+    }
+    
+    public int getTokenEnd(int line, int index) {
+        return lines.getLineStart(line) + (lineTokens[line][index * 2 + 1] >>> 8);
+    }
+    
+    public int getTokenType(int line, int index) {
+        return lineTokens[line][index * 2 + 1] & TYPE_MASK;
+    }
+    
+    public boolean isTokenOpen(int line, int index) {
+        return (lineTokens[line][index * 2 + 1] & OPEN) != 0;
+    }
+    
+    /** Index of the token on {@code line} covering {@code offset}, or -1 when it falls between tokens. */
+    public int findToken(int line, int offset) {
+        int[] tokens = lineTokens[line];
+        int column = offset - lines.getLineStart(line);
+        int low = 0;
+        int high = tokens.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (tokens[middle * 2] > column) {
+                high = middle - 1;
+            } else if ((tokens[middle * 2 + 1] >>> 8) <= column) {
+                low = middle + 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+    
+    public int getTypeAt(int offset) {
+        if (offset < 0 || offset >= length) {
+            return TEXT;
+        }
+        int line = lines.getLineForOffset(offset);
+        int index = findToken(line, offset);
+        return index >= 0 ? getTokenType(line, index) : TEXT;
+    }
+    
+    /** Whether text typed at {@code offset} would land inside a string or comment. */
+    public boolean isInsideLiteral(int offset) {
+        if (offset <= 0 || offset > length) {
+            return false;
+        }
+        int line = lines.getLineForOffset(offset);
+        int index = findToken(line, offset - 1);
+        if (index < 0) {
+            return false;
+        }
+        int type = getTokenType(line, index);
+        if (type != STRING && type != COMMENT) {
+            return false;
+        }
+        return offset < getTokenEnd(line, index) || isTokenOpen(line, index);
+    }
+    
+    public Block snapshot(CharSequence text) {
+        return block(text, 0, lineCount, -1);
+    }
+    
+    public Block getLastEdit(CharSequence text) {
+        return block(text, editFirst, editEnd, editReplaced);
+    }
+    
+    private Block block(CharSequence text, int first, int end, int replaced) {
+        int regionStart = lines.getLineStart(first);
+        int regionEnd = lines.getLineEnd(end - 1, text.length());
+        int[] starts = new int[end - first];
+        for (int line = first; line < end; line++) {
+            starts[line - first] = lines.getLineStart(line) - regionStart;
+        }
+        return new Block(first, replaced, text.subSequence(regionStart, regionEnd).toString(), starts,
+            Arrays.copyOfRange(lineTokens, first, end));
+    }
+    
+    private int relex(CharSequence text, int line, int state) {
+        int start = lines.getLineStart(line);
+        bufferSize = 0;
+        state = lex(text, start, lines.getLineEnd(line, text.length()), state);
+        lineTokens[line] = bufferSize == 0 ? NO_TOKENS : Arrays.copyOf(buffer, bufferSize);
+        endStates[line] = state;
+        return state;
+    }
+    
+    private int lex(CharSequence text, int start, int end, int state) {
+        int position = start;
+        if (state == STATE_COMMENT) {
+            int close = spec.blockCommentAtLineStart ? -1 : indexOf(text, spec.blockCommentEnd, position, end);
+            if (spec.blockCommentAtLineStart && LanguageSpec.regionMatches(text, start, spec.blockCommentEnd)) {
+                close = start;
+            }
+            if (close < 0) {
+                emit(start, start, end, COMMENT | OPEN);
+                return STATE_COMMENT;
+            }
+            position = close + spec.blockCommentEnd.length();
+            emit(start, start, position, COMMENT);
+        } else if (state >= STATE_STRING) {
+            String delimiter = spec.stringCloses[state - STATE_STRING];
+            int close = findClose(text, delimiter, position, end);
+            if (close < 0) {
+                emit(start, start, end, STRING | OPEN);
+                return state;
+            }
+            position = close + delimiter.length();
+            emit(start, start, position, STRING);
+        }
+        
+        while (position < end) {
+            char c = text.charAt(position);
+            if (c == ' ' || c == '\t' || c == '\r') {
+                position++;
+                continue;
+            }
+            
+            if (spec.blockCommentStart != null && (!spec.blockCommentAtLineStart || position == start)
+                    && LanguageSpec.regionMatches(text, position, spec.blockCommentStart)) {
+                int close = spec.blockCommentAtLineStart ? -1
+                    : indexOf(text, spec.blockCommentEnd, position + spec.blockCommentStart.length(), end);
+                if (close < 0) {
+                    emit(start, position, end, COMMENT | OPEN);
+                    return STATE_COMMENT;
+                }
+                emit(start, position, close + spec.blockCommentEnd.length(), COMMENT);
+                position = close + spec.blockCommentEnd.length();
+                continue;
+            }
+            if (startsLineComment(text, position)) {
+                emit(start, position, end, COMMENT | OPEN);
+                return STATE_CODE;
+            }
+            
+            int string = multilineStringAt(text, position);
+            if (string >= 0) {
+                String delimiter = spec.stringCloses[string];
+                int close = findClose(text, delimiter, position + spec.stringOpens[string].length(), end);
+                if (close < 0) {
+                    emit(start, position, end, STRING | OPEN);
+                    return STATE_STRING + string;
+                }
+                emit(start, position, close + delimiter.length(), STRING);
+                position = close + delimiter.length();
+                continue;
+            }
+            
+            if (spec.quotes.indexOf(c) >= 0 || (c == '\'' && spec.charLiterals && isCharLiteral(text, position, end))) {
+                int close = findClose(text, c, position + 1, end);
+                if (close < 0) {
+                    emit(start, position, end, STRING | OPEN);
+                    return STATE_CODE;
+                }
+                emit(start, position, close + 1, STRING);
+                position = close + 1;
+                continue;
+            }
+            
+            if (isIdentifierStart(c)) {
+                int wordEnd = scanIdentifier(text, position + 1, end);
+                int type = spec.isKeyword(text, position, wordEnd) ? KEYWORD
+                    : spec.capitalizedTypes && Character.isUpperCase(c) ? TYPE : IDENTIFIER;
+                emit(start, position, wordEnd, type);
+                position = wordEnd;
+                continue;
+            }
+            
+            if (c >= '0' && c <= '9') {
+                int numberEnd = scanNumber(text, position, end);
+                emit(start, position, numberEnd, NUMBER);
+                position = numberEnd;
+                continue;
+            }
+            
+            if (position + 1 < end && isIdentifierStart(text.charAt(position + 1))) {
+                if (c == spec.directivePrefix) {
+                    int wordEnd = scanIdentifier(text, position + 1, end);
+                    if (spec.isKeyword(text, position, wordEnd)) {
+                        emit(start, position, wordEnd, KEYWORD);
+                        position = wordEnd;
+                        continue;
+                    }
+                } else if (c == spec.annotationPrefix) {
+                    int wordEnd = scanIdentifier(text, position + 1, end);
+                    emit(start, position, wordEnd, ANNOTATION);
+                    position = wordEnd;
+                    continue;
+                }
+            }
+            
+            if (spec.sigils.indexOf(c) >= 0) {
+                int variableEnd = scanVariable(text, position, end);
+                if (variableEnd > position + 1) {
+                    emit(start, position, variableEnd, VARIABLE);
+                    position = variableEnd;
+                    continue;
+                }
+            }
+            
+            emit(start, position, position + 1, "()[]{}<>".indexOf(c) >= 0 ? BRACKET : OPERATOR);
+            position++;
+        }
+        return STATE_CODE;
+    }
+    
+    private boolean startsLineComment(CharSequence text, int position) {
+        for (String prefix : spec.lineComments) {
+            if (LanguageSpec.regionMatches(text, position, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private int multilineStringAt(CharSequence text, int position) {
+        String[] opens = spec.stringOpens;
+        for (int i = 0; i < opens.length; i++) {
+            if (LanguageSpec.regionMatches(text, position, opens[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private boolean isCharLiteral(CharSequence text, int position, int end) {
+        if (position + 2 < end && text.charAt(position + 1) == '\\') {
+            int close = findClose(text, '\'', position + 2, Math.min(end, position + 12));
+            return close >= 0;
+        }
+        return position + 2 < end && text.charAt(position + 2) == '\'';
+    }
+    
+    private boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || (c == '$' && spec.sigils.indexOf('$') < 0);
+    }
+    
+    private int scanIdentifier(CharSequence text, int position, int end) {
+        while (position < end) {
+            char c = text.charAt(position);
+            if (!Character.isLetterOrDigit(c) && c != '_' && (c != '$' || spec.sigils.indexOf('$') >= 0)) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+    
+    private static int scanNumber(CharSequence text, int position, int end) {
+        boolean hex = position + 1 < end && text.charAt(position) == '0'
+            && (text.charAt(position + 1) == 'x' || text.charAt(position + 1) == 'X');
+        position++;
+        while (position < end) {
+            char c = text.charAt(position);
+            char previous = text.charAt(position - 1);
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                position++;
+            } else if (c == '.' && position + 1 < end && Character.isDigit(text.charAt(position + 1))) {
+                position++;
+            } else if ((c == '+' || c == '-') && !hex && (previous == 'e' || previous == 'E')) {
+                position++;
+            } else {
+                break;
+            }
+        }
+        return position;
+    }
+    
+    private int scanVariable(CharSequence text, int position, int end) {
+        int p = position + 1;
+        while (p < end && spec.sigils.indexOf(text.charAt(p)) >= 0 && text.charAt(p) == text.charAt(position)) {
+            p++;
+        }
+        if (p < end && text.charAt(p) == '{') {
+            while (p < end && text.charAt(p) != '}') {
+                p++;
+            }
+            return Math.min(p + 1, end);
+        }
+        return scanIdentifier(text, p, end);
+    }
+    
+    private static int findClose(CharSequence text, char quote, int position, int end) {
+        for (int i = position; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int findClose(CharSequence text, String delimiter, int position, int end) {
+        boolean escapes = delimiter.charAt(0) == '"' || delimiter.charAt(0) == '\'' || delimiter.charAt(0) == '`';
+        for (int i = position; i <= end - delimiter.length(); i++) {
+            if (escapes && text.charAt(i) == '\\') {
+                i++;
+            } else if (LanguageSpec.regionMatches(text, i, delimiter)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int indexOf(CharSequence text, String word, int position, int end) {
+        for (int i = position; i <= end - word.length(); i++) {
+            if (LanguageSpec.regionMatches(text, i, word)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void emit(int lineStart, int start, int end, int type) {
+        if (end <= start) {
+            return;
+        }
+        if (bufferSize + 2 > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[bufferSize++] = start - lineStart;
+        buffer[bufferSize++] = ((end - lineStart) << 8) | type;
+    }
+}
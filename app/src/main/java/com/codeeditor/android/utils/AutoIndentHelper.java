@@ -1,9 +1,18 @@
 package com.codeeditor.android.utils;
 
-import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.syntax.TokenCache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 public class AutoIndentHelper {
     
+    private static final Set<String> RUBY_BLOCKS = new HashSet<>(Arrays.asList(
+        "def", "class", "module", "if", "elsif", "else", "unless", "while", "until", "for", "begin", "case"));
+    private static final Set<String> LUA_BLOCKS = new HashSet<>(Arrays.asList(
+        "function", "if", "elseif", "else", "for", "while", "repeat"));
+    
     private int tabSize = 4;
     private boolean useSpaces = true;
     
@@ -59,78 +68,66 @@ public class AutoIndentHelper {
         return spaces / tabSize;
     }
     
-    public String calculateNewLineIndent(String text, int cursorPosition, SyntaxHighlighter.Language language) {
+    public String calculateNewLineIndent(CharSequence text, int cursorPosition, TokenCache tokens) {
         if (text == null || cursorPosition <= 0) {
             return "";
         }
         
-        int lineStart = text.lastIndexOf('\n', cursorPosition - 1) + 1;
-        String currentLine = text.substring(lineStart, cursorPosition);
-        
-        String baseIndent = getIndentForLine(currentLine);
-        String trimmedLine = currentLine.trim();
+        int line = tokens.getLineForOffset(cursorPosition);
+        int lineStart = tokens.getLineStart(line);
+        String baseIndent = getIndentForLine(text.subSequence(lineStart, cursorPosition).toString());
         
-        boolean shouldIncrease = shouldIncreaseIndent(trimmedLine, language);
+        int first = -1;
+        int last = -1;
+        int count = tokens.getTokenCount(line);
+        for (int i = 0; i < count && tokens.getTokenEnd(line, i) <= cursorPosition; i++) {
+            if (tokens.getTokenType(line, i) != TokenCache.COMMENT) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
         
-        if (shouldIncrease) {
+        if (last >= 0 && shouldIncreaseIndent(text, tokens, line, first, last)) {
             return baseIndent + getIndent();
         }
         
         return baseIndent;
     }
     
-    private boolean shouldIncreaseIndent(String line, SyntaxHighlighter.Language language) {
-        if (line.isEmpty()) {
-            return false;
-        }
-        
-        char lastChar = line.charAt(line.length() - 1);
+    private boolean shouldIncreaseIndent(CharSequence text, TokenCache tokens, int line, int first, int last) {
+        String firstWord = tokenText(text, tokens, line, first);
+        String lastWord = tokenText(text, tokens, line, last);
         
-        if (lastChar == '{' || lastChar == '[' || lastChar == '(') {
+        if (tokens.getTokenType(line, last) == TokenCache.BRACKET
+                && (lastWord.equals("{") || lastWord.equals("[") || lastWord.equals("("))) {
             return true;
         }
         
-        switch (language) {
+        switch (tokens.getLanguage()) {
             case PYTHON:
-                return line.endsWith(":");
+                return lastWord.equals(":");
                 
             case RUBY:
-                return line.endsWith("do") || 
-                       line.startsWith("def ") || 
-                       line.startsWith("class ") ||
-                       line.startsWith("module ") ||
-                       line.startsWith("if ") ||
-                       line.startsWith("elsif ") ||
-                       line.startsWith("else") ||
-                       line.startsWith("unless ") ||
-                       line.startsWith("while ") ||
-                       line.startsWith("until ") ||
-                       line.startsWith("for ") ||
-                       line.startsWith("begin") ||
-                       line.startsWith("case ");
-                       
+                return lastWord.equals("do") || RUBY_BLOCKS.contains(firstWord);
+                
             case LUA:
-                return line.startsWith("function ") ||
-                       line.startsWith("if ") ||
-                       line.startsWith("elseif ") ||
-                       line.startsWith("else") ||
-                       line.startsWith("for ") ||
-                       line.startsWith("while ") ||
-                       line.startsWith("repeat") ||
-                       line.endsWith(" do") ||
-                       line.endsWith(" then");
-                       
+                return lastWord.equals("do") || lastWord.equals("then") || LUA_BLOCKS.contains(firstWord);
+                
             case SHELL:
-                return line.endsWith(" then") ||
-                       line.endsWith(" do") ||
-                       line.startsWith("else") ||
-                       line.startsWith("elif ");
+                return lastWord.equals("then") || lastWord.equals("do") ||
+                       firstWord.equals("else") || firstWord.equals("elif");
                        
             default:
                 return false;
         }
     }
     
+    private static String tokenText(CharSequence text, TokenCache tokens, int line, int index) {
+        return text.subSequence(tokens.getTokenStart(line, index), tokens.getTokenEnd(line, index)).toString();
+    }
+    
     public String calculateClosingBracketIndent(String text, int cursorPosition) {
         if (text == null || cursorPosition <= 0) {
             return "";
@@ -0,0 +1,251 @@
+package com.codeeditor.android.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.PatternSyntaxException;
+
+public class BackgroundSearcher {
+    
+    private static final int SLICE_CHARS = 64 * 1024;
+    private static final int BATCH_MATCHES = 256;
+    
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+    private final AtomicInteger generation = new AtomicInteger();
+    
+    public interface SearchCallback {
+        void onMatches(int[] starts, int[] ends, int count, boolean wrapped);
+        // matches a scan from 0 finds in place of the unwrapped ones starting before until
+        void onResync(int[] starts, int[] ends, int count, int until);
+        void onComplete();
+        void onError(String error);
+    }
+    
+    private class Batch {
+        final int id;
+        final SearchCallback callback;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int count;
+        boolean first = true;
+        // starts of the matches found from the origin onwards, before wrapping
+        int[] unwrappedStarts = new int[16];
+        int unwrappedCount;
+        int lastEnd;
+        
+        Batch(int id, SearchCallback callback) {
+            this.id = id;
+            this.callback = callback;
+        }
+        
+        void add(int start, int end, boolean wrapped) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+            lastEnd = end;
+            if (!wrapped) {
+                if (unwrappedCount == unwrappedStarts.length) {
+                    unwrappedStarts = Arrays.copyOf(unwrappedStarts, unwrappedCount * 2);
+                }
+                unwrappedStarts[unwrappedCount++] = start;
+            }
+        }
+        
+        boolean isUnwrappedStart(int start) {
+            return Arrays.binarySearch(unwrappedStarts, 0, unwrappedCount, start) >= 0;
+        }
+        
+        boolean isFull() {
+            return count >= BATCH_MATCHES || (first && count > 0);
+        }
+        
+        void post(boolean wrapped) {
+            if (count == 0) {
+                return;
+            }
+            int[] postedStarts = Arrays.copyOf(starts, count);
+            int[] postedEnds = Arrays.copyOf(ends, count);
+            int postedCount = count;
+            count = 0;
+            first = false;
+            mainHandler.post(() -> {
+                if (id == generation.get()) {
+                    callback.onMatches(postedStarts, postedEnds, postedCount, wrapped);
+                }
+            });
+        }
+    }
+    
+    public BackgroundSearcher() {
+        this.executor = Executors.newSingleThreadExecutor();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+    
+    public void search(String text, String query, FindReplaceHelper.FindOptions options, int origin,
+                       SearchCallback callback) {
+        int id = generation.incrementAndGet();
+        executor.execute(() -> {
+            if (id != generation.get()) {
+                return;
+            }
+            Batch batch = new Batch(id, callback);
+            int split = Math.max(0, Math.min(origin, text.length()));
+            try {
+                if (options.useRegex) {
+                    searchRegex(text, query, options, split, batch);
+                } else {
+                    searchLiteral(text, query, options, split, batch);
+                }
+            } catch (PatternSyntaxException e) {
+                String message = e.getDescription();
+                mainHandler.post(() -> {
+                    if (id == generation.get()) {
+                        callback.onError(message);
+                    }
+                });
+                return;
+            }
+            if (id == generation.get()) {
+                mainHandler.post(() -> {
+                    if (id == generation.get()) {
+                        callback.onComplete();
+                    }
+                });
+            }
+        });
+    }
+    
+    private void searchLiteral(String text, String query, FindReplaceHelper.FindOptions options, int split,
+                               Batch batch) {
+        LiteralSearcher searcher = new LiteralSearcher(query, options.caseSensitive, options.wholeWord);
+        if (!scanLiteral(searcher, text, split, text.length(), batch, false)) {
+            return;
+        }
+        batch.lastEnd = 0;
+        if (!scanLiteral(searcher, text, 0, Math.min(text.length(), split + searcher.length() - 1), batch, true)
+                || batch.lastEnd <= split) {
+            return;
+        }
+        
+        // the last wrapped match runs past the origin, so a scan from 0 continues from its end rather than
+        // from the origin; follow it until it meets a match the first pass found, after which both agree
+        Batch resync = new Batch(batch.id, batch.callback);
+        int length = searcher.length();
+        int position = batch.lastEnd;
+        int until = text.length();
+        while (batch.id == generation.get()) {
+            int index = searcher.indexOf(text, position);
+            if (index < 0) {
+                break;
+            }
+            if (batch.isUnwrappedStart(index)) {
+                until = index;
+                break;
+            }
+            resync.add(index, index + length, true);
+            position = index + length;
+        }
+        postResync(resync, until);
+    }
+    
+    private void postResync(Batch resync, int until) {
+        int[] starts = Arrays.copyOf(resync.starts, resync.count);
+        int[] ends = Arrays.copyOf(resync.ends, resync.count);
+        int count = resync.count;
+        mainHandler.post(() -> {
+            if (resync.id == generation.get()) {
+                resync.callback.onResync(starts, ends, count, until);
+            }
+        });
+    }
+    
+    private boolean scanLiteral(LiteralSearcher searcher, String text, int from, int to, Batch batch,
+                                boolean wrapped) {
+        int length = searcher.length();
+        int position = from;
+        while (position < to) {
+            int sliceEnd = Math.min(to, position + SLICE_CHARS + length - 1);
+            int index = searcher.indexOf(text, position, sliceEnd);
+            if (index < 0) {
+                position = Math.max(position + 1, sliceEnd - length + 1);
+            } else {
+                batch.add(index, index + length, wrapped);
+                position = index + length;
+            }
+            if (batch.isFull() || index < 0) {
+                batch.post(wrapped);
+            }
+            if (batch.id != generation.get()) {
+                return false;
+            }
+        }
+        batch.post(wrapped);
+        return true;
+    }
+    
+    private void searchRegex(String text, String query, FindReplaceHelper.FindOptions options, int split,
+                             Batch batch) {
+        Matcher matcher = FindReplaceHelper.compile(query, options).matcher(text);
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        
+        matcher.region(split, text.length());
+        while (matcher.find()) {
+            batch.add(matcher.start(), matcher.end(), false);
+            if (batch.isFull()) {
+                batch.post(false);
+            }
+            if (batch.id != generation.get()) {
+                return;
+            }
+        }
+        batch.post(false);
+        
+        matcher.reset();
+        batch.lastEnd = 0;
+        boolean found;
+        while ((found = matcher.find()) && matcher.start() < split) {
+            batch.add(matcher.start(), matcher.end(), true);
+            if (batch.isFull()) {
+                batch.post(true);
+            }
+            if (batch.id != generation.get()) {
+                return;
+            }
+        }
+        batch.post(true);
+        if (batch.lastEnd <= split) {
+            return;
+        }
+        
+        Batch resync = new Batch(batch.id, batch.callback);
+        int until = text.length();
+        for (; found && batch.id == generation.get(); found = matcher.find()) {
+            if (batch.isUnwrappedStart(matcher.start())) {
+                until = matcher.start();
+                break;
+            }
+            resync.add(matcher.start(), matcher.end(), true);
+        }
+        postResync(resync, until);
+    }
+    
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+    
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
@@ -1,148 +1,144 @@
 package com.codeeditor.android.utils;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.codeeditor.android.syntax.TokenCache;
+
 import java.util.Stack;
 
 public class BracketMatcher {
     
-    private static final Map<Character, Character> BRACKETS = new HashMap<>();
-    private static final Map<Character, Character> QUOTES = new HashMap<>();
-    
-    static {
-        BRACKETS.put('(', ')');
-        BRACKETS.put('[', ']');
-        BRACKETS.put('{', '}');
-        BRACKETS.put('<', '>');
-        
-        QUOTES.put('"', '"');
-        QUOTES.put('\'', '\'');
-        QUOTES.put('`', '`');
-    }
-    
     public static boolean isOpenBracket(char c) {
-        return BRACKETS.containsKey(c);
+        switch (c) {
+            case '(':
+            case '[':
+            case '{':
+            case '<':
+                return true;
+            default:
+                return false;
+        }
     }
     
     public static boolean isCloseBracket(char c) {
-        return BRACKETS.containsValue(c);
+        switch (c) {
+            case ')':
+            case ']':
+            case '}':
+            case '>':
+                return true;
+            default:
+                return false;
+        }
     }
     
     public static boolean isQuote(char c) {
-        return QUOTES.containsKey(c);
+        return c == '"' || c == '\'' || c == '`';
     }
     
     public static char getClosingBracket(char openBracket) {
-        return BRACKETS.getOrDefault(openBracket, '\0');
+        switch (openBracket) {
+            case '(': return ')';
+            case '[': return ']';
+            case '{': return '}';
+            case '<': return '>';
+            default: return '\0';
+        }
     }
     
     public static char getOpeningBracket(char closeBracket) {
-        for (Map.Entry<Character, Character> entry : BRACKETS.entrySet()) {
-            if (entry.getValue() == closeBracket) {
-                return entry.getKey();
-            }
+        switch (closeBracket) {
+            case ')': return '(';
+            case ']': return '[';
+            case '}': return '{';
+            case '>': return '<';
+            default: return '\0';
         }
-        return '\0';
     }
     
-    public static int findMatchingBracket(String text, int position) {
+    public static int findMatchingBracket(CharSequence text, TokenCache tokens, int position) {
         if (text == null || position < 0 || position >= text.length()) {
             return -1;
         }
         
-        char bracket = text.charAt(position);
+        int line = tokens.getLineForOffset(position);
+        int index = tokens.findToken(line, position);
+        if (index < 0 || tokens.getTokenType(line, index) != TokenCache.BRACKET) {
+            return -1;
+        }
         
+        char bracket = text.charAt(position);
         if (isOpenBracket(bracket)) {
-            return findClosingBracket(text, position, bracket, BRACKETS.get(bracket));
+            return findClosingBracket(text, tokens, line, index, bracket, getClosingBracket(bracket));
         } else if (isCloseBracket(bracket)) {
-            char openBracket = getOpeningBracket(bracket);
-            return findOpeningBracket(text, position, openBracket, bracket);
+            return findOpeningBracket(text, tokens, line, index, getOpeningBracket(bracket), bracket);
         }
         
         return -1;
     }
     
-    private static int findClosingBracket(String text, int start, char open, char close) {
-        Stack<Integer> stack = new Stack<>();
-        boolean inString = false;
-        char stringChar = '\0';
-        
-        for (int i = start; i < text.length(); i++) {
-            char c = text.charAt(i);
-            
-            if (!inString && isQuote(c)) {
-                inString = true;
-                stringChar = c;
-            } else if (inString && c == stringChar && (i == 0 || text.charAt(i - 1) != '\\')) {
-                inString = false;
-            }
-            
-            if (!inString) {
+    private static int findClosingBracket(CharSequence text, TokenCache tokens, int line, int index,
+                                          char open, char close) {
+        int depth = 0;
+        int lineCount = tokens.getLineCount();
+        while (line < lineCount) {
+            int count = tokens.getTokenCount(line);
+            for (; index < count; index++) {
+                if (tokens.getTokenType(line, index) != TokenCache.BRACKET) {
+                    continue;
+                }
+                int offset = tokens.getTokenStart(line, index);
+                char c = text.charAt(offset);
                 if (c == open) {
-                    stack.push(i);
-                } else if (c == close) {
-                    if (!stack.isEmpty()) {
-                        stack.pop();
-                        if (stack.isEmpty()) {
-                            return i;
-                        }
-                    }
+                    depth++;
+                } else if (c == close && --depth == 0) {
+                    return offset;
                 }
             }
+            line++;
+            index = 0;
         }
         
         return -1;
     }
     
-    private static int findOpeningBracket(String text, int start, char open, char close) {
-        Stack<Integer> stack = new Stack<>();
-        boolean inString = false;
-        char stringChar = '\0';
-        
-        for (int i = start; i >= 0; i--) {
-            char c = text.charAt(i);
-            
-            if (!inString && isQuote(c)) {
-                boolean escaped = i > 0 && text.charAt(i - 1) == '\\';
-                if (!escaped) {
-                    inString = true;
-                    stringChar = c;
-                }
-            } else if (inString && c == stringChar) {
-                boolean escaped = i > 0 && text.charAt(i - 1) == '\\';
-                if (!escaped) {
-                    inString = false;
+    private static int findOpeningBracket(CharSequence text, TokenCache tokens, int line, int index,
+                                          char open, char close) {
+        int depth = 0;
+        while (line >= 0) {
+            for (; index >= 0; index--) {
+                if (tokens.getTokenType(line, index) != TokenCache.BRACKET) {
+                    continue;
                 }
-            }
-            
-            if (!inString) {
+                int offset = tokens.getTokenStart(line, index);
+                char c = text.charAt(offset);
                 if (c == close) {
-                    stack.push(i);
-                } else if (c == open) {
-                    if (!stack.isEmpty()) {
-                        stack.pop();
-                        if (stack.isEmpty()) {
-                            return i;
-                        }
-                    }
+                    depth++;
+                } else if (c == open && --depth == 0) {
+                    return offset;
                 }
             }
+            line--;
+            if (line >= 0) {
+                index = tokens.getTokenCount(line) - 1;
+            }
         }
         
         return -1;
     }
     
     public static String getAutoClosePair(char c) {
-        if (BRACKETS.containsKey(c)) {
-            return String.valueOf(c) + BRACKETS.get(c);
-        }
-        if (QUOTES.containsKey(c)) {
-            return String.valueOf(c) + QUOTES.get(c);
+        switch (c) {
+            case '(': return "()";
+            case '[': return "[]";
+            case '{': return "{}";
+            case '<': return "<>";
+            case '"': return "\"\"";
+            case '\'': return "''";
+            case '`': return "``";
+            default: return null;
         }
-        return null;
     }
     
-    public static boolean shouldAutoClose(String text, int position, char c) {
+    public static boolean shouldAutoClose(CharSequence text, TokenCache tokens, int position, char c) {
         if (!isOpenBracket(c) && !isQuote(c)) {
             return false;
         }
@@ -156,47 +152,26 @@ public class BracketMatcher {
             }
         }
         
-        if (isQuote(c)) {
-            int quoteCount = 0;
-            for (int i = 0; i < position; i++) {
-                if (text.charAt(i) == c) {
-                    if (i == 0 || text.charAt(i - 1) != '\\') {
-                        quoteCount++;
-                    }
-                }
-            }
-            if (quoteCount % 2 != 0) {
-                return false;
-            }
+        if (tokens.isInsideLiteral(position)) {
+            return false;
         }
         
         return true;
     }
     
-    public static boolean isValidBrackets(String text) {
+    public static boolean isValidBrackets(CharSequence text, TokenCache tokens) {
         Stack<Character> stack = new Stack<>();
-        boolean inString = false;
-        char stringChar = '\0';
         
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-            
-            if (!inString && isQuote(c)) {
-                inString = true;
-                stringChar = c;
-            } else if (inString && c == stringChar && (i == 0 || text.charAt(i - 1) != '\\')) {
-                inString = false;
-            }
-            
-            if (!inString) {
+        for (int line = 0; line < tokens.getLineCount(); line++) {
+            for (int i = 0; i < tokens.getTokenCount(line); i++) {
+                if (tokens.getTokenType(line, i) != TokenCache.BRACKET) {
+                    continue;
+                }
+                char c = text.charAt(tokens.getTokenStart(line, i));
                 if (isOpenBracket(c)) {
                     stack.push(c);
                 } else if (isCloseBracket(c)) {
-                    if (stack.isEmpty()) {
-                        return false;
-                    }
-                    char open = getOpeningBracket(c);
-                    if (stack.peek() != open) {
+                    if (stack.isEmpty() || stack.peek() != getOpeningBracket(c)) {
                         return false;
                     }
                     stack.pop();
@@ -0,0 +1,88 @@
+package com.codeeditor.android.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public class ContentCodec {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    public static byte[] pack(CharSequence text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, text.length() / 4));
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE)) {
+            ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+            out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+    
+    public static String unpack(byte[] packed) throws IOException {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(packed))) {
+            return readUtf8(in);
+        }
+    }
+    
+    public static void writePacked(File file, byte[] packed) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(packed);
+            out.getFD().sync();
+        }
+        replace(temp, file);
+    }
+    
+    public static void copyPacked(File source, File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (InputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.getFD().sync();
+        }
+        replace(temp, file);
+    }
+    
+    private static void replace(File temp, File file) throws IOException {
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+    }
+    
+    public static String readPacked(File file) throws IOException {
+        try (InputStream in = new InflaterInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            return readUtf8(in);
+        }
+    }
+    
+    private static String readUtf8(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
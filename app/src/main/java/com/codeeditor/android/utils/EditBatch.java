@@ -0,0 +1,89 @@
+package com.codeeditor.android.utils;
+
+import java.util.Arrays;
+
+public class EditBatch {
+    
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private String[] replacements = new String[16];
+    private String[] originals;
+    private int count;
+    private int delta;
+    
+    public void add(int start, int length, String replacement) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            replacements = Arrays.copyOf(replacements, capacity);
+        }
+        if (count > 0 && replacement.equals(replacements[count - 1])) {
+            replacement = replacements[count - 1];
+        }
+        starts[count] = start;
+        lengths[count] = length;
+        replacements[count] = replacement;
+        delta += replacement.length() - length;
+        count++;
+    }
+    
+    public void captureOriginals(CharSequence text) {
+        originals = new String[count];
+        String previous = null;
+        for (int i = 0; i < count; i++) {
+            int start = starts[i];
+            int end = start + lengths[i];
+            if (previous == null || !regionEquals(text, start, end, previous)) {
+                previous = text.subSequence(start, end).toString();
+            }
+            originals[i] = previous;
+        }
+    }
+    
+    public int size() {
+        return count;
+    }
+    
+    public int getStart(int index) {
+        return starts[index];
+    }
+    
+    public int getLength(int index) {
+        return lengths[index];
+    }
+    
+    public String getReplacement(int index) {
+        return replacements[index];
+    }
+    
+    public String getOriginal(int index) {
+        return originals[index];
+    }
+    
+    public int getDelta() {
+        return delta;
+    }
+    
+    public String apply(CharSequence text) {
+        StringBuilder result = new StringBuilder(text.length() + delta);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            result.append(text, position, starts[i]).append(replacements[i]);
+            position = starts[i] + lengths[i];
+        }
+        return result.append(text, position, text.length()).toString();
+    }
+    
+    private static boolean regionEquals(CharSequence text, int start, int end, String other) {
+        if (end - start != other.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != other.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
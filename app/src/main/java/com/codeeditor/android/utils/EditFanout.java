@@ -0,0 +1,79 @@
+package com.codeeditor.android.utils;
+
+import com.codeeditor.android.autocomplete.IdentifierIndex;
+import com.codeeditor.android.model.OpenFile;
+import com.codeeditor.android.syntax.TokenCache;
+
+/**
+ * Carries one document edit to everything that tracks the text: the editor's line, token and identifier
+ * indexes and undo history, then the session journal, the find results and the tab's modified flag.
+ * CodeEditorView's text watcher calls it for every keystroke, so its cost is what typing costs.
+ */
+public class EditFanout {
+
+    public interface Host {
+        OpenFile getEditedFile();
+        void onSearchInvalidated();
+        void onModifiedChanged(OpenFile file);
+    }
+
+    private UndoRedoManager undoRedoManager;
+    private LineIndex lineIndex;
+    private TokenCache tokenCache;
+    private IdentifierIndex identifierIndex;
+    private SessionJournal sessionJournal;
+    private FindReplaceHelper findReplaceHelper;
+    private Host host;
+
+    public void setDocument(UndoRedoManager undoRedoManager, LineIndex lineIndex, TokenCache tokenCache,
+                            IdentifierIndex identifierIndex) {
+        this.undoRedoManager = undoRedoManager;
+        this.lineIndex = lineIndex;
+        this.tokenCache = tokenCache;
+        this.identifierIndex = identifierIndex;
+    }
+
+    public void setConsumers(SessionJournal sessionJournal, FindReplaceHelper findReplaceHelper, Host host) {
+        this.sessionJournal = sessionJournal;
+        this.findReplaceHelper = findReplaceHelper;
+        this.host = host;
+    }
+
+    public void beforeEdit(CharSequence text, int start, int removed) {
+        undoRedoManager.beforeEdit(text, start, removed);
+    }
+
+    /**
+     * @param indexed false while a batch is applied; the editor rebuilds its indexes once afterwards
+     * @param recorded false for edits kept out of the undo history
+     * @param notify false while a document is loading
+     */
+    public void afterEdit(CharSequence text, int start, int removed, int inserted,
+                          boolean indexed, boolean recorded, boolean notify) {
+        if (indexed) {
+            lineIndex.applyEdit(text, start, removed, inserted);
+            tokenCache.applyEdit(text, start, removed, inserted);
+            identifierIndex.applyEdit(tokenCache.getLastEdit(text));
+        }
+        if (recorded) {
+            undoRedoManager.afterEdit(text, start, inserted);
+        }
+        if (!notify || host == null) {
+            return;
+        }
+
+        OpenFile file = host.getEditedFile();
+        sessionJournal.recordEdit(file, text, start, removed, inserted);
+        if (!findReplaceHelper.isComplete()) {
+            host.onSearchInvalidated();
+        }
+        findReplaceHelper.applyEdit(start, removed, inserted);
+        if (file != null) {
+            boolean wasModified = file.isModified;
+            file.applyEdit(text.length(), start, removed, inserted);
+            if (file.isModified != wasModified) {
+                host.onModifiedChanged(file);
+            }
+        }
+    }
+}
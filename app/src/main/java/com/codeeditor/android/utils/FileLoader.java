@@ -0,0 +1,221 @@
+package com.codeeditor.android.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.codeeditor.android.model.OpenFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FileLoader {
+    
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int READ_BUFFER_CHARS = 64 * 1024;
+    private static final int FIRST_CHUNK_CHARS = 16 * 1024;
+    private static final int CHUNK_CHARS = 512 * 1024;
+    private static final int SNIFF_BYTES = 8 * 1024;
+    
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+    
+    public interface LoadCallback {
+        void onFirstChunk(String text, TextFormat format);
+        void onChunk(String text);
+        void onComplete(TextFormat format);
+        void onError(String error);
+    }
+    
+    public interface RestoreCallback {
+        void onRestored();
+        void onError(String error);
+    }
+    
+    public FileLoader() {
+        this.executor = Executors.newSingleThreadExecutor();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+    
+    public Future<?> load(Context context, Uri uri, LoadCallback callback) {
+        Context appContext = context.getApplicationContext();
+        return executor.submit(() -> {
+            try (InputStream raw = appContext.getContentResolver().openInputStream(uri)) {
+                if (raw == null) {
+                    throw new IOException("Unable to open " + uri);
+                }
+                stream(new BufferedInputStream(raw, READ_BUFFER_BYTES), callback);
+            } catch (InterruptedIOException e) {
+                // cancelled
+            } catch (IOException | RuntimeException e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    String message = e.getMessage() != null ? e.getMessage() : e.toString();
+                    mainHandler.post(() -> callback.onError(message));
+                }
+            }
+        });
+    }
+    
+    /** Reads the content of a spilled or session-restored tab back into memory. */
+    public Future<?> restore(OpenFile file, RestoreCallback callback) {
+        if (file.getPendingRead() != null) {
+            // the read already queued posts its result first; report how it went
+            return executor.submit(() -> mainHandler.post(() -> {
+                if (file.needsDiskRead()) {
+                    callback.onError("Unable to read " + file.name);
+                } else {
+                    callback.onRestored();
+                }
+            }));
+        }
+        OpenFile.DiskRead read = file.beginDiskRead();
+        return executor.submit(() -> {
+            try {
+                String text = read.read();
+                mainHandler.post(() -> {
+                    file.finishDiskRead(read, text);
+                    callback.onRestored();
+                });
+            } catch (IOException | RuntimeException e) {
+                String message = e.getMessage() != null ? e.getMessage() : e.toString();
+                mainHandler.post(() -> {
+                    file.finishDiskRead(read, null);
+                    callback.onError(message);
+                });
+            }
+        });
+    }
+    
+    private void stream(BufferedInputStream in, LoadCallback callback) throws IOException {
+        TextFormat format = detectFormat(in);
+        Reader reader = new InputStreamReader(in, format.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+        
+        char[] buffer = new char[READ_BUFFER_CHARS];
+        StringBuilder pending = new StringBuilder(FIRST_CHUNK_CHARS);
+        String separator = null;
+        boolean pendingCR = false;
+        boolean firstSent = false;
+        int read;
+        
+        while ((read = reader.read(buffer)) != -1) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException();
+            }
+            
+            int runStart = 0;
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (pendingCR) {
+                    pendingCR = false;
+                    if (c == '\n') {
+                        if (separator == null) separator = "\r\n";
+                        runStart = i + 1;
+                        continue;
+                    }
+                    if (separator == null) separator = "\r";
+                }
+                if (c == '\r') {
+                    pending.append(buffer, runStart, i - runStart).append('\n');
+                    pendingCR = true;
+                    runStart = i + 1;
+                } else if (c == '\n' && separator == null) {
+                    separator = "\n";
+                }
+            }
+            pending.append(buffer, runStart, read - runStart);
+            
+            int threshold = firstSent ? CHUNK_CHARS : FIRST_CHUNK_CHARS;
+            if (pending.length() >= threshold) {
+                String chunk = pending.toString();
+                pending.setLength(0);
+                if (firstSent) {
+                    mainHandler.post(() -> callback.onChunk(chunk));
+                } else {
+                    TextFormat initial = separator != null ? format.withLineSeparator(separator) : format;
+                    mainHandler.post(() -> callback.onFirstChunk(chunk, initial));
+                    firstSent = true;
+                }
+            }
+        }
+        if (pendingCR && separator == null) {
+            separator = "\r";
+        }
+        
+        TextFormat result = separator != null ? format.withLineSeparator(separator) : format;
+        String rest = pending.toString();
+        if (!firstSent) {
+            mainHandler.post(() -> callback.onFirstChunk(rest, result));
+        } else if (!rest.isEmpty()) {
+            mainHandler.post(() -> callback.onChunk(rest));
+        }
+        mainHandler.post(() -> callback.onComplete(result));
+    }
+    
+    private TextFormat detectFormat(BufferedInputStream in) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        in.mark(SNIFF_BYTES);
+        int length = 0;
+        int read;
+        while (length < SNIFF_BYTES && (read = in.read(head, length, SNIFF_BYTES - length)) != -1) {
+            length += read;
+        }
+        in.reset();
+        
+        if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            skip(in, 3);
+            return new TextFormat(StandardCharsets.UTF_8, "\n", true);
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+            skip(in, 2);
+            return new TextFormat(StandardCharsets.UTF_16LE, "\n", true);
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+            skip(in, 2);
+            return new TextFormat(StandardCharsets.UTF_16BE, "\n", true);
+        }
+        
+        Charset charset = isUtf8(head, length, length < SNIFF_BYTES)
+                ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+        return new TextFormat(charset, "\n", false);
+    }
+    
+    private static boolean isUtf8(byte[] bytes, int length, boolean complete) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer input = ByteBuffer.wrap(bytes, 0, length);
+        CharBuffer output = CharBuffer.allocate(length);
+        return !decoder.decode(input, output, complete).isError();
+    }
+    
+    private static void skip(InputStream in, int count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) return;
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+    
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
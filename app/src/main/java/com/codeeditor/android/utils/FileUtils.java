@@ -1,52 +1,12 @@
 package com.codeeditor.android.utils;
 
-import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.OpenableColumns;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-
 public class FileUtils {
     
-    public static String readFromUri(Context context, Uri uri) throws IOException {
-        ContentResolver resolver = context.getContentResolver();
-        StringBuilder stringBuilder = new StringBuilder();
-        
-        try (InputStream inputStream = resolver.openInputStream(uri);
-             BufferedReader reader = new BufferedReader(
-                 new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                stringBuilder.append(line).append("\n");
-            }
-        }
-        
-        if (stringBuilder.length() > 0) {
-            stringBuilder.setLength(stringBuilder.length() - 1);
-        }
-        
-        return stringBuilder.toString();
-    }
-    
-    public static void writeToUri(Context context, Uri uri, String content) throws IOException {
-        ContentResolver resolver = context.getContentResolver();
-        
-        try (OutputStream outputStream = resolver.openOutputStream(uri, "wt")) {
-            if (outputStream != null) {
-                outputStream.write(content.getBytes(StandardCharsets.UTF_8));
-                outputStream.flush();
-            }
-        }
-    }
-    
     public static String getFileName(Context context, Uri uri) {
         String result = null;
         
@@ -1,7 +1,6 @@
 package com.codeeditor.android.utils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -9,18 +8,21 @@ import java.util.regex.PatternSyntaxException;
 public class FindReplaceHelper {
     
     private String text;
-    private List<Match> matches;
+    private final MatchIndex matches = new MatchIndex();
+    private int wrapIndex = -1;
+    private int[] resyncStarts = new int[0];
+    private int[] resyncEnds = new int[0];
+    private int resyncUntil;
+    private boolean complete = true;
     private int currentMatchIndex;
     
     public static class Match {
         public final int start;
         public final int end;
-        public final String text;
         
-        public Match(int start, int end, String text) {
+        public Match(int start, int end) {
             this.start = start;
             this.end = end;
-            this.text = text;
         }
     }
     
@@ -39,192 +41,345 @@ public class FindReplaceHelper {
     }
     
     public FindReplaceHelper() {
-        this.matches = new ArrayList<>();
         this.currentMatchIndex = -1;
     }
     
     public void setText(String text) {
         this.text = text;
         this.matches.clear();
+        this.wrapIndex = -1;
+        this.complete = true;
         this.currentMatchIndex = -1;
+        clearResync();
     }
     
-    public List<Match> find(String query, FindOptions options) {
+    public void resyncMatches(int[] starts, int[] ends, int count, int until) {
+        resyncStarts = Arrays.copyOf(starts, count);
+        resyncEnds = Arrays.copyOf(ends, count);
+        resyncUntil = until;
+    }
+    
+    private void clearResync() {
+        resyncStarts = new int[0];
+        resyncEnds = new int[0];
+        resyncUntil = 0;
+    }
+    
+    public void appendMatches(int[] starts, int[] ends, int count, boolean wrapped) {
+        complete = false;
+        if (wrapped && wrapIndex < 0) {
+            wrapIndex = matches.size();
+        }
+        for (int i = 0; i < count; i++) {
+            matches.add(starts[i], ends[i]);
+        }
+        if (currentMatchIndex < 0 && matches.size() > 0) {
+            currentMatchIndex = 0;
+        }
+    }
+    
+    public void finishResults() {
+        complete = true;
+        if (wrapIndex < 0) {
+            return;
+        }
+        
+        int head = matches.size() - wrapIndex;
+        int dropped = matches.rotate(wrapIndex, resyncStarts, resyncEnds, resyncStarts.length, resyncUntil);
+        
+        if (currentMatchIndex >= wrapIndex) {
+            currentMatchIndex -= wrapIndex;
+        } else if (currentMatchIndex >= dropped) {
+            currentMatchIndex = head + resyncStarts.length + currentMatchIndex - dropped;
+        } else if (currentMatchIndex >= 0) {
+            currentMatchIndex = head;
+        }
+        clearResync();
+        if (currentMatchIndex >= matches.size()) {
+            currentMatchIndex = matches.size() > 0 ? 0 : -1;
+        }
+        wrapIndex = -1;
+    }
+    
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    public void applyEdit(int position, int removed, int inserted) {
+        if (!complete) {
+            // the caller cancels the search, whose remaining batches refer to the text before this edit
+            text = null;
+            matches.clear();
+            wrapIndex = -1;
+            complete = true;
+            currentMatchIndex = -1;
+            clearResync();
+            return;
+        }
+        if (matches.size() == 0) {
+            return;
+        }
+        text = null;
+        
+        matches.applyEdit(position, removed, inserted);
+        if (!matches.isLive(currentMatchIndex)) {
+            currentMatchIndex = nextLive(currentMatchIndex);
+        }
+    }
+    
+    public int find(String query, FindOptions options) {
         matches.clear();
+        clearResync();
+        wrapIndex = -1;
+        complete = true;
         currentMatchIndex = -1;
         
         if (text == null || text.isEmpty() || query == null || query.isEmpty()) {
-            return matches;
+            return 0;
         }
         
-        try {
-            String pattern = query;
-            
-            if (!options.useRegex) {
-                pattern = Pattern.quote(query);
-            }
-            
-            if (options.wholeWord) {
-                pattern = "\\b" + pattern + "\\b";
-            }
-            
-            int flags = Pattern.MULTILINE;
-            if (!options.caseSensitive) {
-                flags |= Pattern.CASE_INSENSITIVE;
-            }
-            
-            Pattern regex = Pattern.compile(pattern, flags);
-            Matcher matcher = regex.matcher(text);
-            
-            while (matcher.find()) {
-                matches.add(new Match(matcher.start(), matcher.end(), matcher.group()));
+        if (!options.useRegex) {
+            LiteralSearcher searcher = new LiteralSearcher(query, options.caseSensitive, options.wholeWord);
+            int length = searcher.length();
+            int index = searcher.indexOf(text, 0);
+            while (index >= 0) {
+                matches.add(index, index + length);
+                index = searcher.indexOf(text, index + length);
             }
-            
-            if (!matches.isEmpty()) {
-                currentMatchIndex = 0;
+        } else {
+            try {
+                Matcher matcher = compile(query, options).matcher(text);
+                while (matcher.find()) {
+                    matches.add(matcher.start(), matcher.end());
+                }
+            } catch (PatternSyntaxException e) {
+                e.printStackTrace();
             }
-            
-        } catch (PatternSyntaxException e) {
-            e.printStackTrace();
         }
         
-        return matches;
+        if (matches.size() > 0) {
+            currentMatchIndex = 0;
+        }
+        return matches.size();
+    }
+    
+    static Pattern compile(String query, FindOptions options) {
+        String pattern = query;
+        
+        if (!options.useRegex) {
+            pattern = Pattern.quote(query);
+        }
+        
+        if (options.wholeWord) {
+            pattern = "\\b" + pattern + "\\b";
+        }
+        
+        int flags = Pattern.MULTILINE;
+        if (!options.caseSensitive) {
+            flags |= Pattern.CASE_INSENSITIVE;
+        }
+        
+        return Pattern.compile(pattern, flags);
+    }
+    
+    private Match matchAt(int index) {
+        return new Match(matches.getStart(index), matches.getEnd(index));
+    }
+    
+    private int nextLive(int index) {
+        int next = matches.nextLive(index);
+        return next >= 0 ? next : matches.nextLive(-1);
+    }
+    
+    private int previousLive(int index) {
+        int previous = matches.previousLive(index);
+        return previous >= 0 ? previous : matches.previousLive(matches.size());
     }
     
     public Match findNext() {
-        if (matches.isEmpty()) {
+        if (matches.getLiveCount() == 0) {
             return null;
         }
         
-        currentMatchIndex++;
-        if (currentMatchIndex >= matches.size()) {
-            currentMatchIndex = 0;
+        currentMatchIndex = nextLive(currentMatchIndex);
+        return matchAt(currentMatchIndex);
+    }
+    
+    public Match findPrevious() {
+        if (matches.getLiveCount() == 0) {
+            return null;
         }
         
-        return matches.get(currentMatchIndex);
+        currentMatchIndex = previousLive(currentMatchIndex < 0 ? matches.size() : currentMatchIndex);
+        return matchAt(currentMatchIndex);
     }
     
-    public Match findPrevious() {
-        if (matches.isEmpty()) {
+    public Match findNextFrom(int selectionStart, int selectionEnd) {
+        Match current = getCurrentMatch();
+        if (current != null && current.start == selectionStart && current.end == selectionEnd) {
+            return findNext();
+        }
+        if (matches.getLiveCount() == 0) {
             return null;
         }
         
-        currentMatchIndex--;
-        if (currentMatchIndex < 0) {
-            currentMatchIndex = matches.size() - 1;
+        currentMatchIndex = nextLive(matches.firstStartingAtOrAfter(selectionEnd) - 1);
+        return matchAt(currentMatchIndex);
+    }
+    
+    public Match findPreviousFrom(int selectionStart, int selectionEnd) {
+        Match current = getCurrentMatch();
+        if (current != null && current.start == selectionStart && current.end == selectionEnd) {
+            return findPrevious();
+        }
+        if (matches.getLiveCount() == 0) {
+            return null;
         }
         
-        return matches.get(currentMatchIndex);
+        currentMatchIndex = previousLive(matches.firstStartingAtOrAfter(selectionStart));
+        return matchAt(currentMatchIndex);
+    }
+    
+    public int getMatchesInRange(int from, int to, int[] starts, int[] ends) {
+        if (wrapIndex < 0) {
+            return collectMatches(0, matches.size(), from, to, starts, ends, 0);
+        }
+        int found = collectMatches(wrapIndex, matches.size(), from, to, starts, ends, 0);
+        return collectMatches(0, wrapIndex, from, to, starts, ends, found);
+    }
+    
+    private int collectMatches(int low, int high, int from, int to, int[] starts, int[] ends, int found) {
+        for (int index = matches.firstEndingAfter(from, low, high); index < high && found < starts.length; index++) {
+            if (!matches.isLive(index)) {
+                continue;
+            }
+            int start = matches.getStart(index);
+            if (start >= to) {
+                break;
+            }
+            starts[found] = start;
+            ends[found] = matches.getEnd(index);
+            found++;
+        }
+        return found;
     }
     
     public Match getCurrentMatch() {
-        if (matches.isEmpty() || currentMatchIndex < 0 || currentMatchIndex >= matches.size()) {
+        if (!matches.isLive(currentMatchIndex)) {
             return null;
         }
-        return matches.get(currentMatchIndex);
+        return matchAt(currentMatchIndex);
     }
     
     public int getCurrentMatchIndex() {
-        return currentMatchIndex;
+        return matches.isLive(currentMatchIndex) ? matches.rankOf(currentMatchIndex) : -1;
     }
     
     public int getMatchCount() {
-        return matches.size();
+        return matches.getLiveCount();
+    }
+    
+    public MatchIndex getMatchIndex() {
+        return matches;
+    }
+    
+    public int getMatchStart(int index) {
+        return matches.getStart(index);
+    }
+    
+    public int getMatchEnd(int index) {
+        return matches.getEnd(index);
     }
     
     public String replace(String replacement) {
-        if (text == null || matches.isEmpty() || currentMatchIndex < 0) {
+        Match match = getCurrentMatch();
+        if (text == null || match == null) {
             return text;
         }
         
-        Match match = matches.get(currentMatchIndex);
-        StringBuilder sb = new StringBuilder(text);
-        sb.replace(match.start, match.end, replacement);
-        
-        int diff = replacement.length() - (match.end - match.start);
-        for (int i = currentMatchIndex + 1; i < matches.size(); i++) {
-            Match m = matches.get(i);
-            matches.set(i, new Match(m.start + diff, m.end + diff, m.text));
-        }
-        
-        matches.remove(currentMatchIndex);
-        
-        if (!matches.isEmpty()) {
-            if (currentMatchIndex >= matches.size()) {
-                currentMatchIndex = 0;
-            }
-        } else {
-            currentMatchIndex = -1;
-        }
-        
+        StringBuilder sb = new StringBuilder(text.length() + replacement.length());
+        sb.append(text, 0, match.start).append(replacement).append(text, match.end, text.length());
+        applyEdit(match.start, match.end - match.start, replacement.length());
         text = sb.toString();
         return text;
     }
     
-    public String replaceAll(String query, String replacement, FindOptions options) {
+    public EditBatch replaceAll(String query, String replacement, FindOptions options) {
+        EditBatch batch = new EditBatch();
         if (text == null || query == null || query.isEmpty()) {
-            return text;
+            return batch;
         }
         
         try {
-            String pattern = query;
-            
-            if (!options.useRegex) {
-                pattern = Pattern.quote(query);
-            }
-            
-            if (options.wholeWord) {
-                pattern = "\\b" + pattern + "\\b";
-            }
-            
-            int flags = Pattern.MULTILINE;
-            if (!options.caseSensitive) {
-                flags |= Pattern.CASE_INSENSITIVE;
-            }
-            
-            Pattern regex = Pattern.compile(pattern, flags);
-            text = regex.matcher(text).replaceAll(
-                options.useRegex ? replacement : Matcher.quoteReplacement(replacement)
-            );
-            
-            matches.clear();
-            currentMatchIndex = -1;
-            
+            collectReplacements(text, options.useRegex ? null
+                    : new LiteralSearcher(query, options.caseSensitive, options.wholeWord),
+                    options.useRegex ? compile(query, options) : null, replacement, batch);
         } catch (PatternSyntaxException e) {
             e.printStackTrace();
         }
         
-        return text;
+        matches.clear();
+        currentMatchIndex = -1;
+        return batch;
+    }
+    
+    static void collectReplacements(CharSequence text, LiteralSearcher literal, Pattern pattern,
+                                    String replacement, EditBatch batch) {
+        if (literal != null) {
+            int length = literal.length();
+            int index = literal.indexOf(text, 0);
+            while (index >= 0) {
+                batch.add(index, length, replacement);
+                index = literal.indexOf(text, index + length);
+            }
+            return;
+        }
+        
+        Matcher matcher = pattern.matcher(text);
+        boolean expand = replacement.indexOf('$') >= 0 || replacement.indexOf('\\') >= 0;
+        StringBuffer expanded = new StringBuffer();
+        int appendPosition = 0;
+        while (matcher.find()) {
+            String value = replacement;
+            if (expand) {
+                expanded.setLength(0);
+                matcher.appendReplacement(expanded, replacement);
+                value = expanded.substring(matcher.start() - appendPosition);
+                appendPosition = matcher.end();
+            }
+            batch.add(matcher.start(), matcher.end() - matcher.start(), value);
+        }
     }
     
     public Match findNearestMatch(int cursorPosition) {
-        if (matches.isEmpty()) {
+        if (matches.getLiveCount() == 0) {
             return null;
         }
         
-        int nearestIndex = 0;
-        int minDistance = Integer.MAX_VALUE;
-        
-        for (int i = 0; i < matches.size(); i++) {
-            Match match = matches.get(i);
-            int distance = Math.abs(match.start - cursorPosition);
-            if (distance < minDistance) {
-                minDistance = distance;
-                nearestIndex = i;
-            }
+        int index = matches.firstStartingAtOrAfter(cursorPosition);
+        int after = matches.nextLive(index - 1);
+        int before = matches.previousLive(index);
+        int nearestIndex = after;
+        if (after < 0 || (before >= 0
+                && cursorPosition - matches.getStart(before) <= matches.getStart(after) - cursorPosition)) {
+            nearestIndex = before;
         }
         
         currentMatchIndex = nearestIndex;
-        return matches.get(nearestIndex);
+        return matchAt(nearestIndex);
     }
     
     public void setCurrentMatchByPosition(int position) {
-        for (int i = 0; i < matches.size(); i++) {
-            Match match = matches.get(i);
-            if (position >= match.start && position <= match.end) {
-                currentMatchIndex = i;
-                return;
-            }
+        int index = matches.previousLive(matches.firstStartingAtOrAfter(position + 1));
+        if (index < 0) {
+            return;
+        }
+        int previous = matches.previousLive(index);
+        if (previous >= 0 && matches.getEnd(previous) >= position) {
+            index = previous;
+        }
+        if (position <= matches.getEnd(index)) {
+            currentMatchIndex = index;
         }
     }
 }
@@ -0,0 +1,123 @@
+package com.codeeditor.android.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The project walk and the on-disk format shared by the editor's persistent indexes. Every index file
+ * starts with its own magic number and is replaced atomically, so a crash mid-write leaves the previous
+ * file in place and a file from another format or version is ignored rather than misread.
+ */
+public class IndexFiles {
+
+    public interface Filter {
+        boolean accept(String name);
+    }
+
+    public interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** The indexable files under a root, with the length and modification time each was seen at. */
+    public static class Walk {
+        public final String[] paths;
+        public final File[] files;
+        public final long[] lengths;
+        public final long[] modified;
+
+        Walk(List<String> paths, List<File> files) {
+            this.paths = paths.toArray(new String[0]);
+            this.files = files.toArray(new File[0]);
+            this.lengths = new long[this.files.length];
+            this.modified = new long[this.files.length];
+            for (int i = 0; i < this.files.length; i++) {
+                lengths[i] = this.files[i].length();
+                modified[i] = this.files[i].lastModified();
+            }
+        }
+
+        public int size() {
+            return paths.length;
+        }
+    }
+
+    public static Walk walk(File root, Filter filter) {
+        List<String> paths = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        collectFiles(root, "", filter, paths, files);
+        return new Walk(paths, files);
+    }
+
+    private static void collectFiles(File directory, String prefix, Filter filter,
+                                     List<String> paths, List<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                if (!ProjectSearchEngine.isSkippedDirectory(name)) {
+                    collectFiles(child, prefix + name + "/", filter, paths, files);
+                }
+            } else if (filter.accept(name) && !ProjectSearchEngine.isSkippedFile(name)) {
+                paths.add(prefix + name);
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * Returns null when the file is missing or was written with another magic number, and deletes it
+     * when it cannot be parsed.
+     */
+    public static <T> T read(File file, int magic, Reader<T> reader) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != magic) {
+                return null;
+            }
+            return reader.read(in);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    public static void write(File file, int magic, Writer writer) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(magic);
+            writer.write(out);
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+    }
+}
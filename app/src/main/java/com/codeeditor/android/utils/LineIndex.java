@@ -0,0 +1,101 @@
+package com.codeeditor.android.utils;
+
+public class LineIndex {
+    
+    private int[] lineStarts = new int[64];
+    private int lineCount = 1;
+    
+    public void rebuild(CharSequence text) {
+        lineCount = 1;
+        lineStarts[0] = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                append(i + 1);
+            }
+        }
+    }
+    
+    public void applyEdit(CharSequence text, int start, int removed, int inserted) {
+        int removedEnd = start + removed;
+        int delta = inserted - removed;
+        
+        int first = firstLineStartingAfter(start);
+        int last = first;
+        while (last < lineCount && lineStarts[last] <= removedEnd) {
+            last++;
+        }
+        
+        int newLines = 0;
+        int insertedEnd = start + inserted;
+        for (int i = start; i < insertedEnd; i++) {
+            if (text.charAt(i) == '\n') {
+                newLines++;
+            }
+        }
+        
+        int tail = lineCount - last;
+        int newCount = first + newLines + tail;
+        ensureCapacity(newCount);
+        System.arraycopy(lineStarts, last, lineStarts, first + newLines, tail);
+        for (int i = first + newLines; i < newCount; i++) {
+            lineStarts[i] += delta;
+        }
+        
+        int slot = first;
+        for (int i = start; i < insertedEnd; i++) {
+            if (text.charAt(i) == '\n') {
+                lineStarts[slot++] = i + 1;
+            }
+        }
+        lineCount = newCount;
+    }
+    
+    public int getLineCount() {
+        return lineCount;
+    }
+    
+    public int getLineStart(int line) {
+        if (line <= 0) return 0;
+        if (line >= lineCount) return lineStarts[lineCount - 1];
+        return lineStarts[line];
+    }
+    
+    public int getLineEnd(int line, int textLength) {
+        if (line + 1 < lineCount) {
+            return lineStarts[line + 1] - 1;
+        }
+        return textLength;
+    }
+    
+    public int getLineForOffset(int offset) {
+        return firstLineStartingAfter(offset) - 1;
+    }
+    
+    private int firstLineStartingAfter(int offset) {
+        int low = 1;
+        int high = lineCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private void append(int lineStart) {
+        ensureCapacity(lineCount + 1);
+        lineStarts[lineCount++] = lineStart;
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity > lineStarts.length) {
+            int[] grown = new int[Math.max(capacity, lineStarts.length * 2)];
+            System.arraycopy(lineStarts, 0, grown, 0, lineCount);
+            lineStarts = grown;
+        }
+    }
+}
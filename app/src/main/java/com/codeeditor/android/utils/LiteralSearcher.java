@@ -0,0 +1,94 @@
+package com.codeeditor.android.utils;
+
+import java.util.Arrays;
+
+public class LiteralSearcher {
+    
+    private static final int TABLE_SIZE = 256;
+    
+    private final char[] pattern;
+    private final boolean caseSensitive;
+    private final boolean wholeWord;
+    private final int[] shifts = new int[TABLE_SIZE];
+    
+    public LiteralSearcher(String query, boolean caseSensitive, boolean wholeWord) {
+        this.caseSensitive = caseSensitive;
+        this.wholeWord = wholeWord;
+        this.pattern = new char[query.length()];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = caseSensitive ? query.charAt(i) : fold(query.charAt(i));
+        }
+        
+        int last = pattern.length - 1;
+        Arrays.fill(shifts, pattern.length);
+        for (int i = 0; i < last; i++) {
+            shifts[pattern[i] & (TABLE_SIZE - 1)] = last - i;
+        }
+    }
+    
+    public int length() {
+        return pattern.length;
+    }
+    
+    public int indexOf(CharSequence text, int from) {
+        return indexOf(text, from, text.length());
+    }
+    
+    public int indexOf(CharSequence text, int from, int to) {
+        int length = pattern.length;
+        if (length == 0) {
+            return -1;
+        }
+        int last = length - 1;
+        char lastChar = pattern[last];
+        int i = Math.max(from, 0);
+        int limit = Math.min(to, text.length()) - length;
+        
+        while (i <= limit) {
+            char c = text.charAt(i + last);
+            if (!caseSensitive) {
+                c = fold(c);
+            }
+            if (c == lastChar && regionMatches(text, i, last) && (!wholeWord || isWholeWord(text, i))) {
+                return i;
+            }
+            i += shifts[c & (TABLE_SIZE - 1)];
+        }
+        return -1;
+    }
+    
+    private boolean regionMatches(CharSequence text, int start, int count) {
+        for (int j = 0; j < count; j++) {
+            char c = text.charAt(start + j);
+            if (!caseSensitive) {
+                c = fold(c);
+            }
+            if (c != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean isWholeWord(CharSequence text, int start) {
+        int end = start + pattern.length;
+        return isBoundary(text, start) && isBoundary(text, end);
+    }
+    
+    private static boolean isBoundary(CharSequence text, int index) {
+        boolean before = index > 0 && isWordChar(text.charAt(index - 1));
+        boolean after = index < text.length() && isWordChar(text.charAt(index));
+        return before != after;
+    }
+    
+    static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+    
+    static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,243 @@
+package com.codeeditor.android.utils;
+
+import java.util.Arrays;
+
+public class MatchIndex {
+    
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] dead = new boolean[16];
+    private int[] shiftTree = new int[17];
+    private int[] liveTree = new int[17];
+    private int count;
+    private int liveCount;
+    private boolean treesValid = true;
+    
+    public void clear() {
+        count = 0;
+        liveCount = 0;
+        treesValid = true;
+    }
+    
+    public void add(int start, int end) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            dead = Arrays.copyOf(dead, capacity);
+        }
+        foldShifts();
+        starts[count] = start;
+        ends[count] = end;
+        dead[count] = false;
+        count++;
+        liveCount++;
+        treesValid = false;
+    }
+    
+    /**
+     * Puts matches found from an origin and then wrapped from 0 back into document order. Unwrapped
+     * matches starting before until are replaced by the given ones, which a scan from 0 finds there
+     * instead when the last wrapped match runs past the origin. Returns how many were replaced.
+     */
+    public int rotate(int wrapIndex, int[] resyncStarts, int[] resyncEnds, int resyncCount, int until) {
+        foldShifts();
+        int head = count - wrapIndex;
+        int tail = wrapIndex;
+        int dropped = 0;
+        while (dropped < tail && starts[dropped] < until) {
+            dropped++;
+        }
+        
+        int size = head + resyncCount + tail - dropped;
+        int capacity = Math.max(starts.length, size);
+        int[] rotatedStarts = new int[capacity];
+        int[] rotatedEnds = new int[capacity];
+        System.arraycopy(starts, wrapIndex, rotatedStarts, 0, head);
+        System.arraycopy(ends, wrapIndex, rotatedEnds, 0, head);
+        System.arraycopy(resyncStarts, 0, rotatedStarts, head, resyncCount);
+        System.arraycopy(resyncEnds, 0, rotatedEnds, head, resyncCount);
+        System.arraycopy(starts, dropped, rotatedStarts, head + resyncCount, tail - dropped);
+        System.arraycopy(ends, dropped, rotatedEnds, head + resyncCount, tail - dropped);
+        starts = rotatedStarts;
+        ends = rotatedEnds;
+        if (dead.length < capacity) {
+            dead = new boolean[capacity];
+        }
+        count = size;
+        Arrays.fill(dead, 0, count, false);
+        liveCount = count;
+        treesValid = false;
+        return dropped;
+    }
+    
+    public int size() {
+        return count;
+    }
+    
+    public int getLiveCount() {
+        return liveCount;
+    }
+    
+    public boolean isLive(int index) {
+        return index >= 0 && index < count && !dead[index];
+    }
+    
+    public int getStart(int index) {
+        return starts[index] + shift(index);
+    }
+    
+    public int getEnd(int index) {
+        return ends[index] + shift(index);
+    }
+    
+    public int nextLive(int index) {
+        ensureTrees();
+        int rank = index < 0 ? 0 : liveBefore(Math.min(index, count - 1) + 1);
+        return rank < liveCount ? select(rank + 1) : -1;
+    }
+    
+    public int previousLive(int index) {
+        ensureTrees();
+        int rank = liveBefore(Math.min(index, count));
+        return rank > 0 ? select(rank) : -1;
+    }
+    
+    public int rankOf(int index) {
+        ensureTrees();
+        return liveBefore(index);
+    }
+    
+    public int firstStartingAtOrAfter(int offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getStart(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    public int firstEndingAfter(int offset) {
+        return firstEndingAfter(offset, 0, count);
+    }
+    
+    public int firstEndingAfter(int offset, int low, int high) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getEnd(mid) <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    public void applyEdit(int position, int removed, int inserted) {
+        if (count == 0) {
+            return;
+        }
+        ensureTrees();
+        int editEnd = position + removed;
+        int first = firstStartingAtOrAfter(removed > 0 ? editEnd : position);
+        
+        for (int i = first - 1; i >= 0; i--) {
+            int start = getStart(i);
+            int end = getEnd(i);
+            boolean overlaps = removed > 0
+                    ? end > position || start >= position
+                    : start < position && end > position;
+            if (!overlaps) {
+                break;
+            }
+            if (!dead[i]) {
+                dead[i] = true;
+                liveCount--;
+                update(liveTree, i, -1);
+            }
+            int collapsed = position - shift(i);
+            starts[i] = collapsed;
+            ends[i] = collapsed;
+        }
+        
+        int delta = inserted - removed;
+        if (delta != 0 && first < count) {
+            update(shiftTree, first, delta);
+        }
+    }
+    
+    private int shift(int index) {
+        if (!treesValid) {
+            return 0;
+        }
+        int sum = 0;
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            sum += shiftTree[i];
+        }
+        return sum;
+    }
+    
+    private int liveBefore(int index) {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += liveTree[i];
+        }
+        return sum;
+    }
+    
+    private int select(int rank) {
+        int position = 0;
+        int step = Integer.highestOneBit(Math.max(count, 1));
+        for (; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= count && liveTree[next] < rank) {
+                position = next;
+                rank -= liveTree[next];
+            }
+        }
+        return position;
+    }
+    
+    private void update(int[] tree, int index, int delta) {
+        for (int i = index + 1; i <= count; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+    
+    private void foldShifts() {
+        if (!treesValid) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int shift = shift(i);
+            starts[i] += shift;
+            ends[i] += shift;
+        }
+        treesValid = false;
+    }
+    
+    private void ensureTrees() {
+        if (treesValid) {
+            return;
+        }
+        if (shiftTree.length < count + 1) {
+            shiftTree = new int[starts.length + 1];
+            liveTree = new int[starts.length + 1];
+        }
+        Arrays.fill(shiftTree, 0, count + 1, 0);
+        Arrays.fill(liveTree, 0, count + 1, 0);
+        for (int i = 1; i <= count; i++) {
+            liveTree[i] += dead[i - 1] ? 0 : 1;
+            int parent = i + (i & -i);
+            if (parent <= count) {
+                liveTree[parent] += liveTree[i];
+            }
+        }
+        treesValid = true;
+    }
+}
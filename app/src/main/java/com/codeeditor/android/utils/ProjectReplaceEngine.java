@@ -0,0 +1,336 @@
+package com.codeeditor.android.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class ProjectReplaceEngine {
+    
+    private static final String TEMP_SUFFIX = ".replace";
+    private static final int WRITE_BUFFER_CHARS = 16 * 1024;
+    
+    private final ForkJoinPool pool;
+    private final Handler mainHandler;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile TrigramIndex index;
+    
+    public static class FileChange {
+        public final File file;
+        public final String relativePath;
+        public final int replacements;
+        
+        FileChange(File file, String relativePath, int replacements) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.replacements = replacements;
+        }
+    }
+    
+    public static class Summary {
+        public final List<FileChange> changes;
+        public final List<String> failures;
+        // files with matches that are not valid text in their detected charset, left unchanged
+        public final List<String> skipped;
+        public final boolean cancelled;
+        
+        Summary(List<FileChange> changes, List<String> failures, List<String> skipped, boolean cancelled) {
+            this.changes = changes;
+            this.failures = failures;
+            this.skipped = skipped;
+            this.cancelled = cancelled;
+        }
+        
+        public int getReplacementCount() {
+            int count = 0;
+            for (FileChange change : changes) {
+                count += change.replacements;
+            }
+            return count;
+        }
+    }
+    
+    public interface ReplaceCallback {
+        void onComplete(Summary summary);
+        void onError(String error);
+    }
+    
+    private static class PendingFile {
+        final FileChange change;
+        final File temp;
+        final long length;
+        final long lastModified;
+        
+        PendingFile(FileChange change, File temp, long length, long lastModified) {
+            this.change = change;
+            this.temp = temp;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+    
+    private class Replace {
+        final int id;
+        final String rootPath;
+        final LiteralSearcher literal;
+        final Pattern pattern;
+        final String replacement;
+        final Set<String> excludedPaths;
+        final TrigramIndex.Snapshot snapshot;
+        final BitSet candidates;
+        final ConcurrentLinkedQueue<PendingFile> pending = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<String> skipped = new ConcurrentLinkedQueue<>();
+        
+        Replace(int id, File root, LiteralSearcher literal, Pattern pattern, String replacement,
+                Set<String> excludedPaths, TrigramIndex.Snapshot snapshot, BitSet candidates) {
+            this.id = id;
+            this.rootPath = root.getAbsolutePath();
+            this.literal = literal;
+            this.pattern = pattern;
+            this.replacement = replacement;
+            this.excludedPaths = excludedPaths;
+            this.snapshot = snapshot;
+            this.candidates = candidates;
+        }
+        
+        boolean isCancelled() {
+            return id != generation.get();
+        }
+        
+        String relativePath(File file) {
+            String path = file.getAbsolutePath();
+            return path.startsWith(rootPath)
+                    ? path.substring(Math.min(path.length(), rootPath.length() + 1))
+                    : path;
+        }
+    }
+    
+    private class DirectoryTask extends RecursiveAction {
+        private final Replace replace;
+        private final File directory;
+        private final String prefix;
+        
+        DirectoryTask(Replace replace, File directory, String prefix) {
+            this.replace = replace;
+            this.directory = directory;
+            this.prefix = prefix;
+        }
+        
+        @Override
+        protected void compute() {
+            File[] children = directory.listFiles();
+            if (children == null || replace.isCancelled()) {
+                return;
+            }
+            
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            for (File child : children) {
+                String name = child.getName();
+                if (child.isDirectory()) {
+                    if (!ProjectSearchEngine.isSkippedDirectory(name)) {
+                        DirectoryTask task = new DirectoryTask(replace, child, prefix + name + "/");
+                        task.fork();
+                        subtasks.add(task);
+                    }
+                } else if (!ProjectSearchEngine.isSkippedFile(name)) {
+                    if (replace.isCancelled()) {
+                        break;
+                    }
+                    if (replace.excludedPaths.contains(child.getAbsolutePath())) {
+                        continue;
+                    }
+                    if (replace.candidates != null
+                            && replace.snapshot.canSkip(prefix + name, child, replace.candidates)) {
+                        continue;
+                    }
+                    rewriteFile(replace, child);
+                }
+            }
+            for (DirectoryTask task : subtasks) {
+                task.join();
+            }
+        }
+    }
+    
+    public ProjectReplaceEngine() {
+        this.pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+    
+    public void setIndex(TrigramIndex index) {
+        this.index = index;
+    }
+    
+    public void replace(File root, String query, String replacement, FindReplaceHelper.FindOptions options,
+                        Set<String> excludedPaths, ReplaceCallback callback) {
+        int id = generation.incrementAndGet();
+        TrigramIndex currentIndex = index;
+        TrigramIndex.Snapshot snapshot = currentIndex != null && currentIndex.getRoot().equals(root)
+                ? currentIndex.getSnapshot() : null;
+        BitSet candidates = snapshot != null
+                ? snapshot.candidates(options.useRegex
+                        ? TrigramIndex.regexTrigrams(query) : TrigramIndex.literalTrigrams(query))
+                : null;
+        Replace replace;
+        try {
+            replace = options.useRegex
+                    ? new Replace(id, root, null, FindReplaceHelper.compile(query, options), replacement,
+                            excludedPaths, snapshot, candidates)
+                    : new Replace(id, root, new LiteralSearcher(query, options.caseSensitive, options.wholeWord),
+                            null, replacement, excludedPaths, snapshot, candidates);
+        } catch (PatternSyntaxException e) {
+            callback.onError(e.getDescription());
+            return;
+        }
+        
+        pool.execute(() -> {
+            new DirectoryTask(replace, root, "").invoke();
+            
+            List<FileChange> changes = new ArrayList<>();
+            List<String> failures = new ArrayList<>(replace.failures);
+            List<String> skipped = new ArrayList<>(replace.skipped);
+            boolean cancelled = replace.isCancelled();
+            for (PendingFile pending : replace.pending) {
+                if (cancelled) {
+                    pending.temp.delete();
+                } else if (commit(pending)) {
+                    changes.add(pending.change);
+                } else {
+                    failures.add(pending.change.relativePath);
+                }
+            }
+            if (!changes.isEmpty() && currentIndex != null) {
+                currentIndex.update();
+            }
+            
+            Collections.sort(changes, (a, b) -> a.relativePath.compareTo(b.relativePath));
+            Collections.sort(failures);
+            Collections.sort(skipped);
+            Summary summary = new Summary(changes, failures, skipped, cancelled);
+            mainHandler.post(() -> callback.onComplete(summary));
+        });
+    }
+    
+    private void rewriteFile(Replace replace, File file) {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (length == 0 || length > ProjectSearchEngine.MAX_FILE_BYTES) {
+            return;
+        }
+        
+        Charset charset;
+        CharBuffer text;
+        boolean malformed = false;
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            charset = ProjectSearchEngine.detectCharset(mapped);
+            if (charset == null) {
+                return;
+            }
+            int start = mapped.position();
+            try {
+                text = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(mapped);
+            } catch (CharacterCodingException e) {
+                mapped.position(start);
+                text = charset.decode(mapped);
+                malformed = true;
+            }
+        } catch (IOException e) {
+            replace.failures.add(replace.relativePath(file));
+            return;
+        }
+        
+        EditBatch batch = new EditBatch();
+        try {
+            FindReplaceHelper.collectReplacements(text, replace.literal, replace.pattern, replace.replacement, batch);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            replace.failures.add(replace.relativePath(file));
+            return;
+        }
+        if (batch.size() == 0 || replace.isCancelled()) {
+            return;
+        }
+        if (malformed) {
+            // writing it back would replace the bytes that do not decode, so it is reported instead
+            replace.skipped.add(replace.relativePath(file));
+            return;
+        }
+        
+        File temp = null;
+        try {
+            temp = File.createTempFile("." + file.getName(), TEMP_SUFFIX, file.getParentFile());
+            writeReplaced(text, batch, temp, charset);
+            temp.setExecutable(file.canExecute());
+            FileChange change = new FileChange(file, replace.relativePath(file), batch.size());
+            replace.pending.add(new PendingFile(change, temp, length, lastModified));
+        } catch (IOException e) {
+            if (temp != null) {
+                temp.delete();
+            }
+            replace.failures.add(replace.relativePath(file));
+        }
+    }
+    
+    private static void writeReplaced(CharBuffer text, EditBatch batch, File temp, Charset charset) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(temp); FileChannel channel = out.getChannel()) {
+            Writer writer = Channels.newWriter(channel, charset.newEncoder(), WRITE_BUFFER_CHARS);
+            char[] chars = text.array();
+            int offset = text.arrayOffset();
+            int position = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int start = batch.getStart(i);
+                writer.write(chars, offset + position, start - position);
+                writer.write(batch.getReplacement(i));
+                position = start + batch.getLength(i);
+            }
+            writer.write(chars, offset + position, text.length() - position);
+            writer.flush();
+            channel.force(false);
+        }
+    }
+    
+    private static boolean commit(PendingFile pending) {
+        File file = pending.change.file;
+        if (file.length() != pending.length || file.lastModified() != pending.lastModified
+                || !pending.temp.renameTo(file)) {
+            pending.temp.delete();
+            return false;
+        }
+        return true;
+    }
+    
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+    
+    public void shutdown() {
+        cancel();
+        pool.shutdownNow();
+    }
+}
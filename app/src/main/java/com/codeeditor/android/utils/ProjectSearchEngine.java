@@ -0,0 +1,352 @@
+package com.codeeditor.android.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class ProjectSearchEngine {
+    
+    static final long MAX_FILE_BYTES = 8L * 1024 * 1024;
+    private static final int SNIFF_BYTES = 8 * 1024;
+    private static final int MAX_HITS_PER_FILE = 500;
+    private static final int MAX_TOTAL_HITS = 10000;
+    private static final int PREVIEW_CHARS = 120;
+    
+    private static final Set<String> SKIPPED_DIRECTORIES = new HashSet<>(Arrays.asList(
+            "build", "out", "bin", "obj", "gen", "node_modules", "intermediates", "generated"));
+    private static final Set<String> BINARY_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "png", "jpg", "jpeg", "gif", "webp", "ico", "bmp", "apk", "aab", "dex", "jar", "aar",
+            "class", "so", "o", "a", "zip", "gz", "tar", "7z", "ttf", "otf", "mp3", "mp4", "ogg",
+            "wav", "pdf", "keystore", "jks", "bin"));
+    
+    private final ForkJoinPool pool;
+    private final Handler mainHandler;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile TrigramIndex index;
+    
+    public static class Hit {
+        public final int line;
+        public final int column;
+        public final int length;
+        public final String preview;
+        
+        public Hit(int line, int column, int length, String preview) {
+            this.line = line;
+            this.column = column;
+            this.length = length;
+            this.preview = preview;
+        }
+    }
+    
+    public static class FileResult {
+        public final File file;
+        public final String relativePath;
+        public final List<Hit> hits;
+        
+        FileResult(File file, String relativePath, List<Hit> hits) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.hits = hits;
+        }
+    }
+    
+    public interface SearchCallback {
+        void onFileResult(FileResult result);
+        void onComplete(int fileCount, int hitCount, boolean truncated);
+        void onError(String error);
+    }
+    
+    private class Search {
+        final int id;
+        final String rootPath;
+        final LiteralSearcher literal;
+        final Pattern pattern;
+        final SearchCallback callback;
+        final TrigramIndex.Snapshot snapshot;
+        final BitSet candidates;
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger hits = new AtomicInteger();
+        volatile boolean indexStale;
+        
+        Search(int id, File root, LiteralSearcher literal, Pattern pattern, SearchCallback callback,
+               TrigramIndex.Snapshot snapshot, BitSet candidates) {
+            this.id = id;
+            this.rootPath = root.getAbsolutePath();
+            this.literal = literal;
+            this.pattern = pattern;
+            this.callback = callback;
+            this.snapshot = snapshot;
+            this.candidates = candidates;
+        }
+        
+        boolean isCancelled() {
+            return id != generation.get() || hits.get() >= MAX_TOTAL_HITS;
+        }
+    }
+    
+    private class DirectoryTask extends RecursiveAction {
+        private final Search search;
+        private final File directory;
+        private final String prefix;
+        
+        DirectoryTask(Search search, File directory, String prefix) {
+            this.search = search;
+            this.directory = directory;
+            this.prefix = prefix;
+        }
+        
+        @Override
+        protected void compute() {
+            File[] children = directory.listFiles();
+            if (children == null || search.isCancelled()) {
+                return;
+            }
+            
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            for (File child : children) {
+                String name = child.getName();
+                if (child.isDirectory()) {
+                    if (!isSkippedDirectory(name)) {
+                        DirectoryTask task = new DirectoryTask(search, child, prefix + name + "/");
+                        task.fork();
+                        subtasks.add(task);
+                    }
+                } else if (!isSkippedFile(name)) {
+                    if (search.isCancelled()) {
+                        break;
+                    }
+                    if (search.snapshot != null) {
+                        String relativePath = prefix + name;
+                        if (search.candidates != null && search.snapshot.canSkip(relativePath, child, search.candidates)) {
+                            continue;
+                        }
+                        if (!search.snapshot.isCurrent(relativePath, child)) {
+                            search.indexStale = true;
+                        }
+                    }
+                    searchFile(search, child);
+                }
+            }
+            for (DirectoryTask task : subtasks) {
+                task.join();
+            }
+        }
+    }
+    
+    public ProjectSearchEngine() {
+        this.pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+    
+    public void setIndex(TrigramIndex index) {
+        this.index = index;
+    }
+    
+    public void search(File root, String query, FindReplaceHelper.FindOptions options, SearchCallback callback) {
+        int id = generation.incrementAndGet();
+        TrigramIndex currentIndex = index;
+        TrigramIndex.Snapshot snapshot = currentIndex != null && currentIndex.getRoot().equals(root)
+                ? currentIndex.getSnapshot() : null;
+        BitSet candidates = snapshot != null
+                ? snapshot.candidates(options.useRegex
+                        ? TrigramIndex.regexTrigrams(query) : TrigramIndex.literalTrigrams(query))
+                : null;
+        Search search;
+        try {
+            search = options.useRegex
+                    ? new Search(id, root, null, FindReplaceHelper.compile(query, options), callback,
+                            snapshot, candidates)
+                    : new Search(id, root, new LiteralSearcher(query, options.caseSensitive, options.wholeWord),
+                            null, callback, snapshot, candidates);
+        } catch (PatternSyntaxException e) {
+            callback.onError(e.getDescription());
+            return;
+        }
+        
+        pool.execute(() -> {
+            new DirectoryTask(search, root, "").invoke();
+            if (search.indexStale || (currentIndex != null && snapshot == null)) {
+                currentIndex.update();
+            }
+            if (id != generation.get()) {
+                return;
+            }
+            int fileCount = search.files.get();
+            int hitCount = search.hits.get();
+            boolean truncated = hitCount >= MAX_TOTAL_HITS;
+            mainHandler.post(() -> {
+                if (id == generation.get()) {
+                    callback.onComplete(fileCount, hitCount, truncated);
+                }
+            });
+        });
+    }
+    
+    private void searchFile(Search search, File file) {
+        CharBuffer text;
+        try {
+            text = readText(file);
+        } catch (IOException e) {
+            return;
+        }
+        if (text == null) {
+            return;
+        }
+        
+        List<Hit> hits = new ArrayList<>();
+        LineCounter lines = new LineCounter(text);
+        if (search.literal != null) {
+            int length = search.literal.length();
+            int index = search.literal.indexOf(text, 0);
+            while (index >= 0 && hits.size() < MAX_HITS_PER_FILE) {
+                hits.add(lines.hitAt(index, length));
+                index = search.literal.indexOf(text, index + length);
+            }
+        } else {
+            Matcher matcher = search.pattern.matcher(text);
+            while (matcher.find() && hits.size() < MAX_HITS_PER_FILE) {
+                hits.add(lines.hitAt(matcher.start(), matcher.end() - matcher.start()));
+            }
+        }
+        if (hits.isEmpty()) {
+            return;
+        }
+        
+        search.files.incrementAndGet();
+        search.hits.addAndGet(hits.size());
+        String path = file.getAbsolutePath();
+        String relativePath = path.startsWith(search.rootPath)
+                ? path.substring(Math.min(path.length(), search.rootPath.length() + 1))
+                : path;
+        FileResult result = new FileResult(file, relativePath, hits);
+        mainHandler.post(() -> {
+            if (search.id == generation.get()) {
+                search.callback.onFileResult(result);
+            }
+        });
+    }
+    
+    static boolean isSkippedDirectory(String name) {
+        return name.startsWith(".") || SKIPPED_DIRECTORIES.contains(name);
+    }
+    
+    static boolean isSkippedFile(String name) {
+        if (name.startsWith(".")) {
+            return true;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && BINARY_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+    
+    static CharBuffer readText(File file) throws IOException {
+        long size = file.length();
+        if (size == 0 || size > MAX_FILE_BYTES) {
+            return null;
+        }
+        
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Charset charset = detectCharset(mapped);
+            if (charset == null) {
+                return null;
+            }
+            
+            try {
+                return charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .decode(mapped);
+            } catch (CharacterCodingException e) {
+                return null;
+            }
+        }
+    }
+    
+    static Charset detectCharset(ByteBuffer buffer) {
+        if (hasBom(buffer, 0xFE, 0xFF)) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (hasBom(buffer, 0xFF, 0xFE)) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return isBinary(buffer) ? null : StandardCharsets.UTF_8;
+    }
+    
+    private static boolean hasBom(ByteBuffer buffer, int first, int second) {
+        return buffer.limit() >= 2 && (buffer.get(0) & 0xFF) == first && (buffer.get(1) & 0xFF) == second;
+    }
+    
+    private static boolean isBinary(ByteBuffer buffer) {
+        int limit = Math.min(buffer.limit(), SNIFF_BYTES);
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static class LineCounter {
+        private final CharSequence text;
+        private int position;
+        private int line = 1;
+        private int lineStart;
+        
+        LineCounter(CharSequence text) {
+            this.text = text;
+        }
+        
+        Hit hitAt(int start, int length) {
+            for (; position < start; position++) {
+                if (text.charAt(position) == '\n') {
+                    line++;
+                    lineStart = position + 1;
+                }
+            }
+            
+            int lineEnd = lineStart;
+            while (lineEnd < text.length() && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            int previewStart = Math.max(lineStart, Math.min(start - PREVIEW_CHARS / 4, lineEnd - PREVIEW_CHARS));
+            while (previewStart < start && Character.isWhitespace(text.charAt(previewStart))) {
+                previewStart++;
+            }
+            int previewEnd = Math.min(lineEnd, previewStart + PREVIEW_CHARS);
+            return new Hit(line, start - lineStart, length, text.subSequence(previewStart, previewEnd).toString());
+        }
+    }
+    
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+    
+    public void shutdown() {
+        cancel();
+        pool.shutdownNow();
+    }
+}
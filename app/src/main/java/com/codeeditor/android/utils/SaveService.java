@@ -0,0 +1,185 @@
+package com.codeeditor.android.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SaveService {
+    
+    public static final long NO_HASH = 0;
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    
+    private final Context context;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+    private final Map<String, SaveRequest> queued = new HashMap<>();
+    private final Map<String, Long> lastSavedHashes = new HashMap<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    
+    public interface SaveCallback {
+        void onSaved(long hash, int length, boolean written);
+        void onError(String error);
+    }
+    
+    private static class SaveRequest {
+        final Uri uri;
+        CharSequence text;
+        TextFormat format;
+        long knownHash;
+        final List<SaveCallback> callbacks = new ArrayList<>();
+        
+        SaveRequest(Uri uri) {
+            this.uri = uri;
+        }
+    }
+    
+    public SaveService(Context context) {
+        this.context = context.getApplicationContext();
+        this.executor = Executors.newSingleThreadExecutor();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+    
+    public void save(Uri uri, CharSequence text, TextFormat format, long knownHash, SaveCallback callback) {
+        String key = uri.toString();
+        boolean schedule;
+        synchronized (queued) {
+            SaveRequest request = queued.get(key);
+            schedule = request == null;
+            if (schedule) {
+                request = new SaveRequest(uri);
+                queued.put(key, request);
+            }
+            request.text = text;
+            request.format = format;
+            request.knownHash = knownHash;
+            if (callback != null) {
+                request.callbacks.add(callback);
+            }
+        }
+        if (schedule) {
+            executor.execute(() -> process(key));
+        }
+    }
+    
+    private void process(String key) {
+        SaveRequest request;
+        synchronized (queued) {
+            request = queued.remove(key);
+        }
+        if (request == null) {
+            return;
+        }
+        
+        long hash = ContentHash.hash64(request.text);
+        int length = request.text.length();
+        Long lastSaved = lastSavedHashes.get(key);
+        boolean unchanged = hash == request.knownHash || (lastSaved != null && lastSaved == hash);
+        
+        try {
+            if (!unchanged) {
+                write(request.uri, request.text, request.format);
+                lastSavedHashes.put(key, hash);
+            }
+            mainHandler.post(() -> {
+                for (SaveCallback callback : request.callbacks) {
+                    callback.onSaved(hash, length, !unchanged);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            lastSavedHashes.remove(key);
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            mainHandler.post(() -> {
+                for (SaveCallback callback : request.callbacks) {
+                    callback.onError(message);
+                }
+            });
+        }
+    }
+    
+    private void write(Uri uri, CharSequence text, TextFormat format) throws IOException {
+        ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "wt");
+        if (descriptor == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        
+        try (ParcelFileDescriptor pfd = descriptor;
+             FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor());
+             FileChannel channel = out.getChannel()) {
+            try {
+                channel.truncate(0);
+            } catch (IOException ignored) {
+                // not every provider hands out a seekable descriptor
+            }
+            
+            CharsetEncoder encoder = format.charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            writeBuffer.clear();
+            writeBuffer.put(format.getBom());
+            
+            if ("\n".equals(format.lineSeparator)) {
+                encode(encoder, CharBuffer.wrap(text), channel);
+            } else {
+                CharBuffer separator = CharBuffer.wrap(format.lineSeparator);
+                int start = 0;
+                int length = text.length();
+                for (int i = 0; i < length; i++) {
+                    if (text.charAt(i) == '\n') {
+                        encode(encoder, CharBuffer.wrap(text, start, i), channel);
+                        encode(encoder, separator.duplicate(), channel);
+                        start = i + 1;
+                    }
+                }
+                encode(encoder, CharBuffer.wrap(text, start, length), channel);
+            }
+            
+            encoder.encode(CharBuffer.allocate(0), writeBuffer, true);
+            encoder.flush(writeBuffer);
+            drain(channel);
+            channel.force(false);
+        }
+    }
+    
+    private void encode(CharsetEncoder encoder, CharBuffer input, FileChannel channel) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(input, writeBuffer, false);
+            if (result.isOverflow()) {
+                drain(channel);
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+    
+    private void drain(FileChannel channel) throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+    
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,712 @@
+package com.codeeditor.android.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.codeeditor.android.model.OpenFile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SessionJournal {
+    
+    private static final int MANIFEST_MAGIC = 0x43454d31;
+    private static final int JOURNAL_MAGIC = 0x43454a31;
+    private static final int JOURNAL_HEADER_BYTES = 8;
+    private static final byte RECORD_EDIT = 1;
+    private static final byte RECORD_CURSOR = 2;
+    private static final byte RECORD_ACTIVE = 3;
+    private static final long FLUSH_DELAY = 1000;
+    private static final long CHECKPOINT_DELAY = 2000;
+    private static final long CHECKPOINT_INTERVAL = 60 * 1000;
+    private static final long MAX_JOURNAL_BYTES = 512 * 1024;
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    
+    private final File sessionDir;
+    private final File manifestFile;
+    private final File journalFile;
+    private final Host host;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+    private final Map<OpenFile, TabRecord> records = new HashMap<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final Runnable flushRunnable = this::flush;
+    private final Runnable checkpointRunnable = this::checkpoint;
+    private Checkpoint inFlight;
+    private int generation;
+    private long journalBytes;
+    private long lastCheckpoint;
+    private boolean flushScheduled;
+    private boolean checkpointScheduled;
+    private boolean restoring;
+    private boolean closed;
+    private DataOutputStream journalOut;
+    
+    public interface Host {
+        List<OpenFile> getSessionTabs();
+        OpenFile getDisplayedTab();
+        CharSequence snapshotDisplayedText();
+    }
+    
+    public interface RestoreCallback {
+        void onRestored(Session session);
+    }
+    
+    public static class RestoredTab {
+        public final OpenFile file;
+        public final int selectionStart;
+        public final int selectionEnd;
+        public final int scrollX;
+        public final int scrollY;
+        
+        RestoredTab(OpenFile file, int selectionStart, int selectionEnd, int scrollX, int scrollY) {
+            this.file = file;
+            this.selectionStart = selectionStart;
+            this.selectionEnd = selectionEnd;
+            this.scrollX = scrollX;
+            this.scrollY = scrollY;
+        }
+    }
+    
+    public static class Session {
+        public final List<RestoredTab> tabs = new ArrayList<>();
+        public int activeIndex = -1;
+    }
+    
+    private static class TabRecord {
+        int slot = -1;
+        int nextSlot = -1;
+        String snapshotName;
+        int snapshotLength;
+        String nextSnapshotName;
+        int nextSnapshotLength;
+        boolean dirty = true;
+        int edits;
+        int checkpointEdits;
+        boolean cursorChanged;
+        int selectionStart;
+        int selectionEnd;
+        int scrollX;
+        int scrollY;
+    }
+    
+    /** A checkpoint whose manifest is being written; its slots apply once the write succeeds. */
+    private static class Checkpoint {
+        final int generation;
+        final Map<OpenFile, TabRecord> live;
+        final long journalBytes;
+        
+        Checkpoint(int generation, Map<OpenFile, TabRecord> live, long journalBytes) {
+            this.generation = generation;
+            this.live = live;
+            this.journalBytes = journalBytes;
+        }
+    }
+    
+    private static class ManifestEntry {
+        String name;
+        String path;
+        String sha;
+        String localUri;
+        boolean isGitHubFile;
+        String owner;
+        String repo;
+        String branch;
+        String charset;
+        String lineSeparator;
+        boolean hasBom;
+        boolean isModified;
+        long baselineHash;
+        int baselineLength;
+        String snapshotName;
+        int snapshotLength;
+        int selectionStart;
+        int selectionEnd;
+        int scrollX;
+        int scrollY;
+        CharSequence content;
+        OpenFile.DiskRead stored;
+    }
+    
+    private static class JournalPatch implements OpenFile.ContentPatch {
+        final List<int[]> ranges = new ArrayList<>();
+        final List<String> insertions = new ArrayList<>();
+        
+        @Override
+        public String apply(String content) {
+            StringBuilder text = new StringBuilder(content);
+            for (int i = 0; i < ranges.size(); i++) {
+                int[] range = ranges.get(i);
+                int start = Math.min(range[0], text.length());
+                int end = Math.min(start + range[1], text.length());
+                text.replace(start, end, insertions.get(i));
+            }
+            return text.toString();
+        }
+    }
+    
+    public SessionJournal(Context context, Host host) {
+        this(new File(context.getFilesDir(), "session"), host);
+    }
+    
+    SessionJournal(File sessionDir, Host host) {
+        this.sessionDir = sessionDir;
+        this.manifestFile = new File(sessionDir, "manifest.bin");
+        this.journalFile = new File(sessionDir, "journal.bin");
+        this.host = host;
+        this.executor = Executors.newSingleThreadExecutor();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.lastCheckpoint = System.currentTimeMillis();
+        sessionDir.mkdirs();
+    }
+    
+    public void restore(RestoreCallback callback) {
+        restoring = true;
+        executor.execute(() -> {
+            List<ManifestEntry> entries = new ArrayList<>();
+            int[] state = new int[3];
+            Session session = new Session();
+            List<JournalPatch> patches = new ArrayList<>();
+            int[] lengths = new int[0];
+            
+            try {
+                readManifest(entries, state);
+                lengths = new int[entries.size()];
+                for (int i = 0; i < entries.size(); i++) {
+                    patches.add(null);
+                    lengths[i] = entries.get(i).snapshotLength;
+                }
+                replayJournal(state, entries, patches, lengths);
+                
+                for (int i = 0; i < entries.size(); i++) {
+                    ManifestEntry entry = entries.get(i);
+                    OpenFile file = new OpenFile(entry.name, entry.path, null, entry.sha, entry.localUri);
+                    if (entry.isGitHubFile) {
+                        file.setGitHubInfo(entry.owner, entry.repo, entry.branch);
+                    }
+                    file.format = new TextFormat(Charset.forName(entry.charset), entry.lineSeparator, entry.hasBom);
+                    file.restoreBaseline(entry.baselineHash, entry.baselineLength,
+                            entry.isModified || patches.get(i) != null);
+                    file.restore(new File(sessionDir, entry.snapshotName), lengths[i], patches.get(i));
+                    if (i == state[1]) {
+                        file.updateModified(file.getContent());
+                    }
+                    session.tabs.add(new RestoredTab(file, entry.selectionStart, entry.selectionEnd,
+                            entry.scrollX, entry.scrollY));
+                }
+                session.activeIndex = state[1];
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                session.tabs.clear();
+                session.activeIndex = -1;
+                entries.clear();
+                state[0] = 0;
+                state[2] = 0;
+            }
+            
+            int restoredGeneration = state[2];
+            try {
+                openJournal(restoredGeneration, state[0]);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            
+            mainHandler.post(() -> {
+                restoring = false;
+                generation = restoredGeneration;
+                for (int i = 0; i < session.tabs.size(); i++) {
+                    RestoredTab tab = session.tabs.get(i);
+                    TabRecord record = new TabRecord();
+                    record.slot = i;
+                    record.snapshotName = entries.get(i).snapshotName;
+                    record.snapshotLength = entries.get(i).snapshotLength;
+                    record.dirty = patches.get(i) != null;
+                    record.selectionStart = tab.selectionStart;
+                    record.selectionEnd = tab.selectionEnd;
+                    record.scrollX = tab.scrollX;
+                    record.scrollY = tab.scrollY;
+                    records.put(tab.file, record);
+                }
+                callback.onRestored(session);
+            });
+        });
+    }
+    
+    public void recordEdit(OpenFile file, CharSequence text, int start, int removed, int inserted) {
+        if (file == null || file.isLoading() || restoring) {
+            return;
+        }
+        TabRecord record = recordFor(file);
+        if (record == null || slotOf(record) < 0) {
+            scheduleCheckpoint();
+            return;
+        }
+        record.dirty = true;
+        record.edits++;
+        try {
+            byte[] bytes = text.subSequence(start, start + inserted).toString().getBytes(StandardCharsets.UTF_8);
+            pendingOut.writeByte(RECORD_EDIT);
+            pendingOut.writeInt(slotOf(record));
+            pendingOut.writeInt(start);
+            pendingOut.writeInt(removed);
+            pendingOut.writeInt(bytes.length);
+            pendingOut.write(bytes);
+        } catch (IOException ignored) {
+            // ByteArrayOutputStream does not throw
+        }
+        scheduleFlush();
+    }
+    
+    /** Snapshots the tab at the next checkpoint, for content changed without going through recordEdit. */
+    public void markDirty(OpenFile file) {
+        TabRecord record = recordFor(file);
+        if (record != null) {
+            record.dirty = true;
+            record.edits++;
+        }
+    }
+    
+    public void recordCursor(OpenFile file, int selectionStart, int selectionEnd, int scrollX, int scrollY) {
+        TabRecord record = recordFor(file);
+        if (record == null) {
+            return;
+        }
+        if (record.selectionStart != selectionStart || record.selectionEnd != selectionEnd
+                || record.scrollX != scrollX || record.scrollY != scrollY) {
+            record.selectionStart = selectionStart;
+            record.selectionEnd = selectionEnd;
+            record.scrollX = scrollX;
+            record.scrollY = scrollY;
+            record.cursorChanged = true;
+            scheduleFlush();
+        }
+    }
+    
+    public void recordActive(OpenFile file) {
+        if (restoring) {
+            return;
+        }
+        TabRecord record = recordFor(file);
+        if (record == null || slotOf(record) < 0) {
+            scheduleCheckpoint();
+            return;
+        }
+        try {
+            pendingOut.writeByte(RECORD_ACTIVE);
+            pendingOut.writeInt(slotOf(record));
+        } catch (IOException ignored) {
+            // ByteArrayOutputStream does not throw
+        }
+        scheduleFlush();
+    }
+    
+    /**
+     * While a checkpoint is being written, records are already numbered by its manifest: the executor
+     * appends them to its journal after the write, or drops them with the closed journal if it failed.
+     */
+    private TabRecord recordFor(OpenFile file) {
+        if (file == null) {
+            return null;
+        }
+        return inFlight != null ? inFlight.live.get(file) : records.get(file);
+    }
+    
+    private int slotOf(TabRecord record) {
+        return inFlight != null ? record.nextSlot : record.slot;
+    }
+    
+    public void scheduleCheckpoint() {
+        if (!checkpointScheduled && !restoring && !closed) {
+            checkpointScheduled = true;
+            mainHandler.postDelayed(checkpointRunnable, CHECKPOINT_DELAY);
+        }
+    }
+    
+    private void scheduleFlush() {
+        if (!flushScheduled && !closed) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushRunnable, FLUSH_DELAY);
+        }
+    }
+    
+    public void flush() {
+        mainHandler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        if (restoring || closed) {
+            return;
+        }
+        
+        for (TabRecord record : inFlight != null ? inFlight.live.values() : records.values()) {
+            if (record.cursorChanged && slotOf(record) >= 0) {
+                record.cursorChanged = false;
+                try {
+                    pendingOut.writeByte(RECORD_CURSOR);
+                    pendingOut.writeInt(slotOf(record));
+                    pendingOut.writeInt(record.selectionStart);
+                    pendingOut.writeInt(record.selectionEnd);
+                    pendingOut.writeInt(record.scrollX);
+                    pendingOut.writeInt(record.scrollY);
+                } catch (IOException ignored) {
+                    // ByteArrayOutputStream does not throw
+                }
+            }
+        }
+        if (pending.size() == 0) {
+            return;
+        }
+        
+        byte[] bytes = pending.toByteArray();
+        pending.reset();
+        journalBytes += bytes.length;
+        executor.execute(() -> {
+            try {
+                if (journalOut != null) {
+                    journalOut.write(bytes);
+                    journalOut.flush();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        
+        if (journalBytes > MAX_JOURNAL_BYTES
+                || System.currentTimeMillis() - lastCheckpoint > CHECKPOINT_INTERVAL) {
+            scheduleCheckpoint();
+        }
+    }
+    
+    public void checkpoint() {
+        mainHandler.removeCallbacks(checkpointRunnable);
+        checkpointScheduled = false;
+        if (restoring || closed) {
+            return;
+        }
+        if (inFlight != null) {
+            scheduleCheckpoint();
+            return;
+        }
+        flush();
+        
+        List<OpenFile> tabs = host.getSessionTabs();
+        OpenFile displayed = host.getDisplayedTab();
+        int nextGeneration = generation + 1;
+        List<ManifestEntry> entries = new ArrayList<>(tabs.size());
+        Map<OpenFile, TabRecord> live = new HashMap<>();
+        int activeSlot = -1;
+        
+        for (OpenFile file : tabs) {
+            if (file.isLoading()) {
+                continue;
+            }
+            TabRecord record = records.get(file);
+            if (record == null) {
+                record = new TabRecord();
+            }
+            record.nextSlot = entries.size();
+            record.cursorChanged = false;
+            
+            ManifestEntry entry = new ManifestEntry();
+            entry.name = file.name;
+            entry.path = file.path;
+            entry.sha = file.sha;
+            entry.localUri = file.localUri;
+            entry.isGitHubFile = file.isGitHubFile;
+            entry.owner = file.owner;
+            entry.repo = file.repo;
+            entry.branch = file.branch;
+            entry.charset = file.format.charset.name();
+            entry.lineSeparator = file.format.lineSeparator;
+            entry.hasBom = file.format.hasBom;
+            entry.isModified = file.isModified;
+            entry.baselineHash = file.getBaselineHash();
+            entry.baselineLength = file.getBaselineLength();
+            entry.selectionStart = record.selectionStart;
+            entry.selectionEnd = record.selectionEnd;
+            entry.scrollX = record.scrollX;
+            entry.scrollY = record.scrollY;
+            
+            record.nextSnapshotName = record.snapshotName;
+            record.nextSnapshotLength = record.snapshotLength;
+            record.checkpointEdits = record.edits;
+            if (record.dirty || record.snapshotName == null) {
+                // packed and spilled tabs are written from their stored bytes instead of being decoded here
+                entry.stored = file != displayed ? file.storedContent() : null;
+                if (entry.stored != null) {
+                    record.nextSnapshotLength = file.getContentLength();
+                } else {
+                    CharSequence content = file == displayed ? host.snapshotDisplayedText() : file.getContent();
+                    entry.content = content != null ? content : "";
+                    record.nextSnapshotLength = entry.content.length();
+                }
+                record.nextSnapshotName = file.id + "-" + nextGeneration + SNAPSHOT_SUFFIX;
+            }
+            entry.snapshotName = record.nextSnapshotName;
+            entry.snapshotLength = record.nextSnapshotLength;
+            
+            if (file == displayed) {
+                activeSlot = record.nextSlot;
+            }
+            entries.add(entry);
+            live.put(file, record);
+        }
+        
+        Checkpoint checkpoint = new Checkpoint(nextGeneration, live, journalBytes);
+        inFlight = checkpoint;
+        int active = activeSlot;
+        executor.execute(() -> {
+            boolean written;
+            try {
+                writeCheckpoint(nextGeneration, entries, active);
+                written = true;
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                // edits queued behind this checkpoint use its slots, so they must not reach the old journal
+                closeJournal();
+                written = false;
+            }
+            boolean succeeded = written;
+            mainHandler.post(() -> finishCheckpoint(checkpoint, succeeded));
+        });
+    }
+    
+    private void finishCheckpoint(Checkpoint checkpoint, boolean succeeded) {
+        inFlight = null;
+        if (!succeeded) {
+            // the old manifest stays the restore point; snapshot every tab again at the next checkpoint
+            for (TabRecord record : records.values()) {
+                record.dirty = true;
+            }
+            return;
+        }
+        
+        for (TabRecord record : checkpoint.live.values()) {
+            record.slot = record.nextSlot;
+            if (!record.nextSnapshotName.equals(record.snapshotName)) {
+                record.snapshotName = record.nextSnapshotName;
+                record.snapshotLength = record.nextSnapshotLength;
+                if (record.edits == record.checkpointEdits) {
+                    record.dirty = false;
+                }
+            }
+        }
+        records.clear();
+        records.putAll(checkpoint.live);
+        generation = checkpoint.generation;
+        journalBytes -= checkpoint.journalBytes;
+        lastCheckpoint = System.currentTimeMillis();
+    }
+    
+    private void writeCheckpoint(int nextGeneration, List<ManifestEntry> entries, int active) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        for (ManifestEntry entry : entries) {
+            referenced.add(entry.snapshotName);
+            if (entry.content != null) {
+                ContentCodec.writePacked(new File(sessionDir, entry.snapshotName), ContentCodec.pack(entry.content));
+            } else if (entry.stored != null) {
+                entry.stored.writeTo(new File(sessionDir, entry.snapshotName));
+            }
+        }
+        
+        IndexFiles.write(manifestFile, MANIFEST_MAGIC, out -> {
+            out.writeInt(nextGeneration);
+            out.writeInt(active);
+            out.writeInt(entries.size());
+            for (ManifestEntry entry : entries) {
+                writeString(out, entry.name);
+                writeString(out, entry.path);
+                writeString(out, entry.sha);
+                writeString(out, entry.localUri);
+                out.writeBoolean(entry.isGitHubFile);
+                writeString(out, entry.owner);
+                writeString(out, entry.repo);
+                writeString(out, entry.branch);
+                writeString(out, entry.charset);
+                writeString(out, entry.lineSeparator);
+                out.writeBoolean(entry.hasBom);
+                out.writeBoolean(entry.isModified);
+                out.writeLong(entry.baselineHash);
+                out.writeInt(entry.baselineLength);
+                writeString(out, entry.snapshotName);
+                out.writeInt(entry.snapshotLength);
+                out.writeInt(entry.selectionStart);
+                out.writeInt(entry.selectionEnd);
+                out.writeInt(entry.scrollX);
+                out.writeInt(entry.scrollY);
+            }
+        });
+        
+        openJournal(nextGeneration, 0);
+        
+        File[] files = sessionDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(SNAPSHOT_SUFFIX) && !referenced.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+    }
+    
+    private void readManifest(List<ManifestEntry> entries, int[] state) throws IOException {
+        state[0] = 0;
+        state[1] = -1;
+        state[2] = 0;
+        if (!manifestFile.exists()) {
+            return;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+            if (in.readInt() != MANIFEST_MAGIC) {
+                throw new IOException("Bad session manifest");
+            }
+            state[2] = in.readInt();
+            state[1] = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                ManifestEntry entry = new ManifestEntry();
+                entry.name = readString(in);
+                entry.path = readString(in);
+                entry.sha = readString(in);
+                entry.localUri = readString(in);
+                entry.isGitHubFile = in.readBoolean();
+                entry.owner = readString(in);
+                entry.repo = readString(in);
+                entry.branch = readString(in);
+                entry.charset = readString(in);
+                entry.lineSeparator = readString(in);
+                entry.hasBom = in.readBoolean();
+                entry.isModified = in.readBoolean();
+                entry.baselineHash = in.readLong();
+                entry.baselineLength = in.readInt();
+                entry.snapshotName = readString(in);
+                entry.snapshotLength = in.readInt();
+                entry.selectionStart = in.readInt();
+                entry.selectionEnd = in.readInt();
+                entry.scrollX = in.readInt();
+                entry.scrollY = in.readInt();
+                entries.add(entry);
+            }
+        }
+        if (state[1] >= entries.size()) {
+            state[1] = entries.isEmpty() ? -1 : 0;
+        }
+    }
+    
+    private void replayJournal(int[] state, List<ManifestEntry> entries, List<JournalPatch> patches,
+                               int[] lengths) throws IOException {
+        if (!journalFile.exists()) {
+            return;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readInt() != state[2]) {
+                return;
+            }
+            state[0] = JOURNAL_HEADER_BYTES;
+            while (true) {
+                int size;
+                byte type = in.readByte();
+                int slot = in.readInt();
+                if (slot < 0 || slot >= entries.size()) {
+                    break;
+                }
+                if (type == RECORD_EDIT) {
+                    int start = in.readInt();
+                    int removed = in.readInt();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    String inserted = new String(bytes, StandardCharsets.UTF_8);
+                    JournalPatch patch = patches.get(slot);
+                    if (patch == null) {
+                        patch = new JournalPatch();
+                        patches.set(slot, patch);
+                    }
+                    patch.ranges.add(new int[]{start, removed});
+                    patch.insertions.add(inserted);
+                    lengths[slot] += inserted.length() - removed;
+                    size = 17 + bytes.length;
+                } else if (type == RECORD_CURSOR) {
+                    ManifestEntry entry = entries.get(slot);
+                    entry.selectionStart = in.readInt();
+                    entry.selectionEnd = in.readInt();
+                    entry.scrollX = in.readInt();
+                    entry.scrollY = in.readInt();
+                    size = 21;
+                } else if (type == RECORD_ACTIVE) {
+                    state[1] = slot;
+                    size = 5;
+                } else {
+                    break;
+                }
+                state[0] += size;
+            }
+        } catch (EOFException ignored) {
+            // a record torn by a crash ends the replay
+        }
+    }
+    
+    private void closeJournal() {
+        if (journalOut != null) {
+            try {
+                journalOut.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journalOut = null;
+        }
+    }
+    
+    private void openJournal(int journalGeneration, int validLength) throws IOException {
+        closeJournal();
+        if (validLength >= JOURNAL_HEADER_BYTES && journalFile.exists()) {
+            try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+                file.setLength(validLength);
+            }
+            journalOut = new DataOutputStream(new FileOutputStream(journalFile, true));
+            return;
+        }
+        journalOut = new DataOutputStream(new FileOutputStream(journalFile));
+        journalOut.writeInt(JOURNAL_MAGIC);
+        journalOut.writeInt(journalGeneration);
+        journalOut.flush();
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    public void shutdown() {
+        flush();
+        closed = true;
+        mainHandler.removeCallbacks(checkpointRunnable);
+        executor.execute(this::closeJournal);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,553 @@
+package com.codeeditor.android.utils;
+
+import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.utils.WorkspaceSymbolIndex.Kind;
+import com.codeeditor.android.utils.WorkspaceSymbolIndex.Symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SymbolScanner {
+    
+    private static final Set<String> SCANNED_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "java", "kt", "kts", "py", "pyw", "js", "jsx", "mjs", "ts", "tsx"
+    ));
+    
+    private static final Set<String> JAVA_NON_TYPES = new HashSet<>(Arrays.asList(
+        "new", "return", "throw", "throws", "else", "case", "extends", "implements",
+        "permits", "package", "import", "instanceof", "default"
+    ));
+    
+    private static final Set<String> SCRIPT_MODIFIERS = new HashSet<>(Arrays.asList(
+        "static", "async", "get", "set", "public", "private", "protected", "readonly",
+        "override", "abstract", "declare"
+    ));
+    
+    private static final Set<String> PYTHON_KEYWORDS = new HashSet<>(Arrays.asList(
+        "if", "elif", "else", "for", "while", "try", "except", "finally", "with",
+        "return", "pass", "break", "continue", "raise", "import", "from", "global",
+        "nonlocal", "del", "assert", "yield", "lambda", "match", "case", "print"
+    ));
+    
+    private static class Tokens {
+        final CharSequence text;
+        int count;
+        int[] starts = new int[256];
+        int[] ends = new int[256];
+        int[] lines = new int[256];
+        int[] columns = new int[256];
+        boolean[] lineStarts = new boolean[256];
+        
+        Tokens(CharSequence text) {
+            this.text = text;
+        }
+        
+        void add(int start, int end, int line, int column, boolean lineStart) {
+            if (count == starts.length) {
+                int capacity = count * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                lineStarts = Arrays.copyOf(lineStarts, capacity);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            lines[count] = line;
+            columns[count] = column;
+            lineStarts[count] = lineStart;
+            count++;
+        }
+        
+        boolean isWord(int i) {
+            return i >= 0 && i < count && isIdentifierPart(text.charAt(starts[i]));
+        }
+        
+        boolean isName(int i) {
+            if (!isWord(i)) {
+                return false;
+            }
+            char c = text.charAt(starts[i]);
+            return !Character.isDigit(c);
+        }
+        
+        char punct(int i) {
+            return i >= 0 && i < count && !isWord(i) ? text.charAt(starts[i]) : 0;
+        }
+        
+        boolean is(int i, String word) {
+            if (!isWord(i) || ends[i] - starts[i] != word.length()) {
+                return false;
+            }
+            for (int k = 0; k < word.length(); k++) {
+                if (text.charAt(starts[i] + k) != word.charAt(k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        String word(int i) {
+            return isWord(i) ? text.subSequence(starts[i], ends[i]).toString() : "";
+        }
+        
+        boolean startsLine(int i) {
+            return i == 0 || lines[i] != lines[i - 1];
+        }
+    }
+    
+    private static class Frame {
+        final String name;
+        final boolean type;
+        final int parenDepth;
+        boolean enumConstants;
+        boolean initializer;
+        
+        Frame(String name, boolean type, boolean enumConstants, int parenDepth) {
+            this.name = name;
+            this.type = type;
+            this.enumConstants = enumConstants;
+            this.parenDepth = parenDepth;
+        }
+    }
+    
+    public static boolean supports(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && SCANNED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase());
+    }
+    
+    public static List<Symbol> scan(CharSequence text, String path) {
+        List<Symbol> symbols = new ArrayList<>();
+        if (!supports(path)) {
+            return symbols;
+        }
+        SyntaxHighlighter.Language language = SyntaxHighlighter.detectLanguage(path);
+        switch (language) {
+            case PYTHON:
+                scanPython(tokenize(text, true, false), path, symbols);
+                break;
+            case JAVASCRIPT:
+            case TYPESCRIPT:
+                scanBraced(tokenize(text, false, true), language, path, symbols);
+                break;
+            default:
+                scanBraced(tokenize(text, false, false), language, path, symbols);
+                break;
+        }
+        return symbols;
+    }
+    
+    private static Tokens tokenize(CharSequence text, boolean python, boolean templates) {
+        Tokens tokens = new Tokens(text);
+        int length = text.length();
+        int line = 1;
+        int lineStart = 0;
+        int bracketDepth = 0;
+        boolean atLineStart = true;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            char next = i + 1 < length ? text.charAt(i + 1) : 0;
+            int end;
+            if (c == '\n') {
+                line++;
+                lineStart = i + 1;
+                atLineStart |= bracketDepth == 0;
+                i++;
+                continue;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            } else if (python ? c == '#' : c == '/' && next == '/') {
+                while (i < length && text.charAt(i) != '\n') {
+                    i++;
+                }
+                continue;
+            } else if (!python && c == '/' && next == '*') {
+                end = indexOf(text, "*/", i + 2);
+                end = end < 0 ? length : end + 2;
+            } else if (c == '"' || c == '\'' || (templates && c == '`')) {
+                end = skipString(text, i, python);
+            } else if (templates && c == '/' && allowsRegex(tokens)) {
+                end = skipRegex(text, i);
+            } else if (isIdentifierPart(c)) {
+                end = i + 1;
+                while (end < length && isIdentifierPart(text.charAt(end))) {
+                    end++;
+                }
+                if (python && end < length && end - i <= 2 && isStringPrefix(text, i, end)
+                        && (text.charAt(end) == '"' || text.charAt(end) == '\'')) {
+                    end = skipString(text, end, true);
+                } else {
+                    tokens.add(i, end, line, i - lineStart, atLineStart);
+                    atLineStart = false;
+                    i = end;
+                    continue;
+                }
+            } else {
+                if (c == '(' || c == '[' || c == '{') {
+                    bracketDepth++;
+                } else if ((c == ')' || c == ']' || c == '}') && bracketDepth > 0) {
+                    bracketDepth--;
+                }
+                tokens.add(i, i + 1, line, i - lineStart, atLineStart);
+                atLineStart = false;
+                i++;
+                continue;
+            }
+            
+            for (int k = i; k < end; k++) {
+                if (text.charAt(k) == '\n') {
+                    line++;
+                    lineStart = k + 1;
+                }
+            }
+            i = end;
+        }
+        return tokens;
+    }
+    
+    private static int skipString(CharSequence text, int start, boolean python) {
+        int length = text.length();
+        char quote = text.charAt(start);
+        boolean triple = quote != '`' && start + 2 < length
+                && text.charAt(start + 1) == quote && text.charAt(start + 2) == quote
+                && (python || quote == '"');
+        int i = start + (triple ? 3 : 1);
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (!triple) {
+                    return i + 1;
+                }
+                if (i + 2 < length && text.charAt(i + 1) == quote && text.charAt(i + 2) == quote) {
+                    return i + 3;
+                }
+            } else if (c == '\n' && !triple && quote != '`') {
+                return i;
+            }
+            i++;
+        }
+        return length;
+    }
+    
+    private static boolean allowsRegex(Tokens tokens) {
+        int last = tokens.count - 1;
+        if (last < 0) {
+            return true;
+        }
+        char c = tokens.punct(last);
+        if (c != 0) {
+            return c != ')' && c != ']' && c != '}';
+        }
+        return tokens.is(last, "return") || tokens.is(last, "typeof") || tokens.is(last, "case");
+    }
+    
+    private static int skipRegex(CharSequence text, int start) {
+        boolean inClass = false;
+        for (int i = start + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '\n') {
+                return i;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '/' && !inClass) {
+                return i + 1;
+            }
+        }
+        return text.length();
+    }
+    
+    private static void scanBraced(Tokens t, SyntaxHighlighter.Language language, String path, List<Symbol> out) {
+        boolean java = language == SyntaxHighlighter.Language.JAVA;
+        boolean kotlin = language == SyntaxHighlighter.Language.KOTLIN;
+        List<Frame> frames = new ArrayList<>();
+        frames.add(new Frame(null, false, false, 0));
+        int parenDepth = 0;
+        String pendingName = null;
+        boolean pendingType = false;
+        boolean pendingEnum = false;
+        
+        for (int i = 0; i < t.count; i++) {
+            Frame frame = frames.get(frames.size() - 1);
+            boolean root = frames.size() == 1;
+            boolean level = parenDepth == frame.parenDepth && (frame.type || root);
+            boolean members = level && (frame.type || !java);
+            char p = t.punct(i);
+            
+            if (p != 0) {
+                if (p == '{') {
+                    frames.add(pendingType ? new Frame(pendingName, true, pendingEnum, parenDepth)
+                            : new Frame(frame.name, false, false, parenDepth));
+                    pendingType = false;
+                    pendingEnum = false;
+                } else if (p == '}') {
+                    if (!root) {
+                        frames.remove(frames.size() - 1);
+                    }
+                } else if (p == '(' || p == '[') {
+                    parenDepth++;
+                } else if ((p == ')' || p == ']') && parenDepth > frame.parenDepth) {
+                    parenDepth--;
+                } else if (p == ';' && level) {
+                    frame.initializer = false;
+                    frame.enumConstants = false;
+                    pendingType = false;
+                } else if (p == '=' && level && java) {
+                    frame.initializer = true;
+                }
+                continue;
+            }
+            if (!level || frame.initializer) {
+                continue;
+            }
+            
+            char previous = t.punct(i - 1);
+            if (previous != '.' && previous != ':' && isTypeKeyword(t, i, language) && t.isName(i + 1)) {
+                String name = t.word(i + 1);
+                out.add(new Symbol(name, Kind.CLASS, frame.name, path, t.lines[i + 1], t.columns[i + 1]));
+                if (!t.is(i, "typealias") && !t.is(i, "type")) {
+                    pendingName = name;
+                    pendingType = true;
+                    pendingEnum = t.is(i, "enum") || (kotlin && t.is(i - 1, "enum"));
+                }
+                i++;
+                continue;
+            }
+            if (kotlin && t.is(i, "object") && t.is(i - 1, "companion")) {
+                pendingName = frame.name;
+                pendingType = true;
+                continue;
+            }
+            if (!members) {
+                continue;
+            }
+            
+            if (frame.enumConstants && (previous == '{' || previous == ',') && t.isName(i)) {
+                char next = t.punct(i + 1);
+                if (next == ',' || next == '(' || next == ';' || next == '}' || next == '{' || next == '=') {
+                    out.add(new Symbol(t.word(i), Kind.FIELD, frame.name, path, t.lines[i], t.columns[i]));
+                    continue;
+                }
+            }
+            
+            if (java) {
+                scanJavaMember(t, i, frame, path, out);
+            } else if (kotlin) {
+                if (t.is(i, "fun") || t.is(i, "val") || t.is(i, "var")) {
+                    pendingType = false;
+                    int name = receiverName(t, i + 1);
+                    if (name >= 0 && (!t.is(i, "fun") || t.punct(name + 1) == '(')) {
+                        Kind kind = !t.is(i, "fun") ? Kind.FIELD : frame.type ? Kind.METHOD : Kind.FUNCTION;
+                        out.add(new Symbol(t.word(name), kind, frame.name, path, t.lines[name], t.columns[name]));
+                        i = name;
+                    }
+                }
+            } else {
+                i = scanScriptMember(t, i, frame, root, path, out);
+            }
+        }
+    }
+    
+    private static boolean isTypeKeyword(Tokens t, int i, SyntaxHighlighter.Language language) {
+        switch (language) {
+            case JAVA:
+                return t.is(i, "class") || t.is(i, "interface") || t.is(i, "enum") || t.is(i, "record");
+            case KOTLIN:
+                return t.is(i, "class") || t.is(i, "interface") || t.is(i, "object") || t.is(i, "typealias");
+            default:
+                if (t.is(i, "type")) {
+                    char after = t.punct(i + 2);
+                    return after == '=' || after == '<';
+                }
+                return t.is(i, "class") || t.is(i, "interface") || t.is(i, "enum");
+        }
+    }
+    
+    private static void scanJavaMember(Tokens t, int i, Frame frame, String path, List<Symbol> out) {
+        char previous = t.punct(i - 1);
+        boolean typed = previous == '>' || previous == ']'
+                || (t.isWord(i - 1) && !JAVA_NON_TYPES.contains(t.word(i - 1)) && t.punct(i - 2) != '@');
+        if (!typed || !t.isName(i)) {
+            return;
+        }
+        char next = t.punct(i + 1);
+        if (next == '(') {
+            String name = t.word(i);
+            if (!name.equals(frame.name)) {
+                out.add(new Symbol(name, Kind.METHOD, frame.name, path, t.lines[i], t.columns[i]));
+            }
+        } else if (next == '=' || next == ';' || next == ',') {
+            out.add(new Symbol(t.word(i), Kind.FIELD, frame.name, path, t.lines[i], t.columns[i]));
+        }
+    }
+    
+    private static int scanScriptMember(Tokens t, int i, Frame frame, boolean root, String path, List<Symbol> out) {
+        if (t.is(i, "function")) {
+            int name = t.punct(i + 1) == '*' ? i + 2 : i + 1;
+            if (t.isName(name)) {
+                out.add(new Symbol(t.word(name), Kind.FUNCTION, frame.name, path, t.lines[name], t.columns[name]));
+                return name;
+            }
+            return i;
+        }
+        if (root && (t.is(i, "const") || t.is(i, "let") || t.is(i, "var"))) {
+            int name = i + 1;
+            if (t.isName(name)) {
+                Kind kind = isFunctionValue(t, name + 1) ? Kind.FUNCTION : Kind.FIELD;
+                out.add(new Symbol(t.word(name), kind, frame.name, path, t.lines[name], t.columns[name]));
+                return name;
+            }
+            return i;
+        }
+        if (!frame.type || !t.isName(i)) {
+            return i;
+        }
+        
+        char previous = t.punct(i - 1);
+        boolean memberStart = t.startsLine(i) || previous == '{' || previous == '}' || previous == ';'
+                || previous == '*' || SCRIPT_MODIFIERS.contains(t.word(i - 1));
+        char next = t.punct(i + 1);
+        if (!memberStart || (SCRIPT_MODIFIERS.contains(t.word(i)) && t.isName(i + 1))) {
+            return i;
+        }
+        if (next == '(' || next == '<') {
+            if (!t.is(i, "constructor")) {
+                out.add(new Symbol(t.word(i), Kind.METHOD, frame.name, path, t.lines[i], t.columns[i]));
+            }
+        } else if (next == '=' || next == ';' || next == ':' || next == '?' || next == '!') {
+            out.add(new Symbol(t.word(i), Kind.FIELD, frame.name, path, t.lines[i], t.columns[i]));
+        }
+        return i;
+    }
+    
+    private static boolean isFunctionValue(Tokens t, int i) {
+        if (t.punct(i) != '=') {
+            return false;
+        }
+        int value = i + 1;
+        if (t.is(value, "function") || t.is(value, "async")) {
+            return true;
+        }
+        if (t.isName(value)) {
+            return t.punct(value + 1) == '=' && t.punct(value + 2) == '>';
+        }
+        if (t.punct(value) != '(') {
+            return false;
+        }
+        int depth = 0;
+        for (int k = value; k < t.count; k++) {
+            char c = t.punct(k);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return t.punct(k + 1) == '=' && t.punct(k + 2) == '>';
+            }
+        }
+        return false;
+    }
+    
+    private static int receiverName(Tokens t, int i) {
+        if (t.punct(i) == '<') {
+            i = skipTypeArguments(t, i);
+        }
+        int name = -1;
+        while (t.isName(i)) {
+            name = i++;
+            if (t.punct(i) == '<') {
+                i = skipTypeArguments(t, i);
+            }
+            if (t.punct(i) == '?') {
+                i++;
+            }
+            if (t.punct(i) != '.') {
+                break;
+            }
+            i++;
+        }
+        return name;
+    }
+    
+    private static int skipTypeArguments(Tokens t, int i) {
+        int depth = 0;
+        do {
+            char c = t.punct(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            }
+            i++;
+        } while (depth > 0 && i < t.count);
+        return i;
+    }
+    
+    private static void scanPython(Tokens t, String path, List<Symbol> out) {
+        List<Frame> frames = new ArrayList<>();
+        List<Integer> indents = new ArrayList<>();
+        for (int i = 0; i < t.count; i++) {
+            if (!t.lineStarts[i]) {
+                continue;
+            }
+            int indent = t.columns[i];
+            while (!indents.isEmpty() && indents.get(indents.size() - 1) >= indent) {
+                indents.remove(indents.size() - 1);
+                frames.remove(frames.size() - 1);
+            }
+            Frame frame = frames.isEmpty() ? null : frames.get(frames.size() - 1);
+            String container = frame != null ? frame.name : null;
+            boolean members = frame == null || frame.type;
+            
+            int keyword = t.is(i, "async") ? i + 1 : i;
+            if ((t.is(keyword, "class") || t.is(keyword, "def")) && t.isName(keyword + 1)) {
+                boolean type = t.is(keyword, "class");
+                String name = t.word(keyword + 1);
+                if (members) {
+                    Kind kind = type ? Kind.CLASS : frame != null ? Kind.METHOD : Kind.FUNCTION;
+                    out.add(new Symbol(name, kind, container, path, t.lines[keyword + 1], t.columns[keyword + 1]));
+                }
+                frames.add(new Frame(type ? name : container, type, false, 0));
+                indents.add(indent);
+            } else if (members && t.isName(i) && !PYTHON_KEYWORDS.contains(t.word(i))) {
+                char next = t.punct(i + 1);
+                if ((next == '=' && t.punct(i + 2) != '=') || next == ':') {
+                    out.add(new Symbol(t.word(i), Kind.FIELD, container, path, t.lines[i], t.columns[i]));
+                }
+            }
+        }
+    }
+    
+    private static boolean isStringPrefix(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ("rRbBfFuU".indexOf(text.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int indexOf(CharSequence text, String target, int from) {
+        int last = text.length() - target.length();
+        for (int i = from; i <= last; i++) {
+            if (text.charAt(i) == target.charAt(0) && text.charAt(i + 1) == target.charAt(1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,135 @@
+package com.codeeditor.android.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.codeeditor.android.model.OpenFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TabMemoryManager {
+    
+    private static final long MIN_BUDGET_BYTES = 8L * 1024 * 1024;
+    private static final long MAX_BUDGET_BYTES = 64L * 1024 * 1024;
+    
+    private final File spillDir;
+    private final long budgetBytes;
+    private final WarmStateStore warmStates;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+    private long accessClock = 0;
+    
+    public interface WarmStateStore {
+        boolean contains(OpenFile file);
+        long getResidentBytes(OpenFile file);
+        void evict(OpenFile file);
+    }
+    
+    public TabMemoryManager(Context context, WarmStateStore warmStates) {
+        this.spillDir = new File(context.getCacheDir(), "tabs");
+        this.warmStates = warmStates;
+        this.budgetBytes = Math.max(MIN_BUDGET_BYTES,
+                Math.min(MAX_BUDGET_BYTES, Runtime.getRuntime().maxMemory() / 8));
+        this.executor = Executors.newSingleThreadExecutor();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        
+        executor.execute(() -> {
+            File[] stale = spillDir.listFiles();
+            if (stale != null) {
+                for (File file : stale) {
+                    file.delete();
+                }
+            }
+            spillDir.mkdirs();
+        });
+    }
+    
+    public void touch(OpenFile file) {
+        file.lastAccess = ++accessClock;
+    }
+    
+    public void release(OpenFile file) {
+        file.release();
+    }
+    
+    public void trim(List<OpenFile> tabs, OpenFile active) {
+        trim(tabs, active, budgetBytes);
+    }
+    
+    public void trimAll(List<OpenFile> tabs, OpenFile active) {
+        trim(tabs, active, 0);
+    }
+    
+    private void trim(List<OpenFile> tabs, OpenFile active, long budget) {
+        List<OpenFile> inactive = new ArrayList<>(tabs.size());
+        long used = 0;
+        for (OpenFile file : tabs) {
+            if (file != active) {
+                inactive.add(file);
+                used += residentBytes(file);
+            }
+        }
+        if (used <= budget) {
+            return;
+        }
+        
+        inactive.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+        
+        for (OpenFile file : inactive) {
+            if (used <= budget) return;
+            if (warmStates.contains(file)) {
+                long before = residentBytes(file);
+                warmStates.evict(file);
+                used += residentBytes(file) - before;
+            }
+        }
+        
+        for (OpenFile file : inactive) {
+            if (used <= budget) return;
+            if (file.isContentResident()) {
+                long before = file.getResidentBytes();
+                file.pack();
+                used += file.getResidentBytes() - before;
+            }
+        }
+        
+        for (OpenFile file : inactive) {
+            if (used <= budget) return;
+            if (file.isContentPacked()) {
+                used -= file.getResidentBytes();
+                spill(file);
+            }
+        }
+    }
+    
+    private void spill(OpenFile file) {
+        byte[] packed = file.pack();
+        File target = new File(spillDir, file.id + ".tab");
+        executor.execute(() -> {
+            try {
+                ContentCodec.writePacked(target, packed);
+                mainHandler.post(() -> file.onSpilled(packed, target));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+    
+    private long residentBytes(OpenFile file) {
+        long bytes = file.getResidentBytes();
+        if (warmStates.contains(file)) {
+            bytes += warmStates.getResidentBytes(file);
+        }
+        return bytes;
+    }
+    
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
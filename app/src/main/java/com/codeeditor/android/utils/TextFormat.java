@@ -0,0 +1,36 @@
+package com.codeeditor.android.utils;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class TextFormat {
+    
+    public static final TextFormat DEFAULT = new TextFormat(StandardCharsets.UTF_8, "\n", false);
+    
+    public final Charset charset;
+    public final String lineSeparator;
+    public final boolean hasBom;
+    
+    public TextFormat(Charset charset, String lineSeparator, boolean hasBom) {
+        this.charset = charset;
+        this.lineSeparator = lineSeparator;
+        this.hasBom = hasBom;
+    }
+    
+    public TextFormat withLineSeparator(String separator) {
+        return new TextFormat(charset, separator, hasBom);
+    }
+    
+    public byte[] getBom() {
+        if (!hasBom) {
+            return new byte[0];
+        }
+        if (charset.equals(StandardCharsets.UTF_16LE)) {
+            return new byte[]{(byte) 0xFF, (byte) 0xFE};
+        }
+        if (charset.equals(StandardCharsets.UTF_16BE)) {
+            return new byte[]{(byte) 0xFE, (byte) 0xFF};
+        }
+        return new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    }
+}
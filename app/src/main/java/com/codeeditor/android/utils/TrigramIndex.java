@@ -0,0 +1,562 @@
+package com.codeeditor.android.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TrigramIndex {
+    
+    private static final int INDEX_MAGIC = 0x43455431;
+    private static final long MAX_INDEXED_BYTES = 1024 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+    
+    private final File root;
+    private final File indexFile;
+    private final ExecutorService executor;
+    private volatile Snapshot snapshot;
+    
+    public static class Snapshot {
+        private final String[] paths;
+        private final long[] lengths;
+        private final long[] modified;
+        private final byte[][] forward;
+        private final long[] keys;
+        private final int[] postingStarts;
+        private final byte[] postings;
+        private final Map<String, Integer> ids;
+        
+        Snapshot(String[] paths, long[] lengths, long[] modified, byte[][] forward,
+                 long[] keys, int[] postingStarts, byte[] postings) {
+            this.paths = paths;
+            this.lengths = lengths;
+            this.modified = modified;
+            this.forward = forward;
+            this.keys = keys;
+            this.postingStarts = postingStarts;
+            this.postings = postings;
+            this.ids = new HashMap<>(paths.length * 2);
+            for (int i = 0; i < paths.length; i++) {
+                ids.put(paths[i], i);
+            }
+        }
+        
+        public int getFileCount() {
+            return paths.length;
+        }
+        
+        public boolean isCurrent(String relativePath, File file) {
+            Integer id = ids.get(relativePath);
+            return id != null && lengths[id] == file.length() && modified[id] == file.lastModified();
+        }
+        
+        public boolean canSkip(String relativePath, File file, BitSet candidates) {
+            Integer id = ids.get(relativePath);
+            return id != null && forward[id] != null && !candidates.get(id)
+                    && lengths[id] == file.length() && modified[id] == file.lastModified();
+        }
+        
+        public BitSet candidates(long[] trigrams) {
+            if (trigrams == null || trigrams.length == 0) {
+                return null;
+            }
+            
+            int[] found = new int[trigrams.length];
+            for (int i = 0; i < trigrams.length; i++) {
+                found[i] = Arrays.binarySearch(keys, trigrams[i]);
+                if (found[i] < 0) {
+                    return new BitSet();
+                }
+            }
+            Integer[] order = new Integer[found.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = found[i];
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(postingSize(a), postingSize(b)));
+            
+            BitSet result = decodePostings(order[0]);
+            for (int i = 1; i < order.length && !result.isEmpty(); i++) {
+                result.and(decodePostings(order[i]));
+            }
+            return result;
+        }
+        
+        private int postingSize(int key) {
+            return postingStarts[key + 1] - postingStarts[key];
+        }
+        
+        private BitSet decodePostings(int key) {
+            BitSet files = new BitSet(paths.length);
+            int[] position = { postingStarts[key] };
+            int end = postingStarts[key + 1];
+            int id = 0;
+            while (position[0] < end) {
+                id += (int) readVarint(postings, position);
+                files.set(id);
+            }
+            return files;
+        }
+    }
+    
+    private static class ByteSink {
+        byte[] data = new byte[256];
+        int size;
+        
+        void writeVarint(long value) {
+            if (size + 10 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 10));
+            }
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+    
+    private static class ForwardCursor {
+        final int file;
+        final byte[] data;
+        final int[] position = { 0 };
+        long current;
+        
+        ForwardCursor(int file, byte[] data) {
+            this.file = file;
+            this.data = data;
+        }
+        
+        boolean advance(boolean first) {
+            if (position[0] >= data.length) {
+                return false;
+            }
+            long delta = readVarint(data, position);
+            current = first ? delta : current + delta;
+            return true;
+        }
+    }
+    
+    public TrigramIndex(File root, File indexFile) {
+        this.root = root;
+        this.indexFile = indexFile;
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+    
+    public File getRoot() {
+        return root;
+    }
+    
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    public void update() {
+        executor.execute(() -> {
+            try {
+                Snapshot previous = snapshot;
+                if (previous == null) {
+                    previous = load();
+                    snapshot = previous;
+                }
+                Snapshot updated = rebuild(previous);
+                if (updated != previous) {
+                    snapshot = updated;
+                    save(updated);
+                }
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+    
+    private Snapshot rebuild(Snapshot previous) {
+        IndexFiles.Walk walk = IndexFiles.walk(root, name -> true);
+        
+        int count = walk.size();
+        byte[][] forward = new byte[count][];
+        boolean changed = previous == null || previous.getFileCount() != count;
+        for (int i = 0; i < count; i++) {
+            Integer id = previous != null ? previous.ids.get(walk.paths[i]) : null;
+            if (id != null && previous.lengths[id] == walk.lengths[i] && previous.modified[id] == walk.modified[i]) {
+                forward[i] = previous.forward[id];
+            } else {
+                forward[i] = indexFile(walk.files[i], walk.lengths[i]);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return previous;
+        }
+        return invert(walk.paths, walk.lengths, walk.modified, forward);
+    }
+    
+    private static byte[] indexFile(File file, long length) {
+        if (length > MAX_INDEXED_BYTES) {
+            return null;
+        }
+        CharBuffer text;
+        try {
+            text = ProjectSearchEngine.readText(file);
+        } catch (IOException e) {
+            return null;
+        }
+        if (text == null || text.length() < 3) {
+            return EMPTY;
+        }
+        
+        long[] grams = new long[text.length() - 2];
+        long key = ((long) LiteralSearcher.fold(text.charAt(0)) << 16) | LiteralSearcher.fold(text.charAt(1));
+        for (int i = 2; i < text.length(); i++) {
+            key = ((key << 16) | LiteralSearcher.fold(text.charAt(i))) & 0xFFFFFFFFFFFFL;
+            grams[i - 2] = key;
+        }
+        return encodeSorted(grams);
+    }
+    
+    private static byte[] encodeSorted(long[] grams) {
+        Arrays.sort(grams);
+        ByteSink sink = new ByteSink();
+        long previous = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i > 0 && grams[i] == previous) {
+                continue;
+            }
+            sink.writeVarint(grams[i] - previous);
+            previous = grams[i];
+        }
+        return sink.toByteArray();
+    }
+    
+    private static Snapshot invert(String[] paths, long[] lengths, long[] modified, byte[][] forward) {
+        PriorityQueue<ForwardCursor> queue = new PriorityQueue<>(Math.max(1, paths.length), (a, b) -> {
+            int order = Long.compare(a.current, b.current);
+            return order != 0 ? order : Integer.compare(a.file, b.file);
+        });
+        for (int i = 0; i < forward.length; i++) {
+            if (forward[i] != null) {
+                ForwardCursor cursor = new ForwardCursor(i, forward[i]);
+                if (cursor.advance(true)) {
+                    queue.add(cursor);
+                }
+            }
+        }
+        
+        long[] keys = new long[1024];
+        int[] starts = new int[1025];
+        int keyCount = 0;
+        ByteSink postings = new ByteSink();
+        long currentKey = -1;
+        int previousFile = 0;
+        while (!queue.isEmpty()) {
+            ForwardCursor cursor = queue.poll();
+            if (cursor.current != currentKey) {
+                if (keyCount == keys.length) {
+                    keys = Arrays.copyOf(keys, keyCount * 2);
+                    starts = Arrays.copyOf(starts, keyCount * 2 + 1);
+                }
+                currentKey = cursor.current;
+                keys[keyCount] = currentKey;
+                starts[keyCount] = postings.size;
+                keyCount++;
+                previousFile = 0;
+            }
+            postings.writeVarint(cursor.file - previousFile);
+            previousFile = cursor.file;
+            if (cursor.advance(false)) {
+                queue.add(cursor);
+            }
+        }
+        starts[keyCount] = postings.size;
+        return new Snapshot(paths, lengths, modified, forward,
+                Arrays.copyOf(keys, keyCount), Arrays.copyOf(starts, keyCount + 1), postings.toByteArray());
+    }
+    
+    private Snapshot load() {
+        return IndexFiles.read(indexFile, INDEX_MAGIC, in -> {
+            int count = in.readInt();
+            String[] paths = new String[count];
+            long[] lengths = new long[count];
+            long[] modified = new long[count];
+            byte[][] forward = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                paths[i] = in.readUTF();
+                lengths[i] = in.readLong();
+                modified[i] = in.readLong();
+                forward[i] = readBlock(in);
+            }
+            
+            int keyCount = in.readInt();
+            byte[] keyBlock = readBlock(in);
+            byte[] sizeBlock = readBlock(in);
+            byte[] postings = readBlock(in);
+            long[] keys = new long[keyCount];
+            int[] starts = new int[keyCount + 1];
+            int[] keyPosition = { 0 };
+            int[] sizePosition = { 0 };
+            long key = 0;
+            for (int i = 0; i < keyCount; i++) {
+                key += readVarint(keyBlock, keyPosition);
+                keys[i] = key;
+                starts[i + 1] = starts[i] + (int) readVarint(sizeBlock, sizePosition);
+            }
+            return new Snapshot(paths, lengths, modified, forward, keys, starts, postings);
+        });
+    }
+    
+    private void save(Snapshot index) throws IOException {
+        ByteSink keyBlock = new ByteSink();
+        ByteSink sizeBlock = new ByteSink();
+        long previous = 0;
+        for (int i = 0; i < index.keys.length; i++) {
+            keyBlock.writeVarint(index.keys[i] - previous);
+            sizeBlock.writeVarint(index.postingStarts[i + 1] - index.postingStarts[i]);
+            previous = index.keys[i];
+        }
+        
+        IndexFiles.write(indexFile, INDEX_MAGIC, out -> {
+            out.writeInt(index.paths.length);
+            for (int i = 0; i < index.paths.length; i++) {
+                out.writeUTF(index.paths[i]);
+                out.writeLong(index.lengths[i]);
+                out.writeLong(index.modified[i]);
+                writeBlock(out, index.forward[i]);
+            }
+            out.writeInt(index.keys.length);
+            writeBlock(out, keyBlock.toByteArray());
+            writeBlock(out, sizeBlock.toByteArray());
+            writeBlock(out, index.postings);
+        });
+    }
+    
+    private static void writeBlock(DataOutputStream out, byte[] block) throws IOException {
+        out.writeInt(block != null ? block.length : -1);
+        if (block != null) {
+            out.write(block);
+        }
+    }
+    
+    private static byte[] readBlock(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] block = new byte[length];
+        in.readFully(block);
+        return block;
+    }
+    
+    static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+    
+    public static long[] literalTrigrams(String query) {
+        if (query == null || query.length() < 3) {
+            return null;
+        }
+        long[] grams = new long[query.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = trigram(query, i);
+        }
+        return grams;
+    }
+    
+    public static long[] regexTrigrams(String pattern) {
+        if (pattern == null || pattern.indexOf('|') >= 0 || hasCommentsFlag(pattern)) {
+            return null;
+        }
+        
+        List<String> runs = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i);
+            char literal;
+            if (c == '\\') {
+                if (i + 1 >= length) {
+                    break;
+                }
+                char next = pattern.charAt(i + 1);
+                if (next == 'Q') {
+                    return null;
+                }
+                if (Character.isLetterOrDigit(next)) {
+                    flushRun(run, runs);
+                    i = skipEscape(pattern, i);
+                    continue;
+                }
+                i += 2;
+                literal = next;
+            } else if (c == '[' || c == '(') {
+                flushRun(run, runs);
+                i = skipConstruct(pattern, i);
+                continue;
+            } else if (c == '{') {
+                flushRun(run, runs);
+                int close = pattern.indexOf('}', i);
+                i = close < 0 ? length : close + 1;
+                continue;
+            } else if (".^$)?*+".indexOf(c) >= 0) {
+                flushRun(run, runs);
+                i++;
+                continue;
+            } else {
+                literal = c;
+                i++;
+            }
+            
+            char quantifier = i < length ? pattern.charAt(i) : 0;
+            if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                flushRun(run, runs);
+                continue;
+            }
+            run.append(literal);
+            if (quantifier == '+') {
+                flushRun(run, runs);
+            }
+        }
+        flushRun(run, runs);
+        
+        List<Long> grams = new ArrayList<>();
+        for (String literalRun : runs) {
+            for (int j = 0; j + 3 <= literalRun.length(); j++) {
+                grams.add(trigram(literalRun, j));
+            }
+        }
+        if (grams.isEmpty()) {
+            return null;
+        }
+        long[] result = new long[grams.size()];
+        for (int j = 0; j < result.length; j++) {
+            result[j] = grams.get(j);
+        }
+        return result;
+    }
+    
+    // (?x) makes whitespace and # comments in the rest of the pattern insignificant
+    private static boolean hasCommentsFlag(String pattern) {
+        for (int i = pattern.indexOf("(?"); i >= 0; i = pattern.indexOf("(?", i + 2)) {
+            for (int j = i + 2; j < pattern.length(); j++) {
+                char c = pattern.charAt(j);
+                if (c == 'x') {
+                    return true;
+                }
+                if (c != '-' && !Character.isLetter(c)) {
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+    
+    // index just past an escape whose first character is a letter or digit; skipping too far only
+    // drops literals, while stopping short would read the rest of the escape as literal text
+    private static int skipEscape(String pattern, int start) {
+        int length = pattern.length();
+        char kind = pattern.charAt(start + 1);
+        int i = start + 2;
+        switch (kind) {
+            case '0':
+                return skipDigits(pattern, i, 3);
+            case 'x':
+                return i < length && pattern.charAt(i) == '{' ? skipPast(pattern, i, '}') : Math.min(length, i + 2);
+            case 'u':
+                return Math.min(length, i + 4);
+            case 'c':
+                return Math.min(length, i + 1);
+            case 'k':
+                return i < length && pattern.charAt(i) == '<' ? skipPast(pattern, i, '>') : i;
+            case 'p':
+            case 'P':
+                return i < length && pattern.charAt(i) == '{' ? skipPast(pattern, i, '}') : Math.min(length, i + 1);
+            default:
+                if (kind >= '1' && kind <= '9') {
+                    return skipDigits(pattern, i, length);
+                }
+                return i < length && pattern.charAt(i) == '{' ? skipPast(pattern, i, '}') : i;
+        }
+    }
+    
+    private static int skipDigits(String pattern, int start, int max) {
+        int i = start;
+        while (i < pattern.length() && i - start < max && Character.isDigit(pattern.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+    
+    private static int skipPast(String pattern, int start, char close) {
+        int index = pattern.indexOf(close, start);
+        return index < 0 ? pattern.length() : index + 1;
+    }
+    
+    private static void flushRun(StringBuilder run, List<String> runs) {
+        if (run.length() >= 3) {
+            runs.add(run.toString());
+        }
+        run.setLength(0);
+    }
+    
+    private static int skipConstruct(String pattern, int start) {
+        int depth = 0;
+        // classes nest inside classes ([a-z&&[^b]]); a ']' right after a class opens is a literal
+        int classDepth = 0;
+        int classStart = -1;
+        for (int i = start; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (classDepth > 0) {
+                if (c == '[') {
+                    classDepth++;
+                    classStart = i;
+                } else if (c == ']' && i > classStart + 1
+                        && !(i == classStart + 2 && pattern.charAt(i - 1) == '^')) {
+                    classStart = -1;
+                    if (--classDepth == 0 && depth == 0) {
+                        return i + 1;
+                    }
+                }
+            } else if (c == '[') {
+                classDepth = 1;
+                classStart = i;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return pattern.length();
+    }
+    
+    private static long trigram(CharSequence text, int start) {
+        return ((long) LiteralSearcher.fold(text.charAt(start)) << 32)
+                | ((long) LiteralSearcher.fold(text.charAt(start + 1)) << 16)
+                | LiteralSearcher.fold(text.charAt(start + 2));
+    }
+    
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
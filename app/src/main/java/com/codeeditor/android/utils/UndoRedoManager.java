@@ -1,75 +1,180 @@
 package com.codeeditor.android.utils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
 public class UndoRedoManager {
     
     private static final int MAX_HISTORY_SIZE = 100;
+    private static final int MAX_POOLED_EDITS = 16;
+    private static final int MAX_POOLED_CAPACITY = 4096;
     
-    private final List<TextState> history = new ArrayList<>();
-    private int currentIndex = -1;
-    private boolean isPerformingUndoRedo = false;
+    private final List<Edit> history = new ArrayList<>();
+    private final ArrayDeque<Edit> pool = new ArrayDeque<>();
+    private final StringBuilder pendingRemoved = new StringBuilder();
+    private int currentIndex = 0;
+    private int batchDepth = 0;
+    private boolean batchHasEdits = false;
     
-    public static class TextState {
-        public final String text;
-        public final int cursorPosition;
+    public static class Edit {
+        public int start;
+        public final StringBuilder removed = new StringBuilder();
+        public final StringBuilder inserted = new StringBuilder();
+        public boolean linked;
+        public EditBatch batch;
+        boolean sealed;
         
-        public TextState(String text, int cursorPosition) {
-            this.text = text;
-            this.cursorPosition = cursorPosition;
+        void reset(int start) {
+            this.start = start;
+            removed.setLength(0);
+            inserted.setLength(0);
+            linked = false;
+            batch = null;
+            sealed = false;
         }
     }
     
-    public void saveState(String text, int cursorPosition) {
-        if (isPerformingUndoRedo) {
+    public void beforeEdit(CharSequence text, int start, int removedCount) {
+        pendingRemoved.setLength(0);
+        if (removedCount > 0) {
+            pendingRemoved.append(text, start, start + removedCount);
+        }
+    }
+    
+    public void afterEdit(CharSequence text, int start, int insertedCount) {
+        if (insertedCount == 0 && pendingRemoved.length() == 0) {
             return;
         }
+        if (insertedCount == pendingRemoved.length() && regionEquals(text, start, pendingRemoved)) {
+            return;
+        }
+        
+        truncateRedo();
         
-        if (currentIndex >= 0 && currentIndex < history.size()) {
-            TextState lastState = history.get(currentIndex);
-            if (lastState.text.equals(text)) {
+        Edit last = currentIndex > 0 ? history.get(currentIndex - 1) : null;
+        if (last != null && !last.sealed && batchDepth == 0) {
+            if (pendingRemoved.length() == 0 && canAppendTyping(last, text, start, insertedCount)) {
+                last.inserted.append(text, start, start + insertedCount);
                 return;
             }
+            if (insertedCount == 0 && last.inserted.length() == 0 && pendingRemoved.indexOf("\n") < 0) {
+                if (start + pendingRemoved.length() == last.start) {
+                    last.removed.insert(0, pendingRemoved);
+                    last.start = start;
+                    return;
+                }
+                if (start == last.start) {
+                    last.removed.append(pendingRemoved);
+                    return;
+                }
+            }
         }
         
-        while (history.size() > currentIndex + 1) {
-            history.remove(history.size() - 1);
+        Edit edit = obtainEdit(start);
+        edit.removed.append(pendingRemoved);
+        edit.inserted.append(text, start, start + insertedCount);
+        push(edit);
+    }
+    
+    public void recordBatch(EditBatch batch) {
+        if (batch.size() == 0) {
+            return;
         }
+        truncateRedo();
         
-        history.add(new TextState(text, cursorPosition));
-        currentIndex = history.size() - 1;
+        Edit edit = obtainEdit(batch.getStart(0));
+        edit.batch = batch;
+        edit.sealed = true;
+        push(edit);
+    }
+    
+    private void push(Edit edit) {
+        edit.linked = batchDepth > 0 && batchHasEdits;
+        if (batchDepth > 0) {
+            batchHasEdits = true;
+        }
+        history.add(edit);
+        currentIndex++;
         
         while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
+            recycle(history.remove(0));
             currentIndex--;
         }
+        if (!history.isEmpty()) {
+            history.get(0).linked = false;
+        }
+    }
+    
+    private static boolean regionEquals(CharSequence text, int start, CharSequence other) {
+        for (int i = 0; i < other.length(); i++) {
+            if (text.charAt(start + i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean canAppendTyping(Edit last, CharSequence text, int start, int insertedCount) {
+        if (last.removed.length() > 0 || last.inserted.length() == 0) {
+            return false;
+        }
+        if (last.start + last.inserted.length() != start) {
+            return false;
+        }
+        char previous = last.inserted.charAt(last.inserted.length() - 1);
+        for (int i = start; i < start + insertedCount; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || (Character.isWhitespace(c) && !Character.isWhitespace(previous))) {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+    
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            batchHasEdits = false;
+            seal();
+        }
+    }
+    
+    public void endBatch() {
+        if (batchDepth > 0 && --batchDepth == 0) {
+            seal();
+        }
+    }
+    
+    public void seal() {
+        if (currentIndex > 0) {
+            history.get(currentIndex - 1).sealed = true;
+        }
     }
     
-    public TextState undo() {
+    public Edit undo() {
         if (!canUndo()) {
             return null;
         }
         
-        isPerformingUndoRedo = true;
         currentIndex--;
-        TextState state = history.get(currentIndex);
-        isPerformingUndoRedo = false;
-        
-        return state;
+        Edit edit = history.get(currentIndex);
+        edit.sealed = true;
+        return edit;
     }
     
-    public TextState redo() {
+    public Edit redo() {
         if (!canRedo()) {
             return null;
         }
         
-        isPerformingUndoRedo = true;
+        Edit edit = history.get(currentIndex);
         currentIndex++;
-        TextState state = history.get(currentIndex);
-        isPerformingUndoRedo = false;
-        
-        return state;
+        return edit;
+    }
+    
+    public boolean isRedoLinked() {
+        return canRedo() && history.get(currentIndex).linked;
     }
     
     public boolean canUndo() {
@@ -77,11 +182,38 @@ public class UndoRedoManager {
     }
     
     public boolean canRedo() {
-        return currentIndex < history.size() - 1;
+        return currentIndex < history.size();
     }
     
     public void clear() {
+        for (Edit edit : history) {
+            recycle(edit);
+        }
         history.clear();
-        currentIndex = -1;
+        currentIndex = 0;
+        batchDepth = 0;
+        pendingRemoved.setLength(0);
+    }
+    
+    private void truncateRedo() {
+        while (history.size() > currentIndex) {
+            recycle(history.remove(history.size() - 1));
+        }
+    }
+    
+    private Edit obtainEdit(int start) {
+        Edit edit = pool.poll();
+        if (edit == null) {
+            edit = new Edit();
+        }
+        edit.reset(start);
+        return edit;
+    }
+    
+    private void recycle(Edit edit) {
+        if (pool.size() < MAX_POOLED_EDITS
+                && edit.removed.capacity() + edit.inserted.capacity() <= MAX_POOLED_CAPACITY) {
+            pool.push(edit);
+        }
     }
 }
@@ -0,0 +1,395 @@
+package com.codeeditor.android.utils;
+
+import com.codeeditor.android.autocomplete.FuzzyMatcher;
+import com.codeeditor.android.autocomplete.PrefixTrie;
+import com.codeeditor.android.syntax.SyntaxHighlighter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class WorkspaceSymbolIndex {
+    
+    private static final int INDEX_MAGIC = 0x43455331;
+    private static final long MAX_INDEXED_BYTES = 1024 * 1024;
+    private static final int SCAN_BATCH = 4;
+    private static final Symbol[] NO_SYMBOLS = new Symbol[0];
+    private static final Kind[] KINDS = Kind.values();
+    private static final Comparator<ScoredSymbol> SEARCH_ORDER = (a, b) -> {
+        if (a.score != b.score) {
+            return Integer.compare(b.score, a.score);
+        }
+        int order = String.CASE_INSENSITIVE_ORDER.compare(a.symbol.name, b.symbol.name);
+        if (order != 0) {
+            return order;
+        }
+        order = a.symbol.path.compareTo(b.symbol.path);
+        return order != 0 ? order : Integer.compare(a.symbol.line, b.symbol.line);
+    };
+    
+    private final File root;
+    private final File indexFile;
+    private final ExecutorService executor;
+    private final ForkJoinPool pool;
+    private volatile Snapshot snapshot;
+    
+    public enum Kind {
+        CLASS,
+        METHOD,
+        FUNCTION,
+        FIELD
+    }
+    
+    public static class Symbol {
+        public final String name;
+        public final Kind kind;
+        public final String container;
+        public final String path;
+        public final int line;
+        public final int column;
+        final long mask;
+        
+        public Symbol(String name, Kind kind, String container, String path, int line, int column) {
+            this.name = name;
+            this.kind = kind;
+            this.container = container;
+            this.path = path;
+            this.line = line;
+            this.column = column;
+            this.mask = FuzzyMatcher.mask(name);
+        }
+    }
+    
+    private static class NameTable {
+        final PrefixTrie trie = new PrefixTrie();
+        final Map<String, Symbol> first = new HashMap<>();
+        final List<Symbol> distinct = new ArrayList<>();
+        
+        void add(Symbol symbol) {
+            if (!first.containsKey(symbol.name)) {
+                first.put(symbol.name, symbol);
+                distinct.add(symbol);
+                trie.add(symbol.name);
+            }
+        }
+    }
+    
+    private static class ScoredSymbol {
+        final Symbol symbol;
+        final int score;
+        
+        ScoredSymbol(Symbol symbol, int score) {
+            this.symbol = symbol;
+            this.score = score;
+        }
+    }
+    
+    public static class Snapshot {
+        private final String[] paths;
+        private final long[] lengths;
+        private final long[] modified;
+        private final long[] hashes;
+        private final Symbol[][] symbols;
+        private final Map<String, Integer> ids;
+        private final Map<SyntaxHighlighter.Language, NameTable> tables =
+                new EnumMap<>(SyntaxHighlighter.Language.class);
+        private final int symbolCount;
+        
+        Snapshot(String[] paths, long[] lengths, long[] modified, long[] hashes, Symbol[][] symbols) {
+            this.paths = paths;
+            this.lengths = lengths;
+            this.modified = modified;
+            this.hashes = hashes;
+            this.symbols = symbols;
+            this.ids = new HashMap<>(paths.length * 2);
+            int total = 0;
+            for (int i = 0; i < paths.length; i++) {
+                ids.put(paths[i], i);
+                total += symbols[i].length;
+                if (symbols[i].length == 0) {
+                    continue;
+                }
+                SyntaxHighlighter.Language family = family(SyntaxHighlighter.detectLanguage(paths[i]));
+                NameTable table = tables.get(family);
+                if (table == null) {
+                    table = new NameTable();
+                    tables.put(family, table);
+                }
+                for (Symbol symbol : symbols[i]) {
+                    table.add(symbol);
+                }
+            }
+            this.symbolCount = total;
+        }
+        
+        public int getFileCount() {
+            return paths.length;
+        }
+        
+        public int getSymbolCount() {
+            return symbolCount;
+        }
+        
+        public Symbol getSymbol(SyntaxHighlighter.Language language, String name) {
+            NameTable table = tables.get(family(language));
+            return table != null ? table.first.get(name) : null;
+        }
+        
+        public void collect(SyntaxHighlighter.Language language, String prefix, PrefixTrie.Visitor visitor) {
+            NameTable table = tables.get(family(language));
+            if (table != null) {
+                table.trie.collect(prefix, visitor);
+            }
+        }
+        
+        public void collectFuzzy(SyntaxHighlighter.Language language, FuzzyMatcher matcher,
+                                 FuzzyMatcher.Visitor visitor) {
+            NameTable table = tables.get(family(language));
+            if (table == null) {
+                return;
+            }
+            for (Symbol symbol : table.distinct) {
+                if (matcher.mayMatch(symbol.mask)) {
+                    int score = matcher.score(symbol.name);
+                    if (score != FuzzyMatcher.NO_MATCH) {
+                        visitor.visit(symbol.name, score);
+                    }
+                }
+            }
+        }
+        
+        public List<Symbol> search(String query, int limit) {
+            List<Symbol> results = new ArrayList<>();
+            if (query.isEmpty() || limit <= 0) {
+                return results;
+            }
+            
+            FuzzyMatcher matcher = new FuzzyMatcher(query);
+            PriorityQueue<ScoredSymbol> top = new PriorityQueue<>(limit, Collections.reverseOrder(SEARCH_ORDER));
+            for (Symbol[] fileSymbols : symbols) {
+                for (Symbol symbol : fileSymbols) {
+                    if (!matcher.mayMatch(symbol.mask)) {
+                        continue;
+                    }
+                    int score = matcher.score(symbol.name);
+                    if (score == FuzzyMatcher.NO_MATCH) {
+                        continue;
+                    }
+                    ScoredSymbol scored = new ScoredSymbol(symbol, score);
+                    if (top.size() == limit) {
+                        if (SEARCH_ORDER.compare(scored, top.peek()) >= 0) {
+                            continue;
+                        }
+                        top.poll();
+                    }
+                    top.add(scored);
+                }
+            }
+            
+            List<ScoredSymbol> ordered = new ArrayList<>(top);
+            ordered.sort(SEARCH_ORDER);
+            for (ScoredSymbol scored : ordered) {
+                results.add(scored.symbol);
+            }
+            return results;
+        }
+    }
+    
+    private static class ScanTask extends RecursiveAction {
+        private final File[] files;
+        private final String[] paths;
+        private final int[] stale;
+        private final int from;
+        private final int to;
+        private final Snapshot previous;
+        private final long[] hashes;
+        private final Symbol[][] symbols;
+        
+        ScanTask(File[] files, String[] paths, int[] stale, int from, int to, Snapshot previous,
+                 long[] hashes, Symbol[][] symbols) {
+            this.files = files;
+            this.paths = paths;
+            this.stale = stale;
+            this.from = from;
+            this.to = to;
+            this.previous = previous;
+            this.hashes = hashes;
+            this.symbols = symbols;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > SCAN_BATCH) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScanTask(files, paths, stale, from, middle, previous, hashes, symbols),
+                        new ScanTask(files, paths, stale, middle, to, previous, hashes, symbols));
+                return;
+            }
+            for (int k = from; k < to; k++) {
+                scanFile(stale[k]);
+            }
+        }
+        
+        private void scanFile(int i) {
+            CharBuffer text = null;
+            if (files[i].length() <= MAX_INDEXED_BYTES) {
+                try {
+                    text = ProjectSearchEngine.readText(files[i]);
+                } catch (IOException e) {
+                    text = null;
+                }
+            }
+            if (text == null) {
+                symbols[i] = NO_SYMBOLS;
+                return;
+            }
+            
+            hashes[i] = ContentHash.hash64(text);
+            Integer id = previous != null ? previous.ids.get(paths[i]) : null;
+            if (id != null && previous.hashes[id] == hashes[i]) {
+                symbols[i] = previous.symbols[id];
+            } else {
+                symbols[i] = SymbolScanner.scan(text, paths[i]).toArray(NO_SYMBOLS);
+            }
+        }
+    }
+    
+    public WorkspaceSymbolIndex(File root, File indexFile) {
+        this.root = root;
+        this.indexFile = indexFile;
+        this.executor = Executors.newSingleThreadExecutor();
+        this.pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
+    }
+    
+    public File getRoot() {
+        return root;
+    }
+    
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    public void update() {
+        executor.execute(() -> {
+            try {
+                Snapshot previous = snapshot;
+                if (previous == null) {
+                    previous = load();
+                    snapshot = previous;
+                }
+                Snapshot updated = rebuild(previous);
+                if (updated != previous) {
+                    snapshot = updated;
+                    save(updated);
+                }
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+    
+    private Snapshot rebuild(Snapshot previous) {
+        IndexFiles.Walk walk = IndexFiles.walk(root, SymbolScanner::supports);
+        
+        int count = walk.size();
+        long[] hashes = new long[count];
+        Symbol[][] symbols = new Symbol[count][];
+        int[] stale = new int[count];
+        int staleCount = 0;
+        boolean changed = previous == null || previous.getFileCount() != count;
+        for (int i = 0; i < count; i++) {
+            Integer id = previous != null ? previous.ids.get(walk.paths[i]) : null;
+            if (id != null && previous.lengths[id] == walk.lengths[i] && previous.modified[id] == walk.modified[i]) {
+                hashes[i] = previous.hashes[id];
+                symbols[i] = previous.symbols[id];
+            } else {
+                stale[staleCount++] = i;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return previous;
+        }
+        
+        if (staleCount > 0) {
+            pool.invoke(new ScanTask(walk.files, walk.paths, stale, 0, staleCount, previous, hashes, symbols));
+        }
+        return new Snapshot(walk.paths, walk.lengths, walk.modified, hashes, symbols);
+    }
+    
+    private Snapshot load() {
+        return IndexFiles.read(indexFile, INDEX_MAGIC, in -> {
+            int count = in.readInt();
+            String[] paths = new String[count];
+            long[] lengths = new long[count];
+            long[] modified = new long[count];
+            long[] hashes = new long[count];
+            Symbol[][] symbols = new Symbol[count][];
+            for (int i = 0; i < count; i++) {
+                paths[i] = in.readUTF();
+                lengths[i] = in.readLong();
+                modified[i] = in.readLong();
+                hashes[i] = in.readLong();
+                symbols[i] = new Symbol[in.readInt()];
+                for (int j = 0; j < symbols[i].length; j++) {
+                    String name = in.readUTF();
+                    Kind kind = KINDS[in.readByte()];
+                    String container = in.readUTF();
+                    int line = in.readInt();
+                    int column = in.readInt();
+                    symbols[i][j] = new Symbol(name, kind, container.isEmpty() ? null : container,
+                            paths[i], line, column);
+                }
+            }
+            return new Snapshot(paths, lengths, modified, hashes, symbols);
+        });
+    }
+    
+    private void save(Snapshot index) throws IOException {
+        IndexFiles.write(indexFile, INDEX_MAGIC, out -> {
+            out.writeInt(index.paths.length);
+            for (int i = 0; i < index.paths.length; i++) {
+                out.writeUTF(index.paths[i]);
+                out.writeLong(index.lengths[i]);
+                out.writeLong(index.modified[i]);
+                out.writeLong(index.hashes[i]);
+                out.writeInt(index.symbols[i].length);
+                for (Symbol symbol : index.symbols[i]) {
+                    out.writeUTF(symbol.name);
+                    out.writeByte(symbol.kind.ordinal());
+                    out.writeUTF(symbol.container != null ? symbol.container : "");
+                    out.writeInt(symbol.line);
+                    out.writeInt(symbol.column);
+                }
+            }
+        });
+    }
+    
+    static SyntaxHighlighter.Language family(SyntaxHighlighter.Language language) {
+        switch (language) {
+            case KOTLIN:
+                return SyntaxHighlighter.Language.JAVA;
+            case TYPESCRIPT:
+                return SyntaxHighlighter.Language.JAVASCRIPT;
+            default:
+                return language;
+        }
+    }
+    
+    public void shutdown() {
+        executor.shutdownNow();
+        pool.shutdownNow();
+    }
+}
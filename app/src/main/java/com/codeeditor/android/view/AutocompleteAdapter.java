@@ -9,12 +9,14 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.codeeditor.android.R;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class AutocompleteAdapter extends RecyclerView.Adapter<AutocompleteAdapter.ViewHolder> {
 
@@ -74,8 +76,35 @@ public class AutocompleteAdapter extends RecyclerView.Adapter<AutocompleteAdapte
     }
 
     public void setSuggestions(List<Suggestion> suggestions) {
+        List<Suggestion> previous = this.suggestions;
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return previous.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return suggestions.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                Suggestion before = previous.get(oldPosition);
+                Suggestion after = suggestions.get(newPosition);
+                return before.type == after.type && before.text.equals(after.text);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                Suggestion before = previous.get(oldPosition);
+                Suggestion after = suggestions.get(newPosition);
+                return Objects.equals(before.description, after.description)
+                    && before.insertText.equals(after.insertText);
+            }
+        }, false);
         this.suggestions = suggestions;
-        notifyDataSetChanged();
+        diff.dispatchUpdatesTo(this);
     }
 
     public void setOnSuggestionClickListener(OnSuggestionClickListener listener) {
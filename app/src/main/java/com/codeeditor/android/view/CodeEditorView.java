@@ -4,22 +4,26 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.text.Editable;
 import android.text.InputFilter;
 import android.text.InputType;
+import android.text.Layout;
 import android.text.Selection;
+import android.text.SpanWatcher;
 import android.text.Spannable;
-import android.text.SpannableString;
 import android.text.Spanned;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.text.style.BackgroundColorSpan;
-import android.text.style.ForegroundColorSpan;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
+import android.view.inputmethod.BaseInputConnection;
 import android.view.inputmethod.EditorInfo;
 import android.widget.EditText;
 import android.widget.HorizontalScrollView;
@@ -31,11 +35,21 @@ import androidx.core.content.ContextCompat;
 import androidx.preference.PreferenceManager;
 
 import com.codeeditor.android.R;
+import com.codeeditor.android.autocomplete.CompletionContext;
+import com.codeeditor.android.autocomplete.IdentifierIndex;
+import com.codeeditor.android.autocomplete.SnippetTemplate;
 import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.syntax.TokenCache;
 import com.codeeditor.android.utils.AutoIndentHelper;
 import com.codeeditor.android.utils.BracketMatcher;
+import com.codeeditor.android.utils.EditBatch;
+import com.codeeditor.android.utils.EditFanout;
+import com.codeeditor.android.utils.FindReplaceHelper;
+import com.codeeditor.android.utils.LineIndex;
 import com.codeeditor.android.utils.UndoRedoManager;
 
+import java.nio.CharBuffer;
+
 public class CodeEditorView extends LinearLayout {
     
     private TextView lineNumberView;
@@ -46,12 +60,44 @@ public class CodeEditorView extends LinearLayout {
     
     private SyntaxHighlighter.Language currentLanguage = SyntaxHighlighter.Language.PLAIN_TEXT;
     private UndoRedoManager undoRedoManager;
+    private LineIndex lineIndex = new LineIndex();
+    private TokenCache tokenCache = new TokenCache(lineIndex, currentLanguage);
+    private IdentifierIndex identifierIndex = new IdentifierIndex();
     private AutoIndentHelper autoIndentHelper;
     private OnCursorChangeListener cursorChangeListener;
     private OnTextChangeListener textChangeListener;
+    private final EditFanout editFanout = new EditFanout();
     
     private boolean isUpdatingText = false;
-    private Runnable highlightRunnable;
+    private boolean suppressHistory = false;
+    private boolean loadingDocument = false;
+    private boolean swappingDocument = false;
+    private boolean applyingBatch = false;
+    private boolean highlightPending = false;
+    private Editable attachingDocument;
+    private boolean readOnly = false;
+    private long documentVersion = 0;
+    private int lastEditStart = 0;
+    private int lastEditCount = 0;
+    private int displayedLineCount = 1;
+    private final StringBuilder lineNumberBuffer = new StringBuilder();
+    private int reportedLine = -1;
+    private int reportedColumn = -1;
+    private Editable completionDocument;
+    private long completionVersion = -1;
+    private char[] completionSource;
+    private final Runnable highlightRunnable = () -> {
+        highlightPending = false;
+        if (!isUpdatingText && currentLanguage != SyntaxHighlighter.Language.PLAIN_TEXT) {
+            applyHighlighting();
+        }
+    };
+    private final Runnable stepBackRunnable = () -> {
+        int pos = codeEditText.getSelectionStart();
+        if (pos > 0) {
+            codeEditText.setSelection(pos - 1);
+        }
+    };
     private static final long HIGHLIGHT_DELAY = 300;
     
     private boolean autoIndentEnabled = true;
@@ -67,6 +113,15 @@ public class CodeEditorView extends LinearLayout {
     
     private int highlightedMatchStart = -1;
     private int highlightedMatchEnd = -1;
+    private FindReplaceHelper searchMatches;
+    private final int[] visibleMatchStarts = new int[MAX_VISIBLE_MATCHES];
+    private final int[] visibleMatchEnds = new int[MAX_VISIBLE_MATCHES];
+    private final Rect visibleRect = new Rect();
+    private final Path matchPath = new Path();
+    private final Paint matchPaint = new Paint();
+    private static final int MAX_VISIBLE_MATCHES = 512;
+    private BackgroundColorSpan bracketSpan;
+    private BackgroundColorSpan matchingBracketSpan;
     
     private ScaleGestureDetector scaleGestureDetector;
     private float scaleFactor = 1.0f;
@@ -75,15 +130,16 @@ public class CodeEditorView extends LinearLayout {
     private OnFontSizeChangeListener fontSizeChangeListener;
     
     private OnAutocompleteListener autocompleteListener;
-    private String currentWord = "";
     private int wordStart = 0;
+    private int wordEnd = 0;
+    private SnippetStop activeSnippetStop;
     
     public interface OnCursorChangeListener {
         void onCursorChanged(int line, int column);
     }
     
     public interface OnTextChangeListener {
-        void onTextChanged(String text);
+        void onTextChanged(CharSequence text);
     }
     
     public interface OnFontSizeChangeListener {
@@ -91,7 +147,7 @@ public class CodeEditorView extends LinearLayout {
     }
     
     public interface OnAutocompleteListener {
-        void onAutocompleteRequest(String prefix, int wordStart);
+        void onAutocompleteRequest(int wordStart, int wordEnd);
         void onAutocompleteDismiss();
     }
     
@@ -115,10 +171,15 @@ public class CodeEditorView extends LinearLayout {
         setBackgroundColor(ContextCompat.getColor(context, R.color.editor_background));
         
         undoRedoManager = new UndoRedoManager();
+        editFanout.setDocument(undoRedoManager, lineIndex, tokenCache, identifierIndex);
         autoIndentHelper = new AutoIndentHelper(tabSize, true);
         
         currentLineHighlightColor = ContextCompat.getColor(context, R.color.current_line_highlight);
         matchingBracketColor = ContextCompat.getColor(context, R.color.matching_bracket);
+        bracketSpan = new BackgroundColorSpan(matchingBracketColor);
+        matchingBracketSpan = new BackgroundColorSpan(matchingBracketColor);
+        matchPaint.setColor(ContextCompat.getColor(context, R.color.search_match));
+        matchPaint.setStyle(Paint.Style.FILL);
         
         loadPreferences(context);
         
@@ -129,10 +190,16 @@ public class CodeEditorView extends LinearLayout {
         lineNumberView.setTextSize(fontSize);
         lineNumberView.setGravity(Gravity.END);
         lineNumberView.setPadding(12, 12, 12, 12);
-        lineNumberView.setText("1");
+        lineNumberView.setText("1", TextView.BufferType.EDITABLE);
         lineNumberView.setMinWidth(48);
         
-        codeEditText = new EditText(context);
+        codeEditText = new EditText(context) {
+            @Override
+            protected void onDraw(Canvas canvas) {
+                drawSearchMatches(canvas);
+                super.onDraw(canvas);
+            }
+        };
         codeEditText.setBackgroundColor(ContextCompat.getColor(context, R.color.editor_background));
         codeEditText.setTextColor(ContextCompat.getColor(context, R.color.editor_text));
         codeEditText.setTypeface(Typeface.MONOSPACE);
@@ -147,10 +214,17 @@ public class CodeEditorView extends LinearLayout {
         codeEditText.setHorizontalScrollBarEnabled(!wordWrapEnabled);
         codeEditText.setVerticalScrollBarEnabled(false);
         codeEditText.setMinHeight(300);
+        codeEditText.setEditableFactory(new Editable.Factory() {
+            @Override
+            public Editable newEditable(CharSequence source) {
+                if (source == attachingDocument) {
+                    return attachingDocument;
+                }
+                return super.newEditable(source);
+            }
+        });
         
-        if (autoBracketEnabled) {
-            codeEditText.setFilters(new InputFilter[]{new BracketAutoCloseFilter()});
-        }
+        updateFilters();
         
         horizontalScrollView = new HorizontalScrollView(context);
         horizontalScrollView.setFillViewport(true);
@@ -196,8 +270,6 @@ public class CodeEditorView extends LinearLayout {
         setupCursorListener();
         setupKeyboardShortcuts();
         setupPinchZoom(context);
-        
-        undoRedoManager.saveState("", 0);
     }
     
     private void setupPinchZoom(Context context) {
@@ -256,15 +328,23 @@ public class CodeEditorView extends LinearLayout {
     
     private void setupTextWatcher() {
         codeEditText.addTextChangedListener(new TextWatcher() {
-            private int beforeLength = 0;
-            
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                beforeLength = s.length();
+                if (!suppressHistory && !swappingDocument) {
+                    editFanout.beforeEdit(s, start, count);
+                }
             }
             
             @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                documentVersion++;
+                if (swappingDocument) {
+                    return;
+                }
+                editFanout.afterEdit(s, start, before, count, !applyingBatch, !suppressHistory, !loadingDocument);
+                lastEditStart = start;
+                lastEditCount = count;
+            }
             
             @Override
             public void afterTextChanged(Editable s) {
@@ -275,32 +355,29 @@ public class CodeEditorView extends LinearLayout {
                 updateLineNumbers();
                 scheduleHighlighting();
                 
-                String text = s.toString();
-                int cursorPos = codeEditText.getSelectionStart();
-                
-                if (autoIndentEnabled && text.length() > beforeLength) {
-                    int insertPos = cursorPos - 1;
-                    if (insertPos >= 0 && insertPos < text.length() && text.charAt(insertPos) == '\n') {
-                        handleNewLine(s, insertPos);
-                    }
+                if (autoIndentEnabled && lastEditCount == 1 && lastEditStart < s.length()
+                        && s.charAt(lastEditStart) == '\n') {
+                    handleNewLine(s, lastEditStart);
                 }
                 
-                undoRedoManager.saveState(text, cursorPos);
-                
                 if (textChangeListener != null) {
-                    textChangeListener.onTextChanged(text);
+                    textChangeListener.onTextChanged(s);
                 }
                 
                 updateCursorPosition();
-                checkForAutocomplete(text, cursorPos);
+                checkForAutocomplete(s, codeEditText.getSelectionStart());
             }
         });
     }
     
-    private void checkForAutocomplete(String text, int cursorPos) {
+    private void checkForAutocomplete(CharSequence text, int cursorPos) {
         if (autocompleteListener == null || cursorPos <= 0) {
             return;
         }
+        if (tokenCache.isInsideLiteral(cursorPos)) {
+            autocompleteListener.onAutocompleteDismiss();
+            return;
+        }
         
         int start = cursorPos - 1;
         while (start >= 0 && isIdentifierChar(text.charAt(start))) {
@@ -308,20 +385,62 @@ public class CodeEditorView extends LinearLayout {
         }
         start++;
         
-        if (cursorPos - start >= 2) {
-            currentWord = text.substring(start, cursorPos);
+        if (cursorPos - start >= 2 || (cursorPos == start && isMemberAccess(text, start))) {
             wordStart = start;
-            autocompleteListener.onAutocompleteRequest(currentWord, wordStart);
+            wordEnd = cursorPos;
+            autocompleteListener.onAutocompleteRequest(wordStart, wordEnd);
         } else {
-            currentWord = "";
             autocompleteListener.onAutocompleteDismiss();
         }
     }
     
+    private boolean isMemberAccess(CharSequence text, int dot) {
+        if (dot < 2 || text.charAt(dot - 1) != '.') {
+            return false;
+        }
+        char receiver = text.charAt(dot - 2);
+        return isIdentifierChar(receiver) || receiver == ')' || receiver == ']';
+    }
+    
     private boolean isIdentifierChar(char c) {
         return Character.isLetterOrDigit(c) || c == '_' || c == '$';
     }
     
+    public String getCompletionPrefix() {
+        CharSequence text = codeEditText.getText();
+        int end = Math.min(wordEnd, text.length());
+        return wordStart < end ? text.subSequence(wordStart, end).toString() : "";
+    }
+    
+    public String getCompletionQualifier() {
+        CharSequence text = codeEditText.getText();
+        int end = wordStart - 1;
+        if (end <= 0 || end > text.length() || text.charAt(end) != '.') {
+            return null;
+        }
+        int start = end;
+        while (start > 0 && isIdentifierChar(text.charAt(start - 1))) {
+            start--;
+        }
+        return start < end ? text.subSequence(start, end).toString() : null;
+    }
+    
+    /** The source for member completion, or null unless the word follows a '.'. */
+    public CompletionContext getCompletionContext(String fileName) {
+        Editable text = codeEditText.getText();
+        if (wordStart <= 0 || wordStart > text.length() || text.charAt(wordStart - 1) != '.') {
+            return null;
+        }
+        if (text != completionDocument || documentVersion != completionVersion) {
+            completionSource = new char[text.length()];
+            TextUtils.getChars(text, 0, completionSource.length, completionSource, 0);
+            completionDocument = text;
+            completionVersion = documentVersion;
+        }
+        int cursor = Math.max(wordStart, Math.min(codeEditText.getSelectionStart(), completionSource.length));
+        return new CompletionContext(fileName, completionSource, wordStart, cursor);
+    }
+    
     public void insertCompletion(String completion) {
         if (wordStart >= 0) {
             int cursorPos = codeEditText.getSelectionStart();
@@ -334,8 +453,7 @@ public class CodeEditorView extends LinearLayout {
     }
     
     private void handleNewLine(Editable s, int insertPos) {
-        String text = s.toString();
-        String indent = autoIndentHelper.calculateNewLineIndent(text, insertPos, currentLanguage);
+        String indent = autoIndentHelper.calculateNewLineIndent(s, insertPos, tokenCache);
         
         if (!indent.isEmpty()) {
             isUpdatingText = true;
@@ -391,12 +509,15 @@ public class CodeEditorView extends LinearLayout {
                             duplicateLine();
                             return true;
                         case KeyEvent.KEYCODE_SLASH:
-                            toggleComment();
+                            toggleCurrentLineComment();
                             return true;
                     }
                 }
                 
                 if (keyCode == KeyEvent.KEYCODE_TAB) {
+                    if (!event.isShiftPressed() && nextSnippetStop()) {
+                        return true;
+                    }
                     handleTabKey(event.isShiftPressed());
                     return true;
                 }
@@ -409,14 +530,14 @@ public class CodeEditorView extends LinearLayout {
         int start = codeEditText.getSelectionStart();
         int end = codeEditText.getSelectionEnd();
         
-        String text = codeEditText.getText().toString();
+        Editable text = codeEditText.getText();
         
         if (start == end) {
             if (shiftPressed) {
-                int lineStart = text.lastIndexOf('\n', start - 1) + 1;
-                String beforeCursor = text.substring(lineStart, start);
+                int lineStart = lineIndex.getLineStart(lineIndex.getLineForOffset(start));
                 String indent = autoIndentHelper.getIndent();
-                if (beforeCursor.startsWith(indent)) {
+                if (start - lineStart >= indent.length()
+                        && TextUtils.regionMatches(text, lineStart, indent, 0, indent.length())) {
                     isUpdatingText = true;
                     codeEditText.getText().delete(lineStart, lineStart + indent.length());
                     codeEditText.setSelection(start - indent.length());
@@ -428,7 +549,7 @@ public class CodeEditorView extends LinearLayout {
                 isUpdatingText = false;
             }
         } else {
-            String selected = text.substring(start, end);
+            String selected = text.subSequence(start, end).toString();
             String modified;
             if (shiftPressed) {
                 modified = autoIndentHelper.decreaseIndent(selected);
@@ -444,174 +565,103 @@ public class CodeEditorView extends LinearLayout {
     }
     
     private void duplicateLine() {
-        String text = codeEditText.getText().toString();
+        Editable text = codeEditText.getText();
         int cursorPos = codeEditText.getSelectionStart();
         
-        int lineStart = text.lastIndexOf('\n', cursorPos - 1) + 1;
-        int lineEnd = text.indexOf('\n', cursorPos);
-        if (lineEnd == -1) lineEnd = text.length();
+        int line = lineIndex.getLineForOffset(cursorPos);
+        int lineStart = lineIndex.getLineStart(line);
+        int lineEnd = lineIndex.getLineEnd(line, text.length());
         
-        String line = text.substring(lineStart, lineEnd);
+        String content = text.subSequence(lineStart, lineEnd).toString();
         
         isUpdatingText = true;
-        codeEditText.getText().insert(lineEnd, "\n" + line);
-        codeEditText.setSelection(cursorPos + line.length() + 1);
+        text.insert(lineEnd, "\n" + content);
+        codeEditText.setSelection(cursorPos + content.length() + 1);
         isUpdatingText = false;
     }
     
-    private void toggleComment() {
-        String text = codeEditText.getText().toString();
-        int cursorPos = codeEditText.getSelectionStart();
-        
-        int lineStart = text.lastIndexOf('\n', cursorPos - 1) + 1;
-        int lineEnd = text.indexOf('\n', cursorPos);
-        if (lineEnd == -1) lineEnd = text.length();
-        
-        String line = text.substring(lineStart, lineEnd);
-        String trimmedLine = line.trim();
-        
-        String commentPrefix = getCommentPrefix();
-        
-        isUpdatingText = true;
-        if (trimmedLine.startsWith(commentPrefix)) {
-            int commentStart = line.indexOf(commentPrefix);
-            String uncommented = line.substring(0, commentStart) + 
-                                line.substring(commentStart + commentPrefix.length());
-            if (uncommented.startsWith(" ")) {
-                uncommented = uncommented.substring(1);
-            }
-            codeEditText.getText().replace(lineStart, lineEnd, uncommented);
-        } else {
-            String commented = autoIndentHelper.getIndentForLine(line) + commentPrefix + " " + trimmedLine;
-            codeEditText.getText().replace(lineStart, lineEnd, commented);
-        }
-        isUpdatingText = false;
-    }
-    
-    private String getCommentPrefix() {
-        switch (currentLanguage) {
-            case PYTHON:
-            case RUBY:
-            case SHELL:
-            case PERL:
-            case R:
-            case YAML:
-            case TOML:
-                return "#";
-            case LUA:
-            case SQL:
-                return "--";
-            case HTML:
-            case XML:
-                return "<!--";
-            default:
-                return "//";
-        }
-    }
-    
     private void highlightMatchingBracket() {
         Editable editable = codeEditText.getText();
         if (editable == null) return;
         
-        BackgroundColorSpan[] spans = editable.getSpans(0, editable.length(), BackgroundColorSpan.class);
-        for (BackgroundColorSpan span : spans) {
-            if (span.getBackgroundColor() == matchingBracketColor) {
-                editable.removeSpan(span);
-            }
-        }
+        editable.removeSpan(bracketSpan);
+        editable.removeSpan(matchingBracketSpan);
         
         int cursorPos = codeEditText.getSelectionStart();
         if (cursorPos <= 0 || cursorPos > editable.length()) return;
         
-        String text = editable.toString();
-        char charBefore = text.charAt(cursorPos - 1);
+        char charBefore = editable.charAt(cursorPos - 1);
         
         if (BracketMatcher.isOpenBracket(charBefore) || BracketMatcher.isCloseBracket(charBefore)) {
-            int matchPos = BracketMatcher.findMatchingBracket(text, cursorPos - 1);
+            int matchPos = BracketMatcher.findMatchingBracket(editable, tokenCache, cursorPos - 1);
             if (matchPos >= 0) {
-                editable.setSpan(
-                    new BackgroundColorSpan(matchingBracketColor),
-                    cursorPos - 1, cursorPos,
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-                );
-                editable.setSpan(
-                    new BackgroundColorSpan(matchingBracketColor),
-                    matchPos, matchPos + 1,
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-                );
+                editable.setSpan(bracketSpan, cursorPos - 1, cursorPos, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                editable.setSpan(matchingBracketSpan, matchPos, matchPos + 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
         }
     }
     
     private void updateCursorPosition() {
         if (cursorChangeListener != null) {
-            int pos = codeEditText.getSelectionStart();
-            String text = codeEditText.getText().toString();
-            
-            int line = 1;
-            int column = 1;
+            int pos = Math.max(0, codeEditText.getSelectionStart());
+            int line = lineIndex.getLineForOffset(pos);
+            int column = pos - lineIndex.getLineStart(line) + 1;
+            line++;
             
-            for (int i = 0; i < pos && i < text.length(); i++) {
-                if (text.charAt(i) == '\n') {
-                    line++;
-                    column = 1;
-                } else {
-                    column++;
-                }
+            if (line != reportedLine || column != reportedColumn) {
+                reportedLine = line;
+                reportedColumn = column;
+                cursorChangeListener.onCursorChanged(line, column);
             }
-            
-            cursorChangeListener.onCursorChanged(line, column);
         }
     }
     
     private void updateLineNumbers() {
-        String text = codeEditText.getText().toString();
-        int lineCount = 1;
-        for (int i = 0; i < text.length(); i++) {
-            if (text.charAt(i) == '\n') {
-                lineCount++;
-            }
+        int lineCount = lineIndex.getLineCount();
+        if (lineCount == displayedLineCount) {
+            return;
         }
         
-        StringBuilder lineNumbers = new StringBuilder();
-        for (int i = 1; i <= lineCount; i++) {
-            lineNumbers.append(i);
-            if (i < lineCount) {
-                lineNumbers.append("\n");
+        Editable lineNumbers = lineNumberView.getEditableText();
+        if (lineCount > displayedLineCount) {
+            lineNumberBuffer.setLength(0);
+            for (int i = displayedLineCount + 1; i <= lineCount; i++) {
+                lineNumberBuffer.append('\n').append(i);
+            }
+            lineNumbers.append(lineNumberBuffer);
+        } else {
+            int end = lineNumbers.length();
+            for (int i = lineCount; i < displayedLineCount; i++) {
+                end = TextUtils.lastIndexOf(lineNumbers, '\n', end - 1);
             }
+            lineNumbers.delete(end, lineNumbers.length());
         }
-        
-        lineNumberView.setText(lineNumbers.toString());
+        displayedLineCount = lineCount;
     }
     
     private void scheduleHighlighting() {
-        if (highlightRunnable != null) {
-            removeCallbacks(highlightRunnable);
-        }
-        
-        highlightRunnable = () -> {
-            if (!isUpdatingText && currentLanguage != SyntaxHighlighter.Language.PLAIN_TEXT) {
-                applyHighlighting();
-            }
-        };
-        
+        removeCallbacks(highlightRunnable);
+        highlightPending = true;
         postDelayed(highlightRunnable, HIGHLIGHT_DELAY);
     }
     
+    private void requestHighlighting() {
+        removeCallbacks(highlightRunnable);
+        highlightPending = true;
+        post(highlightRunnable);
+    }
+    
     private void applyHighlighting() {
         Editable editable = codeEditText.getText();
-        if (editable == null || editable.length() == 0) {
+        if (editable == null || editable.length() == 0 || !tokenCache.hasDamage()) {
             return;
         }
         
         int cursorPos = codeEditText.getSelectionStart();
-        
-        ForegroundColorSpan[] existingSpans = editable.getSpans(0, editable.length(), ForegroundColorSpan.class);
-        for (ForegroundColorSpan span : existingSpans) {
-            editable.removeSpan(span);
-        }
-        
-        SyntaxHighlighter.applySpans(editable, currentLanguage);
+        int firstLine = tokenCache.getDamageStart();
+        int lastLine = tokenCache.getDamageEnd();
+        tokenCache.clearDamage();
+        SyntaxHighlighter.applySpans(editable, tokenCache, firstLine, lastLine);
         
         if (cursorPos >= 0 && cursorPos <= editable.length()) {
             codeEditText.setSelection(cursorPos);
@@ -620,15 +670,82 @@ public class CodeEditorView extends LinearLayout {
     
     public void setText(String text) {
         isUpdatingText = true;
+        suppressHistory = true;
+        loadingDocument = true;
         codeEditText.setText(text != null ? text : "");
+        loadingDocument = false;
+        suppressHistory = false;
         isUpdatingText = false;
         
         undoRedoManager.clear();
-        undoRedoManager.saveState(text != null ? text : "", 0);
+        lineIndex.rebuild(codeEditText.getText());
+        tokenCache.rebuild(codeEditText.getText());
+        identifierIndex.rebuild(tokenCache.snapshot(codeEditText.getText()));
         
         updateLineNumbers();
+        updateCursorPosition();
         if (currentLanguage != SyntaxHighlighter.Language.PLAIN_TEXT) {
-            post(this::applyHighlighting);
+            requestHighlighting();
+        }
+    }
+    
+    public EditorState detachState() {
+        Editable document = codeEditText.getText();
+        clearHighlightedMatch();
+        document.removeSpan(bracketSpan);
+        document.removeSpan(matchingBracketSpan);
+        
+        EditorState state = new EditorState(document, undoRedoManager, lineIndex, tokenCache, identifierIndex,
+                currentLanguage, codeEditText.getSelectionStart(), codeEditText.getSelectionEnd(),
+                horizontalScrollView.getScrollX(), verticalScrollView.getScrollY(),
+                highlightPending);
+        removeCallbacks(highlightRunnable);
+        highlightPending = false;
+        
+        BaseInputConnection.removeComposingSpans(document);
+        for (TextWatcher watcher : document.getSpans(0, document.length(), TextWatcher.class)) {
+            document.removeSpan(watcher);
+        }
+        for (SpanWatcher watcher : document.getSpans(0, document.length(), SpanWatcher.class)) {
+            document.removeSpan(watcher);
+        }
+        
+        undoRedoManager = new UndoRedoManager();
+        lineIndex = new LineIndex();
+        tokenCache = new TokenCache(lineIndex, currentLanguage);
+        identifierIndex = new IdentifierIndex();
+        editFanout.setDocument(undoRedoManager, lineIndex, tokenCache, identifierIndex);
+        return state;
+    }
+    
+    public void attachState(EditorState state) {
+        undoRedoManager = state.undoRedoManager;
+        lineIndex = state.lineIndex;
+        tokenCache = state.tokenCache;
+        identifierIndex = state.identifierIndex;
+        editFanout.setDocument(undoRedoManager, lineIndex, tokenCache, identifierIndex);
+        currentLanguage = state.language;
+        
+        isUpdatingText = true;
+        swappingDocument = true;
+        attachingDocument = state.document;
+        codeEditText.setText(state.document, TextView.BufferType.EDITABLE);
+        attachingDocument = null;
+        swappingDocument = false;
+        isUpdatingText = false;
+        
+        int length = state.document.length();
+        codeEditText.setSelection(Math.min(state.selectionStart, length), Math.min(state.selectionEnd, length));
+        post(() -> {
+            horizontalScrollView.scrollTo(state.scrollX, 0);
+            verticalScrollView.scrollTo(0, state.scrollY);
+        });
+        
+        reportedLine = -1;
+        updateLineNumbers();
+        updateCursorPosition();
+        if (state.needsHighlight && currentLanguage != SyntaxHighlighter.Language.PLAIN_TEXT) {
+            requestHighlighting();
         }
     }
     
@@ -636,10 +753,29 @@ public class CodeEditorView extends LinearLayout {
         return codeEditText.getText().toString();
     }
     
+    public Editable getEditableText() {
+        return codeEditText.getText();
+    }
+    
+    public CharSequence snapshotText() {
+        Editable editable = codeEditText.getText();
+        char[] chars = new char[editable.length()];
+        TextUtils.getChars(editable, 0, chars.length, chars, 0);
+        return CharBuffer.wrap(chars);
+    }
+    
+    public long getDocumentVersion() {
+        return documentVersion;
+    }
+    
     public void setLanguage(SyntaxHighlighter.Language language) {
         this.currentLanguage = language;
+        if (tokenCache.getLanguage() != language) {
+            tokenCache.setLanguage(codeEditText.getText(), language);
+            identifierIndex.rebuild(tokenCache.snapshot(codeEditText.getText()));
+        }
         if (language != SyntaxHighlighter.Language.PLAIN_TEXT) {
-            post(this::applyHighlighting);
+            requestHighlighting();
         }
     }
     
@@ -648,41 +784,115 @@ public class CodeEditorView extends LinearLayout {
     }
     
     public void undo() {
-        UndoRedoManager.TextState state = undoRedoManager.undo();
+        if (!undoRedoManager.canUndo()) {
+            return;
+        }
         
-        if (state != null) {
-            isUpdatingText = true;
-            codeEditText.setText(state.text);
-            int pos = Math.min(state.cursorPosition, state.text.length());
-            if (pos >= 0) {
-                codeEditText.setSelection(pos);
-            }
-            isUpdatingText = false;
-            
-            updateLineNumbers();
-            if (currentLanguage != SyntaxHighlighter.Language.PLAIN_TEXT) {
-                post(this::applyHighlighting);
+        Editable editable = codeEditText.getText();
+        int cursor;
+        UndoRedoManager.Edit edit;
+        
+        isUpdatingText = true;
+        suppressHistory = true;
+        do {
+            edit = undoRedoManager.undo();
+            if (edit.batch != null) {
+                cursor = applyBatch(editable, edit.batch, true);
+            } else {
+                editable.replace(edit.start, edit.start + edit.inserted.length(), edit.removed);
+                cursor = edit.start + edit.removed.length();
             }
-        }
+        } while (edit.linked && undoRedoManager.canUndo());
+        suppressHistory = false;
+        isUpdatingText = false;
+        
+        onHistoryApplied(cursor);
     }
     
     public void redo() {
-        UndoRedoManager.TextState state = undoRedoManager.redo();
+        if (!undoRedoManager.canRedo()) {
+            return;
+        }
         
-        if (state != null) {
-            isUpdatingText = true;
-            codeEditText.setText(state.text);
-            int pos = Math.min(state.cursorPosition, state.text.length());
-            if (pos >= 0) {
-                codeEditText.setSelection(pos);
+        Editable editable = codeEditText.getText();
+        int cursor;
+        UndoRedoManager.Edit edit;
+        
+        isUpdatingText = true;
+        suppressHistory = true;
+        do {
+            edit = undoRedoManager.redo();
+            if (edit.batch != null) {
+                cursor = applyBatch(editable, edit.batch, false);
+            } else {
+                editable.replace(edit.start, edit.start + edit.removed.length(), edit.inserted);
+                cursor = edit.start + edit.inserted.length();
             }
-            isUpdatingText = false;
-            
-            updateLineNumbers();
-            if (currentLanguage != SyntaxHighlighter.Language.PLAIN_TEXT) {
-                post(this::applyHighlighting);
+        } while (undoRedoManager.isRedoLinked());
+        suppressHistory = false;
+        isUpdatingText = false;
+        
+        onHistoryApplied(cursor);
+    }
+    
+    public void applyEdits(EditBatch batch) {
+        if (batch.size() == 0) {
+            return;
+        }
+        
+        Editable editable = codeEditText.getText();
+        batch.captureOriginals(editable);
+        
+        isUpdatingText = true;
+        suppressHistory = true;
+        int cursor = applyBatch(editable, batch, false);
+        suppressHistory = false;
+        isUpdatingText = false;
+        
+        undoRedoManager.recordBatch(batch);
+        onHistoryApplied(cursor);
+    }
+    
+    private int applyBatch(Editable editable, EditBatch batch, boolean revert) {
+        int shift = revert ? batch.getDelta() : 0;
+        applyingBatch = true;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            int start = batch.getStart(i);
+            String original = batch.getOriginal(i);
+            String replacement = batch.getReplacement(i);
+            if (revert) {
+                shift -= replacement.length() - original.length();
+                editable.replace(start + shift, start + shift + replacement.length(), original);
+            } else {
+                editable.replace(start, start + original.length(), replacement);
             }
         }
+        applyingBatch = false;
+        lineIndex.rebuild(editable);
+        tokenCache.rebuild(editable);
+        identifierIndex.rebuild(tokenCache.snapshot(editable));
+        return batch.getStart(0);
+    }
+    
+    private void onHistoryApplied(int cursor) {
+        if (cursor >= 0 && cursor <= codeEditText.getText().length()) {
+            codeEditText.setSelection(cursor);
+        }
+        
+        updateLineNumbers();
+        scheduleHighlighting();
+        
+        if (textChangeListener != null) {
+            textChangeListener.onTextChanged(codeEditText.getText());
+        }
+    }
+    
+    public void beginBatchEdit() {
+        undoRedoManager.beginBatch();
+    }
+    
+    public void endBatchEdit() {
+        undoRedoManager.endBatch();
     }
     
     public boolean canUndo() {
@@ -701,6 +911,10 @@ public class CodeEditorView extends LinearLayout {
         this.textChangeListener = listener;
     }
     
+    public EditFanout getEditFanout() {
+        return editFanout;
+    }
+    
     public void clearHistory() {
         undoRedoManager.clear();
     }
@@ -710,33 +924,27 @@ public class CodeEditorView extends LinearLayout {
     }
     
     public void goToLine(int lineNumber) {
-        String text = codeEditText.getText().toString();
-        int currentLine = 1;
-        int position = 0;
-        
-        for (int i = 0; i < text.length(); i++) {
-            if (currentLine == lineNumber) {
-                position = i;
-                break;
-            }
-            if (text.charAt(i) == '\n') {
-                currentLine++;
-            }
+        if (lineNumber >= 1 && lineNumber <= lineIndex.getLineCount()) {
+            codeEditText.setSelection(lineIndex.getLineStart(lineNumber - 1));
+            codeEditText.requestFocus();
         }
-        
-        if (currentLine == lineNumber || (lineNumber == 1 && currentLine == 1)) {
-            codeEditText.setSelection(position);
+    }
+    
+    public void selectInLine(int lineNumber, int column, int length) {
+        if (lineNumber >= 1 && lineNumber <= lineIndex.getLineCount()) {
+            int textLength = codeEditText.length();
+            int start = Math.min(lineIndex.getLineStart(lineNumber - 1) + column, textLength);
+            codeEditText.setSelection(start, Math.min(start + length, textLength));
             codeEditText.requestFocus();
         }
     }
     
     public int getLineCount() {
-        String text = codeEditText.getText().toString();
-        int count = 1;
-        for (char c : text.toCharArray()) {
-            if (c == '\n') count++;
-        }
-        return count;
+        return lineIndex.getLineCount();
+    }
+    
+    public IdentifierIndex getIdentifierIndex() {
+        return identifierIndex;
     }
     
     public int getSelectionStart() {
@@ -753,6 +961,23 @@ public class CodeEditorView extends LinearLayout {
         }
     }
     
+    public int getEditorScrollX() {
+        return horizontalScrollView.getScrollX();
+    }
+    
+    public int getEditorScrollY() {
+        return verticalScrollView.getScrollY();
+    }
+    
+    public void restoreViewport(int selectionStart, int selectionEnd, int scrollX, int scrollY) {
+        int length = codeEditText.getText().length();
+        codeEditText.setSelection(Math.min(selectionStart, length), Math.min(selectionEnd, length));
+        post(() -> {
+            horizontalScrollView.scrollTo(scrollX, 0);
+            verticalScrollView.scrollTo(0, scrollY);
+        });
+    }
+    
     public void setSelection(int position) {
         if (position >= 0 && position <= codeEditText.getText().length()) {
             codeEditText.setSelection(position);
@@ -785,6 +1010,44 @@ public class CodeEditorView extends LinearLayout {
         }
     }
     
+    public void setSearchMatches(FindReplaceHelper matches) {
+        searchMatches = matches;
+        codeEditText.invalidate();
+    }
+    
+    public void invalidateSearchMatches() {
+        codeEditText.invalidate();
+    }
+    
+    private void drawSearchMatches(Canvas canvas) {
+        Layout layout = codeEditText.getLayout();
+        if (searchMatches == null || layout == null || searchMatches.getMatchCount() == 0
+                || !canvas.getClipBounds(visibleRect)) {
+            return;
+        }
+        
+        int top = codeEditText.getExtendedPaddingTop();
+        int firstLine = layout.getLineForVertical(visibleRect.top - top);
+        int lastLine = layout.getLineForVertical(visibleRect.bottom - top);
+        int count = searchMatches.getMatchesInRange(layout.getLineStart(firstLine), layout.getLineEnd(lastLine),
+                visibleMatchStarts, visibleMatchEnds);
+        if (count == 0) {
+            return;
+        }
+        
+        int length = codeEditText.length();
+        canvas.save();
+        canvas.translate(codeEditText.getCompoundPaddingLeft(), top);
+        for (int i = 0; i < count; i++) {
+            int end = Math.min(visibleMatchEnds[i], length);
+            if (visibleMatchStarts[i] < end) {
+                layout.getSelectionPath(visibleMatchStarts[i], end, matchPath);
+                canvas.drawPath(matchPath, matchPaint);
+            }
+        }
+        canvas.restore();
+    }
+    
     public void clearHighlightedMatch() {
         if (highlightedMatchStart >= 0) {
             Editable editable = codeEditText.getText();
@@ -822,13 +1085,39 @@ public class CodeEditorView extends LinearLayout {
     
     public void setAutoBracket(boolean enabled) {
         this.autoBracketEnabled = enabled;
-        if (enabled) {
-            codeEditText.setFilters(new InputFilter[]{new BracketAutoCloseFilter()});
+        updateFilters();
+    }
+    
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+        codeEditText.setCursorVisible(!readOnly);
+    }
+    
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+    
+    private void updateFilters() {
+        if (autoBracketEnabled) {
+            codeEditText.setFilters(new InputFilter[]{new ReadOnlyFilter(), new BracketAutoCloseFilter()});
         } else {
-            codeEditText.setFilters(new InputFilter[0]);
+            codeEditText.setFilters(new InputFilter[]{new ReadOnlyFilter()});
         }
     }
     
+    public void appendText(CharSequence text) {
+        isUpdatingText = true;
+        suppressHistory = true;
+        loadingDocument = true;
+        codeEditText.getText().append(text);
+        loadingDocument = false;
+        suppressHistory = false;
+        isUpdatingText = false;
+        
+        updateLineNumbers();
+        scheduleHighlighting();
+    }
+    
     public void insertText(String text) {
         int start = codeEditText.getSelectionStart();
         int end = codeEditText.getSelectionEnd();
@@ -841,26 +1130,140 @@ public class CodeEditorView extends LinearLayout {
         scheduleHighlighting();
     }
     
+    public void insertSnippet(SnippetTemplate template) {
+        expandSnippet(template, codeEditText.getSelectionStart(), codeEditText.getSelectionEnd());
+    }
+    
+    public void insertCompletionSnippet(SnippetTemplate template) {
+        if (wordStart >= 0) {
+            expandSnippet(template, wordStart, codeEditText.getSelectionStart());
+        }
+    }
+    
+    private void expandSnippet(SnippetTemplate template, int start, int end) {
+        Editable editable = codeEditText.getText();
+        int lineStart = start;
+        while (lineStart > 0 && editable.charAt(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        int indentEnd = lineStart;
+        while (indentEnd < start && (editable.charAt(indentEnd) == ' ' || editable.charAt(indentEnd) == '\t')) {
+            indentEnd++;
+        }
+        String indent = editable.subSequence(lineStart, indentEnd).toString();
+        String text = template.expand(indent);
+        
+        clearSnippetStops(editable);
+        isUpdatingText = true;
+        editable.replace(start, end, text);
+        isUpdatingText = false;
+        for (int i = 0; i < template.getStopCount(); i++) {
+            editable.setSpan(new SnippetStop(i, template.getStopNumber(i), template.isMirror(i)),
+                    start + template.getStopStart(i, indent), start + template.getStopEnd(i, indent),
+                    Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+        }
+        updateLineNumbers();
+        scheduleHighlighting();
+        
+        if (!nextSnippetStop()) {
+            codeEditText.setSelection(start + text.length());
+        }
+    }
+    
+    private boolean nextSnippetStop() {
+        Editable editable = codeEditText.getText();
+        SnippetStop[] stops = editable.getSpans(0, editable.length(), SnippetStop.class);
+        if (stops.length == 0) {
+            return false;
+        }
+        
+        if (activeSnippetStop != null) {
+            int activeStart = editable.getSpanStart(activeSnippetStop);
+            int activeEnd = editable.getSpanEnd(activeSnippetStop);
+            String value = activeStart >= 0 ? editable.subSequence(activeStart, activeEnd).toString() : "";
+            isUpdatingText = true;
+            for (SnippetStop stop : stops) {
+                if (stop.mirror && stop.number == activeSnippetStop.number) {
+                    int start = editable.getSpanStart(stop);
+                    int end = editable.getSpanEnd(stop);
+                    if (activeStart >= 0 && start >= 0 && !editable.subSequence(start, end).toString().equals(value)) {
+                        editable.replace(start, end, value);
+                    }
+                    editable.removeSpan(stop);
+                }
+            }
+            isUpdatingText = false;
+            editable.removeSpan(activeSnippetStop);
+            activeSnippetStop = null;
+        }
+        
+        SnippetStop next = null;
+        for (SnippetStop stop : editable.getSpans(0, editable.length(), SnippetStop.class)) {
+            if (!stop.mirror && (next == null || stop.index < next.index)) {
+                next = stop;
+            }
+        }
+        if (next == null) {
+            clearSnippetStops(editable);
+            return false;
+        }
+        
+        int start = editable.getSpanStart(next);
+        int end = editable.getSpanEnd(next);
+        if (next.number == 0) {
+            clearSnippetStops(editable);
+            codeEditText.setSelection(start);
+        } else {
+            activeSnippetStop = next;
+            codeEditText.setSelection(start, end);
+        }
+        return true;
+    }
+    
+    private void clearSnippetStops(Editable editable) {
+        for (SnippetStop stop : editable.getSpans(0, editable.length(), SnippetStop.class)) {
+            editable.removeSpan(stop);
+        }
+        activeSnippetStop = null;
+    }
+    
+    private static class SnippetStop {
+        final int index;
+        final int number;
+        final boolean mirror;
+        
+        SnippetStop(int index, int number, boolean mirror) {
+            this.index = index;
+            this.number = number;
+            this.mirror = mirror;
+        }
+    }
+    
+    private class ReadOnlyFilter implements InputFilter {
+        @Override
+        public CharSequence filter(CharSequence source, int start, int end, 
+                                   Spanned dest, int dstart, int dend) {
+            if (readOnly && !isUpdatingText) {
+                return dest.subSequence(dstart, dend);
+            }
+            return null;
+        }
+    }
+    
     private class BracketAutoCloseFilter implements InputFilter {
         @Override
         public CharSequence filter(CharSequence source, int start, int end, 
                                    Spanned dest, int dstart, int dend) {
-            if (!autoBracketEnabled || source.length() != 1) {
+            if (!autoBracketEnabled || isUpdatingText || end - start != 1) {
                 return null;
             }
             
-            char c = source.charAt(0);
-            String destStr = dest.toString();
+            char c = source.charAt(start);
             
-            if (BracketMatcher.shouldAutoClose(destStr, dstart, c)) {
+            if (BracketMatcher.shouldAutoClose(dest, tokenCache, dstart, c)) {
                 String pair = BracketMatcher.getAutoClosePair(c);
                 if (pair != null) {
-                    post(() -> {
-                        int pos = codeEditText.getSelectionStart();
-                        if (pos > 0) {
-                            codeEditText.setSelection(pos - 1);
-                        }
-                    });
+                    post(stepBackRunnable);
                     return pair;
                 }
             }
@@ -882,6 +1285,7 @@ public class CodeEditorView extends LinearLayout {
         
         currentLineHighlightColor = currentLineColor;
         
+        tokenCache.markAllDamaged();
         scheduleHighlighting();
     }
     
@@ -913,18 +1317,18 @@ public class CodeEditorView extends LinearLayout {
     }
     
     public void duplicateCurrentLine() {
-        String text = codeEditText.getText().toString();
+        Editable text = codeEditText.getText();
         int cursorPos = codeEditText.getSelectionStart();
         
-        int lineStart = text.lastIndexOf('\n', cursorPos - 1) + 1;
-        int lineEnd = text.indexOf('\n', cursorPos);
-        if (lineEnd == -1) lineEnd = text.length();
+        int line = lineIndex.getLineForOffset(cursorPos);
+        int lineStart = lineIndex.getLineStart(line);
+        int lineEnd = lineIndex.getLineEnd(line, text.length());
         
-        String line = text.substring(lineStart, lineEnd);
+        String content = text.subSequence(lineStart, lineEnd).toString();
         
         isUpdatingText = true;
-        codeEditText.getText().insert(lineEnd, "\n" + line);
-        codeEditText.setSelection(cursorPos + line.length() + 1);
+        text.insert(lineEnd, "\n" + content);
+        codeEditText.setSelection(cursorPos + content.length() + 1);
         isUpdatingText = false;
         
         updateLineNumbers();
@@ -932,30 +1336,46 @@ public class CodeEditorView extends LinearLayout {
     }
     
     public void toggleCurrentLineComment() {
-        String text = codeEditText.getText().toString();
-        int cursorPos = codeEditText.getSelectionStart();
-        
-        int lineStart = text.lastIndexOf('\n', cursorPos - 1) + 1;
-        int lineEnd = text.indexOf('\n', cursorPos);
-        if (lineEnd == -1) lineEnd = text.length();
-        
-        String line = text.substring(lineStart, lineEnd);
-        String trimmedLine = line.trim();
+        Editable editable = codeEditText.getText();
+        int line = lineIndex.getLineForOffset(Math.max(0, codeEditText.getSelectionStart()));
+        int lineStart = lineIndex.getLineStart(line);
+        int lineEnd = lineIndex.getLineEnd(line, editable.length());
+        String commentPrefix = tokenCache.getSpec().getCommentPrefix();
+        String commentSuffix = tokenCache.getSpec().getCommentSuffix();
         
-        String commentPrefix = getCommentPrefix();
+        int commentStart = tokenCache.getTokenCount(line) > 0 ? tokenCache.getTokenStart(line, 0) : lineEnd;
+        boolean commented = commentStart < lineEnd && tokenCache.getTokenType(line, 0) == TokenCache.COMMENT
+                && TextUtils.regionMatches(editable, commentStart, commentPrefix, 0, commentPrefix.length());
         
         isUpdatingText = true;
-        if (trimmedLine.startsWith(commentPrefix)) {
-            int commentStart = line.indexOf(commentPrefix);
-            String uncommented = line.substring(0, commentStart) + 
-                                line.substring(commentStart + commentPrefix.length());
-            if (uncommented.length() > commentStart && uncommented.charAt(commentStart) == ' ') {
-                uncommented = uncommented.substring(0, commentStart) + uncommented.substring(commentStart + 1);
-            }
-            codeEditText.getText().replace(lineStart, lineEnd, uncommented);
+        if (commented) {
+            int contentStart = commentStart + commentPrefix.length();
+            if (contentStart < lineEnd && editable.charAt(contentStart) == ' ') {
+                contentStart++;
+            }
+            int contentEnd = lineEnd;
+            while (contentEnd > contentStart && Character.isWhitespace(editable.charAt(contentEnd - 1))) {
+                contentEnd--;
+            }
+            if (!commentSuffix.isEmpty() && contentEnd - contentStart >= commentSuffix.length()
+                    && TextUtils.regionMatches(editable, contentEnd - commentSuffix.length(), commentSuffix, 0,
+                        commentSuffix.length())) {
+                contentEnd -= commentSuffix.length();
+                if (contentEnd > contentStart && editable.charAt(contentEnd - 1) == ' ') {
+                    contentEnd--;
+                }
+            } else {
+                contentEnd = lineEnd;
+            }
+            editable.replace(commentStart, lineEnd, editable.subSequence(contentStart, contentEnd).toString());
         } else {
-            String commented = autoIndentHelper.getIndentForLine(line) + commentPrefix + " " + trimmedLine;
-            codeEditText.getText().replace(lineStart, lineEnd, commented);
+            int indentEnd = lineStart;
+            while (indentEnd < lineEnd && (editable.charAt(indentEnd) == ' ' || editable.charAt(indentEnd) == '\t')) {
+                indentEnd++;
+            }
+            String content = editable.subSequence(indentEnd, lineEnd).toString();
+            editable.replace(indentEnd, lineEnd, commentPrefix + " " + content
+                + (commentSuffix.isEmpty() ? "" : " " + commentSuffix));
         }
         isUpdatingText = false;
         
@@ -973,7 +1393,7 @@ public class CodeEditorView extends LinearLayout {
         if (start != end) {
             android.content.ClipboardManager clipboard = 
                 (android.content.ClipboardManager) getContext().getSystemService(Context.CLIPBOARD_SERVICE);
-            String selectedText = codeEditText.getText().toString().substring(start, end);
+            String selectedText = codeEditText.getText().subSequence(start, end).toString();
             android.content.ClipData clip = android.content.ClipData.newPlainText("code", selectedText);
             clipboard.setPrimaryClip(clip);
         }
@@ -0,0 +1,49 @@
+package com.codeeditor.android.view;
+
+import android.text.Editable;
+
+import com.codeeditor.android.autocomplete.IdentifierIndex;
+import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.syntax.TokenCache;
+import com.codeeditor.android.utils.LineIndex;
+import com.codeeditor.android.utils.UndoRedoManager;
+
+public class EditorState {
+    
+    final Editable document;
+    final UndoRedoManager undoRedoManager;
+    final LineIndex lineIndex;
+    final TokenCache tokenCache;
+    final IdentifierIndex identifierIndex;
+    final SyntaxHighlighter.Language language;
+    final int selectionStart;
+    final int selectionEnd;
+    final int scrollX;
+    final int scrollY;
+    final boolean needsHighlight;
+    
+    EditorState(Editable document, UndoRedoManager undoRedoManager, LineIndex lineIndex,
+                TokenCache tokenCache, IdentifierIndex identifierIndex,
+                SyntaxHighlighter.Language language, int selectionStart, int selectionEnd,
+                int scrollX, int scrollY, boolean needsHighlight) {
+        this.document = document;
+        this.undoRedoManager = undoRedoManager;
+        this.lineIndex = lineIndex;
+        this.tokenCache = tokenCache;
+        this.identifierIndex = identifierIndex;
+        this.language = language;
+        this.selectionStart = selectionStart;
+        this.selectionEnd = selectionEnd;
+        this.scrollX = scrollX;
+        this.scrollY = scrollY;
+        this.needsHighlight = needsHighlight;
+    }
+    
+    public String getText() {
+        return document.toString();
+    }
+    
+    public int length() {
+        return document.length();
+    }
+}
@@ -0,0 +1,71 @@
+package com.codeeditor.android.view;
+
+import com.codeeditor.android.model.OpenFile;
+import com.codeeditor.android.utils.TabMemoryManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class EditorStateCache implements TabMemoryManager.WarmStateStore {
+    
+    private static final int MAX_WARM_TABS = 4;
+    
+    private final LinkedHashMap<OpenFile, EditorState> states = new LinkedHashMap<OpenFile, EditorState>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<OpenFile, EditorState> eldest) {
+            if (size() > MAX_WARM_TABS) {
+                eldest.getKey().setContent(eldest.getValue().getText());
+                return true;
+            }
+            return false;
+        }
+    };
+    
+    public void put(OpenFile file, EditorState state) {
+        states.put(file, state);
+    }
+    
+    public EditorState take(OpenFile file) {
+        return states.remove(file);
+    }
+    
+    public void remove(OpenFile file) {
+        states.remove(file);
+    }
+    
+    @Override
+    public boolean contains(OpenFile file) {
+        return states.containsKey(file);
+    }
+    
+    public String peekText(OpenFile file) {
+        for (Map.Entry<OpenFile, EditorState> entry : states.entrySet()) {
+            if (entry.getKey() == file) {
+                return entry.getValue().getText();
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public long getResidentBytes(OpenFile file) {
+        for (Map.Entry<OpenFile, EditorState> entry : states.entrySet()) {
+            if (entry.getKey() == file) {
+                return 2L * entry.getValue().length();
+            }
+        }
+        return 0;
+    }
+    
+    @Override
+    public void evict(OpenFile file) {
+        EditorState state = states.remove(file);
+        if (state != null) {
+            file.setContent(state.getText());
+        }
+    }
+    
+    public void clear() {
+        states.clear();
+    }
+}
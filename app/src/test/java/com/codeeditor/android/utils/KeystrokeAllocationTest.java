@@ -0,0 +1,165 @@
+package com.codeeditor.android.utils;
+
+import static org.junit.Assert.assertTrue;
+
+import com.codeeditor.android.autocomplete.IdentifierIndex;
+import com.codeeditor.android.model.OpenFile;
+import com.codeeditor.android.syntax.SyntaxHighlighter;
+import com.codeeditor.android.syntax.TokenCache;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Types into a large document through the same EditFanout the editor's text watcher uses, with the
+ * session journal, find results and modified flag attached, and checks the bytes allocated per keystroke
+ * stay within a small budget that does not grow with the document.
+ */
+public class KeystrokeAllocationTest {
+
+    private static final String LINE = "        int total = count + values[index] * 2; // running sum\n";
+    private static final String TYPED = "result = compute(total);";
+    private static final int DOCUMENT_CHARS = 1 << 20;
+    private static final int WARMUP_ROUNDS = 400;
+    private static final int MEASURED_ROUNDS = 400;
+    // the re-lexed line's tokens, the journal record and the block handed to the completion worker are line-sized
+    private static final long BYTES_PER_KEYSTROKE = 1024;
+
+    private final StringBuilder document = new StringBuilder(DOCUMENT_CHARS + 4096);
+    private final LineIndex lineIndex = new LineIndex();
+    private final TokenCache tokenCache = new TokenCache(lineIndex, SyntaxHighlighter.Language.JAVA);
+    private final UndoRedoManager undoRedoManager = new UndoRedoManager();
+    private final FindReplaceHelper findReplaceHelper = new FindReplaceHelper();
+    private final EditFanout editFanout = new EditFanout();
+    private File sessionDir;
+    private SessionJournal sessionJournal;
+    private int cursor;
+
+    @After
+    public void tearDown() {
+        if (sessionJournal != null) {
+            sessionJournal.shutdown();
+        }
+        if (sessionDir != null) {
+            File[] files = sessionDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            sessionDir.delete();
+        }
+    }
+
+    @Test
+    public void typingStaysWithinAllocationBudget() throws Exception {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        while (document.length() < DOCUMENT_CHARS) {
+            document.append(LINE);
+        }
+        OpenFile file = new OpenFile("Large.java", "Large.java", document.toString(), null);
+        lineIndex.rebuild(document);
+        tokenCache.rebuild(document);
+        IdentifierIndex identifierIndex = new IdentifierIndex();
+        identifierIndex.rebuild(tokenCache.snapshot(document));
+        cursor = lineIndex.getLineStart(lineIndex.getLineCount() / 2) + 8;
+
+        findReplaceHelper.setText(document.toString());
+        findReplaceHelper.find("total", new FindReplaceHelper.FindOptions());
+
+        sessionDir = Files.createTempDirectory("session").toFile();
+        sessionJournal = new SessionJournal(sessionDir, new SessionJournal.Host() {
+            @Override
+            public List<OpenFile> getSessionTabs() {
+                return Collections.singletonList(file);
+            }
+
+            @Override
+            public OpenFile getDisplayedTab() {
+                return file;
+            }
+
+            @Override
+            public CharSequence snapshotDisplayedText() {
+                return document.toString();
+            }
+        });
+        // main-thread posts do nothing here, so the checkpoint stays in flight and edits use its slots
+        sessionJournal.checkpoint();
+
+        editFanout.setDocument(undoRedoManager, lineIndex, tokenCache, identifierIndex);
+        editFanout.setConsumers(sessionJournal, findReplaceHelper, new EditFanout.Host() {
+            @Override
+            public OpenFile getEditedFile() {
+                return file;
+            }
+
+            @Override
+            public void onSearchInvalidated() {
+            }
+
+            @Override
+            public void onModifiedChanged(OpenFile changed) {
+            }
+        });
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            typeAndErase();
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            typeAndErase();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        long perKeystroke = allocated / (MEASURED_ROUNDS * 2L * TYPED.length());
+
+        assertTrue("allocated " + perKeystroke + " bytes per keystroke", perKeystroke <= BYTES_PER_KEYSTROKE);
+    }
+
+    private void typeAndErase() {
+        for (int i = 0; i < TYPED.length(); i++) {
+            type(TYPED.charAt(i));
+        }
+        for (int i = 0; i < TYPED.length(); i++) {
+            backspace();
+        }
+        undoRedoManager.seal();
+    }
+
+    private void type(char c) {
+        BracketMatcher.shouldAutoClose(document, tokenCache, cursor, c);
+        editFanout.beforeEdit(document, cursor, 0);
+        document.insert(cursor, c);
+        editFanout.afterEdit(document, cursor, 0, 1, true, true, true);
+        cursor++;
+        afterTextChanged();
+    }
+
+    private void backspace() {
+        cursor--;
+        editFanout.beforeEdit(document, cursor, 1);
+        document.deleteCharAt(cursor);
+        editFanout.afterEdit(document, cursor, 1, 0, true, true, true);
+        afterTextChanged();
+    }
+
+    // what CodeEditorView reads after each edit to place the cursor and decide on completion
+    private void afterTextChanged() {
+        tokenCache.isInsideLiteral(cursor);
+        lineIndex.getLineForOffset(cursor);
+    }
+}
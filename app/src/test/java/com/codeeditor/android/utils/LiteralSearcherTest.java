@@ -0,0 +1,130 @@
+package com.codeeditor.android.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the literal find and replace-all path against the regex path it replaced: the same query,
+ * quoted, must give the same match offsets and the same replaced text for every case and whole-word
+ * combination.
+ */
+public class LiteralSearcherTest {
+
+    private static final String SOURCE_ALPHABET = "aAbB_1 .\n()[]\\$*";
+    private static final String[] QUERIES = {
+        "a", "aa", "aAa", "ab", "b_", "_1", "a b", "a.b", ".", "..", "(a)", "[b]", "\\", "$", "a*", "\n a"
+    };
+    private static final int TEXTS = 200;
+    private static final int TEXT_LENGTH = 400;
+
+    @Test
+    public void findMatchesRegex() {
+        Random random = new Random(7);
+        for (int t = 0; t < TEXTS; t++) {
+            String text = randomText(random, SOURCE_ALPHABET);
+            for (String query : queries(random, text)) {
+                for (int mode = 0; mode < 4; mode++) {
+                    FindReplaceHelper.FindOptions options = options(mode);
+                    Pattern pattern = FindReplaceHelper.compile(query, options);
+                    String label = describe(query, options);
+                    assertEquals(label, regexMatches(pattern, text), literalMatches(query, options, text));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void replaceAllMatchesRegex() {
+        Random random = new Random(11);
+        for (int t = 0; t < TEXTS; t++) {
+            String text = randomText(random, SOURCE_ALPHABET);
+            for (String query : queries(random, text)) {
+                for (int mode = 0; mode < 4; mode++) {
+                    FindReplaceHelper.FindOptions options = options(mode);
+                    LiteralSearcher literal = new LiteralSearcher(query, options.caseSensitive, options.wholeWord);
+                    EditBatch literalBatch = new EditBatch();
+                    FindReplaceHelper.collectReplacements(text, literal, null, "<x>", literalBatch);
+                    EditBatch regexBatch = new EditBatch();
+                    FindReplaceHelper.collectReplacements(text, null, FindReplaceHelper.compile(query, options),
+                        "<x>", regexBatch);
+                    assertEquals(describe(query, options), regexBatch.apply(text), literalBatch.apply(text));
+                }
+            }
+        }
+    }
+
+    // the regex path folds ASCII only; with UNICODE_CASE it folds the same letters the literal path does
+    @Test
+    public void caseInsensitiveFoldsNonAscii() {
+        Random random = new Random(13);
+        String alphabet = "a\u00e9\u00c9\u0131I\u0130i\u03c3\u03a3\u03c2 ";
+        for (int t = 0; t < TEXTS; t++) {
+            String text = randomText(random, alphabet);
+            for (String query : queries(random, text)) {
+                Pattern pattern = Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                FindReplaceHelper.FindOptions options = new FindReplaceHelper.FindOptions(false, false, false);
+                assertEquals(describe(query, options), regexMatches(pattern, text),
+                    literalMatches(query, options, text));
+            }
+        }
+    }
+
+    private static FindReplaceHelper.FindOptions options(int mode) {
+        return new FindReplaceHelper.FindOptions((mode & 1) != 0, false, (mode & 2) != 0);
+    }
+
+    private static String describe(String query, FindReplaceHelper.FindOptions options) {
+        return "\"" + query + "\" caseSensitive=" + options.caseSensitive + " wholeWord=" + options.wholeWord;
+    }
+
+    private static String randomText(Random random, String alphabet) {
+        StringBuilder text = new StringBuilder(TEXT_LENGTH);
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    // the fixed queries plus a few cut from the text, so longer queries match too
+    private static List<String> queries(Random random, String text) {
+        List<String> queries = new ArrayList<>();
+        for (String query : QUERIES) {
+            queries.add(query);
+        }
+        for (int i = 0; i < 4; i++) {
+            int length = 1 + random.nextInt(6);
+            int start = random.nextInt(text.length() - length);
+            queries.add(text.substring(start, start + length));
+        }
+        return queries;
+    }
+
+    private static List<Integer> literalMatches(String query, FindReplaceHelper.FindOptions options, String text) {
+        FindReplaceHelper helper = new FindReplaceHelper();
+        helper.setText(text);
+        int count = helper.find(query, options);
+        List<Integer> offsets = new ArrayList<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            offsets.add(helper.getMatchStart(i));
+            offsets.add(helper.getMatchEnd(i));
+        }
+        return offsets;
+    }
+
+    private static List<Integer> regexMatches(Pattern pattern, String text) {
+        List<Integer> offsets = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            offsets.add(matcher.start());
+            offsets.add(matcher.end());
+        }
+        return offsets;
+    }
+}
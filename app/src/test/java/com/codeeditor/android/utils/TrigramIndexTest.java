@@ -0,0 +1,230 @@
+package com.codeeditor.android.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Indexes files that each pattern matches and checks the trigrams regexTrigrams extracts never rule one
+ * of them out. A wrong trigram makes a project search silently skip a file with a real match.
+ */
+public class TrigramIndexTest {
+
+    private static final long INDEX_TIMEOUT_MS = 10000;
+    // pieces of the pattern syntax over a two-letter alphabet, so random patterns often match random text
+    private static final String[] FRAGMENTS = {
+        "a", "b", "ab", "ba", "aab", ".", "\\.", "\\x61", "\\u0062", "\\141", "\\0141", "\\w", "\\b",
+        "[ab]", "[^a]", "[]a]", "[a[b]]", "(ab)", "(?:ba)", "(?=a)", "(?i)", "(?i:AB)", "a?", "b*", "a+",
+        "b{2}", "a{0,2}", "b+?", "a*+", "\\1"
+    };
+    private static final int RANDOM_SUBJECTS = 200;
+    private static final int RANDOM_PATTERNS = 500;
+
+    private File root;
+    private File indexDir;
+    private TrigramIndex index;
+
+    @After
+    public void tearDown() {
+        if (index != null) {
+            index.shutdown();
+        }
+        delete(root);
+        delete(indexDir);
+    }
+
+    @Test
+    public void escapes() throws Exception {
+        assertCandidatesKeepMatches(
+            "foo\\.bar", "call foo.bar()",
+            "a\\+b\\*cde", "x = a+b*cde;",
+            "\\\\path", "C:\\path\\to",
+            "\\x41BCD", "ABCD",
+            "\\x{41}BCD", "ABCD",
+            "\\u0041BCD", "ABCD",
+            "\\0101BCD", "ABCD",
+            "\\tabc", "\tabc",
+            "\\d+abc", "42abc",
+            "\\p{Lu}bcd", "Xbcd",
+            "\\pLbcd", "Xbcd",
+            "\\bword\\b", "a word here",
+            "(abc)\\1def", "abcabcdef",
+            "(abc)\\12def", "abcabc2def",
+            "(?<name>abc)\\k<name>def", "abcabcdef",
+            "\\Qa.b\\Ecd", "a.bcd");
+        assertNull(TrigramIndex.regexTrigrams("\\Qa.b\\Ecd"));
+        assertNotNull(TrigramIndex.regexTrigrams("\\x41BCD"));
+    }
+
+    @Test
+    public void characterClasses() throws Exception {
+        assertCandidatesKeepMatches(
+            "[abc]def", "cdef",
+            "[]a]xyz", "]xyz",
+            "[^]]xyz", "qxyz",
+            "[\\]]abc", "]abc",
+            "[a-z&&[^b]]xyz", "cxyz",
+            "[[a]b]cde", "acde",
+            "[[]a]b]cde", "]cde",
+            "(a[)]b)cde", "a)bcde",
+            "[(]abc", "(abc",
+            "abc[.]def", "abc.def",
+            "[abc]+def", "aabbdef",
+            "[x]{2}yzw", "xxyzw");
+    }
+
+    @Test
+    public void groups() throws Exception {
+        assertCandidatesKeepMatches(
+            "(abc)+def", "abcabcdef",
+            "(?:abc)?def", "def",
+            "(?i)ABCdef", "abcdef",
+            "(?=abcd)abc", "abcd",
+            "(?<!x)abc", "yabc",
+            "((a)bc)def", "abcdef",
+            "(a(b)c)*def", "def",
+            "(?<word>abc)def", "abcdef");
+    }
+
+    @Test
+    public void quantifiers() throws Exception {
+        assertCandidatesKeepMatches(
+            "abcd?", "abc",
+            "abc*def", "abdef",
+            "ab{2}cdef", "abbcdef",
+            "abc{0,2}def", "abdef",
+            "abc+d", "abcccd",
+            "abc??d", "abd",
+            "abc*+d", "abd",
+            "abc+?d", "abccd",
+            "x{2,}yzw", "xxxyzw",
+            "a.c.e", "abcde");
+    }
+
+    @Test
+    public void commentsFlag() throws Exception {
+        assertCandidatesKeepMatches(
+            "(?x) a b c d", "abcd",
+            "(?x)abc # comment", "abc",
+            "(?ix)A B C", "abc",
+            "(?x:a b c)", "abc",
+            "a(?x) b c d", "abcd");
+        assertNull(TrigramIndex.regexTrigrams("(?x) a b c d"));
+        assertNotNull(TrigramIndex.regexTrigrams("(?i)abcd"));
+    }
+
+    @Test
+    public void alternation() throws Exception {
+        assertCandidatesKeepMatches(
+            "abc|xyz", "xyz",
+            "(abc|xyz)def", "xyzdef");
+        assertNull(TrigramIndex.regexTrigrams("abc|xyz"));
+    }
+
+    @Test
+    public void randomPatternsKeepMatches() throws Exception {
+        Random random = new Random(42);
+        String[] subjects = new String[RANDOM_SUBJECTS];
+        for (int i = 0; i < subjects.length; i++) {
+            StringBuilder subject = new StringBuilder();
+            for (int j = 0; j < 24; j++) {
+                subject.append("aab.B".charAt(random.nextInt(5)));
+            }
+            subjects[i] = subject.toString();
+        }
+        TrigramIndex.Snapshot snapshot = buildIndex(subjects);
+
+        for (int p = 0; p < RANDOM_PATTERNS; p++) {
+            StringBuilder pattern = new StringBuilder("(a)");
+            int count = 2 + random.nextInt(5);
+            for (int j = 0; j < count; j++) {
+                pattern.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            long[] trigrams = TrigramIndex.regexTrigrams(pattern.toString());
+            if (trigrams == null) {
+                continue;
+            }
+            BitSet candidates = snapshot.candidates(trigrams);
+            Matcher matcher = Pattern.compile(pattern.toString()).matcher("");
+            for (int i = 0; i < subjects.length; i++) {
+                if (matcher.reset(subjects[i]).find()) {
+                    String path = "f" + i + ".txt";
+                    assertFalse(pattern + " excluded " + subjects[i],
+                        snapshot.canSkip(path, new File(root, path), candidates));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void excludesFilesWithoutTheLiteral() throws Exception {
+        TrigramIndex.Snapshot snapshot = buildIndex("needle here", "only hay");
+        BitSet candidates = snapshot.candidates(TrigramIndex.regexTrigrams("need(le)?"));
+
+        assertFalse("the matching file was skipped", snapshot.canSkip("f0.txt", new File(root, "f0.txt"), candidates));
+        assertTrue("the file without the literal was kept", snapshot.canSkip("f1.txt", new File(root, "f1.txt"), candidates));
+    }
+
+    private void assertCandidatesKeepMatches(String... cases) throws Exception {
+        String[] subjects = new String[cases.length / 2];
+        for (int i = 0; i < subjects.length; i++) {
+            subjects[i] = cases[i * 2 + 1];
+        }
+        TrigramIndex.Snapshot snapshot = buildIndex(subjects);
+
+        for (int i = 0; i < subjects.length; i++) {
+            String pattern = cases[i * 2];
+            assertTrue(pattern + " should match " + subjects[i], Pattern.compile(pattern).matcher(subjects[i]).find());
+            long[] trigrams = TrigramIndex.regexTrigrams(pattern);
+            if (trigrams == null) {
+                continue;
+            }
+            String path = "f" + i + ".txt";
+            BitSet candidates = snapshot.candidates(trigrams);
+            assertFalse(pattern + " excluded " + subjects[i], snapshot.canSkip(path, new File(root, path), candidates));
+        }
+    }
+
+    private TrigramIndex.Snapshot buildIndex(String... subjects) throws Exception {
+        root = Files.createTempDirectory("trigram").toFile();
+        indexDir = Files.createTempDirectory("trigram-index").toFile();
+        for (int i = 0; i < subjects.length; i++) {
+            Files.write(new File(root, "f" + i + ".txt").toPath(), subjects[i].getBytes(StandardCharsets.UTF_8));
+        }
+
+        index = new TrigramIndex(root, new File(indexDir, "trigrams.bin"));
+        index.update();
+        long deadline = System.currentTimeMillis() + INDEX_TIMEOUT_MS;
+        while (index.getSnapshot() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        TrigramIndex.Snapshot snapshot = index.getSnapshot();
+        assertNotNull(snapshot);
+        return snapshot;
+    }
+
+    private static void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}